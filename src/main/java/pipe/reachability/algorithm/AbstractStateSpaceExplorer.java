@@ -1,10 +1,11 @@
 package pipe.reachability.algorithm;
 
+import pipe.reachability.io.BatchStateProcessor;
+import pipe.reachability.io.TransitionBatch;
 import pipe.steadystate.algorithm.AbstractSteadyStateSolver;
 import uk.ac.imperial.io.StateProcessor;
 import uk.ac.imperial.pipe.exceptions.InvalidRateException;
 import uk.ac.imperial.state.ClassifiedState;
-import uk.ac.imperial.utils.ExploredSet;
 
 import java.io.IOException;
 import java.util.*;
@@ -19,17 +20,11 @@ import java.util.logging.Logger;
  * </p>
  */
 public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
-    /**
-     * Prime number for the explored set size, trade off between wasted memory
-     * and saturation avoidance
-     */
-    private static final int EXPLORED_SET_SIZE = 358591;
-
     /**
      * Contains states that have already been explored.
      * Initialised in generate when initialState info is given
      */
-    protected final ExploredSet explored = new ExploredSet(EXPLORED_SET_SIZE);
+    protected final ExploredStateSet explored;
 
     /**
      * Class logger
@@ -47,16 +42,35 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
     protected final VanishingExplorer vanishingExplorer;
 
     /**
-     * Map to register successor states to their rate when exploring a state.
+     * Accumulator to register successor state ids to their rate when exploring a state.
      * <p>
      * When processing a tangible state it is possible that via multiple vanishing states
      * the same tangible state is the successor. In this case the rates must be summed.
      * </p><p>
-     * This map is therefore used to write transitions to temporarily whilst processing
+     * This accumulator is therefore used to write transitions to temporarily whilst processing
      * all successors of a state. It is then used to write the records to the stateWriter
-     * only once all successors have been processed.</p>
+     * only once all successors have been processed. It is reused for every state so that
+     * summing rates does not allocate.</p>
+     */
+    protected final IntDoubleAccumulator successorRates = new IntDoubleAccumulator();
+
+    /**
+     * Number of buffered transitions at which the batch is handed to the processor
+     * even if the explorer has not flushed it
+     */
+    static final int MAX_BATCH_ENTRIES = 1 << 16;
+
+    /**
+     * Transitions waiting to be handed to the processor, only used if the processor
+     * is a {@link BatchStateProcessor}
      */
-    protected final Map<ClassifiedState, Double> successorRates = new HashMap<>();
+    private final TransitionBatch transitionBatch;
+
+    /**
+     * Successor ids of each written state, only recorded during a multiple
+     * root exploration so that reachability from each root can be calculated
+     */
+    private Map<Integer, int[]> successorIds;
 
     /**
      * Performs useful state calculations
@@ -80,9 +94,24 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
 
     public AbstractStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
                                       StateProcessor stateProcessor) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE));
+    }
+
+    /**
+     * @param explorerUtilities utilities to use for exploration
+     * @param vanishingExplorer exploring algorithm for processing vanishing states
+     * @param stateProcessor    processor for actually writing out the results
+     * @param explored          set to store explored states in, e.g. a {@link BitPackedExploredStateSet}
+     *                          to store states in as few bits as their place bounds allow
+     */
+    public AbstractStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                      StateProcessor stateProcessor, ExploredStateSet explored) {
+        this.explored = explored;
         this.explorerUtilities = explorerUtilities;
         this.vanishingExplorer = vanishingExplorer;
         this.stateProcessor = stateProcessor;
+        transitionBatch = stateProcessor instanceof BatchStateProcessor ? new TransitionBatch() : null;
     }
 
     /**
@@ -102,11 +131,115 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
         long start = System.nanoTime();
         exploreInitialState(initialState);
         stateSpaceExploration();
+        flushTransitions();
+        explorationFinished();
         long end = System.nanoTime();
         long duration = end - start;
         LOGGER.log(Level.INFO, "Took " + duration + " to solve state space");
-        return new StateSpaceExplorerResults(processedCount, stateCount);
+        BitSet unexplored = unexploredStateIds();
+        if (!unexplored.isEmpty()) {
+            LOGGER.log(Level.INFO, "Exploration truncated with " + unexplored.cardinality() + " unexplored states");
+        }
+        return new StateSpaceExplorerResults(processedCount, stateCount, unexplored);
+
+    }
+
+    /**
+     * Generates the state space reachable from every initial state in a single pass.
+     * <p>
+     * The explored set and the explorer utilities caches are shared between the roots
+     * so states reachable from more than one root are only explored once and are given
+     * a single id.
+     * </p><p>
+     * Whilst exploring, the successor ids of each state are recorded so that once exploration has
+     * finished the states reachable from each root can be calculated.
+     * </p>
+     *
+     * @param initialStates starting states for exploration.
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InterruptedException  thread interrupted
+     * @throws ExecutionException task aborted due to exception
+     * @throws IOException error doing IO
+     * @throws InvalidRateException functional rate expression invalid
+     * @return results containing the ids of the states reachable from each root
+     */
+    @Override
+    public final MultiRootResults generate(Collection<ClassifiedState> initialStates)
+            throws TimelessTrapException, InterruptedException, ExecutionException, IOException, InvalidRateException {
+        long start = System.nanoTime();
+        successorIds = new HashMap<>();
+        try {
+            Map<ClassifiedState, Collection<ClassifiedState>> rootEntries = new LinkedHashMap<>();
+            for (ClassifiedState initialState : initialStates) {
+                rootEntries.put(initialState, exploreInitialState(initialState));
+                stateSpaceExploration();
+            }
+            flushTransitions();
+            explorationFinished();
+            Map<ClassifiedState, BitSet> reachable = new LinkedHashMap<>();
+            for (Map.Entry<ClassifiedState, Collection<ClassifiedState>> entry : rootEntries.entrySet()) {
+                reachable.put(entry.getKey(), reachableIds(entry.getValue()));
+            }
+            long duration = System.nanoTime() - start;
+            LOGGER.log(Level.INFO, "Took " + duration + " to solve state space for " + initialStates.size() + " roots");
+            return new MultiRootResults(processedCount, stateCount, unexploredStateIds(), reachable);
+        } finally {
+            successorIds = null;
+        }
+    }
+
+    /**
+     * @return ids of the states in the unexplored frontier
+     */
+    private BitSet unexploredStateIds() {
+        BitSet ids = new BitSet();
+        for (ClassifiedState state : getUnexploredStates()) {
+            ids.set(explored.getId(state));
+        }
+        return ids;
+    }
+
+    /**
+     * Performs a breadth first search over the recorded successor ids
+     *
+     * @param entries states that the search starts from
+     * @return ids of all states reachable from the entries
+     */
+    private BitSet reachableIds(Collection<ClassifiedState> entries) {
+        BitSet reachable = new BitSet();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (ClassifiedState entry : entries) {
+            int id = explored.getId(entry);
+            if (!reachable.get(id)) {
+                reachable.set(id);
+                queue.add(id);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int[] successors = successorIds.get(queue.poll());
+            if (successors != null) {
+                for (int successor : successors) {
+                    if (!reachable.get(successor)) {
+                        reachable.set(successor);
+                        queue.add(successor);
+                    }
+                }
+            }
+        }
+        return reachable;
+    }
 
+    /**
+     * States that have been seen and written out but whose successors have not yet been
+     * explored. Once exploration has finished this is non empty only if exploration stopped
+     * early because the explorer utilities did not allow more states to be explored.
+     * <p>
+     * Subclasses that do not use the explorationQueue for their frontier should override this
+     * </p>
+     * @return the unexplored frontier of the state space
+     */
+    protected Collection<ClassifiedState> getUnexploredStates() {
+        return explorationQueue;
     }
 
 
@@ -117,24 +250,33 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
      * added to the queue.
      * </p><p>
      * Otherwise it must sort through vanishing states
+     * </p><p>
+     * If the initial state has already been explored, e.g. from a previous root, then
+     * it is not queued again.
      * </p>
      * @param initialState starting state of the algorithm
+     * @return the tangible states that exploration starts from
      * @throws TimelessTrapException unable to exit cyclic vanishing state
      * @throws InvalidRateException functional rate expression invalid
      * 
      */
-    protected final void exploreInitialState(ClassifiedState initialState)
+    protected final Collection<ClassifiedState> exploreInitialState(ClassifiedState initialState)
             throws TimelessTrapException, InvalidRateException {
+        Collection<ClassifiedState> entries = new LinkedList<>();
         if (initialState.isTangible()) {
-            explorationQueue.add(initialState);
-            markAsExplored(initialState);
+            if (!explored.contains(initialState)) {
+                explorationQueue.add(initialState);
+                markAsExplored(initialState);
+            }
+            entries.add(initialState);
         } else {
             Collection<StateRateRecord> explorableStates = vanishingExplorer.explore(initialState, 1.0);
             for (StateRateRecord record : explorableStates) {
                 registerStateTransition(record.getState(), record.getRate());
+                entries.add(record.getState());
             }
         }
-
+        return entries;
     }
 
     /**
@@ -173,11 +315,25 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
      * @param rate      rate at which state transitions to successor
      */
     protected final void registerStateTransition(ClassifiedState successor, double rate) {
-        registerStateRate(successor, rate);
         if (!explored.contains(successor)) {
             explorationQueue.add(successor);
             markAsExplored(successor);
         }
+        successorRates.add(explored.getId(successor), rate);
+    }
+
+    /**
+     * Registers a transition to every successor in a row of the batch, e.g. one calculated
+     * by a worker thread
+     *
+     * @param batch successor rates of many states
+     * @param row   row of the state whose successors are registered
+     */
+    protected final void registerStateTransitions(StateRateBatch batch, int row) {
+        int end = batch.getRowEnd(row);
+        for (int entry = batch.getRowStart(row); entry < end; entry++) {
+            registerStateTransition(batch.getState(entry), batch.getRate(entry));
+        }
     }
 
     /**
@@ -189,24 +345,6 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
         return number;
     }
 
-    /**
-     * Register the successor into successorRates map
-     * <p>
-     * If successor already exists then the rate is summed, if not it
-     * is added as a new entry
-     * </p>
-     * @param successor key to successor rates
-     * @param rate      rate at which successor is entered via some transition
-     */
-    protected final void registerStateRate(ClassifiedState successor, double rate) {
-        if (successorRates.containsKey(successor)) {
-            double previousRate = successorRates.get(successor);
-            successorRates.put(successor, previousRate + rate);
-        } else {
-            successorRates.put(successor, rate);
-        }
-    }
-
     /**
      * Marks each state in explored as explored if it is not already in the explored set.
      * <p>
@@ -234,10 +372,106 @@ public abstract class AbstractStateSpaceExplorer implements StateSpaceExplorer {
      * @param successorRates rates of successors 
      */
     protected final void writeStateTransitions(ClassifiedState state, Map<ClassifiedState, Double> successorRates) {
-        Map<Integer, Double> transitions = getIntegerTransitions(successorRates);
-        int stateId = explored.getId(state);
-        stateProcessor.processTransitions(stateId, transitions);
-        processedCount += successorRates.size();
+        writeStateTransitions(explored.getId(state), getIntegerTransitions(successorRates));
+    }
+
+    /**
+     * Writes the transitions registered in {@link #successorRates} for the state and clears them
+     * ready for the next state. If the processor accepts batches they are appended straight to the
+     * batch without building a map.
+     *
+     * @param state the current state that the registered successors belong to
+     */
+    protected final void writeStateTransitions(ClassifiedState state) {
+        if (transitionBatch == null) {
+            writeStateTransitions(explored.getId(state), successorRates.toMap());
+        } else {
+            int stateId = explored.getId(state);
+            int size = successorRates.size();
+            transitionBatch.startRow(stateId);
+            for (int i = 0; i < size; i++) {
+                transitionBatch.add(successorRates.getKey(i), successorRates.getValue(i));
+            }
+            processedCount += size;
+            if (successorIds != null) {
+                int[] ids = new int[size];
+                for (int i = 0; i < size; i++) {
+                    ids[i] = successorRates.getKey(i);
+                }
+                successorIds.put(stateId, ids);
+            }
+            flushTransitionsIfFull();
+        }
+        successorRates.clear();
+    }
+
+    /**
+     * Writes the transitions of a state whose successors have already been translated to their ids,
+     * e.g. by worker threads reading the explored set once all ids of a level have been assigned
+     *
+     * @param stateId     id of the state that the successors belong to
+     * @param transitions successor ids to the rate of transitioning to them
+     */
+    protected final void writeStateTransitions(int stateId, Map<Integer, Double> transitions) {
+        if (transitionBatch == null) {
+            stateProcessor.processTransitions(stateId, transitions);
+        } else {
+            transitionBatch.startRow(stateId);
+            for (Map.Entry<Integer, Double> entry : transitions.entrySet()) {
+                transitionBatch.add(entry.getKey(), entry.getValue());
+            }
+        }
+        processedCount += transitions.size();
+        if (successorIds != null) {
+            recordSuccessorIds(stateId, transitions.keySet());
+        }
+        flushTransitionsIfFull();
+    }
+
+    /**
+     * Hands any buffered transitions to the processor. Explorers that write a round of
+     * states at a time call this at the end of each round, it is always called once
+     * exploration has finished.
+     */
+    protected final void flushTransitions() {
+        if (transitionBatch != null && transitionBatch.getRows() > 0) {
+            ((BatchStateProcessor) stateProcessor).processTransitions(transitionBatch);
+            transitionBatch.clear();
+        }
+    }
+
+    /**
+     * Called once every root has been explored and the transitions flushed, for subclasses
+     * that write their own output to finish it. {@link #stateSpaceExploration()} runs once per
+     * root so must not finish any output itself.
+     */
+    protected void explorationFinished() {
+    }
+
+    /**
+     * Hands the buffered transitions to the processor if there are so many that
+     * holding on to them would waste memory
+     */
+    private void flushTransitionsIfFull() {
+        if (transitionBatch != null && transitionBatch.getEntries() >= MAX_BATCH_ENTRIES) {
+            flushTransitions();
+        }
+    }
+
+    /**
+     * Records the successor ids of the state for calculating reachability from multiple roots
+     *
+     * @param stateId    id of the state
+     * @param successors ids of the states successors
+     */
+    private void recordSuccessorIds(int stateId, Collection<Integer> successors) {
+        int[] ids = new int[successors.size()];
+        int index = 0;
+        for (int successor : successors) {
+            ids[index] = successor;
+            index++;
+        }
+        successorIds.put(stateId, ids);
     }
 
     /**
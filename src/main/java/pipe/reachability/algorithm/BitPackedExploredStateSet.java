@@ -0,0 +1,206 @@
+package pipe.reachability.algorithm;
+
+import pipe.structural.BitPackedMarkingLayout;
+import pipe.structural.IncidenceMatrix;
+import pipe.structural.PlaceBounds;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Explored state set that stores each state as its bit packed marking in a single open
+ * addressing table, so that a state takes only the words its place bounds require plus its id.
+ * <p>
+ * States are hashed by their packed marking only, their tangible or vanishing
+ * classification is not stored.
+ * </p>
+ */
+public final class BitPackedExploredStateSet implements ExploredStateSet {
+    /**
+     * Initial number of slots, must be a power of two
+     */
+    private static final int INITIAL_CAPACITY = 1 << 16;
+
+    /**
+     * Id of an empty slot
+     */
+    private static final int EMPTY = -1;
+
+    /**
+     * Layout used to pack states
+     */
+    private final BitPackedMarkingLayout layout;
+
+    /**
+     * Number of words per packed marking
+     */
+    private final int words;
+
+    /**
+     * Packed markings, slot i takes words [i * words, (i + 1) * words)
+     */
+    private long[] markings;
+
+    /**
+     * Id of the state in each slot, or {@link #EMPTY}
+     */
+    private int[] ids;
+
+    /**
+     * Number of states in the set
+     */
+    private int size = 0;
+
+    /**
+     * Packs every place of the Petri net using its structural bounds, so only states
+     * reachable from the Petri net's initial marking can be stored
+     *
+     * @param petriNet Petri net being explored
+     */
+    public BitPackedExploredStateSet(PetriNet petriNet) {
+        this(layoutFor(new IncidenceMatrix(petriNet)));
+    }
+
+    /**
+     * Packs every place of the Petri net using the structural bounds of the states reachable
+     * from any of the roots, e.g. the roots passed to
+     * {@link StateSpaceExplorer#generate(java.util.Collection)}
+     *
+     * @param petriNet Petri net being explored
+     * @param roots    states exploration starts from
+     */
+    public BitPackedExploredStateSet(PetriNet petriNet, Collection<? extends State> roots) {
+        this(layoutFor(new IncidenceMatrix(petriNet), roots));
+    }
+
+    /**
+     * @param layout layout used to pack states
+     */
+    public BitPackedExploredStateSet(BitPackedMarkingLayout layout) {
+        this.layout = layout;
+        words = layout.getWords();
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param matrix structure of the Petri net
+     * @return layout for every row of the matrix
+     */
+    private static BitPackedMarkingLayout layoutFor(IncidenceMatrix matrix) {
+        return new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix));
+    }
+
+    /**
+     * @param matrix structure of the Petri net
+     * @param roots  states exploration starts from
+     * @return layout for every row of the matrix bounded by the largest root markings
+     */
+    private static BitPackedMarkingLayout layoutFor(IncidenceMatrix matrix, Collection<? extends State> roots) {
+        List<int[]> markings = new ArrayList<>();
+        for (State root : roots) {
+            markings.add(matrix.toMarking(root));
+        }
+        return new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix, markings));
+    }
+
+    /**
+     * @param capacity number of slots
+     */
+    private void allocate(int capacity) {
+        markings = new long[capacity * words];
+        ids = new int[capacity];
+        Arrays.fill(ids, EMPTY);
+    }
+
+    @Override
+    public boolean contains(ClassifiedState state) {
+        return ids[find(layout.pack(state))] != EMPTY;
+    }
+
+    @Override
+    public void add(ClassifiedState state, int id) {
+        long[] packed = layout.pack(state);
+        int slot = find(packed);
+        if (ids[slot] == EMPTY) {
+            System.arraycopy(packed, 0, markings, slot * words, words);
+            size++;
+        }
+        ids[slot] = id;
+        if (size * 2 > ids.length) {
+            resize();
+        }
+    }
+
+    @Override
+    public int getId(ClassifiedState state) {
+        return ids[find(layout.pack(state))];
+    }
+
+    /**
+     * Linearly probes for the packed marking
+     *
+     * @param packed packed marking
+     * @return slot holding the marking, or the empty slot it would be added to
+     */
+    private int find(long[] packed) {
+        int mask = ids.length - 1;
+        int slot = hash(packed, 0) & mask;
+        while (ids[slot] != EMPTY && !matches(packed, slot)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @param packed packed marking
+     * @param slot   slot to compare with
+     * @return true if the slot holds the packed marking
+     */
+    private boolean matches(long[] packed, int slot) {
+        int offset = slot * words;
+        for (int word = 0; word < words; word++) {
+            if (markings[offset + word] != packed[word]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param packed packed markings
+     * @param offset first word of the marking
+     * @return well mixed hash of the marking
+     */
+    private int hash(long[] packed, int offset) {
+        long hash = 0;
+        for (int word = 0; word < words; word++) {
+            hash = (hash ^ packed[offset + word]) * 0x9E3779B97F4A7C15L;
+        }
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Doubles the number of slots and reinserts every marking
+     */
+    private void resize() {
+        long[] oldMarkings = markings;
+        int[] oldIds = ids;
+        allocate(oldIds.length * 2);
+        int mask = ids.length - 1;
+        for (int oldSlot = 0; oldSlot < oldIds.length; oldSlot++) {
+            if (oldIds[oldSlot] != EMPTY) {
+                int slot = hash(oldMarkings, oldSlot * words) & mask;
+                while (ids[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(oldMarkings, oldSlot * words, markings, slot * words, words);
+                ids[slot] = oldIds[oldSlot];
+            }
+        }
+    }
+}
@@ -20,6 +20,16 @@ public class BoundedExplorerUtilities extends CachingExplorerUtilities {
         this.maxNumberOfStates = maxNumberOfStates;
     }
 
+    /**
+     * @param petriNet          petri net to use for state space exploration
+     * @param maxNumberOfStates approximate number of states that can be explored
+     * @param reduce            true if structural reductions should be applied to the copy of the Petri net
+     */
+    public BoundedExplorerUtilities(PetriNet petriNet, int maxNumberOfStates, boolean reduce) {
+        super(petriNet, reduce);
+        this.maxNumberOfStates = maxNumberOfStates;
+    }
+
     /**
      * @param stateCount count of the number of states  
      * @return if the state count is less than or equal to the maximum number of states
@@ -0,0 +1,213 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class wraps an ExplorerUtilities with an exploration budget.
+ * <p>
+ * The budget is made up of a wall clock time limit, a heap watermark and a
+ * maximum number of states. Once any of these is exceeded {@link #canExploreMore(int)}
+ * returns false so that the state space explorers stop cleanly at the end of their
+ * current step, having written out all transitions of the states they have expanded.
+ * </p><p>
+ * The wall clock starts the first time the explorer asks if it can explore more states,
+ * i.e. when the main exploration loop starts.
+ * </p>
+ */
+public final class BudgetedExplorerUtilities implements ExplorerUtilities {
+
+    /**
+     * Class logger
+     */
+    private static final Logger LOGGER = Logger.getLogger(BudgetedExplorerUtilities.class.getName());
+
+    /**
+     * Value used to signify that there is no time limit on exploration
+     */
+    public static final long NO_TIME_LIMIT = Long.MAX_VALUE;
+
+    /**
+     * Value used to signify that there is no heap limit on exploration
+     */
+    public static final double NO_HEAP_LIMIT = 1.0;
+
+    /**
+     * Reachability graph explorer utilities
+     */
+    private final ExplorerUtilities explorerUtilities;
+
+    /**
+     * Maximum amount of time in nanoseconds that exploration can run for
+     */
+    private final long maxDuration;
+
+    /**
+     * Fraction of the maximum heap that may be in use before exploration stops
+     */
+    private final double maxHeapFraction;
+
+    /**
+     * The approximate number of states that can be explored
+     */
+    private final int maxNumberOfStates;
+
+    /**
+     * Time at which the budget started being consumed, set on the first call to canExploreMore
+     */
+    private long start = -1;
+
+    /**
+     * Set to true once any part of the budget has been exceeded
+     */
+    private volatile boolean exhausted = false;
+
+    /**
+     * @param utilities         explorer utility to wrap with the budget
+     * @param maxTime           the maximum time exploration can run for, or {@link #NO_TIME_LIMIT}
+     * @param unit              unit of maxTime
+     * @param maxHeapFraction   fraction of the maximum heap (0, 1] that can be in use before exploration stops,
+     *                          or {@link #NO_HEAP_LIMIT}
+     * @param maxNumberOfStates the approximate number of states that can be explored
+     */
+    public BudgetedExplorerUtilities(ExplorerUtilities utilities, long maxTime, TimeUnit unit, double maxHeapFraction,
+                                     int maxNumberOfStates) {
+        explorerUtilities = utilities;
+        maxDuration = maxTime == NO_TIME_LIMIT ? NO_TIME_LIMIT : unit.toNanos(maxTime);
+        this.maxHeapFraction = maxHeapFraction;
+        this.maxNumberOfStates = maxNumberOfStates;
+    }
+
+    /**
+     * Checks the wrapped utilities and then every part of the budget. Once the budget has
+     * been exceeded this method will always return false.
+     *
+     * @param stateCount count of states
+     * @return true if the wrapped utilities allow more states and the budget has not been exceeded
+     */
+    @Override
+    public boolean canExploreMore(int stateCount) {
+        if (start < 0) {
+            start = System.nanoTime();
+        }
+        if (exhausted) {
+            return false;
+        }
+        if (stateCount > maxNumberOfStates) {
+            exhaust("state count of " + maxNumberOfStates);
+        } else if (maxDuration != NO_TIME_LIMIT && System.nanoTime() - start > maxDuration) {
+            exhaust("time limit of " + maxDuration + "ns");
+        } else if (maxHeapFraction < NO_HEAP_LIMIT && usedHeapFraction() > maxHeapFraction) {
+            exhaust("heap watermark of " + maxHeapFraction);
+        }
+        return !exhausted && explorerUtilities.canExploreMore(stateCount);
+    }
+
+    /**
+     * @return true if any part of the budget has been exceeded
+     */
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    /**
+     * Marks the budget as exceeded and logs the reason
+     * @param reason part of the budget that was exceeded
+     */
+    private void exhaust(String reason) {
+        exhausted = true;
+        LOGGER.log(Level.INFO, "Exploration budget exceeded: " + reason);
+    }
+
+    /**
+     * @return fraction of the maximum heap currently in use
+     */
+    private double usedHeapFraction() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used / (double) runtime.maxMemory();
+    }
+
+    /**
+     * @param state state in the Petri net to find successors of
+     * @return successors of the state
+     */
+    @Override
+    public Map<ClassifiedState, Collection<Transition>> getSuccessorsWithTransitions(ClassifiedState state) {
+        return explorerUtilities.getSuccessorsWithTransitions(state);
+    }
+
+    /**
+     * @param state state in the Petri net to find successors of
+     * @return successors of the state
+     */
+    @Override
+    public Collection<ClassifiedState> getSuccessors(ClassifiedState state) {
+        return explorerUtilities.getSuccessors(state);
+    }
+
+    /**
+     * @param state to evaluate
+     * @param successor of the state
+     * @return the rate at which state transitions to successor in the underlying Petri net
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    @Override
+    public double rate(ClassifiedState state, ClassifiedState successor) throws InvalidRateException {
+        return explorerUtilities.rate(state, successor);
+    }
+
+    /**
+     * @return the underlying state of the Petri net
+     */
+    @Override
+    public ClassifiedState getCurrentState() {
+        return explorerUtilities.getCurrentState();
+    }
+
+    /**
+     * @param state     initial state
+     * @param successor successor state, must be directly reachable from the state
+     * @return transitions that when enabled will cause state to transition to successor
+     */
+    @Override
+    public Collection<Transition> getTransitions(ClassifiedState state, ClassifiedState successor) {
+        return explorerUtilities.getTransitions(state, successor);
+    }
+
+    /**
+     * @param state to evaluate
+     * @param transitions from the state
+     * @return the weight of the transitions from the state
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    @Override
+    public double getWeightOfTransitions(ClassifiedState state, Iterable<Transition> transitions)
+            throws InvalidRateException {
+        return explorerUtilities.getWeightOfTransitions(state, transitions);
+    }
+
+    /**
+     * @param state state in the Petri net to determine enabled transitions of
+     * @return all transitions which are enabled when in this state
+     */
+    @Override
+    public Collection<Transition> getAllEnabledTransitions(ClassifiedState state) {
+        return explorerUtilities.getAllEnabledTransitions(state);
+    }
+
+    /**
+     * Clears the explorer utilities cache
+     */
+    @Override
+    public void clear() {
+        explorerUtilities.clear();
+    }
+}
@@ -1,5 +1,6 @@
 package pipe.reachability.algorithm;
 
+import pipe.structural.NetReduction;
 import uk.ac.imperial.pipe.animation.AnimationLogic;
 import uk.ac.imperial.pipe.animation.PetriNetAnimationLogic;
 import uk.ac.imperial.pipe.exceptions.InvalidRateException;
@@ -25,6 +26,11 @@ import java.util.concurrent.ExecutionException;
  * Useful methods to help explore the state space.
  * <p>
  * Performs caching of frequent computations </p>
+ * <p>
+ * The enabled transitions of every state are computed once, when the state is first classified,
+ * and kept as a bit set over the Petri net's transitions ordered by id. The same set is then used
+ * to fire the state's successors when it is expanded, so enabledness is not checked twice.
+ * </p>
  */
 public abstract class CachingExplorerUtilities implements ExplorerUtilities {
     /**
@@ -36,6 +42,40 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
      */
     private final AnimationLogic animationLogic;
 
+    /**
+     * Reductions applied to the copy of the Petri net, or null if it was not reduced
+     */
+    private final NetReduction netReduction;
+
+    /**
+     * Maximum number of enabled transition sets cached between a state being classified and expanded
+     * before the cache is emptied. Sets are also cached for successors that have already been explored
+     * so without a limit the cache would grow with the state space.
+     */
+    static final int MAX_CACHED_ENABLED_SETS = 1 << 20;
+
+    /**
+     * Transitions of the Petri net ordered by id, bit i of an enabled transition set is transition i
+     */
+    private final List<Transition> transitions = new ArrayList<>();
+
+    /**
+     * Ids of the original Petri net's transitions that fire when the transition of each bit fires
+     */
+    private final List<List<String>> originalTransitionIds = new ArrayList<>();
+
+    /**
+     * Transition id to its bit in enabled transition sets
+     */
+    private final Map<String, Integer> transitionIndex = new HashMap<>();
+
+    /**
+     * Enabled transitions of states that have been classified but not yet expanded.
+     * Unlike the cached successors this is not emptied by {@link #clear()} since states
+     * are usually expanded long after they are first seen.
+     */
+    private final Map<ClassifiedState, BitSet> cachedEnabledTransitions = new ConcurrentHashMap<>();
+
 
     /**
      * Cached successors is used when exploring states to quickly determine
@@ -54,8 +94,63 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
      * @param petriNet petri net to use for state space exploration
      */
     public CachingExplorerUtilities(PetriNet petriNet) {
+        this(petriNet, false);
+    }
+
+    /**
+     * Takes a copy of the Petri net to use for state space exploration so
+     * not to affect the reference, optionally applying structural reductions to the copy.
+     * <p>
+     * States of a reduced net lack the removed places, so states written out should be
+     * restored with a {@link pipe.reachability.io.RestoringStateProcessor}.
+     * </p>
+     *
+     * @param petriNet petri net to use for state space exploration
+     * @param reduce   true if the copy should be reduced with a {@link NetReduction} before it is explored
+     */
+    public CachingExplorerUtilities(PetriNet petriNet, boolean reduce) {
         this.petriNet = ClonePetriNet.clone(petriNet);
+        netReduction = reduce ? new NetReduction(this.petriNet) : null;
         animationLogic = new PetriNetAnimationLogic(this.petriNet);
+        indexTransitions();
+    }
+
+    /**
+     * Explores the Petri net as it is, without taking a copy, using the given animator
+     *
+     * @param petriNet       petri net to use for state space exploration
+     * @param animationLogic animator for the Petri net
+     */
+    CachingExplorerUtilities(PetriNet petriNet, AnimationLogic animationLogic) {
+        this.petriNet = petriNet;
+        netReduction = null;
+        this.animationLogic = animationLogic;
+        indexTransitions();
+    }
+
+    /**
+     * Orders the transitions by id and records the original transitions fired by each
+     */
+    private void indexTransitions() {
+        transitions.addAll(petriNet.getTransitions());
+        Collections.sort(transitions, new Comparator<Transition>() {
+            @Override
+            public int compare(Transition transition, Transition other) {
+                return transition.getId().compareTo(other.getId());
+            }
+        });
+        Map<String, List<String>> fused = netReduction == null ? Collections.<String, List<String>>emptyMap()
+                : netReduction.getFusedTransitions();
+        for (int i = 0; i < transitions.size(); i++) {
+            String id = transitions.get(i).getId();
+            transitionIndex.put(id, i);
+            List<String> ids = new ArrayList<>();
+            ids.add(id);
+            if (fused.containsKey(id)) {
+                ids.addAll(fused.get(id));
+            }
+            originalTransitionIds.add(Collections.unmodifiableList(ids));
+        }
     }
 
     /**
@@ -76,7 +171,21 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
         }
 
 
-        Map<State, Collection<Transition>> successors = animationLogic.getSuccessors(state);
+        BitSet enabled = cachedEnabledTransitions.remove(state);
+        if (enabled == null) {
+            enabled = computeEnabledTransitions(state);
+        }
+        Map<State, Collection<Transition>> successors = new HashMap<>();
+        for (int i = enabled.nextSetBit(0); i >= 0; i = enabled.nextSetBit(i + 1)) {
+            Transition transition = transitions.get(i);
+            State successor = animationLogic.getFiredState(state, transition);
+            Collection<Transition> successorTransitions = successors.get(successor);
+            if (successorTransitions == null) {
+                successorTransitions = new LinkedList<>();
+                successors.put(successor, successorTransitions);
+            }
+            successorTransitions.add(transition);
+        }
         Map<ClassifiedState, Collection<Transition>> classifiedSuccessors = new HashMap<>();
         for (Map.Entry<State, Collection<Transition>> entry : successors.entrySet()) {
             ClassifiedState succ = classify(entry.getKey());
@@ -126,9 +235,7 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
             }
         }
 
-        State state = builder.build();
-        boolean tanigble = isTangible(state);
-        return tanigble ? HashedClassifiedState.tangibleState(state) : HashedClassifiedState.vanishingState(state);
+        return classify(builder.build());
     }
 
     /**
@@ -138,8 +245,11 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
      * @return classified state
      */
     public final ClassifiedState classify(State state) {
-        boolean tanigble = isTangible(state);
-        return tanigble ? HashedClassifiedState.tangibleState(state) : HashedClassifiedState.vanishingState(state);
+        BitSet enabled = computeEnabledTransitions(state);
+        ClassifiedState classified = isTangible(enabled) ? HashedClassifiedState.tangibleState(state)
+                : HashedClassifiedState.vanishingState(state);
+        cacheEnabledTransitions(classified, enabled);
+        return classified;
     }
 
     /**
@@ -147,15 +257,14 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
      * a) Has no enabled transitions
      * b) Has entirely timed transitions leaving it
      *
-     * @param state to test for tangibility
+     * @param enabledTransitions enabled transitions of the state to test for tangibility
      * @return true if the current token count setting is tangible
      */
-    private boolean isTangible(State state) {
-        Set<Transition> enabledTransitions = animationLogic.getEnabledTransitions(state);
+    private boolean isTangible(BitSet enabledTransitions) {
         boolean anyTimed = false;
         boolean anyImmediate = false;
-        for (Transition transition : enabledTransitions) {
-            if (transition.isTimed()) {
+        for (int i = enabledTransitions.nextSetBit(0); i >= 0; i = enabledTransitions.nextSetBit(i + 1)) {
+            if (transitions.get(i).isTimed()) {
                 anyTimed = true;
             } else {
                 anyImmediate = true;
@@ -164,6 +273,75 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
         return enabledTransitions.isEmpty() || (anyTimed && !anyImmediate);
     }
 
+    /**
+     * Returns the enabled transitions of the state, computing and caching them if they are not already
+     * cached. The set is cached until the state is expanded so that its successors can be fired without
+     * checking enabledness again.
+     *
+     * @param state to evaluate
+     * @return enabled transitions of the state as bits over the transitions ordered by id, must not be modified
+     */
+    public final BitSet getEnabledTransitionSet(ClassifiedState state) {
+        BitSet enabled = cachedEnabledTransitions.get(state);
+        if (enabled == null) {
+            enabled = computeEnabledTransitions(state);
+            cacheEnabledTransitions(state, enabled);
+        }
+        return enabled;
+    }
+
+    /**
+     * Caches the enabled transitions of a classified state until it is expanded. States are cached
+     * by their classified form since that is the form they are expanded in, and a classified state is
+     * not equal to the plain state it wraps.
+     *
+     * @param state   classified state
+     * @param enabled enabled transitions of the state
+     */
+    private void cacheEnabledTransitions(ClassifiedState state, BitSet enabled) {
+        if (cachedEnabledTransitions.size() >= MAX_CACHED_ENABLED_SETS) {
+            cachedEnabledTransitions.clear();
+        }
+        cachedEnabledTransitions.put(state, enabled);
+    }
+
+    /**
+     * @param state to evaluate
+     * @return enabled transitions of the state as bits over the transitions ordered by id
+     */
+    private BitSet computeEnabledTransitions(State state) {
+        BitSet enabled = new BitSet(transitions.size());
+        for (Transition transition : animationLogic.getEnabledTransitions(state)) {
+            enabled.set(transitionIndex.get(transition.getId()));
+        }
+        return enabled;
+    }
+
+    /**
+     * @return the copy of the Petri net being explored, reduced if reductions were applied
+     */
+    public final PetriNet getExploredPetriNet() {
+        return petriNet;
+    }
+
+    /**
+     * @return transitions of the Petri net in the order of the bits in enabled transition sets
+     */
+    public final List<Transition> getTransitionOrder() {
+        return Collections.unmodifiableList(transitions);
+    }
+
+    /**
+     * Maps a bit of an enabled transition set back to the Petri net given to the constructor. Transitions
+     * fused into another by net reduction have no bit of their own, but fire every time it does.
+     *
+     * @param bit bit of an enabled transition set
+     * @return ids of the original transitions that fire when the bit's transition fires, its own id first
+     */
+    public final List<String> getOriginalTransitionIds(int bit) {
+        return originalTransitionIds.get(bit);
+    }
+
     /**
      * Calculates the set of transitions that will take you from one state to the successor.
      * <p>
@@ -227,7 +405,8 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
     }
 
     /**
-     * Clears the cached successors and any caching that is done via the animationLogic class
+     * Clears the cached successors and any caching that is done via the animationLogic class.
+     * Enabled transition sets of states that have not been expanded yet are kept.
      */
     @Override
     public final void clear() {
@@ -235,5 +414,10 @@ public abstract class CachingExplorerUtilities implements ExplorerUtilities {
         animationLogic.clear();
     }
 
-
+    /**
+     * @return reductions applied to the Petri net being explored, or null if it was not reduced
+     */
+    public final NetReduction getNetReduction() {
+        return netReduction;
+    }
 }
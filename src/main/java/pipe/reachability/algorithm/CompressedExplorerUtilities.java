@@ -0,0 +1,154 @@
+package pipe.reachability.algorithm;
+
+import pipe.structural.IncidenceMatrix;
+import pipe.structural.PInvariants;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class wraps an ExplorerUtilities so that the states it hands out only contain
+ * the places that cannot be reconstructed from the Petri net's P-invariants.
+ * <p>
+ * The state space explorers therefore store and hash the compressed states in their explored
+ * sets and queues. Whenever the wrapped utilities need to evaluate a state it is expanded
+ * again, so successors and rates are exactly those of the uncompressed net. States written
+ * out should be expanded with a {@link pipe.reachability.io.ExpandingStateProcessor} so that
+ * the results and any metrics calculated from them contain every place.
+ * </p><p>
+ * This must not wrap coverability utilities since unbounded places break the invariants.
+ * </p>
+ */
+public final class CompressedExplorerUtilities implements ExplorerUtilities {
+    /**
+     * Reachability graph explorer utilities working on full states
+     */
+    private final ExplorerUtilities explorerUtilities;
+
+    /**
+     * Invariants used to compress and expand states
+     */
+    private final PInvariants invariants;
+
+    /**
+     * Computes the P-invariants of the Petri net to compress states with
+     *
+     * @param utilities explorer utility to wrap, must explore the given Petri net
+     * @param petriNet  Petri net being explored
+     */
+    public CompressedExplorerUtilities(ExplorerUtilities utilities, PetriNet petriNet) {
+        this(utilities, new PInvariants(new IncidenceMatrix(petriNet)));
+    }
+
+    /**
+     * @param utilities  explorer utility to wrap
+     * @param invariants invariants of the Petri net being explored
+     */
+    public CompressedExplorerUtilities(ExplorerUtilities utilities, PInvariants invariants) {
+        explorerUtilities = utilities;
+        this.invariants = invariants;
+    }
+
+    /**
+     * @return invariants used to compress and expand states
+     */
+    public PInvariants getInvariants() {
+        return invariants;
+    }
+
+    /**
+     * @param state compressed state in the Petri net to find successors of
+     * @return compressed successors of the state
+     */
+    @Override
+    public Map<ClassifiedState, Collection<Transition>> getSuccessorsWithTransitions(ClassifiedState state) {
+        Map<ClassifiedState, Collection<Transition>> successors =
+                explorerUtilities.getSuccessorsWithTransitions(invariants.expand(state));
+        Map<ClassifiedState, Collection<Transition>> compressed = new HashMap<>();
+        for (Map.Entry<ClassifiedState, Collection<Transition>> entry : successors.entrySet()) {
+            compressed.put(invariants.compress(entry.getKey()), entry.getValue());
+        }
+        return compressed;
+    }
+
+    /**
+     * @param state compressed state in the Petri net to find successors of
+     * @return compressed successors of the state
+     */
+    @Override
+    public Collection<ClassifiedState> getSuccessors(ClassifiedState state) {
+        return getSuccessorsWithTransitions(state).keySet();
+    }
+
+    /**
+     * @param state compressed state to evaluate
+     * @param successor compressed successor of the state
+     * @return the rate at which state transitions to successor in the underlying Petri net
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    @Override
+    public double rate(ClassifiedState state, ClassifiedState successor) throws InvalidRateException {
+        return explorerUtilities.rate(invariants.expand(state), invariants.expand(successor));
+    }
+
+    /**
+     * @return the compressed underlying state of the Petri net
+     */
+    @Override
+    public ClassifiedState getCurrentState() {
+        return invariants.compress(explorerUtilities.getCurrentState());
+    }
+
+    /**
+     * @param state     compressed initial state
+     * @param successor compressed successor state, must be directly reachable from the state
+     * @return transitions that when enabled will cause state to transition to successor
+     */
+    @Override
+    public Collection<Transition> getTransitions(ClassifiedState state, ClassifiedState successor) {
+        return explorerUtilities.getTransitions(invariants.expand(state), invariants.expand(successor));
+    }
+
+    /**
+     * @param state compressed state to evaluate
+     * @param transitions from the state
+     * @return the weight of the transitions from the state
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    @Override
+    public double getWeightOfTransitions(ClassifiedState state, Iterable<Transition> transitions)
+            throws InvalidRateException {
+        return explorerUtilities.getWeightOfTransitions(invariants.expand(state), transitions);
+    }
+
+    /**
+     * @param state compressed state in the Petri net to determine enabled transitions of
+     * @return all transitions which are enabled when in this state
+     */
+    @Override
+    public Collection<Transition> getAllEnabledTransitions(ClassifiedState state) {
+        return explorerUtilities.getAllEnabledTransitions(invariants.expand(state));
+    }
+
+    /**
+     * Clears the explorer utilities cache
+     */
+    @Override
+    public void clear() {
+        explorerUtilities.clear();
+    }
+
+    /**
+     * @param stateCount count of states
+     * @return true if the wrapped utilities can explore more states
+     */
+    @Override
+    public boolean canExploreMore(int stateCount) {
+        return explorerUtilities.canExploreMore(stateCount);
+    }
+}
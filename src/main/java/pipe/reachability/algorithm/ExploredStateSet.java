@@ -0,0 +1,31 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.state.ClassifiedState;
+
+/**
+ * Set of the states that have been seen during state space exploration along with the
+ * unique id each one was given.
+ * <p>
+ * Implementations may be read by several threads at once, but are only ever written to by
+ * one thread whilst no other thread is reading.
+ * </p>
+ */
+public interface ExploredStateSet {
+    /**
+     * @param state state to look for
+     * @return true if the state has been added to the set
+     */
+    boolean contains(ClassifiedState state);
+
+    /**
+     * @param state state to add
+     * @param id    unique id of the state
+     */
+    void add(ClassifiedState state, int id);
+
+    /**
+     * @param state state that has been added to the set
+     * @return id the state was added with
+     */
+    int getId(ClassifiedState state);
+}
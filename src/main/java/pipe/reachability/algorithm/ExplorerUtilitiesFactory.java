@@ -0,0 +1,12 @@
+package pipe.reachability.algorithm;
+
+/**
+ * Creates explorer utilities, used to give each worker thread of a
+ * parallel exploration utilities of its own
+ */
+public interface ExplorerUtilitiesFactory {
+    /**
+     * @return new explorer utilities that share no mutable state with any other utilities created
+     */
+    ExplorerUtilities create();
+}
@@ -0,0 +1,43 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.utils.ExploredSet;
+
+/**
+ * Explored state set that stores the states themselves, hashing them
+ * by their place token counts
+ */
+public final class HashedExploredStateSet implements ExploredStateSet {
+    /**
+     * Prime number for the explored set size, trade off between wasted memory
+     * and saturation avoidance
+     */
+    public static final int DEFAULT_SIZE = 358591;
+
+    /**
+     * Underlying explored set
+     */
+    private final ExploredSet explored;
+
+    /**
+     * @param size initial size of the set, a prime number trades off between wasted memory and saturation
+     */
+    public HashedExploredStateSet(int size) {
+        explored = new ExploredSet(size);
+    }
+
+    @Override
+    public boolean contains(ClassifiedState state) {
+        return explored.contains(state);
+    }
+
+    @Override
+    public void add(ClassifiedState state, int id) {
+        explored.add(state, id);
+    }
+
+    @Override
+    public int getId(ClassifiedState state) {
+        return explored.getId(state);
+    }
+}
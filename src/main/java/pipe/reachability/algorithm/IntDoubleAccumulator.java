@@ -0,0 +1,79 @@
+package pipe.reachability.algorithm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reusable open addressing map from int keys to summed double values.
+ * <p>
+ * Values are stored unboxed and entries are kept in insertion order. Clearing only touches the
+ * slots that were used, so one accumulator can be reused for every state an explorer expands
+ * without allocating once it has grown to the largest number of successors seen.
+ * </p><p>
+ * This class is not thread safe, each thread should use its own accumulator.
+ * </p>
+ */
+public final class IntDoubleAccumulator extends OpenAddressingAccumulator {
+    /**
+     * Keys in insertion order
+     */
+    private int[] keys = new int[INITIAL_CAPACITY];
+
+    /**
+     * Adds the value to the sum for the key
+     *
+     * @param key   key
+     * @param value value to add
+     */
+    public void add(int key, double value) {
+        int slot = firstSlot(key);
+        for (int index = entryAt(slot); index >= 0; index = entryAt(slot)) {
+            if (keys[index] == key) {
+                addToEntry(index, value);
+                return;
+            }
+            slot = nextSlot(slot);
+        }
+        int index = append(key, slot, value);
+        keys[index] = key;
+    }
+
+    /**
+     * @param index entry index in insertion order
+     * @return key of the entry
+     */
+    public int getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * @param index entry index in insertion order
+     * @return summed value of the entry
+     */
+    public double getValue(int index) {
+        return valueAt(index);
+    }
+
+    /**
+     * @return a new boxed map of the entries, for APIs that require one
+     */
+    public Map<Integer, Double> toMap() {
+        int size = size();
+        Map<Integer, Double> map = new HashMap<>(Math.max(INITIAL_CAPACITY, 2 * size));
+        for (int i = 0; i < size; i++) {
+            map.put(keys[i], valueAt(i));
+        }
+        return map;
+    }
+
+    @Override
+    protected void growKeys(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+    }
+
+    @Override
+    protected int hashAt(int index) {
+        return keys[index];
+    }
+}
@@ -5,11 +5,21 @@ import uk.ac.imperial.pipe.models.petrinet.Transition;
 import uk.ac.imperial.state.ClassifiedState;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Deque;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Abstract class that contains the shared code for vanishing explorers
@@ -26,13 +36,13 @@ import java.util.concurrent.ExecutionException;
  * </p>
  * Differing implementations can choose which state to explore
  */
-public final class OnTheFlyVanishingExplorer implements VanishingExplorer {
+public final class OnTheFlyVanishingExplorer implements VanishingExplorer, AutoCloseable {
     /**
-     * The number of times that cyclic vanishing states are allowed to be explored before a
-     * {@link pipe.reachability.algorithm.TimelessTrapException} is thrown
+     * Number of vanishing states an exploration may process before the vanishing region it has
+     * entered is checked for a timeless trap. Most explorations finish well before this so only
+     * walks around cycles pay for the check.
      */
-    //TODO ASK WILL FOR THE SIZE?
-    private static final int ALLOWED_ITERATIONS = 1000;
+    static final int TRAP_CHECK_ITERATIONS = 1000;
 
     /**
      * Value used to eliminate a vanishing state. We do not explore a state if the rate into it is
@@ -40,11 +50,57 @@ public final class OnTheFlyVanishingExplorer implements VanishingExplorer {
      */
     private static final double EPSILON = 0.0000001;
 
+    /**
+     * Maximum number of vanishing states whose successor probabilities are cached before the cache is emptied
+     */
+    static final int MAX_CACHED_STATES = 1 << 18;
+
+    /**
+     * Number of pending vanishing states above which half of them are forked off into a new task
+     */
+    static final int SPLIT_THRESHOLD = 512;
+
+    /**
+     * Initial capacity of a vanishing stack
+     */
+    private static final int INITIAL_STACK_CAPACITY = 32;
+
     /**
      * Explorer utilities useful for state manipulations
      */
     private final ExplorerUtilities explorerUtilities;
 
+    /**
+     * Successors of each vanishing state seen so far with the probability of moving to them.
+     * A vanishing state is usually entered from many states so these are kept across explorations.
+     */
+    private final Map<ClassifiedState, SuccessorProbabilities> cachedProbabilities = new ConcurrentHashMap<>();
+
+
+    /**
+     * Pool that large vanishing subgraphs are split across, or null to explore on the calling thread
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Vanishing stack of each thread, reused by every exploration that is not split across the pool
+     */
+    private final ThreadLocal<VanishingStack> stacks = new ThreadLocal<VanishingStack>() {
+        @Override
+        protected VanishingStack initialValue() {
+            return new VanishingStack();
+        }
+    };
+
+    /**
+     * Tangible rate accumulator of each thread, reused by every exploration that is not split across the pool
+     */
+    private final ThreadLocal<StateRateAccumulator> accumulators = new ThreadLocal<StateRateAccumulator>() {
+        @Override
+        protected StateRateAccumulator initialValue() {
+            return new StateRateAccumulator();
+        }
+    };
 
     /**
      * Constructor that takes the exploration utilities for generating reachability/coverability graphs
@@ -52,69 +108,445 @@ public final class OnTheFlyVanishingExplorer implements VanishingExplorer {
      */
     public OnTheFlyVanishingExplorer(ExplorerUtilities explorerUtilities) {
         this.explorerUtilities = explorerUtilities;
+        pool = null;
     }
 
     /**
-     * Explores a vanishing state by processing its successors until either no vanishing states
-     * are left or ALLOWED_ITERATIONS has been reached in the case of a cycle
+     * Constructor for an explorer that splits large vanishing subgraphs into fork join tasks so that
+     * a single large vanishing region does not hold up a parallel state space exploration
+     *
+     * @param explorerUtilities utilities, must be safe to use from several threads
+     * @param parallelism       number of threads to split vanishing subgraphs across, the threads are
+     *                          stopped by {@link #close()}
+     */
+    public OnTheFlyVanishingExplorer(ExplorerUtilities explorerUtilities, int parallelism) {
+        this.explorerUtilities = explorerUtilities;
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Explores a vanishing state by processing its successors until no vanishing states are left.
+     * If this explorer has a pool, large vanishing subgraphs are split across it.
      * <p>
+     * Cycles of vanishing states are walked round until the rate left in them falls below
+     * EPSILON. Once an exploration has processed {@link #TRAP_CHECK_ITERATIONS} states the
+     * vanishing region reachable from vanishingState is checked once for a timeless trap,
+     * a set of vanishing states from which no tangible state can be reached.
+     * </p><p>
      * Whilst performing this processing, any tangible states seen are registered with the current
      * rate at which the state transitions into them. If we see a transition more than once then its rate
      * is summed.
      * </p>
      * @param vanishingState vanishing state to explore.
      * @param rate rate at which vanishingState is entered from the previous state
-     * @return tangible transitions that the vanishing state transitions to.
+     * @return tangible transitions that the vanishing state transitions to. If this explorer has no
+     * pool the records are reused by the next exploration on the calling thread.
      * @throws TimelessTrapException unable to exit cyclic vanishing state
      * @throws InvalidRateException functional rate expression invalid
      */
     @Override
     public Collection<StateRateRecord> explore(ClassifiedState vanishingState, double rate)
             throws TimelessTrapException, InvalidRateException {
-        Deque<StateRateRecord> vanishingStack = new ArrayDeque<>();
-        vanishingStack.push(new StateRateRecord(vanishingState, rate));
-        int iterations = 0;
-        Collection<StateRateRecord> tangibleStatesFound = new LinkedList<>();
-        while (!vanishingStack.isEmpty() && iterations < ALLOWED_ITERATIONS) {
-            StateRateRecord record = vanishingStack.pop();
-            ClassifiedState previous = record.getState();
-            for (ClassifiedState successor : explorerUtilities.getSuccessors(previous)) {
-                double successorRate = record.getRate() * probability(previous, successor);
+        Exploration exploration = new Exploration(vanishingState);
+        if (pool == null) {
+            VanishingStack vanishingStack = stacks.get();
+            StateRateAccumulator tangibleStatesFound = accumulators.get();
+            vanishingStack.clear();
+            tangibleStatesFound.clear();
+            vanishingStack.push(vanishingState, rate);
+            walk(vanishingStack, tangibleStatesFound, exploration, null);
+            return tangibleStatesFound.toRecords();
+        }
+        VanishingStack vanishingStack = new VanishingStack();
+        vanishingStack.push(vanishingState, rate);
+        try {
+            return pool.invoke(new VanishingTask(vanishingStack, exploration));
+        } catch (ExplorationFailure failure) {
+            Throwable cause = failure.getCause();
+            while (cause instanceof ExplorationFailure) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof TimelessTrapException) {
+                throw (TimelessTrapException) cause;
+            }
+            throw (InvalidRateException) cause;
+        }
+    }
+
+    /**
+     * Processes vanishing states from the stack until it is empty, summing the rate into every tangible state seen.
+     * <p>
+     * If a task is given then whenever the stack grows beyond {@link #SPLIT_THRESHOLD} states the
+     * bottom half of it is forked off into a new task, and the tangible states found by the forked
+     * tasks are joined into the result once the stack is empty.
+     * </p>
+     *
+     * @param vanishingStack      vanishing states to process with the rate they are entered at
+     * @param tangibleStatesFound tangible states found with the summed rate they are entered at
+     * @param exploration         exploration the stack belongs to, shared by every task of it
+     * @param task                task processing the stack, or null to process it on this thread alone
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    private void walk(VanishingStack vanishingStack, StateRateAccumulator tangibleStatesFound,
+                      Exploration exploration, VanishingTask task)
+            throws TimelessTrapException, InvalidRateException {
+        List<VanishingTask> forked = null;
+        while (!vanishingStack.isEmpty()) {
+            exploration.processed();
+            double rate = vanishingStack.peekRate();
+            SuccessorProbabilities probabilities = getSuccessorProbabilities(vanishingStack.pop());
+            for (int i = 0; i < probabilities.successors.length; i++) {
+                ClassifiedState successor = probabilities.successors[i];
+                double successorRate = rate * probabilities.probabilities[i];
                 if (successor.isTangible()) {
-                    tangibleStatesFound.add(new StateRateRecord(successor, successorRate));
+                    tangibleStatesFound.add(successor, successorRate);
                 } else {
                     if (successorRate > EPSILON) {
-                        vanishingStack.push(new StateRateRecord(successor, successorRate));
+                        vanishingStack.push(successor, successorRate);
                     }
                 }
             }
-            iterations++;
+            if (task != null && vanishingStack.size() > SPLIT_THRESHOLD) {
+                VanishingTask subtask = new VanishingTask(vanishingStack.splitBottomHalf(), exploration);
+                subtask.fork();
+                if (forked == null) {
+                    forked = new ArrayList<>();
+                }
+                forked.add(subtask);
+            }
         }
-        if (iterations == ALLOWED_ITERATIONS) {
-            throw new TimelessTrapException();
+        if (forked != null) {
+            for (VanishingTask subtask : forked) {
+                for (StateRateRecord record : subtask.join()) {
+                    tangibleStatesFound.add(record.getState(), record.getRate());
+                }
+            }
         }
-        return tangibleStatesFound;
     }
 
+    /**
+     * Stops the threads of the pool, if this explorer has one. The explorer must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
 
     /**
-     * Works out what transitions would lead you to the successor state then divides the sum
-     * of their rates by the total rates of all enabled transitions
+     * Finds every vanishing state reachable from the start and checks that each of them can reach a
+     * tangible state. If one cannot then the rate entering it never leaves the vanishing states.
      *
-     * @param state     initial state
-     * @param successor next state
-     * @return the probability of transitioning to the successor state from state
+     * @param start vanishing state the exploration started from
+     * @return true if a vanishing state reachable from start cannot reach a tangible state
      * @throws InvalidRateException functional rate expression invalid
      */
-    private double probability(ClassifiedState state, ClassifiedState successor) throws InvalidRateException {
-        Collection<Transition> marked = explorerUtilities.getTransitions(state, successor);
-        if (marked.isEmpty()) {
-            return 0;
+    private boolean isTimelessTrap(ClassifiedState start) throws InvalidRateException {
+        Map<ClassifiedState, List<ClassifiedState>> predecessors = new HashMap<>();
+        Deque<ClassifiedState> exits = new ArrayDeque<>();
+        Deque<ClassifiedState> pending = new ArrayDeque<>();
+        predecessors.put(start, new ArrayList<ClassifiedState>());
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            ClassifiedState state = pending.poll();
+            SuccessorProbabilities probabilities = getSuccessorProbabilities(state);
+            boolean exit = false;
+            for (int i = 0; i < probabilities.successors.length; i++) {
+                ClassifiedState successor = probabilities.successors[i];
+                if (probabilities.probabilities[i] == 0) {
+                    continue;
+                }
+                if (successor.isTangible()) {
+                    exit = true;
+                } else {
+                    List<ClassifiedState> successorPredecessors = predecessors.get(successor);
+                    if (successorPredecessors == null) {
+                        successorPredecessors = new ArrayList<>();
+                        predecessors.put(successor, successorPredecessors);
+                        pending.add(successor);
+                    }
+                    successorPredecessors.add(state);
+                }
+            }
+            if (exit) {
+                exits.add(state);
+            }
         }
-        double toSuccessorWeight = explorerUtilities.getWeightOfTransitions(state, marked);
-        double totalWeight =
-                explorerUtilities.getWeightOfTransitions(state, explorerUtilities.getAllEnabledTransitions(state));
-        return toSuccessorWeight / totalWeight;
+        Set<ClassifiedState> canExit = new HashSet<>(exits);
+        while (!exits.isEmpty()) {
+            for (ClassifiedState predecessor : predecessors.get(exits.poll())) {
+                if (canExit.add(predecessor)) {
+                    exits.add(predecessor);
+                }
+            }
+        }
+        return canExit.size() < predecessors.size();
     }
 
+    /**
+     * Returns the cached successor probabilities of the state, calculating them if this is the
+     * first time the state has been seen
+     *
+     * @param state vanishing state
+     * @return successors of the state and the probability of moving to each
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    private SuccessorProbabilities getSuccessorProbabilities(ClassifiedState state) throws InvalidRateException {
+        SuccessorProbabilities probabilities = cachedProbabilities.get(state);
+        if (probabilities == null) {
+            probabilities = calculateSuccessorProbabilities(state);
+            if (cachedProbabilities.size() >= MAX_CACHED_STATES) {
+                cachedProbabilities.clear();
+            }
+            cachedProbabilities.put(state, probabilities);
+        }
+        return probabilities;
+    }
+
+    /**
+     * Works out the weight of the transitions leading to each successor in a single pass, then
+     * divides each by their sum which is the total weight of all enabled transitions
+     *
+     * @param state vanishing state
+     * @return successors of the state and the probability of moving to each
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    private SuccessorProbabilities calculateSuccessorProbabilities(ClassifiedState state)
+            throws InvalidRateException {
+        Collection<ClassifiedState> successors = explorerUtilities.getSuccessors(state);
+        ClassifiedState[] states = successors.toArray(new ClassifiedState[successors.size()]);
+        double[] weights = new double[states.length];
+        double totalWeight = 0;
+        for (int i = 0; i < states.length; i++) {
+            Collection<Transition> marked = explorerUtilities.getTransitions(state, states[i]);
+            if (!marked.isEmpty()) {
+                weights[i] = explorerUtilities.getWeightOfTransitions(state, marked);
+                totalWeight += weights[i];
+            }
+        }
+        for (int i = 0; i < weights.length; i++) {
+            if (weights[i] != 0) {
+                weights[i] /= totalWeight;
+            }
+        }
+        return new SuccessorProbabilities(states, weights);
+    }
+
+    /**
+     * Fork join task walking part of a vanishing subgraph
+     */
+    private final class VanishingTask extends RecursiveTask<List<StateRateRecord>> {
+        /**
+         * Serial version id
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Vanishing states to process with the rate they are entered at
+         */
+        private final transient VanishingStack vanishingStack;
+
+        /**
+         * Exploration the stack belongs to, shared by every task of it
+         */
+        private final transient Exploration exploration;
+
+        /**
+         * @param vanishingStack vanishing states to process with the rate they are entered at
+         * @param exploration    exploration the stack belongs to, shared by every task of it
+         */
+        private VanishingTask(VanishingStack vanishingStack, Exploration exploration) {
+            this.vanishingStack = vanishingStack;
+            this.exploration = exploration;
+        }
+
+        /**
+         * @return tangible transitions that the vanishing states transition to.
+         */
+        @Override
+        protected List<StateRateRecord> compute() {
+            try {
+                StateRateAccumulator tangibleStatesFound = new StateRateAccumulator();
+                walk(vanishingStack, tangibleStatesFound, exploration, this);
+                return tangibleStatesFound.toRecords();
+            } catch (TimelessTrapException | InvalidRateException e) {
+                throw new ExplorationFailure(e);
+            }
+        }
+    }
+
+    /**
+     * State shared by every task of one exploration, used to check the vanishing region for a timeless trap
+     * once the exploration has run for long enough
+     */
+    private final class Exploration {
+        /**
+         * Vanishing state the exploration started from
+         */
+        private final ClassifiedState start;
+
+        /**
+         * Number of vanishing states processed so far by every task of the exploration
+         */
+        private final AtomicInteger iterations = new AtomicInteger();
+
+        /**
+         * Set once a timeless trap has been found so that every task of the exploration stops
+         */
+        private volatile boolean trapped = false;
+
+        /**
+         * @param start vanishing state the exploration started from
+         */
+        private Exploration(ClassifiedState start) {
+            this.start = start;
+        }
+
+        /**
+         * Counts a processed vanishing state, checking the region for a timeless trap on the
+         * {@link #TRAP_CHECK_ITERATIONS}th
+         *
+         * @throws TimelessTrapException a timeless trap has been found by this or another task
+         * @throws InvalidRateException  functional rate expression invalid
+         */
+        private void processed() throws TimelessTrapException, InvalidRateException {
+            if (iterations.incrementAndGet() == TRAP_CHECK_ITERATIONS && isTimelessTrap(start)) {
+                trapped = true;
+            }
+            if (trapped) {
+                throw new TimelessTrapException();
+            }
+        }
+    }
+
+    /**
+     * Stack of vanishing states and the rates they are entered at, held in
+     * parallel arrays so that pushing a state does not allocate a record
+     */
+    private static final class VanishingStack {
+        /**
+         * Vanishing states
+         */
+        private ClassifiedState[] states = new ClassifiedState[INITIAL_STACK_CAPACITY];
+
+        /**
+         * Rate the state at the same index is entered at
+         */
+        private double[] rates = new double[INITIAL_STACK_CAPACITY];
+
+        /**
+         * Number of states on the stack
+         */
+        private int size = 0;
+
+        /**
+         * @param state vanishing state
+         * @param rate  rate the state is entered at
+         */
+        private void push(ClassifiedState state, double rate) {
+            if (size == states.length) {
+                states = Arrays.copyOf(states, 2 * size);
+                rates = Arrays.copyOf(rates, 2 * size);
+            }
+            states[size] = state;
+            rates[size] = rate;
+            size++;
+        }
+
+        /**
+         * @return rate the top state is entered at
+         */
+        private double peekRate() {
+            return rates[size - 1];
+        }
+
+        /**
+         * @return the top state, which is removed from the stack
+         */
+        private ClassifiedState pop() {
+            size--;
+            ClassifiedState state = states[size];
+            states[size] = null;
+            return state;
+        }
+
+        /**
+         * @return number of states on the stack
+         */
+        private int size() {
+            return size;
+        }
+
+        /**
+         * @return true if there are no states on the stack
+         */
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Removes every state, keeping the allocated arrays
+         */
+        private void clear() {
+            Arrays.fill(states, 0, size, null);
+            size = 0;
+        }
+
+        /**
+         * Moves the bottom half of this stack, the states that would be processed last, to a new stack
+         *
+         * @return stack holding the bottom half of the states
+         */
+        private VanishingStack splitBottomHalf() {
+            int half = size / 2;
+            VanishingStack split = new VanishingStack();
+            for (int i = 0; i < half; i++) {
+                split.push(states[i], rates[i]);
+            }
+            System.arraycopy(states, half, states, 0, size - half);
+            System.arraycopy(rates, half, rates, 0, size - half);
+            Arrays.fill(states, size - half, size, null);
+            size -= half;
+            return split;
+        }
+    }
+
+    /**
+     * Carries the checked exceptions of a vanishing task out of the fork join pool
+     */
+    private static final class ExplorationFailure extends RuntimeException {
+        /**
+         * Serial version id
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * @param cause checked exception thrown by the task
+         */
+        private ExplorationFailure(Exception cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * Successors of a vanishing state and the probability of moving to each
+     */
+    private static final class SuccessorProbabilities {
+        /**
+         * Successor states
+         */
+        private final ClassifiedState[] successors;
+
+        /**
+         * Probability of moving to the successor at the same index
+         */
+        private final double[] probabilities;
+
+        private SuccessorProbabilities(ClassifiedState[] successors, double[] probabilities) {
+            this.successors = successors;
+            this.probabilities = probabilities;
+        }
+    }
 }
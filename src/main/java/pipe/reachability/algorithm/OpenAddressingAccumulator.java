@@ -0,0 +1,164 @@
+package pipe.reachability.algorithm;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table summing unboxed double values per key, shared by the
+ * accumulators for int and state keys.
+ * <p>
+ * Entries are kept in insertion order, subclasses hold the key of each entry in their own
+ * array at the entry's index and probe the table with {@link #firstSlot(int)},
+ * {@link #entryAt(int)} and {@link #nextSlot(int)}. Clearing only touches the slots that
+ * were used, so an accumulator can be reused without allocating once it has grown to the
+ * largest number of entries seen.
+ * </p><p>
+ * This class is not thread safe, each thread should use its own accumulator.
+ * </p>
+ */
+abstract class OpenAddressingAccumulator {
+    /**
+     * Initial number of entries before the accumulator grows
+     */
+    static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Summed value of the entry at the same index
+     */
+    private double[] values = new double[INITIAL_CAPACITY];
+
+    /**
+     * Table slot of the entry at the same index
+     */
+    private int[] slots = new int[INITIAL_CAPACITY];
+
+    /**
+     * Hash table of entry index plus one, zero marks an empty slot
+     */
+    private int[] table = new int[2 * INITIAL_CAPACITY];
+
+    /**
+     * Number of entries
+     */
+    private int size = 0;
+
+    /**
+     * @return number of distinct keys
+     */
+    public final int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry, keeping the allocated arrays
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            table[slots[i]] = 0;
+        }
+        size = 0;
+    }
+
+    /**
+     * @param hash hash code of a key
+     * @return first slot to probe for the key
+     */
+    protected final int firstSlot(int hash) {
+        return mix(hash) & (table.length - 1);
+    }
+
+    /**
+     * @param slot slot just probed
+     * @return next slot to probe
+     */
+    protected final int nextSlot(int slot) {
+        return (slot + 1) & (table.length - 1);
+    }
+
+    /**
+     * @param slot table slot
+     * @return index of the entry held in the slot, or -1 if the slot is empty
+     */
+    protected final int entryAt(int slot) {
+        return table[slot] - 1;
+    }
+
+    /**
+     * @param index entry index in insertion order
+     * @return summed value of the entry
+     */
+    protected final double valueAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * @param index entry index in insertion order
+     * @param value value to add to the entry's sum
+     */
+    protected final void addToEntry(int index, double value) {
+        values[index] += value;
+    }
+
+    /**
+     * Appends an entry for a key that probing found to be absent, growing the table if it is full.
+     * The subclass must store the key at the returned index.
+     *
+     * @param hash  hash code of the key
+     * @param slot  empty slot that probing for the key stopped at
+     * @param value initial value of the entry
+     * @return index of the new entry
+     */
+    protected final int append(int hash, int slot, double value) {
+        int index = size;
+        if (index == values.length) {
+            grow();
+            slot = firstSlot(hash);
+            while (table[slot] != 0) {
+                slot = nextSlot(slot);
+            }
+        }
+        values[index] = value;
+        slots[index] = slot;
+        table[slot] = index + 1;
+        size++;
+        return index;
+    }
+
+    /**
+     * @param capacity new number of entries, the key array must be copied to this length
+     */
+    protected abstract void growKeys(int capacity);
+
+    /**
+     * @param index entry index in insertion order
+     * @return hash code of the entry's key
+     */
+    protected abstract int hashAt(int index);
+
+    /**
+     * Doubles the capacity and rehashes every entry
+     */
+    private void grow() {
+        int capacity = 2 * values.length;
+        values = Arrays.copyOf(values, capacity);
+        growKeys(capacity);
+        slots = new int[capacity];
+        table = new int[2 * capacity];
+        for (int i = 0; i < size; i++) {
+            int slot = firstSlot(hashAt(i));
+            while (table[slot] != 0) {
+                slot = nextSlot(slot);
+            }
+            table[slot] = i + 1;
+            slots[i] = slot;
+        }
+    }
+
+    /**
+     * @param hash hash code
+     * @return spread hash
+     */
+    private static int mix(int hash) {
+        int spread = hash * 0x9E3779B9;
+        return spread ^ (spread >>> 16);
+    }
+}
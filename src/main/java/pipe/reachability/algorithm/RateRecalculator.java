@@ -0,0 +1,125 @@
+package pipe.reachability.algorithm;
+
+import pipe.reachability.io.RateStructureReader;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.Record;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recalculates the CTMC rates of a previously explored state space from its rate structure
+ * without exploring the state space again.
+ * <p>
+ * This is only valid if the arcs, initial marking and immediate transition weights of the
+ * Petri net are unchanged since the structure was recorded, i.e. only timed transition rates
+ * may differ. Functional rates are evaluated against the marking of each source state.
+ * </p>
+ */
+public final class RateRecalculator {
+    /**
+     * Utilities used to evaluate transition rates
+     */
+    private final ExplorerUtilities explorerUtilities;
+
+    /**
+     * Transition id to the transition holding its new rate
+     */
+    private final Map<String, Transition> transitions = new HashMap<>();
+
+    /**
+     * Recalculates rates with the rates of the given Petri net
+     *
+     * @param petriNet Petri net containing the updated rates
+     */
+    public RateRecalculator(PetriNet petriNet) {
+        this(new UnboundedExplorerUtilities(petriNet), petriNet.getTransitions());
+    }
+
+    /**
+     * @param explorerUtilities utilities used to evaluate transition rates
+     * @param transitions       transitions containing the updated rates
+     */
+    public RateRecalculator(ExplorerUtilities explorerUtilities, Collection<Transition> transitions) {
+        this.explorerUtilities = explorerUtilities;
+        for (Transition transition : transitions) {
+            this.transitions.put(transition.getId(), transition);
+        }
+    }
+
+    /**
+     * Recalculates every row of the structure and collects them as records
+     *
+     * @param reader rate structure to recalculate
+     * @param states state id to state
+     * @return records with the updated rates
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    public List<Record> recalculate(RateStructureReader reader, Map<Integer, ClassifiedState> states)
+            throws InvalidRateException {
+        List<Record> records = new ArrayList<>();
+        for (RateStructureReader.Row row = reader.readRow(); row != null; row = reader.readRow()) {
+            records.add(new Record(row.state, recalculate(row, states.get(row.state))));
+        }
+        return records;
+    }
+
+    /**
+     * Recalculates every row of the structure writing each one to the state processor
+     * as soon as it has been calculated
+     *
+     * @param reader         rate structure to recalculate
+     * @param states         state id to state
+     * @param stateProcessor processor to write the transitions to
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    public void recalculate(RateStructureReader reader, Map<Integer, ClassifiedState> states,
+                            StateProcessor stateProcessor) throws InvalidRateException {
+        for (RateStructureReader.Row row = reader.readRow(); row != null; row = reader.readRow()) {
+            stateProcessor.processTransitions(row.state, recalculate(row, states.get(row.state)));
+        }
+    }
+
+    /**
+     * @param row   rate structure of the state
+     * @param state the state the row belongs to
+     * @return successor id to the recalculated rate
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    private Map<Integer, Double> recalculate(RateStructureReader.Row row, ClassifiedState state)
+            throws InvalidRateException {
+        Map<Integer, Double> successors = new HashMap<>();
+        for (Map.Entry<Integer, List<RateTerm>> edge : row.edges.entrySet()) {
+            double rate = 0;
+            for (RateTerm term : edge.getValue()) {
+                rate += term.getFactor() * explorerUtilities.getWeightOfTransitions(state,
+                        getTransitions(term.getTransitionIds()));
+            }
+            successors.put(edge.getKey(), rate);
+        }
+        return successors;
+    }
+
+    /**
+     * @param ids transition ids
+     * @return transitions with the given ids
+     */
+    private Collection<Transition> getTransitions(Collection<String> ids) {
+        Collection<Transition> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Transition transition = transitions.get(id);
+            if (transition == null) {
+                throw new IllegalArgumentException("Transition " + id + " is not in the Petri net");
+            }
+            result.add(transition);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,52 @@
+package pipe.reachability.algorithm;
+
+import java.util.Collection;
+
+/**
+ * One contribution to the rate of an edge in the CTMC produced by state space exploration.
+ * <p>
+ * The rate contributed is the summed rate of the timed transitions that fire from the
+ * source state multiplied by the factor. For a tangible successor the factor is 1, for a
+ * tangible state reached via vanishing states it is the probability of the vanishing path.
+ * </p><p>
+ * Recording these terms means the CTMC rates can be recalculated when only the timed
+ * transition rates change.
+ * </p>
+ */
+public final class RateTerm {
+    /**
+     * Ids of the transitions that fire from the source state
+     */
+    private final Collection<String> transitionIds;
+
+    /**
+     * Factor by which the rate of the transitions is scaled
+     */
+    private final double factor;
+
+    /**
+     * Constructor
+     * @param transitionIds ids of transitions firing from the source state
+     * @param factor scale factor of the rate
+     */
+    public RateTerm(Collection<String> transitionIds, double factor) {
+        this.transitionIds = transitionIds;
+        this.factor = factor;
+    }
+
+    /**
+     *
+     * @return ids of the transitions that fire from the source state
+     */
+    public Collection<String> getTransitionIds() {
+        return transitionIds;
+    }
+
+    /**
+     *
+     * @return factor by which the rate of the transitions is scaled
+     */
+    public double getFactor() {
+        return factor;
+    }
+}
@@ -0,0 +1,132 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reusable open addressing map from states to summed rates.
+ * <p>
+ * Rates are stored unboxed and entries are kept in insertion order. Clearing only touches the
+ * slots that were used, so one accumulator can be reused for every exploration without allocating
+ * once it has grown to the largest number of states seen.
+ * </p><p>
+ * This class is not thread safe, each thread should use its own accumulator.
+ * </p>
+ */
+public final class StateRateAccumulator extends OpenAddressingAccumulator {
+    /**
+     * States in insertion order
+     */
+    private ClassifiedState[] states = new ClassifiedState[INITIAL_CAPACITY];
+
+    /**
+     * Records handed out by {@link #toRecords()}, reused by every call
+     */
+    private StateRateRecord[] records = new StateRateRecord[INITIAL_CAPACITY];
+
+    /**
+     * Number of records filled in by the last call to {@link #toRecords()}
+     */
+    private int recordCount = 0;
+
+    /**
+     * View of the filled in records
+     */
+    private final List<StateRateRecord> recordView = new AbstractList<StateRateRecord>() {
+        @Override
+        public StateRateRecord get(int index) {
+            if (index >= recordCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + recordCount);
+            }
+            return records[index];
+        }
+
+        @Override
+        public int size() {
+            return recordCount;
+        }
+    };
+
+    /**
+     * Adds the rate to the sum for the state
+     *
+     * @param state state
+     * @param rate  rate to add
+     */
+    public void add(ClassifiedState state, double rate) {
+        int hash = state.hashCode();
+        int slot = firstSlot(hash);
+        for (int index = entryAt(slot); index >= 0; index = entryAt(slot)) {
+            if (states[index].equals(state)) {
+                addToEntry(index, rate);
+                return;
+            }
+            slot = nextSlot(slot);
+        }
+        int index = append(hash, slot, rate);
+        states[index] = state;
+    }
+
+    /**
+     * @param index entry index in insertion order
+     * @return state of the entry
+     */
+    public ClassifiedState getState(int index) {
+        return states[index];
+    }
+
+    /**
+     * @param index entry index in insertion order
+     * @return summed rate of the entry
+     */
+    public double getRate(int index) {
+        return valueAt(index);
+    }
+
+    /**
+     * Removes every entry, keeping the allocated arrays
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(states, 0, size(), null);
+        super.clear();
+    }
+
+    /**
+     * Fills in a record for every state with its summed rate.
+     * <p>
+     * The records and the returned list are owned by this accumulator and are overwritten by
+     * the next call, so they must be consumed before the accumulator is used again.
+     * </p>
+     *
+     * @return a record for every state with its summed rate
+     */
+    public List<StateRateRecord> toRecords() {
+        int size = size();
+        if (records.length < size) {
+            records = Arrays.copyOf(records, states.length);
+        }
+        for (int i = 0; i < size; i++) {
+            if (records[i] == null) {
+                records[i] = new StateRateRecord(states[i], valueAt(i));
+            } else {
+                records[i].set(states[i], valueAt(i));
+            }
+        }
+        recordCount = size;
+        return recordView;
+    }
+
+    @Override
+    protected void growKeys(int capacity) {
+        states = Arrays.copyOf(states, capacity);
+    }
+
+    @Override
+    protected int hashAt(int index) {
+        return states[index].hashCode();
+    }
+}
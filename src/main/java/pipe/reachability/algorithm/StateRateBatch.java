@@ -0,0 +1,119 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Arrays;
+
+/**
+ * Successor states and rates of many explored states held as parallel arrays in compressed row form.
+ * <p>
+ * Worker threads of the parallel explorers append a row per explored state so that handing
+ * their results to the merging thread does not need a map per state. Row r holds the entries
+ * {@link #getRowStart(int)} up to but not including {@link #getRowEnd(int)}. The arrays are
+ * kept when the batch is cleared, so a batch reused for every round does not allocate once it
+ * has grown to the size of a round.
+ * </p>
+ */
+public final class StateRateBatch {
+    /**
+     * Initial capacity of the row and entry arrays
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * First entry of each row, followed by the number of entries
+     */
+    private int[] rowOffsets = new int[INITIAL_CAPACITY + 1];
+
+    /**
+     * Successor state of each entry
+     */
+    private ClassifiedState[] states = new ClassifiedState[INITIAL_CAPACITY];
+
+    /**
+     * Rate of each entry
+     */
+    private double[] rates = new double[INITIAL_CAPACITY];
+
+    /**
+     * Number of rows
+     */
+    private int rows = 0;
+
+    /**
+     * Number of entries over all rows
+     */
+    private int entries = 0;
+
+    /**
+     * Appends a row holding the summed successor rates of one state
+     *
+     * @param successorRates successors of the state to the rate of transitioning to them
+     */
+    public void addRow(StateRateAccumulator successorRates) {
+        int size = successorRates.size();
+        if (rows + 1 == rowOffsets.length) {
+            rowOffsets = Arrays.copyOf(rowOffsets, 2 * rows + 1);
+        }
+        if (entries + size > states.length) {
+            int capacity = Math.max(2 * states.length, entries + size);
+            states = Arrays.copyOf(states, capacity);
+            rates = Arrays.copyOf(rates, capacity);
+        }
+        for (int i = 0; i < size; i++) {
+            states[entries] = successorRates.getState(i);
+            rates[entries] = successorRates.getRate(i);
+            entries++;
+        }
+        rows++;
+        rowOffsets[rows] = entries;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @param row row index
+     * @return index of the row's first entry
+     */
+    public int getRowStart(int row) {
+        return rowOffsets[row];
+    }
+
+    /**
+     * @param row row index
+     * @return index one past the row's last entry
+     */
+    public int getRowEnd(int row) {
+        return rowOffsets[row + 1];
+    }
+
+    /**
+     * @param entry entry index
+     * @return successor state of the entry
+     */
+    public ClassifiedState getState(int entry) {
+        return states[entry];
+    }
+
+    /**
+     * @param entry entry index
+     * @return rate of transitioning to the entry's successor
+     */
+    public double getRate(int entry) {
+        return rates[entry];
+    }
+
+    /**
+     * Removes every row, keeping the allocated arrays
+     */
+    public void clear() {
+        Arrays.fill(states, 0, entries, null);
+        rows = 0;
+        entries = 0;
+    }
+}
@@ -12,7 +12,7 @@ public final class StateRateRecord {
     /**
      * State
      */
-    private final ClassifiedState state;
+    private ClassifiedState state;
 
     /**
      * Rate into the state
@@ -48,4 +48,14 @@ public final class StateRateRecord {
     public void setRate(double rate) {
         this.rate = rate;
     }
+
+    /**
+     * Reuses the record for another state
+     * @param state to be stored
+     * @param rate to be stored
+     */
+    void set(ClassifiedState state, double rate) {
+        this.state = state;
+        this.rate = rate;
+    }
 }
@@ -4,6 +4,9 @@ import uk.ac.imperial.pipe.exceptions.InvalidRateException;
 import uk.ac.imperial.state.ClassifiedState;
 
 import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -33,6 +36,21 @@ public interface StateSpaceExplorer {
     StateSpaceExplorerResults generate(ClassifiedState initialState)
             throws TimelessTrapException, InterruptedException, ExecutionException, IOException, InvalidRateException;
 
+    /**
+     * Performs steady state exploration from several initial states at once, exploring
+     * states reachable from more than one of them only once
+     *
+     * @param initialStates starting states for exploration.
+     * @throws InterruptedException  thread interruped
+     * @throws ExecutionException task aborted due to exception
+     * @throws IOException error doing IO
+     * @throws InvalidRateException functional rate expression invalid
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @return exploration results including the states reachable from each initial state
+     */
+    MultiRootResults generate(Collection<ClassifiedState> initialStates)
+            throws TimelessTrapException, InterruptedException, ExecutionException, IOException, InvalidRateException;
+
     /**
      * Results to return from state space exploration
      */
@@ -40,9 +58,50 @@ public interface StateSpaceExplorer {
         public final int processedTransitions;
         public final int numberOfStates;
 
+        /**
+         * True if exploration stopped before the whole state space was explored,
+         * e.g. because the exploration budget was exceeded
+         */
+        public final boolean truncated;
+
+        /**
+         * Number of states that were seen but whose successors were never explored
+         */
+        public final int unexploredStates;
+
+        /**
+         * Ids of the states that were seen but whose successors were never explored. Transitions into
+         * these states can be redirected to a sink with a
+         * {@link pipe.steadystate.algorithm.TruncationSinkSolver} to estimate the truncation error.
+         */
+        public final BitSet unexploredStateIds;
+
         public StateSpaceExplorerResults(int processedTransitions, int numberOfStates) {
+            this(processedTransitions, numberOfStates, new BitSet());
+        }
+
+        public StateSpaceExplorerResults(int processedTransitions, int numberOfStates, BitSet unexploredStateIds) {
             this.processedTransitions = processedTransitions;
             this.numberOfStates = numberOfStates;
+            this.unexploredStateIds = unexploredStateIds;
+            this.unexploredStates = unexploredStateIds.cardinality();
+            this.truncated = unexploredStates > 0;
+        }
+    }
+
+    /**
+     * Results to return from a state space exploration with multiple initial states
+     */
+    class MultiRootResults extends StateSpaceExplorerResults {
+        /**
+         * Initial state to the ids of the states reachable from it
+         */
+        public final Map<ClassifiedState, BitSet> reachableStates;
+
+        public MultiRootResults(int processedTransitions, int numberOfStates, BitSet unexploredStateIds,
+                                Map<ClassifiedState, BitSet> reachableStates) {
+            super(processedTransitions, numberOfStates, unexploredStateIds);
+            this.reachableStates = reachableStates;
         }
     }
 }
@@ -0,0 +1,169 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Explorer utilities that give every thread using them utilities of their own.
+ * <p>
+ * {@link CachingExplorerUtilities} holds a cloned Petri net, an animation logic and a successor cache that
+ * would otherwise be shared by every worker of a parallel explorer. Wrapping a factory in this class means
+ * each worker thread lazily gets its own net snapshot, animation logic and cache, so the only state the
+ * workers share is the explorer's explored set.
+ * </p><p>
+ * Calls are forwarded to the calling thread's utilities, except {@link #clear()} which clears the utilities
+ * of every live thread and {@link #canExploreMore(int)} which always asks the utilities created with this
+ * class, so that bounded or budgeted utilities keep a single bound for the whole exploration. The explorers
+ * only clear their utilities between rounds whilst no workers are running. Utilities of threads that have
+ * died are only weakly referenced, so a long lived instance does not keep them alive.
+ * </p>
+ */
+public final class ThreadConfinedExplorerUtilities implements ExplorerUtilities {
+    /**
+     * Creates the utilities of each thread
+     */
+    private final ExplorerUtilitiesFactory factory;
+
+    /**
+     * Utilities of every live thread that has used this class
+     */
+    private final Map<Thread, ExplorerUtilities> allUtilities = new WeakHashMap<>();
+
+    /**
+     * Utilities of the thread that created this class, which also decide whether more states can be explored
+     */
+    private final ExplorerUtilities sharedUtilities;
+
+    /**
+     * Utilities of the calling thread
+     */
+    private final ThreadLocal<ExplorerUtilities> threadUtilities = new ThreadLocal<ExplorerUtilities>() {
+        @Override
+        protected ExplorerUtilities initialValue() {
+            synchronized (allUtilities) {
+                ExplorerUtilities utilities = factory.create();
+                allUtilities.put(Thread.currentThread(), utilities);
+                return utilities;
+            }
+        }
+    };
+
+    /**
+     * Gives each thread its own unbounded reachability graph utilities for the Petri net
+     *
+     * @param petriNet Petri net to explore, each thread clones it
+     */
+    public ThreadConfinedExplorerUtilities(final PetriNet petriNet) {
+        this(new ExplorerUtilitiesFactory() {
+            @Override
+            public ExplorerUtilities create() {
+                return new UnboundedExplorerUtilities(petriNet);
+            }
+        });
+    }
+
+    /**
+     * @param factory creates the utilities of each thread, creation is never concurrent
+     */
+    public ThreadConfinedExplorerUtilities(ExplorerUtilitiesFactory factory) {
+        this.factory = factory;
+        sharedUtilities = threadUtilities.get();
+    }
+
+    /**
+     * @param state state in the Petri net to find successors of
+     * @return map of successor states to the transitions that caused them
+     */
+    @Override
+    public Map<ClassifiedState, Collection<Transition>> getSuccessorsWithTransitions(ClassifiedState state) {
+        return threadUtilities.get().getSuccessorsWithTransitions(state);
+    }
+
+    /**
+     * @param state state in the Petri net to find successors of
+     * @return the successors of this state
+     */
+    @Override
+    public Collection<ClassifiedState> getSuccessors(ClassifiedState state) {
+        return threadUtilities.get().getSuccessors(state);
+    }
+
+    /**
+     * @param state to evaluate
+     * @param successor of the state
+     * @return the rate at which the state transitions to the successor in the underlying Petri net
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    @Override
+    public double rate(ClassifiedState state, ClassifiedState successor) throws InvalidRateException {
+        return threadUtilities.get().rate(state, successor);
+    }
+
+    /**
+     * @return the current underlying state of the Petri net
+     */
+    @Override
+    public ClassifiedState getCurrentState() {
+        return threadUtilities.get().getCurrentState();
+    }
+
+    /**
+     * @param state     initial state
+     * @param successor successor state, must be directly reachable from the state
+     * @return transitions that when enabled will cause state to transition to successor
+     */
+    @Override
+    public Collection<Transition> getTransitions(ClassifiedState state, ClassifiedState successor) {
+        return threadUtilities.get().getTransitions(state, successor);
+    }
+
+    /**
+     * @param state to evaluate
+     * @param transitions from the state
+     * @return the weight of the transitions from the state
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    @Override
+    public double getWeightOfTransitions(ClassifiedState state, Iterable<Transition> transitions)
+            throws InvalidRateException {
+        return threadUtilities.get().getWeightOfTransitions(state, transitions);
+    }
+
+    /**
+     * @param state state in the Petri net to determine enabled transitions of
+     * @return all transitions which are enabled when in this state
+     */
+    @Override
+    public Collection<Transition> getAllEnabledTransitions(ClassifiedState state) {
+        return threadUtilities.get().getAllEnabledTransitions(state);
+    }
+
+    /**
+     * Clears the caches of every thread's utilities
+     */
+    @Override
+    public void clear() {
+        synchronized (allUtilities) {
+            for (ExplorerUtilities utilities : allUtilities.values()) {
+                utilities.clear();
+            }
+        }
+    }
+
+    /**
+     * @param stateCount count of states
+     * @return true if the utilities created with this class can explore more states
+     */
+    @Override
+    public boolean canExploreMore(int stateCount) {
+        synchronized (sharedUtilities) {
+            return sharedUtilities.canExploreMore(stateCount);
+        }
+    }
+}
@@ -17,6 +17,17 @@ public final class UnboundedExplorerUtilities extends CachingExplorerUtilities {
         super(petriNet);
     }
 
+    /**
+     * Takes a copy of the Petri net to use for state space exploration so
+     * not to affect the reference
+     *
+     * @param petriNet petri net to use for state space exploration
+     * @param reduce   true if structural reductions should be applied to the copy
+     */
+    public UnboundedExplorerUtilities(PetriNet petriNet, boolean reduce) {
+        super(petriNet, reduce);
+    }
+
     /**
      *
      * @param stateCount count of the states 
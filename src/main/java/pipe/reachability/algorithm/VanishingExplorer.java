@@ -17,7 +17,8 @@ public interface VanishingExplorer {
      *
      * @param vanishingState vanishing state to explore.
      * @param rate rate at which vanishingState is entered from the previous state
-     * @return Collection of states found to explore whilst processing the vanishing state
+     * @return Collection of states found to explore whilst processing the vanishing state. It may be
+     * reused by the next exploration on the same thread so must be consumed before exploring again
      * @throws TimelessTrapException unable to exit cyclic vanishing state
      * @throws InvalidRateException functional rate expression invalid
      */
@@ -0,0 +1,289 @@
+package pipe.reachability.algorithm;
+
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.Record;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Removes vanishing states from a state space that was explored with a {@link SimpleVanishingExplorer},
+ * producing the tangible CTMC in a single pass rather than walking the vanishing states again every
+ * time they are entered as the {@link OnTheFlyVanishingExplorer} does.
+ * <p>
+ * The records of vanishing states hold the weights of their immediate transitions, which are first
+ * normalised to probabilities. Vanishing states are then eliminated from the vanishing part of the graph
+ * one at a time by redirecting each of their vanishing predecessors to their successors. States are
+ * eliminated in order of the fewest new edges they could create, i.e. the product of their number of
+ * predecessors and successors, which keeps fill-in low. A back substitution in reverse elimination order
+ * then gives the probability of each vanishing state ending up in each tangible state.
+ * </p><p>
+ * Finally every tangible record has its vanishing successors replaced by the tangible states they
+ * end up in. Tangible records are independent of each other so they are rewritten in parallel.
+ * Tangible states keep their original ids.
+ * </p>
+ */
+public final class VanishingStateEliminator {
+    /**
+     * Probabilities of a vanishing state returning to itself at least this close to one
+     * mean it can never leave
+     */
+    private static final double EPSILON = 0.0000001;
+
+    /**
+     * Number of threads used to rewrite tangible records
+     */
+    private final int threads;
+
+    /**
+     * @param threads number of threads used to rewrite tangible records
+     */
+    public VanishingStateEliminator(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param records records of the tangible and vanishing state space
+     * @param states  state id to state, used to tell which states are vanishing
+     * @return records of the tangible states only
+     * @throws TimelessTrapException if a group of vanishing states can never be left
+     * @throws InterruptedException  thread interrupted
+     * @throws ExecutionException    task aborted due to exception
+     */
+    public List<Record> eliminate(List<Record> records, Map<Integer, ClassifiedState> states)
+            throws TimelessTrapException, InterruptedException, ExecutionException {
+        Map<Integer, Map<Integer, Double>> rows = new HashMap<>();
+        List<Record> tangibleRecords = new ArrayList<>();
+        for (Record record : records) {
+            if (states.get(record.state).isTangible()) {
+                tangibleRecords.add(record);
+            } else {
+                rows.put(record.state, probabilities(record.successors));
+            }
+        }
+        Map<Integer, Map<Integer, Double>> absorption = absorptionProbabilities(rows);
+        return rewriteTangibleRecords(tangibleRecords, absorption);
+    }
+
+    /**
+     * @param weights successor to weight of moving to it
+     * @return successor to probability of moving to it
+     */
+    private static Map<Integer, Double> probabilities(Map<Integer, Double> weights) {
+        double total = 0;
+        for (double weight : weights.values()) {
+            total += weight;
+        }
+        Map<Integer, Double> probabilities = new HashMap<>();
+        for (Map.Entry<Integer, Double> entry : weights.entrySet()) {
+            probabilities.put(entry.getKey(), entry.getValue() / total);
+        }
+        return probabilities;
+    }
+
+    /**
+     * Eliminates the vanishing states in order of least fill-in then back substitutes
+     * to find the tangible states each vanishing state ends up in
+     *
+     * @param rows vanishing state id to the probability of moving to each successor, modified in place
+     * @return vanishing state id to the probability of ending up in each tangible state
+     * @throws TimelessTrapException if a group of vanishing states can never be left
+     */
+    private static Map<Integer, Map<Integer, Double>> absorptionProbabilities(Map<Integer, Map<Integer, Double>> rows)
+            throws TimelessTrapException {
+        Map<Integer, Set<Integer>> predecessors = new HashMap<>();
+        for (int state : rows.keySet()) {
+            predecessors.put(state, new HashSet<Integer>());
+        }
+        for (Map.Entry<Integer, Map<Integer, Double>> entry : rows.entrySet()) {
+            for (int successor : entry.getValue().keySet()) {
+                if (rows.containsKey(successor) && successor != entry.getKey()) {
+                    predecessors.get(successor).add(entry.getKey());
+                }
+            }
+        }
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(1, rows.size()), new FillInComparator());
+        for (int state : rows.keySet()) {
+            queue.add(new long[]{fillIn(state, rows, predecessors), state});
+        }
+        Set<Integer> eliminated = new HashSet<>();
+        List<Integer> order = new ArrayList<>(rows.size());
+        while (!queue.isEmpty()) {
+            long[] next = queue.poll();
+            int state = (int) next[1];
+            if (eliminated.contains(state) || next[0] != fillIn(state, rows, predecessors)) {
+                continue;
+            }
+            Map<Integer, Double> row = rows.get(state);
+            removeSelfLoop(state, row);
+            for (int predecessor : predecessors.get(state)) {
+                Map<Integer, Double> predecessorRow = rows.get(predecessor);
+                double toState = predecessorRow.remove(state);
+                for (Map.Entry<Integer, Double> entry : row.entrySet()) {
+                    int successor = entry.getKey();
+                    add(predecessorRow, successor, toState * entry.getValue());
+                    if (rows.containsKey(successor) && successor != predecessor && !eliminated.contains(successor)) {
+                        predecessors.get(successor).add(predecessor);
+                    }
+                }
+                queue.add(new long[]{fillIn(predecessor, rows, predecessors), predecessor});
+            }
+            for (int successor : row.keySet()) {
+                if (rows.containsKey(successor) && !eliminated.contains(successor)) {
+                    predecessors.get(successor).remove(state);
+                    queue.add(new long[]{fillIn(successor, rows, predecessors), successor});
+                }
+            }
+            predecessors.remove(state);
+            eliminated.add(state);
+            order.add(state);
+        }
+
+        Map<Integer, Map<Integer, Double>> absorption = new HashMap<>();
+        for (int i = order.size() - 1; i >= 0; i--) {
+            int state = order.get(i);
+            Map<Integer, Double> tangible = new HashMap<>();
+            for (Map.Entry<Integer, Double> entry : rows.get(state).entrySet()) {
+                Map<Integer, Double> successorAbsorption = absorption.get(entry.getKey());
+                if (successorAbsorption == null) {
+                    add(tangible, entry.getKey(), entry.getValue());
+                } else {
+                    for (Map.Entry<Integer, Double> absorbed : successorAbsorption.entrySet()) {
+                        add(tangible, absorbed.getKey(), entry.getValue() * absorbed.getValue());
+                    }
+                }
+            }
+            absorption.put(state, tangible);
+        }
+        return absorption;
+    }
+
+    /**
+     * @param state        vanishing state
+     * @param rows         vanishing rows
+     * @param predecessors vanishing state to its uneliminated vanishing predecessors
+     * @return maximum number of edges eliminating the state could create
+     */
+    private static long fillIn(int state, Map<Integer, Map<Integer, Double>> rows,
+                               Map<Integer, Set<Integer>> predecessors) {
+        return (long) predecessors.get(state).size() * rows.get(state).size();
+    }
+
+    /**
+     * Removes the probability of the state moving to itself and scales its
+     * other successors so that the probabilities sum to one again
+     *
+     * @param state vanishing state
+     * @param row   probability of moving to each successor
+     * @throws TimelessTrapException if the state can never leave itself
+     */
+    private static void removeSelfLoop(int state, Map<Integer, Double> row) throws TimelessTrapException {
+        Double self = row.remove(state);
+        if (self == null) {
+            return;
+        }
+        if (1 - self < EPSILON) {
+            throw new TimelessTrapException("Vanishing state " + state + " can never be left");
+        }
+        for (Map.Entry<Integer, Double> entry : row.entrySet()) {
+            entry.setValue(entry.getValue() / (1 - self));
+        }
+    }
+
+    /**
+     * Replaces the vanishing successors of each tangible record with the tangible states
+     * they end up in, splitting the records between the threads
+     *
+     * @param records    tangible records
+     * @param absorption vanishing state id to the probability of ending up in each tangible state
+     * @return rewritten records in the same order
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   task aborted due to exception
+     */
+    private List<Record> rewriteTangibleRecords(final List<Record> records,
+                                                final Map<Integer, Map<Integer, Double>> absorption)
+            throws InterruptedException, ExecutionException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Record>>> futures = new ArrayList<>();
+            int chunk = Math.max(1, (records.size() + threads - 1) / threads);
+            for (int start = 0; start < records.size(); start += chunk) {
+                final List<Record> chunkRecords = records.subList(start, Math.min(records.size(), start + chunk));
+                futures.add(executorService.submit(new Callable<List<Record>>() {
+                    @Override
+                    public List<Record> call() {
+                        List<Record> rewritten = new ArrayList<>(chunkRecords.size());
+                        for (Record record : chunkRecords) {
+                            rewritten.add(new Record(record.state, rewrite(record.successors, absorption)));
+                        }
+                        return rewritten;
+                    }
+                }));
+            }
+            List<Record> tangibleRecords = new ArrayList<>(records.size());
+            for (Future<List<Record>> future : futures) {
+                tangibleRecords.addAll(future.get());
+            }
+            return tangibleRecords;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * @param successors successor to rate of moving to it
+     * @param absorption vanishing state id to the probability of ending up in each tangible state
+     * @return tangible successor to rate of moving to it
+     */
+    private static Map<Integer, Double> rewrite(Map<Integer, Double> successors,
+                                                Map<Integer, Map<Integer, Double>> absorption) {
+        Map<Integer, Double> tangible = new HashMap<>();
+        for (Map.Entry<Integer, Double> entry : successors.entrySet()) {
+            Map<Integer, Double> absorbed = absorption.get(entry.getKey());
+            if (absorbed == null) {
+                add(tangible, entry.getKey(), entry.getValue());
+            } else {
+                for (Map.Entry<Integer, Double> target : absorbed.entrySet()) {
+                    add(tangible, target.getKey(), entry.getValue() * target.getValue());
+                }
+            }
+        }
+        return tangible;
+    }
+
+    /**
+     * Sums the value into any value already in the map
+     *
+     * @param map   map to add to
+     * @param key   key
+     * @param value value to add
+     */
+    private static void add(Map<Integer, Double> map, int key, double value) {
+        Double previous = map.get(key);
+        map.put(key, previous == null ? value : previous + value);
+    }
+
+    /**
+     * Orders fill-in and state pairs by least fill-in, breaking ties by
+     * state id so that elimination is deterministic
+     */
+    private static final class FillInComparator implements Comparator<long[]> {
+        @Override
+        public int compare(long[] entry, long[] other) {
+            int compare = Long.compare(entry[0], other[0]);
+            return compare != 0 ? compare : Long.compare(entry[1], other[1]);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package pipe.reachability.algorithm.coverability;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set of markings none of which covers another, supporting the two queries needed to keep it minimal:
+ * is a marking covered by one in the set, and which markings in the set does a marking cover.
+ * <p>
+ * Markings are stored one after another in a single flat array so that scans stay in cache.
+ * Removal moves the last marking into the gap. Each marking also keeps a bit mask of which of its
+ * first 64 places are omega: a marking can only cover another if its mask contains the other's,
+ * so most comparisons are rejected with a single mask test before any tokens are compared.
+ * </p>
+ *
+ * @param <T> value stored with each marking
+ */
+final class MarkingAntichain<T> {
+    /**
+     * Number of places in each marking
+     */
+    private final int width;
+
+    /**
+     * Tokens of every marking, marking i occupies [i * width, (i + 1) * width)
+     */
+    private int[] markings;
+
+    /**
+     * Omega mask of each marking
+     */
+    private long[] omegaMasks;
+
+    /**
+     * Value stored with each marking
+     */
+    private final List<T> values = new ArrayList<>();
+
+    /**
+     * @param width number of places in each marking
+     */
+    MarkingAntichain(int width) {
+        this.width = width;
+        markings = new int[Math.max(1, width) * 16];
+        omegaMasks = new long[16];
+    }
+
+    /**
+     * @return number of markings in the set
+     */
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * @param index index of a marking in the set
+     * @return value stored with the marking
+     */
+    T getValue(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * @param marking marking to check
+     * @return true if a marking in the set has at least as many tokens in every place
+     */
+    boolean covers(int[] marking) {
+        long mask = omegaMask(marking);
+        for (int index = 0; index < values.size(); index++) {
+            if ((omegaMasks[index] & mask) == mask && isCovered(marking, index)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes every marking in the set that the marking covers
+     *
+     * @param marking covering marking
+     * @return values of the removed markings
+     */
+    List<T> removeCoveredBy(int[] marking) {
+        List<T> removed = new ArrayList<>();
+        long mask = omegaMask(marking);
+        int index = 0;
+        while (index < values.size()) {
+            if ((omegaMasks[index] & mask) == omegaMasks[index] && covers(marking, index)) {
+                removed.add(values.get(index));
+                removeAt(index);
+            } else {
+                index++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Adds the marking, the caller must have checked that it is not covered by the set
+     * and removed the markings it covers
+     *
+     * @param marking marking to add
+     * @param value   value to store with it
+     */
+    void add(int[] marking, T value) {
+        int index = values.size();
+        if (omegaMasks.length == index) {
+            omegaMasks = Arrays.copyOf(omegaMasks, index * 2);
+            markings = Arrays.copyOf(markings, Math.max(1, width) * index * 2);
+        }
+        System.arraycopy(marking, 0, markings, index * width, width);
+        omegaMasks[index] = omegaMask(marking);
+        values.add(value);
+    }
+
+    /**
+     * @param marking marking to compare
+     * @param index   index of a marking in the set
+     * @return true if the marking in the set has at least as many tokens in every place
+     */
+    private boolean isCovered(int[] marking, int index) {
+        int offset = index * width;
+        for (int place = 0; place < width; place++) {
+            if (markings[offset + place] < marking[place]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param marking marking to compare
+     * @param index   index of a marking in the set
+     * @return true if the marking has at least as many tokens in every place as the marking in the set
+     */
+    private boolean covers(int[] marking, int index) {
+        int offset = index * width;
+        for (int place = 0; place < width; place++) {
+            if (marking[place] < markings[offset + place]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the marking by moving the last marking into its place
+     *
+     * @param index index of the marking to remove
+     */
+    private void removeAt(int index) {
+        int last = values.size() - 1;
+        if (index != last) {
+            System.arraycopy(markings, last * width, markings, index * width, width);
+            omegaMasks[index] = omegaMasks[last];
+            values.set(index, values.get(last));
+        }
+        values.remove(last);
+    }
+
+    /**
+     * @param marking marking
+     * @return bit i set if place i is omega, for the first 64 places
+     */
+    private static long omegaMask(int[] marking) {
+        long mask = 0;
+        for (int place = 0; place < marking.length && place < Long.SIZE; place++) {
+            if (marking[place] == MinimalCoverabilitySet.OMEGA) {
+                mask |= 1L << place;
+            }
+        }
+        return mask;
+    }
+}
@@ -0,0 +1,276 @@
+package pipe.reachability.algorithm.coverability;
+
+import pipe.structural.IncidenceMatrix;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Computes the minimal coverability set of a Petri net: the fewest markings, some with omega
+ * (unbounded) places, such that every reachable marking is covered by one of them.
+ * <p>
+ * Unlike {@link pipe.reachability.algorithm.CoverabilityExplorerUtilities} which builds the full
+ * Karp-Miller graph, markings that are covered by one already found are discarded as soon as they
+ * are generated, and markings that a new marking covers are removed from the set and never
+ * expanded further, including a marking still being expanded when one of its successors covers it.
+ * Successors of a removed marking are covered by successors of the marking that covers it, so nothing
+ * is lost, and the set never holds more markings than are needed to cover those found so far. A successor is
+ * accelerated as in Karp-Miller: every place in which it has more tokens than an ancestor it covers
+ * becomes omega. Ancestors are followed through removed markings too, which guarantees termination.
+ * </p><p>
+ * Markings are those of the underlying Petri net, ignoring rates, priorities and the precedence of
+ * immediate transitions, so the set also covers every state the stochastic net can reach. Coverability
+ * relies on firing being monotonic, so the net must have constant arc weights, no inhibitor arcs and
+ * no place capacities.
+ * </p>
+ */
+public final class MinimalCoverabilitySet {
+    /**
+     * Token count of an unbounded place, the same as used by
+     * {@link pipe.reachability.algorithm.CoverabilityExplorerUtilities}
+     */
+    public static final int OMEGA = Integer.MAX_VALUE;
+
+    /**
+     * Structure of the Petri net
+     */
+    private final IncidenceMatrix matrix;
+
+    /**
+     * Maximal markings found so far
+     */
+    private final MarkingAntichain<Node> antichain;
+
+    /**
+     * Number of markings added to the set, including those later removed
+     */
+    private int nodesGenerated = 0;
+
+    /**
+     * Computes the minimal coverability set from the Petri net's initial marking
+     *
+     * @param matrix structure of the Petri net
+     * @throws IllegalArgumentException if firing the Petri net's transitions is not monotonic
+     */
+    public MinimalCoverabilitySet(IncidenceMatrix matrix) {
+        checkSupported(matrix);
+        this.matrix = matrix;
+        antichain = new MarkingAntichain<>(matrix.getNumberOfRows());
+        compute();
+    }
+
+    /**
+     * @param matrix structure of the Petri net
+     * @throws IllegalArgumentException if firing the Petri net's transitions is not monotonic
+     */
+    private static void checkSupported(IncidenceMatrix matrix) {
+        if (!matrix.hasConstantWeights()) {
+            throw new IllegalArgumentException("Coverability sets require constant arc weights");
+        }
+        for (int row = 0; row < matrix.getNumberOfRows(); row++) {
+            if (matrix.getCapacity(row) > 0) {
+                throw new IllegalArgumentException(
+                        "Coverability sets do not support the capacity of place " + matrix.getPlaceId(row));
+            }
+            for (int column = 0; column < matrix.getNumberOfTransitions(); column++) {
+                if (matrix.isInhibited(column, row)) {
+                    throw new IllegalArgumentException("Coverability sets do not support inhibitor arc from "
+                            + matrix.getPlaceId(row) + " to " + matrix.getTransition(column).getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Expands markings depth first, most recently found first, until every marking
+     * in the set has been expanded
+     */
+    private void compute() {
+        Deque<Node> stack = new ArrayDeque<>();
+        Node root = new Node(matrix.getInitialMarking(), null);
+        add(root, stack);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            for (int column = 0; column < matrix.getNumberOfTransitions() && node.active; column++) {
+                if (!isEnabled(column, node.marking)) {
+                    continue;
+                }
+                int[] successor = fire(column, node.marking);
+                if (antichain.covers(successor)) {
+                    continue;
+                }
+                if (accelerate(successor, node) && antichain.covers(successor)) {
+                    continue;
+                }
+                for (Node covered : antichain.removeCoveredBy(successor)) {
+                    covered.active = false;
+                }
+                add(new Node(successor, node), stack);
+            }
+        }
+    }
+
+    /**
+     * @param node  node to add to the set and expand
+     * @param stack nodes waiting to be expanded
+     */
+    private void add(Node node, Deque<Node> stack) {
+        antichain.add(node.marking, node);
+        stack.push(node);
+        nodesGenerated++;
+    }
+
+    /**
+     * @param column  transition column
+     * @param marking marking that may contain omega places
+     * @return true if the transition is enabled in the marking
+     */
+    private boolean isEnabled(int column, int[] marking) {
+        for (int row = 0; row < marking.length; row++) {
+            if (marking[row] < matrix.getPre(column, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param column  transition column
+     * @param marking marking the transition is enabled in
+     * @return marking after firing the transition, omega places stay omega
+     */
+    private int[] fire(int column, int[] marking) {
+        int[] successor = marking.clone();
+        for (int row = 0; row < successor.length; row++) {
+            if (successor[row] != OMEGA) {
+                successor[row] += matrix.getChange(column, row);
+            }
+        }
+        return successor;
+    }
+
+    /**
+     * Sets every place of the successor to omega in which it has more tokens than an ancestor it covers
+     *
+     * @param successor successor marking, modified in place
+     * @param parent    node the successor was fired from
+     * @return true if any place was set to omega
+     */
+    private static boolean accelerate(int[] successor, Node parent) {
+        boolean accelerated = false;
+        for (Node ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            if (isStrictlyCovered(ancestor.marking, successor)) {
+                for (int row = 0; row < successor.length; row++) {
+                    if (ancestor.marking[row] < successor[row] && successor[row] != OMEGA) {
+                        successor[row] = OMEGA;
+                        accelerated = true;
+                    }
+                }
+            }
+        }
+        return accelerated;
+    }
+
+    /**
+     * @param marking   marking
+     * @param successor another marking
+     * @return true if the successor has at least as many tokens in every place and more in one
+     */
+    private static boolean isStrictlyCovered(int[] marking, int[] successor) {
+        boolean strict = false;
+        for (int row = 0; row < marking.length; row++) {
+            if (marking[row] > successor[row]) {
+                return false;
+            }
+            strict |= marking[row] < successor[row];
+        }
+        return strict;
+    }
+
+    /**
+     * @return markings of the set indexed by the rows of the incidence matrix, unbounded places are {@link #OMEGA}
+     */
+    public List<int[]> getMarkings() {
+        List<int[]> markings = new ArrayList<>();
+        for (int index = 0; index < antichain.size(); index++) {
+            markings.add(antichain.getValue(index).marking.clone());
+        }
+        return markings;
+    }
+
+    /**
+     * Timing is ignored when computing the set so every state is classified as tangible
+     *
+     * @return markings of the set as states, unbounded places hold {@link #OMEGA} tokens
+     */
+    public List<ClassifiedState> getStates() {
+        List<ClassifiedState> states = new ArrayList<>();
+        for (int index = 0; index < antichain.size(); index++) {
+            states.add(matrix.toState(antichain.getValue(index).marking, true));
+        }
+        return states;
+    }
+
+    /**
+     * @return rows of the incidence matrix that are omega in some marking of the set
+     */
+    public BitSet getUnboundedRows() {
+        BitSet unbounded = new BitSet();
+        for (int index = 0; index < antichain.size(); index++) {
+            int[] marking = antichain.getValue(index).marking;
+            for (int row = 0; row < marking.length; row++) {
+                if (marking[row] == OMEGA) {
+                    unbounded.set(row);
+                }
+            }
+        }
+        return unbounded;
+    }
+
+    /**
+     * @return true if no place is unbounded, in which case the set is every maximal reachable marking
+     */
+    public boolean isBounded() {
+        return getUnboundedRows().isEmpty();
+    }
+
+    /**
+     * @return number of markings added to the set whilst computing it, including those later removed
+     */
+    public int getNodesGenerated() {
+        return nodesGenerated;
+    }
+
+    /**
+     * Marking found whilst computing the set, linked to the marking it was fired from
+     */
+    private static final class Node {
+        /**
+         * Tokens in each row, unbounded places are {@link #OMEGA}
+         */
+        private final int[] marking;
+
+        /**
+         * Node the marking was fired from, or null for the initial marking
+         */
+        private final Node parent;
+
+        /**
+         * False once a marking covering this one has been found
+         */
+        private boolean active = true;
+
+        /**
+         * @param marking tokens in each row
+         * @param parent  node the marking was fired from
+         */
+        private Node(int[] marking, Node parent) {
+            this.marking = marking;
+            this.parent = parent;
+        }
+    }
+}
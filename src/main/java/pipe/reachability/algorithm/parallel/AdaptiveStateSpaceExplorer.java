@@ -0,0 +1,325 @@
+package pipe.reachability.algorithm.parallel;
+
+import pipe.reachability.algorithm.AbstractStateSpaceExplorer;
+import pipe.reachability.algorithm.ExploredStateSet;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.HashedExploredStateSet;
+import pipe.reachability.algorithm.StateRateAccumulator;
+import pipe.reachability.algorithm.StateRateBatch;
+import pipe.reachability.algorithm.StateRateRecord;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * State space explorer that starts exploring sequentially and hands off to parallel rounds
+ * once the frontier is wide enough and states are expensive enough for parallelism to pay.
+ * <p>
+ * Whilst exploring sequentially the average time taken to explore a state is measured. A parallel round
+ * is worth running when the time the threads save on the frontier, roughly
+ * <pre>
+ *     frontier * stateCost * (1 - 1 / threads)
+ * </pre>
+ * is more than the fixed cost of submitting and joining a round. Small state spaces therefore never
+ * start a thread pool, whilst large ones switch to parallel rounds after a short sequential warm up.
+ * If the frontier later narrows below what is worth splitting the explorer drops back to sequential
+ * exploration.
+ * </p><p>
+ * Worker threads only calculate successor rates, the results are merged on this thread in queue order.
+ * Both modes therefore share the same explored set and give states exactly the ids a
+ * {@link pipe.reachability.algorithm.sequential.SequentialStateSpaceExplorer} would. As with the other
+ * parallel explorers the explorer utilities and vanishing explorer must be safe to use from several threads.
+ * </p>
+ */
+public final class AdaptiveStateSpaceExplorer extends AbstractStateSpaceExplorer {
+    /**
+     * Default estimate in nanoseconds of the fixed cost of submitting and joining a parallel round
+     */
+    public static final long DEFAULT_ROUND_OVERHEAD = 500_000;
+
+    /**
+     * Default minimum number of states each thread is given in a parallel round
+     */
+    public static final int DEFAULT_MINIMUM_STATES_PER_THREAD = 16;
+
+    /**
+     * Number of sequentially explored states to measure before the first switch can happen
+     */
+    private static final int WARM_UP_STATES = 64;
+
+    /**
+     * Class logger
+     */
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveStateSpaceExplorer.class.getName());
+
+    /**
+     * Number of threads used in parallel rounds
+     */
+    private final int threads;
+
+    /**
+     * Maximum number of states each thread explores in a parallel round
+     */
+    private final int statesPerThread;
+
+    /**
+     * Estimated fixed cost of a parallel round in nanoseconds
+     */
+    private final long roundOverhead;
+
+    /**
+     * Minimum number of states each thread must be given for a parallel round to be run
+     */
+    private final int minimumStatesPerThread;
+
+    /**
+     * Thread pool, only created once the first parallel round is run
+     */
+    private ExecutorService executorService;
+
+    /**
+     * Successor rates found by each chunk of a parallel round, created with the thread pool and reused by every round
+     */
+    private StateRateBatch[] chunkResults;
+
+    /**
+     * Number of states explored sequentially
+     */
+    private long sequentialStates = 0;
+
+    /**
+     * Total time in nanoseconds spent exploring states sequentially
+     */
+    private long sequentialTime = 0;
+
+    /**
+     * Explorer with default switching thresholds
+     *
+     * @param explorerUtilities utilities, must be safe to use from several threads
+     * @param vanishingExplorer explorer, must be safe to use from several threads
+     * @param stateProcessor    processor
+     * @param threads           number of threads to use in parallel rounds
+     * @param statesPerThread   maximum number of states each thread explores in a parallel round
+     */
+    public AdaptiveStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                      StateProcessor stateProcessor, int threads, int statesPerThread) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor, threads, statesPerThread,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE), DEFAULT_ROUND_OVERHEAD,
+                DEFAULT_MINIMUM_STATES_PER_THREAD);
+    }
+
+    /**
+     * @param explorerUtilities      utilities, must be safe to use from several threads
+     * @param vanishingExplorer      explorer, must be safe to use from several threads
+     * @param stateProcessor         processor
+     * @param threads                number of threads to use in parallel rounds
+     * @param statesPerThread        maximum number of states each thread explores in a parallel round
+     * @param explored               set to store explored states in, only used by this thread
+     * @param roundOverhead          estimated fixed cost of a parallel round in nanoseconds
+     * @param minimumStatesPerThread minimum number of states each thread must be given for a
+     *                               parallel round to be run
+     */
+    public AdaptiveStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                      StateProcessor stateProcessor, int threads, int statesPerThread,
+                                      ExploredStateSet explored, long roundOverhead, int minimumStatesPerThread) {
+        super(explorerUtilities, vanishingExplorer, stateProcessor, explored);
+        this.threads = threads;
+        this.statesPerThread = statesPerThread;
+        this.roundOverhead = roundOverhead;
+        this.minimumStatesPerThread = minimumStatesPerThread;
+    }
+
+    /**
+     * Explores a state at a time until a parallel round pays, then explores the
+     * frontier in parallel rounds for as long as it keeps paying.
+     *
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InterruptedException  thread interrupted
+     * @throws ExecutionException    task aborted due to exception
+     * @throws InvalidRateException  functional rate expression invalid
+     */
+    @Override
+    protected void stateSpaceExploration()
+            throws InterruptedException, ExecutionException, TimelessTrapException, InvalidRateException {
+        int sequentialIterations = 0;
+        int parallelRounds = 0;
+        try {
+            while (!explorationQueue.isEmpty() && explorerUtilities.canExploreMore(stateCount)) {
+                if (parallelPays()) {
+                    exploreRound();
+                    parallelRounds++;
+                } else {
+                    long start = System.nanoTime();
+                    ClassifiedState state = explorationQueue.poll();
+                    successorRates.clear();
+                    exploreSequentially(state);
+                    explorerUtilities.clear();
+                    sequentialTime += System.nanoTime() - start;
+                    sequentialStates++;
+                    sequentialIterations++;
+                }
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+                executorService = null;
+            }
+        }
+        LOGGER.log(Level.INFO, String.format("Explored %d states sequentially and ran %d parallel rounds",
+                sequentialIterations, parallelRounds));
+    }
+
+    /**
+     * @return true if the frontier is wide enough and states are expensive enough for a parallel round to
+     * be quicker than exploring the same states sequentially
+     */
+    private boolean parallelPays() {
+        if (threads < 2 || sequentialStates < WARM_UP_STATES) {
+            return false;
+        }
+        int frontier = Math.min(explorationQueue.size(), threads * statesPerThread);
+        if (frontier < threads * minimumStatesPerThread) {
+            return false;
+        }
+        double stateCost = sequentialTime / (double) sequentialStates;
+        return frontier * stateCost * (1 - 1.0 / threads) > roundOverhead;
+    }
+
+    /**
+     * Splits the front of the exploration queue between the threads and merges
+     * their results in queue order
+     *
+     * @throws InterruptedException  thread interrupted
+     * @throws ExecutionException    task aborted due to exception
+     */
+    private void exploreRound() throws InterruptedException, ExecutionException {
+        if (executorService == null) {
+            executorService = Executors.newFixedThreadPool(threads);
+            chunkResults = new StateRateBatch[threads];
+            for (int i = 0; i < threads; i++) {
+                chunkResults[i] = new StateRateBatch();
+            }
+        }
+        int roundSize = Math.min(explorationQueue.size(), threads * statesPerThread);
+        int chunkSize = (roundSize + threads - 1) / threads;
+        List<ClassifiedState> states = new ArrayList<>(roundSize);
+        for (int i = 0; i < roundSize; i++) {
+            states.add(explorationQueue.poll());
+        }
+        List<Future<StateRateBatch>> futures = new ArrayList<>();
+        for (int start = 0; start < roundSize; start += chunkSize) {
+            StateRateBatch results = chunkResults[futures.size()];
+            results.clear();
+            futures.add(executorService.submit(
+                    new ChunkExplorer(states.subList(start, Math.min(roundSize, start + chunkSize)), results)));
+        }
+        int index = 0;
+        for (Future<StateRateBatch> future : futures) {
+            StateRateBatch results = future.get();
+            for (int row = 0; row < results.getRows(); row++) {
+                successorRates.clear();
+                registerStateTransitions(results, row);
+                writeStateTransitions(states.get(index));
+                index++;
+            }
+        }
+        flushTransitions();
+        explorerUtilities.clear();
+    }
+
+    /**
+     * Registers the successors of the state in the order they are found, exploring through any
+     * vanishing successors, and writes its transitions
+     *
+     * @param state state to explore
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InvalidRateException  functional rate expression invalid
+     */
+    private void exploreSequentially(ClassifiedState state) throws TimelessTrapException, InvalidRateException {
+        for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+            double rate = explorerUtilities.rate(state, successor);
+            if (successor.isTangible()) {
+                registerStateTransition(successor, rate);
+            } else {
+                for (StateRateRecord record : vanishingExplorer.explore(successor, rate)) {
+                    registerStateTransition(record.getState(), record.getRate());
+                }
+            }
+        }
+        writeStateTransitions(state);
+    }
+
+    /**
+     * Sums the tangible successors of the state, exploring through any vanishing successors
+     *
+     * @param state state to explore
+     * @param rates accumulator to sum the successors into in the order they are found
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InvalidRateException  functional rate expression invalid
+     */
+    private void successorRates(ClassifiedState state, StateRateAccumulator rates)
+            throws TimelessTrapException, InvalidRateException {
+        for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+            double rate = explorerUtilities.rate(state, successor);
+            if (successor.isTangible()) {
+                rates.add(successor, rate);
+            } else {
+                for (StateRateRecord record : vanishingExplorer.explore(successor, rate)) {
+                    rates.add(record.getState(), record.getRate());
+                }
+            }
+        }
+    }
+
+    /**
+     * Calculates the successor rates of a contiguous chunk of the round
+     */
+    private final class ChunkExplorer implements Callable<StateRateBatch> {
+        /**
+         * States to explore
+         */
+        private final List<ClassifiedState> states;
+
+        /**
+         * Batch to append a row of successor rates to for each state
+         */
+        private final StateRateBatch results;
+
+        /**
+         * @param states  states to explore
+         * @param results empty batch to append a row of successor rates to for each state
+         */
+        private ChunkExplorer(List<ClassifiedState> states, StateRateBatch results) {
+            this.states = states;
+            this.results = results;
+        }
+
+        /**
+         * @return successor rates of each state in order
+         * @throws TimelessTrapException unable to exit cyclic vanishing state
+         * @throws InvalidRateException  functional rate expression invalid
+         */
+        @Override
+        public StateRateBatch call() throws TimelessTrapException, InvalidRateException {
+            StateRateAccumulator rates = new StateRateAccumulator();
+            for (ClassifiedState state : states) {
+                rates.clear();
+                successorRates(state, rates);
+                results.addRow(rates);
+            }
+            return results;
+        }
+    }
+}
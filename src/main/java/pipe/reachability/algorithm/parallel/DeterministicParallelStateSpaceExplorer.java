@@ -0,0 +1,470 @@
+package pipe.reachability.algorithm.parallel;
+
+import pipe.reachability.algorithm.AbstractStateSpaceExplorer;
+import pipe.reachability.algorithm.ExploredStateSet;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.HashedExploredStateSet;
+import pipe.reachability.algorithm.StateRateRecord;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parallel state space explorer whose state ids do not depend on how the threads interleave.
+ * <p>
+ * The state space is explored a breadth first level at a time and states are numbered in canonical order:
+ * by level, then by the lowest numbered state of the previous level that reaches them, then by their position
+ * amongst that state's successors. This is exactly the numbering a
+ * {@link pipe.reachability.algorithm.sequential.SequentialStateSpaceExplorer} gives, so as long as the explorer
+ * utilities return successors in a fixed order, as the caching utilities do, every run on any number of threads
+ * numbers the state space the same way and solver results can be cached and compared between runs.
+ * </p><p>
+ * Each level is processed in phases that are all split between the threads:
+ * <ol>
+ *     <li>states of the level are expanded and each unseen successor is sent to a bucket chosen by its hash</li>
+ *     <li>each bucket keeps the first discovery of each of its states, which is the one with the lowest
+ *     state and successor position since buckets are filled in level order</li>
+ *     <li>the discoveries are grouped by the chunk of the level that made them and sorted within it</li>
+ *     <li>once the new states have been numbered successors are translated to their ids</li>
+ * </ol>
+ * Only adding the new states to the explored set and processor in their canonical order happens on this thread,
+ * neither are safe to use from several threads.
+ * </p>
+ */
+public final class DeterministicParallelStateSpaceExplorer extends AbstractStateSpaceExplorer {
+    /**
+     * Number of threads, and so chunks and buckets, each level is split between
+     */
+    private final int threads;
+
+    /**
+     * Executor service used to run the phases of each level
+     */
+    private ExecutorService executorService;
+
+    /**
+     * @param explorerUtilities utilities, must be safe to use from several threads
+     * @param vanishingExplorer explorer, must be safe to use from several threads
+     * @param stateProcessor    processor
+     * @param threads           number of threads to split each level between
+     */
+    public DeterministicParallelStateSpaceExplorer(ExplorerUtilities explorerUtilities,
+                                                   VanishingExplorer vanishingExplorer,
+                                                   StateProcessor stateProcessor, int threads) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor, threads,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE));
+    }
+
+    /**
+     * @param explorerUtilities utilities, must be safe to use from several threads
+     * @param vanishingExplorer explorer, must be safe to use from several threads
+     * @param stateProcessor    processor
+     * @param threads           number of threads to split each level between
+     * @param explored          set to store explored states in, only read by worker threads
+     */
+    public DeterministicParallelStateSpaceExplorer(ExplorerUtilities explorerUtilities,
+                                                   VanishingExplorer vanishingExplorer,
+                                                   StateProcessor stateProcessor, int threads,
+                                                   ExploredStateSet explored) {
+        super(explorerUtilities, vanishingExplorer, stateProcessor, explored);
+        this.threads = threads;
+    }
+
+    /**
+     * Explores the state space a level at a time
+     *
+     * @throws InterruptedException  thread interrupted
+     * @throws ExecutionException    task aborted due to exception
+     */
+    @Override
+    protected void stateSpaceExploration() throws InterruptedException, ExecutionException {
+        executorService = Executors.newFixedThreadPool(threads);
+        try {
+            while (!explorationQueue.isEmpty() && explorerUtilities.canExploreMore(stateCount)) {
+                List<ClassifiedState> level = new ArrayList<>(explorationQueue);
+                explorationQueue.clear();
+                exploreLevel(level);
+                explorerUtilities.clear();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Explores every state of the level, numbering their unseen successors in canonical order
+     *
+     * @param level states of the level in id order
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   task aborted due to exception
+     */
+    private void exploreLevel(List<ClassifiedState> level) throws InterruptedException, ExecutionException {
+        int size = level.size();
+        int chunkSize = (size + threads - 1) / threads;
+        int chunks = (size + chunkSize - 1) / chunkSize;
+        List<Map<ClassifiedState, Double>> rates = new ArrayList<>(Collections.<Map<ClassifiedState, Double>>nCopies(
+                size, null));
+
+        List<Callable<List<List<Discovery>>>> expanders = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            expanders.add(new Expander(level, rates, chunk * chunkSize, Math.min(size, (chunk + 1) * chunkSize)));
+        }
+        List<List<List<Discovery>>> buckets = getAll(expanders);
+
+        List<Callable<List<List<Discovery>>>> deduplicators = new ArrayList<>();
+        for (int bucket = 0; bucket < threads; bucket++) {
+            deduplicators.add(new Deduplicator(buckets, bucket, chunkSize, chunks));
+        }
+        List<List<List<Discovery>>> firstDiscoveries = getAll(deduplicators);
+
+        List<Callable<List<Discovery>>> sorters = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            sorters.add(new ChunkSorter(firstDiscoveries, chunk));
+        }
+        for (List<Discovery> chunkDiscoveries : getAll(sorters)) {
+            for (Discovery discovery : chunkDiscoveries) {
+                explorationQueue.add(discovery.state);
+                markAsExplored(discovery.state);
+            }
+        }
+
+        List<Callable<List<Map<Integer, Double>>>> translators = new ArrayList<>();
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            translators.add(new Translator(rates, chunk * chunkSize, Math.min(size, (chunk + 1) * chunkSize)));
+        }
+        int index = 0;
+        for (List<Map<Integer, Double>> chunkTransitions : getAll(translators)) {
+            for (Map<Integer, Double> transitions : chunkTransitions) {
+                writeStateTransitions(explored.getId(level.get(index)), transitions);
+                index++;
+            }
+        }
+        flushTransitions();
+    }
+
+    /**
+     * Runs every task on the executor service
+     *
+     * @param tasks tasks to run
+     * @param <T>   result of each task
+     * @return result of each task in the order the tasks were given
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   task aborted due to exception
+     */
+    private <T> List<T> getAll(List<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        List<T> results = new ArrayList<>(tasks.size());
+        for (Future<T> future : executorService.invokeAll(tasks)) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    /**
+     * An unseen successor and the position in the level where it was found
+     */
+    private static final class Discovery {
+        /**
+         * Unseen successor
+         */
+        private final ClassifiedState state;
+
+        /**
+         * Index in the level of the state it was found from
+         */
+        private final int parent;
+
+        /**
+         * Position of the successor amongst the parent's successors
+         */
+        private final int position;
+
+        /**
+         * @param state    unseen successor
+         * @param parent   index in the level of the state it was found from
+         * @param position position of the successor amongst the parent's successors
+         */
+        private Discovery(ClassifiedState state, int parent, int position) {
+            this.state = state;
+            this.parent = parent;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Orders discoveries canonically, by parent then position
+     */
+    private static final class DiscoveryComparator implements Comparator<Discovery> {
+        @Override
+        public int compare(Discovery discovery, Discovery other) {
+            int compare = Integer.compare(discovery.parent, other.parent);
+            return compare != 0 ? compare : Integer.compare(discovery.position, other.position);
+        }
+    }
+
+    /**
+     * Expands a chunk of the level, storing each state's successor rates and sending
+     * its unseen successors to their buckets
+     */
+    private final class Expander implements Callable<List<List<Discovery>>> {
+        /**
+         * States of the level
+         */
+        private final List<ClassifiedState> level;
+
+        /**
+         * Successor rates of each state of the level, written at the chunk's indexes
+         */
+        private final List<Map<ClassifiedState, Double>> rates;
+
+        /**
+         * First index of the chunk
+         */
+        private final int from;
+
+        /**
+         * Index after the last of the chunk
+         */
+        private final int to;
+
+        /**
+         * @param level states of the level
+         * @param rates successor rates of each state of the level
+         * @param from  first index of the chunk
+         * @param to    index after the last of the chunk
+         */
+        private Expander(List<ClassifiedState> level, List<Map<ClassifiedState, Double>> rates, int from, int to) {
+            this.level = level;
+            this.rates = rates;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return discoveries of the chunk in each bucket, in level order
+         * @throws TimelessTrapException unable to exit cyclic vanishing state
+         * @throws InvalidRateException  functional rate expression invalid
+         */
+        @Override
+        public List<List<Discovery>> call() throws TimelessTrapException, InvalidRateException {
+            List<List<Discovery>> buckets = new ArrayList<>(threads);
+            for (int bucket = 0; bucket < threads; bucket++) {
+                buckets.add(new ArrayList<Discovery>());
+            }
+            for (int index = from; index < to; index++) {
+                Map<ClassifiedState, Double> successorRates = successorRates(level.get(index));
+                rates.set(index, successorRates);
+                int position = 0;
+                for (ClassifiedState successor : successorRates.keySet()) {
+                    if (!explored.contains(successor)) {
+                        buckets.get(bucket(successor)).add(new Discovery(successor, index, position));
+                    }
+                    position++;
+                }
+            }
+            return buckets;
+        }
+
+        /**
+         * @param state state to explore
+         * @return tangible successors in the order they were found to the rate of transitioning to them
+         * @throws TimelessTrapException unable to exit cyclic vanishing state
+         * @throws InvalidRateException  functional rate expression invalid
+         */
+        private Map<ClassifiedState, Double> successorRates(ClassifiedState state)
+                throws TimelessTrapException, InvalidRateException {
+            Map<ClassifiedState, Double> successorRates = new LinkedHashMap<>();
+            for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+                double rate = explorerUtilities.rate(state, successor);
+                if (successor.isTangible()) {
+                    addRate(successorRates, successor, rate);
+                } else {
+                    Collection<StateRateRecord> explorableStates = vanishingExplorer.explore(successor, rate);
+                    for (StateRateRecord record : explorableStates) {
+                        addRate(successorRates, record.getState(), record.getRate());
+                    }
+                }
+            }
+            return successorRates;
+        }
+
+        /**
+         * Sums the rate into any rate already registered for the successor
+         *
+         * @param successorRates successor rates
+         * @param successor      successor state
+         * @param rate           rate of transitioning to the successor
+         */
+        private void addRate(Map<ClassifiedState, Double> successorRates, ClassifiedState successor, double rate) {
+            Double previousRate = successorRates.get(successor);
+            successorRates.put(successor, previousRate == null ? rate : previousRate + rate);
+        }
+
+        /**
+         * @param state unseen successor
+         * @return bucket the state belongs to
+         */
+        private int bucket(ClassifiedState state) {
+            return (state.hashCode() & Integer.MAX_VALUE) % threads;
+        }
+    }
+
+    /**
+     * Keeps the first discovery of each state in a bucket and groups them by the chunk that made them
+     */
+    private static final class Deduplicator implements Callable<List<List<Discovery>>> {
+        /**
+         * Discoveries of each chunk in each bucket
+         */
+        private final List<List<List<Discovery>>> buckets;
+
+        /**
+         * Bucket to deduplicate
+         */
+        private final int bucket;
+
+        /**
+         * Number of states in each chunk
+         */
+        private final int chunkSize;
+
+        /**
+         * Number of chunks
+         */
+        private final int chunks;
+
+        /**
+         * @param buckets   discoveries of each chunk in each bucket
+         * @param bucket    bucket to deduplicate
+         * @param chunkSize number of states in each chunk
+         * @param chunks    number of chunks
+         */
+        private Deduplicator(List<List<List<Discovery>>> buckets, int bucket, int chunkSize, int chunks) {
+            this.buckets = buckets;
+            this.bucket = bucket;
+            this.chunkSize = chunkSize;
+            this.chunks = chunks;
+        }
+
+        /**
+         * Chunks are visited in level order so the first discovery of a state is its canonical one
+         *
+         * @return first discoveries of the bucket grouped by the chunk that made them
+         */
+        @Override
+        public List<List<Discovery>> call() {
+            Map<ClassifiedState, Boolean> seen = new HashMap<>();
+            List<List<Discovery>> byChunk = new ArrayList<>(chunks);
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                byChunk.add(new ArrayList<Discovery>());
+            }
+            for (List<List<Discovery>> chunkBuckets : buckets) {
+                for (Discovery discovery : chunkBuckets.get(bucket)) {
+                    if (seen.put(discovery.state, Boolean.TRUE) == null) {
+                        byChunk.get(discovery.parent / chunkSize).add(discovery);
+                    }
+                }
+            }
+            return byChunk;
+        }
+    }
+
+    /**
+     * Gathers the first discoveries made by a chunk from every bucket and sorts them canonically
+     */
+    private static final class ChunkSorter implements Callable<List<Discovery>> {
+        /**
+         * First discoveries of each bucket grouped by chunk
+         */
+        private final List<List<List<Discovery>>> firstDiscoveries;
+
+        /**
+         * Chunk to sort
+         */
+        private final int chunk;
+
+        /**
+         * @param firstDiscoveries first discoveries of each bucket grouped by chunk
+         * @param chunk            chunk to sort
+         */
+        private ChunkSorter(List<List<List<Discovery>>> firstDiscoveries, int chunk) {
+            this.firstDiscoveries = firstDiscoveries;
+            this.chunk = chunk;
+        }
+
+        /**
+         * @return new states first found by the chunk in canonical order
+         */
+        @Override
+        public List<Discovery> call() {
+            List<Discovery> discoveries = new ArrayList<>();
+            for (List<List<Discovery>> bucket : firstDiscoveries) {
+                discoveries.addAll(bucket.get(chunk));
+            }
+            Collections.sort(discoveries, new DiscoveryComparator());
+            return discoveries;
+        }
+    }
+
+    /**
+     * Translates the successors of a chunk of the level to their ids once every state has been numbered
+     */
+    private final class Translator implements Callable<List<Map<Integer, Double>>> {
+        /**
+         * Successor rates of each state of the level
+         */
+        private final List<Map<ClassifiedState, Double>> rates;
+
+        /**
+         * First index of the chunk
+         */
+        private final int from;
+
+        /**
+         * Index after the last of the chunk
+         */
+        private final int to;
+
+        /**
+         * @param rates successor rates of each state of the level
+         * @param from  first index of the chunk
+         * @param to    index after the last of the chunk
+         */
+        private Translator(List<Map<ClassifiedState, Double>> rates, int from, int to) {
+            this.rates = rates;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @return successor ids to rates of each state of the chunk in order
+         */
+        @Override
+        public List<Map<Integer, Double>> call() {
+            List<Map<Integer, Double>> transitions = new ArrayList<>(to - from);
+            for (int index = from; index < to; index++) {
+                Map<Integer, Double> ids = new LinkedHashMap<>();
+                for (Map.Entry<ClassifiedState, Double> entry : rates.get(index).entrySet()) {
+                    ids.put(explored.getId(entry.getKey()), entry.getValue());
+                }
+                transitions.add(ids);
+            }
+            return transitions;
+        }
+    }
+}
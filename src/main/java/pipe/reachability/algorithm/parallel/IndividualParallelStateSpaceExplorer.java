@@ -1,20 +1,28 @@
 package pipe.reachability.algorithm.parallel;
 
 import pipe.reachability.algorithm.AbstractStateSpaceExplorer;
+import pipe.reachability.algorithm.ExploredStateSet;
 import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateRateAccumulator;
+import pipe.reachability.algorithm.StateRateBatch;
+import pipe.reachability.algorithm.StateRateRecord;
 import pipe.reachability.algorithm.TimelessTrapException;
 import pipe.reachability.algorithm.VanishingExplorer;
 import uk.ac.imperial.io.StateProcessor;
 import uk.ac.imperial.pipe.exceptions.InvalidRateException;
 import uk.ac.imperial.state.ClassifiedState;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * This explores individual states on seperate threads and then joins
+ * This explores each level of the state space in batches on separate threads and then joins
  * their results together on the master thread.
  * <p>
  * Yields speed ups for larger state spaces but is marginally slower for smaller ones
@@ -26,11 +34,22 @@ public final class IndividualParallelStateSpaceExplorer extends AbstractStateSpa
      */
     private static final int THREADS = 8;
 
+    /**
+     * Number of consecutive states of a level that a thread processes at a time
+     */
+    private static final int BATCH_SIZE = 256;
+
     /**
      * Used for submitting tasks to
      */
     protected ExecutorService executorService;
 
+    /**
+     * Successor rates of each batch of a level, kept between levels so they are only allocated
+     * when a level has more batches than any before it
+     */
+    private final List<StateRateBatch> batchResults = new ArrayList<>();
+
     /**
      * Constructor for creating the state space explorer
      * @param stateProcessor to process states 
@@ -45,7 +64,29 @@ public final class IndividualParallelStateSpaceExplorer extends AbstractStateSpa
     }
 
     /**
-     * Explores the state space one state at a time on multiple threads
+     * Constructor for creating the state space explorer that stores explored states in the given set
+     * @param stateProcessor to process states
+     * @param vanishingExplorer explorer
+     * @param explorerUtilities utilities
+     * @param explored set to store explored states in
+     */
+    public IndividualParallelStateSpaceExplorer(StateProcessor stateProcessor, VanishingExplorer vanishingExplorer,
+                                                ExplorerUtilities explorerUtilities, ExploredStateSet explored) {
+        super(explorerUtilities, vanishingExplorer, stateProcessor, explored);
+        executorService = Executors.newFixedThreadPool(THREADS);
+    }
+
+    /**
+     * Explores the state space a level at a time on multiple threads.
+     * <p>
+     * Each level is split into batches of {@link #BATCH_SIZE} states which the threads take in turn.
+     * Workers sum the successor rates of each state in their own accumulator and append them as a row
+     * to the preallocated {@link StateRateBatch} of the batch. This thread then registers the rows in
+     * level order, assigning ids to new successors, and writes each state's transitions.
+     * </p><p>
+     * Exploration stops at the end of a level if the explorer utilities
+     * do not allow any more states to be explored
+     * </p>
      *
      * @throws TimelessTrapException unable to exit cyclic vanishing state
      * @throws InterruptedException  thread interrupted
@@ -53,50 +94,120 @@ public final class IndividualParallelStateSpaceExplorer extends AbstractStateSpa
      */
     @Override
     protected void stateSpaceExploration() throws InterruptedException, ExecutionException, TimelessTrapException {
-        if (executorService.isTerminated()) {
+        if (executorService.isShutdown()) {
             executorService = Executors.newFixedThreadPool(THREADS);
         }
-        int elemsAtCurrentLevel = explorationQueue.size();
-        int elemsAtNextLevel = 0;
-        while (!explorationQueue.isEmpty()) {
-
-            Map<ClassifiedState, Future<Map<ClassifiedState, Double>>> successorFutures = new HashMap<>();
-            CountDownLatch latch = new CountDownLatch(elemsAtCurrentLevel);
-            for (int i = 0; i < elemsAtCurrentLevel; i++) {
-                ClassifiedState state = explorationQueue.poll();
-                successorFutures.put(state, executorService.submit(
-                        new ParallelStateExplorer(latch, state, explorerUtilities, vanishingExplorer)));
+        while (!explorationQueue.isEmpty() && explorerUtilities.canExploreMore(stateCount)) {
+            List<ClassifiedState> level = new ArrayList<>(explorationQueue);
+            explorationQueue.clear();
+            int batches = (level.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+            while (batchResults.size() < batches) {
+                batchResults.add(new StateRateBatch());
             }
+            for (int batch = 0; batch < batches; batch++) {
+                batchResults.get(batch).clear();
+            }
+            runBatches(new Expander(level), batches);
 
-            latch.await();
-            for (Map.Entry<ClassifiedState, Future<Map<ClassifiedState, Double>>> entry : successorFutures.entrySet()) {
-                Future<Map<ClassifiedState, Double>> future = entry.getValue();
-                successorRates.clear();
-
-                try {
-                    Map<ClassifiedState, Double> successors = future.get();
-                    for (Map.Entry<ClassifiedState, Double> successorEntry : successors.entrySet()) {
-                        ClassifiedState successor = successorEntry.getKey();
-                        double rate = successorEntry.getValue();
-                        registerStateRate(successor, rate);
-                        if (!explored.contains(successor)) {
-                            elemsAtNextLevel++;
-                            explorationQueue.add(successor);
-                            markAsExplored(successor);
-                        }
-                    }
-                } catch (ExecutionException ee) {
-                    throw new TimelessTrapException(ee);
+            for (int batch = 0; batch < batches; batch++) {
+                StateRateBatch results = batchResults.get(batch);
+                for (int row = 0; row < results.getRows(); row++) {
+                    successorRates.clear();
+                    registerStateTransitions(results, row);
+                    writeStateTransitions(level.get(batch * BATCH_SIZE + row));
                 }
-                ClassifiedState state = entry.getKey();
-                writeStateTransitions(state, successorRates);
             }
-            elemsAtCurrentLevel = elemsAtNextLevel;
-            elemsAtNextLevel = 0;
-
+            flushTransitions();
+            explorerUtilities.clear();
         }
         executorService.shutdownNow();
+    }
 
+    /**
+     * Runs the expander on every thread and waits for all of the level's batches to complete
+     *
+     * @param expander expander processing batches of the level
+     * @param batches  number of batches in the level
+     * @throws InterruptedException  thread interrupted
+     * @throws TimelessTrapException if a worker failed
+     */
+    private void runBatches(Expander expander, int batches) throws InterruptedException, TimelessTrapException {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int thread = 0; thread < Math.min(THREADS, batches); thread++) {
+            futures.add(executorService.submit(expander));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ee) {
+                throw new TimelessTrapException(ee);
+            }
+        }
     }
 
+    /**
+     * Worker that repeatedly claims the next unprocessed batch of a level until none are left
+     * and calculates the successor rates of its states
+     */
+    private final class Expander implements Callable<Void> {
+        /**
+         * States of the level
+         */
+        private final List<ClassifiedState> level;
+
+        /**
+         * Index of the next unclaimed batch
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * @param level states of the level
+         */
+        private Expander(List<ClassifiedState> level) {
+            this.level = level;
+        }
+
+        /**
+         * @return null once every batch has been claimed
+         * @throws TimelessTrapException unable to exit cyclic vanishing state
+         * @throws InvalidRateException functional rate expression invalid
+         */
+        @Override
+        public Void call() throws TimelessTrapException, InvalidRateException {
+            StateRateAccumulator rates = new StateRateAccumulator();
+            int batches = (level.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+            for (int batch = next.getAndIncrement(); batch < batches; batch = next.getAndIncrement()) {
+                StateRateBatch results = batchResults.get(batch);
+                int end = Math.min(level.size(), (batch + 1) * BATCH_SIZE);
+                for (int i = batch * BATCH_SIZE; i < end; i++) {
+                    rates.clear();
+                    successorRates(level.get(i), rates);
+                    results.addRow(rates);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Sums the tangible successors of the state, exploring through any vanishing successors
+         *
+         * @param state state to explore
+         * @param rates accumulator to sum the successors into in the order they are found
+         * @throws TimelessTrapException unable to exit cyclic vanishing state
+         * @throws InvalidRateException  functional rate expression invalid
+         */
+        private void successorRates(ClassifiedState state, StateRateAccumulator rates)
+                throws TimelessTrapException, InvalidRateException {
+            for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+                double rate = explorerUtilities.rate(state, successor);
+                if (successor.isTangible()) {
+                    rates.add(successor, rate);
+                } else {
+                    for (StateRateRecord record : vanishingExplorer.explore(successor, rate)) {
+                        rates.add(record.getState(), record.getRate());
+                    }
+                }
+            }
+        }
+    }
 }
@@ -47,7 +47,7 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
     protected ExecutorService executorService;
 
     private Queue<ClassifiedState> sharedIterationQueue = new ConcurrentLinkedQueue<>();
-    private Map<ClassifiedState, Map<ClassifiedState, Double>> iterationTransitions = new ConcurrentHashMap<>();
+    private Map<ClassifiedState, Boolean> iterationExplored = new ConcurrentHashMap<>();
     private Map<ClassifiedState, Boolean> sharedHashSeen = new ConcurrentHashMap<>();
 
 
@@ -69,6 +69,27 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
         this.threads=threads;
     }
 
+    /**
+     * Constructor for generating massive state space exploration that stores explored
+     * states in the given set
+     *
+     * @param explorerUtilities utilities
+     * @param vanishingExplorer explorer
+     * @param stateProcessor  processor
+     * @param threads across which to spread work
+     * @param statesPerThread   the number of states to allow each thread to explore in a single iteration
+     *                          before returning to join the results together
+     * @param explored set to store explored states in, only read by worker threads
+     */
+    public MassiveParallelStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                             StateProcessor stateProcessor, int threads, int statesPerThread,
+                                             ExploredStateSet explored) {
+        super(explorerUtilities, vanishingExplorer, stateProcessor, explored);
+
+        this.statesPerThread = statesPerThread;
+        this.threads = threads;
+    }
+
     /**
      * Performs state space exploration by spinning up threads and allowing them to process
      * states in parallel. The number of states that each thread processes is set in the constructor
@@ -94,6 +115,7 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
         long duration = 0;
         List<MultiStateExplorer> explorers = initialiseExplorers();
         sharedIterationQueue.addAll(explorationQueue);
+        explorationQueue.clear();
         while (!sharedIterationQueue.isEmpty() && explorerUtilities.canExploreMore(stateCount)) {
             int submitted = 0;
             while (submitted < threads && !sharedIterationQueue.isEmpty()) {
@@ -111,12 +133,13 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
 
             markAsExplored(sharedHashSeen.keySet());
 
-            for (Map.Entry<ClassifiedState, Map<ClassifiedState, Double>> entry : iterationTransitions.entrySet()) {
-                writeStateTransitions(entry.getKey(), entry.getValue());
+            for (MultiStateExplorer explorer : explorers) {
+                explorer.writeTransitions();
             }
+            flushTransitions();
 
             sharedHashSeen.clear();
-            iterationTransitions.clear();
+            iterationExplored.clear();
             explorerUtilities.clear();
             iterations++;
         }
@@ -125,6 +148,14 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
         LOGGER.log(Level.INFO, "Took " + iterations + " iterations to explore state space with " + duration/(double)iterations + " time for each iteration");
     }
 
+    /**
+     * @return states left in the shared iteration queue that have not had their successors explored
+     */
+    @Override
+    protected Collection<ClassifiedState> getUnexploredStates() {
+        return sharedIterationQueue;
+    }
+
     private List<MultiStateExplorer> initialiseExplorers() {
         List<MultiStateExplorer> explorers = new ArrayList<>();
         for (int i = 0; i < threads; i++) {
@@ -141,6 +172,21 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
      * </p>
      */
     private final class MultiStateExplorer implements Callable<Collection<Void>> {
+        /**
+         * States explored in this iteration in the order their rows were added to transitions
+         */
+        private final List<ClassifiedState> states = new ArrayList<>();
+
+        /**
+         * Successor rates of each explored state, reused by every iteration
+         */
+        private final StateRateBatch transitions = new StateRateBatch();
+
+        /**
+         * Successor rates of the state being explored
+         */
+        private final StateRateAccumulator rates = new StateRateAccumulator();
+
         private MultiStateExplorer(){}
 
 
@@ -162,11 +208,15 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
                 if (state == null) {
                     return null;
                 }
-                Map<ClassifiedState, Double> successorRates = new HashMap<>();
+                //Another thread may have queued the same state before this one marked it as seen
+                if (iterationExplored.put(state, Boolean.TRUE) != null) {
+                    continue;
+                }
+                rates.clear();
                 for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
                     double rate = explorerUtilities.rate(state, successor);
                     if (successor.isTangible()) {
-                        registerStateRate(successor, rate, successorRates);
+                        rates.add(successor, rate);
                         if (!seen(successor)) {
                             sharedIterationQueue.add(successor);
                             addToSharedSeen(successor);
@@ -175,7 +225,7 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
                     } else {
                         Collection<StateRateRecord> explorableStates = vanishingExplorer.explore(successor, rate);
                         for (StateRateRecord record : explorableStates) {
-                            registerStateRate(record.getState(), record.getRate(), successorRates);
+                            rates.add(record.getState(), record.getRate());
                             if (!seen(record.getState())) {
                                 sharedIterationQueue.add(record.getState());
                                 addToSharedSeen(record.getState());
@@ -184,33 +234,27 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
                         }
                     }
                 }
-                writeStateTransitions(state, successorRates);
+                states.add(state);
+                transitions.addRow(rates);
             }
             return null;
         }
 
-        private void addToSharedSeen(ClassifiedState state) {
-            sharedHashSeen.put(state, true);
-        }
-
         /**
-         * Puts the successor and rate into the successor rates map.
-         * If an entry already exists for the state then the rate is
-         * summed within the rate.
+         * Writes the transitions of every state explored in this iteration and clears them
+         * ready for the next. Must only be called once every explored state has been marked as explored
          */
-        /**
-         * @param successor state
-         * @param rate of the successor 
-         * @param successorRates map of the successor rates
-         */
-        private void registerStateRate(ClassifiedState successor, double rate,
-                                       Map<ClassifiedState, Double> successorRates) {
-            if (successorRates.containsKey(successor)) {
-                double previousRate = successorRates.get(successor);
-                successorRates.put(successor, previousRate + rate);
-            } else {
-                successorRates.put(successor, rate);
+        private void writeTransitions() {
+            for (int row = 0; row < transitions.getRows(); row++) {
+                registerStateTransitions(transitions, row);
+                writeStateTransitions(states.get(row));
             }
+            states.clear();
+            transitions.clear();
+        }
+
+        private void addToSharedSeen(ClassifiedState state) {
+            sharedHashSeen.put(state, true);
         }
 
         /**
@@ -221,17 +265,6 @@ public final class MassiveParallelStateSpaceExplorer extends AbstractStateSpaceE
             return sharedHashSeen.containsKey(state) || explored.contains(state);
         }
 
-        /**
-         * Puts the state and its rates into the transitions data structure
-         *
-         * @param state to be written
-         * @param successorRates to be written 
-         */
-        private void writeStateTransitions(ClassifiedState state, Map<ClassifiedState, Double> successorRates) {
-            if (!iterationTransitions.containsKey(state)) {
-                iterationTransitions.put(state, successorRates);
-            }
-        }
     }
 
 }
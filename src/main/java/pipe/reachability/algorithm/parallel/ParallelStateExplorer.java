@@ -1,6 +1,7 @@
 package pipe.reachability.algorithm.parallel;
 
 import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateRateAccumulator;
 import pipe.reachability.algorithm.StateRateRecord;
 import pipe.reachability.algorithm.TimelessTrapException;
 import pipe.reachability.algorithm.VanishingExplorer;
@@ -8,8 +9,6 @@ import uk.ac.imperial.pipe.exceptions.InvalidRateException;
 import uk.ac.imperial.state.ClassifiedState;
 
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 
@@ -19,7 +18,7 @@ import java.util.concurrent.CountDownLatch;
  * of the state.
  *
  */
-public final class ParallelStateExplorer implements Callable<Map<ClassifiedState, Double>> {
+public final class ParallelStateExplorer implements Callable<StateRateAccumulator> {
 
     /**
      * Count down latch, this value is decremented once the call method
@@ -55,20 +54,20 @@ public final class ParallelStateExplorer implements Callable<Map<ClassifiedState
     /**
      * Performs state space exploration of the given state
      *
-     * @return successors
+     * @return successors in the order they were found with their summed rates
      */
     @Override
-    public Map<ClassifiedState, Double> call() throws TimelessTrapException, InvalidRateException {
+    public StateRateAccumulator call() throws TimelessTrapException, InvalidRateException {
         try {
-            Map<ClassifiedState, Double> stateRates = new HashMap<>();
+            StateRateAccumulator stateRates = new StateRateAccumulator();
             for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
                 double rate = explorerUtilities.rate(state, successor);
                 if (successor.isTangible()) {
-                    registerStateRate(successor, rate, stateRates);
+                    stateRates.add(successor, rate);
                 } else {
                     Collection<StateRateRecord> explorableStates = vanishingExplorer.explore(successor, rate);
                     for (StateRateRecord record : explorableStates) {
-                        registerStateRate(record.getState(), record.getRate(), stateRates);
+                        stateRates.add(record.getState(), record.getRate());
                     }
                 }
             }
@@ -77,13 +76,4 @@ public final class ParallelStateExplorer implements Callable<Map<ClassifiedState
             latch.countDown();
         }
     }
-
-    private void registerStateRate(ClassifiedState successor, double rate, Map<ClassifiedState, Double> stateRates) {
-        if (stateRates.containsKey(successor)) {
-            double previousRate = stateRates.get(successor);
-            stateRates.put(successor, previousRate + rate);
-        } else {
-            stateRates.put(successor, rate);
-        }
-    }
 }
@@ -0,0 +1,708 @@
+package pipe.reachability.algorithm.parallel;
+
+import pipe.reachability.algorithm.AbstractStateSpaceExplorer;
+import pipe.reachability.algorithm.ExploredStateSet;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.HashedExploredStateSet;
+import pipe.reachability.algorithm.StateRateRecord;
+import pipe.reachability.algorithm.VanishingExplorer;
+import pipe.reachability.io.BatchStateProcessor;
+import pipe.reachability.io.TransitionBatch;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * State space explorer that splits exploration into stages running on their own threads,
+ * connected by bounded lock free {@link RingBuffer}s:
+ * <ol>
+ *     <li>generation, using the {@link ExplorerUtilities} to find the successors of a state and their rates</li>
+ *     <li>vanishing elimination, using the {@link VanishingExplorer} to replace vanishing successors with the
+ *     tangible states they lead to</li>
+ *     <li>id assignment, on the thread calling generate, which deduplicates successors against the explored
+ *     set, numbers new states and feeds them back to generation</li>
+ *     <li>output, which passes states and transitions on to the {@link StateProcessor}</li>
+ * </ol>
+ * <p>
+ * Stages take up to {@link #BATCH_SIZE} items from their buffer at a time. Id assignment never blocks on
+ * the generation buffer, it keeps states that do not fit in the exploration queue, so the cycle between the
+ * first three stages cannot deadlock.
+ * </p><p>
+ * Each stage counts the items it processes and the time it spends busy. These are logged once exploration
+ * finishes and are available from {@link #getStageStatistics()}: the stage with the lowest throughput per
+ * thread is the one to give more threads for a given net.
+ * </p><p>
+ * States are numbered in the order their expansions come out of the pipeline, which depends on how the threads
+ * interleave. The explorer utilities and vanishing explorer must be safe to use from several threads, the state
+ * processor is only used by one thread at a time. If the processor is a {@link BatchStateProcessor} transitions
+ * are handed to it in batches as they would be by any other explorer.
+ * </p><p>
+ * The caches of the explorer utilities are cleared every {@link #CLEAR_INTERVAL} dispatched states, once
+ * the pipeline has drained, as the other explorers clear them every level, so they do not grow to hold the
+ * whole successor graph.
+ * </p><p>
+ * If any stage fails the generation and vanishing threads are interrupted, so a stage blocked on a full buffer
+ * whose consumer has stopped gives up, and the failure is thrown from generate.
+ * </p>
+ */
+public final class PipelinedStateSpaceExplorer extends AbstractStateSpaceExplorer {
+    /**
+     * Capacity of each ring buffer
+     */
+    static final int RING_CAPACITY = 1024;
+
+    /**
+     * Maximum number of items a stage takes from its buffer at once
+     */
+    static final int BATCH_SIZE = 64;
+
+    /**
+     * Number of states dispatched for expansion between clearing the caches of the explorer utilities.
+     * Dispatching pauses until every dispatched state has come back, so no stage is using the
+     * utilities whilst they are cleared.
+     */
+    static final int CLEAR_INTERVAL = 4 * RING_CAPACITY;
+
+    /**
+     * Class logger
+     */
+    private static final Logger LOGGER = Logger.getLogger(PipelinedStateSpaceExplorer.class.getName());
+
+    /**
+     * Number of generation threads
+     */
+    private final int generationThreads;
+
+    /**
+     * Number of vanishing elimination threads
+     */
+    private final int vanishingThreads;
+
+    /**
+     * Output stage, also the processor the explorer writes to
+     */
+    private final OutputStage output;
+
+    /**
+     * Counters of each stage
+     */
+    private final List<StageStatistics> statistics = new ArrayList<>();
+
+    /**
+     * Counters of the generation stage
+     */
+    private final StageStatistics generationStatistics = new StageStatistics("generation");
+
+    /**
+     * Counters of the vanishing elimination stage
+     */
+    private final StageStatistics vanishingStatistics = new StageStatistics("vanishing");
+
+    /**
+     * Counters of the id assignment stage
+     */
+    private final StageStatistics idStatistics = new StageStatistics("ids");
+
+    /**
+     * States waiting to be expanded
+     */
+    private RingBuffer<ClassifiedState> states;
+
+    /**
+     * Expansions waiting for vanishing elimination
+     */
+    private RingBuffer<Expansion> expansions;
+
+    /**
+     * Expansions with only tangible successors, waiting for id assignment
+     */
+    private RingBuffer<Expansion> resolved;
+
+    /**
+     * First failure of a stage thread
+     */
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    /**
+     * Set to false to stop the generation and vanishing stage threads
+     */
+    private volatile boolean running;
+
+    /**
+     * @param explorerUtilities utilities, must be safe to use from several threads
+     * @param vanishingExplorer explorer, must be safe to use from several threads
+     * @param stateProcessor    processor
+     * @param generationThreads number of threads finding successors
+     * @param vanishingThreads  number of threads eliminating vanishing states
+     */
+    public PipelinedStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                       StateProcessor stateProcessor, int generationThreads, int vanishingThreads) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor, generationThreads, vanishingThreads,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE));
+    }
+
+    /**
+     * @param explorerUtilities utilities, must be safe to use from several threads
+     * @param vanishingExplorer explorer, must be safe to use from several threads
+     * @param stateProcessor    processor
+     * @param generationThreads number of threads finding successors
+     * @param vanishingThreads  number of threads eliminating vanishing states
+     * @param explored          set to store explored states in, only used by the id assignment stage
+     */
+    public PipelinedStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                       StateProcessor stateProcessor, int generationThreads, int vanishingThreads,
+                                       ExploredStateSet explored) {
+        super(explorerUtilities, vanishingExplorer, OutputStage.wrap(stateProcessor), explored);
+        this.output = (OutputStage) this.stateProcessor;
+        this.generationThreads = generationThreads;
+        this.vanishingThreads = vanishingThreads;
+        statistics.add(generationStatistics);
+        statistics.add(vanishingStatistics);
+        statistics.add(idStatistics);
+        statistics.add(output.statistics);
+    }
+
+    /**
+     * Starts the stage threads and assigns ids on this thread until every
+     * dispatched state has come back and no more can be dispatched
+     *
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   a stage failed
+     */
+    @Override
+    protected void stateSpaceExploration() throws InterruptedException, ExecutionException {
+        states = new RingBuffer<>(RING_CAPACITY);
+        expansions = new RingBuffer<>(RING_CAPACITY);
+        resolved = new RingBuffer<>(RING_CAPACITY);
+        failure.set(null);
+        running = true;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < generationThreads; i++) {
+            threads.add(new Thread(new GenerationStage(), "pipeline-generation-" + i));
+        }
+        for (int i = 0; i < vanishingThreads; i++) {
+            threads.add(new Thread(new VanishingStage(), "pipeline-vanishing-" + i));
+        }
+        Thread outputThread = new Thread(output, "pipeline-output");
+        output.start(failure);
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        outputThread.start();
+        try {
+            assignIds();
+        } finally {
+            running = false;
+            output.stop();
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            outputThread.join();
+            explorerUtilities.clear();
+        }
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+        logStatistics();
+    }
+
+    /**
+     * Id assignment stage
+     *
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   a stage failed
+     */
+    private void assignIds() throws InterruptedException, ExecutionException {
+        List<Expansion> batch = new ArrayList<>(BATCH_SIZE);
+        int outstanding = 0;
+        int dispatched = 0;
+        int idle = 0;
+        while (true) {
+            if (failure.get() != null) {
+                throw new ExecutionException(failure.get());
+            }
+            if (outstanding == 0 && dispatched >= CLEAR_INTERVAL) {
+                explorerUtilities.clear();
+                dispatched = 0;
+            }
+            while (dispatched < CLEAR_INTERVAL && !explorationQueue.isEmpty()
+                    && explorerUtilities.canExploreMore(stateCount) && states.offer(explorationQueue.peek())) {
+                explorationQueue.poll();
+                outstanding++;
+                dispatched++;
+            }
+            if (outstanding == 0) {
+                return;
+            }
+            batch.clear();
+            if (resolved.drainTo(batch, BATCH_SIZE) == 0) {
+                RingBuffer.idle(idle++);
+                continue;
+            }
+            idle = 0;
+            long start = System.nanoTime();
+            for (Expansion expansion : batch) {
+                for (Map.Entry<ClassifiedState, Double> entry : expansion.tangibleRates.entrySet()) {
+                    registerStateTransition(entry.getKey(), entry.getValue());
+                }
+                writeStateTransitions(expansion.state);
+                outstanding--;
+            }
+            idStatistics.record(batch.size(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return counters of each stage in pipeline order
+     */
+    public List<StageStatistics> getStageStatistics() {
+        return Collections.unmodifiableList(statistics);
+    }
+
+    /**
+     * Logs the throughput of every stage
+     */
+    private void logStatistics() {
+        for (StageStatistics stage : statistics) {
+            LOGGER.log(Level.INFO, String.format("Stage %s processed %d items in %d busy ns", stage.getName(),
+                    stage.getItems(), stage.getBusyNanos()));
+        }
+    }
+
+    /**
+     * A state and its successors, before and after vanishing elimination
+     */
+    private static final class Expansion {
+        /**
+         * Expanded state
+         */
+        private final ClassifiedState state;
+
+        /**
+         * Successors found by the explorer utilities
+         */
+        private final ClassifiedState[] successors;
+
+        /**
+         * Rate of transitioning to each successor
+         */
+        private final double[] rates;
+
+        /**
+         * Tangible successors to their summed rates, set by vanishing elimination
+         */
+        private Map<ClassifiedState, Double> tangibleRates;
+
+        /**
+         * @param state      expanded state
+         * @param successors successors found by the explorer utilities
+         * @param rates      rate of transitioning to each successor
+         */
+        private Expansion(ClassifiedState state, ClassifiedState[] successors, double[] rates) {
+            this.state = state;
+            this.successors = successors;
+            this.rates = rates;
+        }
+    }
+
+    /**
+     * Base of the stages running on their own threads, repeatedly takes a batch from
+     * its input buffer and processes it until the explorer stops it
+     *
+     * @param <T> input item type
+     */
+    private abstract class Stage<T> implements Runnable {
+        /**
+         * Counters of the stage
+         */
+        private final StageStatistics stageStatistics;
+
+        /**
+         * @param stageStatistics counters of the stage
+         */
+        private Stage(StageStatistics stageStatistics) {
+            this.stageStatistics = stageStatistics;
+        }
+
+        /**
+         * @return buffer the stage takes its items from
+         */
+        protected abstract RingBuffer<T> input();
+
+        /**
+         * @param item item to process
+         * @throws Exception if the item could not be processed
+         */
+        protected abstract void process(T item) throws Exception;
+
+        @Override
+        public final void run() {
+            List<T> batch = new ArrayList<>(BATCH_SIZE);
+            int idle = 0;
+            try {
+                while (running) {
+                    batch.clear();
+                    if (input().drainTo(batch, BATCH_SIZE) == 0) {
+                        RingBuffer.idle(idle++);
+                        continue;
+                    }
+                    idle = 0;
+                    long start = System.nanoTime();
+                    for (T item : batch) {
+                        process(item);
+                    }
+                    stageStatistics.record(batch.size(), System.nanoTime() - start);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * Finds the successors of each state and their rates
+     */
+    private final class GenerationStage extends Stage<ClassifiedState> {
+        private GenerationStage() {
+            super(generationStatistics);
+        }
+
+        @Override
+        protected RingBuffer<ClassifiedState> input() {
+            return states;
+        }
+
+        @Override
+        protected void process(ClassifiedState state) throws Exception {
+            Collection<ClassifiedState> found = explorerUtilities.getSuccessors(state);
+            ClassifiedState[] successors = found.toArray(new ClassifiedState[found.size()]);
+            double[] rates = new double[successors.length];
+            for (int i = 0; i < successors.length; i++) {
+                rates[i] = explorerUtilities.rate(state, successors[i]);
+            }
+            expansions.put(new Expansion(state, successors, rates));
+        }
+    }
+
+    /**
+     * Replaces vanishing successors with the tangible states they lead to and sums the rates
+     */
+    private final class VanishingStage extends Stage<Expansion> {
+        private VanishingStage() {
+            super(vanishingStatistics);
+        }
+
+        @Override
+        protected RingBuffer<Expansion> input() {
+            return expansions;
+        }
+
+        @Override
+        protected void process(Expansion expansion) throws Exception {
+            Map<ClassifiedState, Double> tangibleRates = new LinkedHashMap<>();
+            for (int i = 0; i < expansion.successors.length; i++) {
+                ClassifiedState successor = expansion.successors[i];
+                if (successor.isTangible()) {
+                    addRate(tangibleRates, successor, expansion.rates[i]);
+                } else {
+                    for (StateRateRecord record : vanishingExplorer.explore(successor, expansion.rates[i])) {
+                        addRate(tangibleRates, record.getState(), record.getRate());
+                    }
+                }
+            }
+            expansion.tangibleRates = tangibleRates;
+            resolved.put(expansion);
+        }
+
+        /**
+         * Sums the rate into any rate already registered for the successor
+         *
+         * @param tangibleRates successor rates
+         * @param successor     successor state
+         * @param rate          rate of transitioning to the successor
+         */
+        private void addRate(Map<ClassifiedState, Double> tangibleRates, ClassifiedState successor, double rate) {
+            Double previousRate = tangibleRates.get(successor);
+            tangibleRates.put(successor, previousRate == null ? rate : previousRate + rate);
+        }
+    }
+
+    /**
+     * Output stage. The explorer writes states and transitions to this processor, which queues
+     * them for the output thread whilst the pipeline is running and passes them straight on otherwise.
+     */
+    private static class OutputStage implements StateProcessor, Runnable {
+        /**
+         * Processor the output thread writes to
+         */
+        private final StateProcessor stateProcessor;
+
+        /**
+         * Counters of the stage
+         */
+        private final StageStatistics statistics = new StageStatistics("output");
+
+        /**
+         * States and transitions waiting to be written
+         */
+        private RingBuffer<OutputItem> items;
+
+        /**
+         * Failure of any stage, the output stage records its own here
+         */
+        private AtomicReference<Exception> failure;
+
+        /**
+         * True whilst the output thread is running
+         */
+        private volatile boolean running = false;
+
+        /**
+         * Set once no more items will be queued
+         */
+        private volatile boolean stopping = false;
+
+        /**
+         * @param stateProcessor processor the output thread writes to
+         */
+        private OutputStage(StateProcessor stateProcessor) {
+            this.stateProcessor = stateProcessor;
+        }
+
+        /**
+         * @param stateProcessor processor the output thread writes to
+         * @return output stage that accepts batches if the processor does
+         */
+        private static OutputStage wrap(StateProcessor stateProcessor) {
+            if (stateProcessor instanceof BatchStateProcessor) {
+                return new BatchOutputStage((BatchStateProcessor) stateProcessor);
+            }
+            return new OutputStage(stateProcessor);
+        }
+
+        /**
+         * Starts queueing items, must be called before the output thread is started
+         *
+         * @param failure failure of any stage
+         */
+        private void start(AtomicReference<Exception> failure) {
+            this.failure = failure;
+            items = new RingBuffer<>(RING_CAPACITY);
+            stopping = false;
+            running = true;
+        }
+
+        /**
+         * Lets the output thread finish once every queued item has been written
+         */
+        private void stop() {
+            stopping = true;
+        }
+
+        @Override
+        public void processTransitions(int state, Map<Integer, Double> successorRates) {
+            queue(new OutputItem(null, state, successorRates, null));
+        }
+
+        @Override
+        public void processState(ClassifiedState state, int stateId) {
+            queue(new OutputItem(state, stateId, null, null));
+        }
+
+        /**
+         * @param item item to write on the output thread, or now if it is not running
+         */
+        protected final void queue(OutputItem item) {
+            if (!running) {
+                item.writeTo(stateProcessor);
+                return;
+            }
+            int attempts = 0;
+            while (!items.offer(item)) {
+                if (!running) {
+                    throw new IllegalStateException("Output stage stopped", failure.get());
+                }
+                RingBuffer.idle(attempts++);
+            }
+        }
+
+        @Override
+        public void run() {
+            List<OutputItem> batch = new ArrayList<>(BATCH_SIZE);
+            int idle = 0;
+            try {
+                while (true) {
+                    batch.clear();
+                    if (items.drainTo(batch, BATCH_SIZE) == 0) {
+                        if (stopping || failure.get() != null) {
+                            break;
+                        }
+                        RingBuffer.idle(idle++);
+                        continue;
+                    }
+                    idle = 0;
+                    long start = System.nanoTime();
+                    for (OutputItem item : batch) {
+                        item.writeTo(stateProcessor);
+                    }
+                    statistics.record(batch.size(), System.nanoTime() - start);
+                }
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                running = false;
+            }
+        }
+    }
+
+    /**
+     * Output stage for a batch processor. The explorer's batch is cleared once handed over so a copy
+     * is queued, batches only arrive once the explorer has buffered many transitions so copying is rare.
+     */
+    private static final class BatchOutputStage extends OutputStage implements BatchStateProcessor {
+        /**
+         * @param stateProcessor processor the output thread writes to
+         */
+        private BatchOutputStage(BatchStateProcessor stateProcessor) {
+            super(stateProcessor);
+        }
+
+        @Override
+        public void processTransitions(TransitionBatch batch) {
+            TransitionBatch copy = new TransitionBatch();
+            int[] offsets = batch.getRowOffsets();
+            for (int row = 0; row < batch.getRows(); row++) {
+                copy.startRow(batch.getStateIds()[row]);
+                for (int entry = offsets[row]; entry < offsets[row + 1]; entry++) {
+                    copy.add(batch.getSuccessors()[entry], batch.getRates()[entry]);
+                }
+            }
+            queue(new OutputItem(null, 0, null, copy));
+        }
+    }
+
+    /**
+     * A state, the transitions of a state or a batch of transitions waiting to be written
+     */
+    private static final class OutputItem {
+        /**
+         * State to write, or null if this item holds transitions
+         */
+        private final ClassifiedState state;
+
+        /**
+         * Id of the state
+         */
+        private final int stateId;
+
+        /**
+         * Successor ids to rates, or null if this item holds a state or a batch
+         */
+        private final Map<Integer, Double> transitions;
+
+        /**
+         * Transitions of many states, or null if this item holds a state or a single state's transitions
+         */
+        private final TransitionBatch batch;
+
+        /**
+         * @param state       state to write, or null if this item holds transitions
+         * @param stateId     id of the state
+         * @param transitions successor ids to rates, or null if this item holds a state or a batch
+         * @param batch       transitions of many states, or null
+         */
+        private OutputItem(ClassifiedState state, int stateId, Map<Integer, Double> transitions,
+                           TransitionBatch batch) {
+            this.state = state;
+            this.stateId = stateId;
+            this.transitions = transitions;
+            this.batch = batch;
+        }
+
+        /**
+         * @param stateProcessor processor to write the item to, a batch processor if this item holds a batch
+         */
+        private void writeTo(StateProcessor stateProcessor) {
+            if (state != null) {
+                stateProcessor.processState(state, stateId);
+            } else if (batch != null) {
+                ((BatchStateProcessor) stateProcessor).processTransitions(batch);
+            } else {
+                stateProcessor.processTransitions(stateId, transitions);
+            }
+        }
+    }
+
+    /**
+     * Throughput counters of a single stage, summed over its threads
+     */
+    public static final class StageStatistics {
+        /**
+         * Name of the stage
+         */
+        private final String name;
+
+        /**
+         * Number of items processed
+         */
+        private final AtomicLong items = new AtomicLong();
+
+        /**
+         * Nanoseconds spent processing items
+         */
+        private final AtomicLong busyNanos = new AtomicLong();
+
+        /**
+         * @param name name of the stage
+         */
+        private StageStatistics(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param processed number of items processed in a batch
+         * @param nanos     time taken to process the batch
+         */
+        private void record(int processed, long nanos) {
+            items.addAndGet(processed);
+            busyNanos.addAndGet(nanos);
+        }
+
+        /**
+         * @return name of the stage
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return number of items processed
+         */
+        public long getItems() {
+            return items.get();
+        }
+
+        /**
+         * @return nanoseconds spent processing items over all of the stage's threads
+         */
+        public long getBusyNanos() {
+            return busyNanos.get();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package pipe.reachability.algorithm.parallel;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded lock free queue that any number of threads may offer to and poll from.
+ * <p>
+ * Each slot holds a sequence number saying whose turn it is: a producer may fill slot i for position p
+ * once its sequence is p, and a consumer may empty it once its sequence is p + 1. Producers and consumers
+ * claim positions with a compare and set on their own counter, so they only contend with each other when
+ * the buffer is nearly empty or full.
+ * </p>
+ *
+ * @param <T> item type
+ */
+final class RingBuffer<T> {
+    /**
+     * Number of times a blocked put yields before parking
+     */
+    private static final int SPINS = 100;
+
+    /**
+     * Nanoseconds a blocked put parks for between attempts
+     */
+    private static final long PARK_NANOS = 50_000;
+
+    /**
+     * Slots of the buffer
+     */
+    private final AtomicReferenceArray<T> items;
+
+    /**
+     * Sequence number of each slot
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * Capacity minus one, capacity is a power of two
+     */
+    private final int mask;
+
+    /**
+     * Next position to offer to
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Next position to poll from
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity minimum number of items the buffer holds, rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        items = new AtomicReferenceArray<>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+    }
+
+    /**
+     * @param item item to add
+     * @return false if the buffer is full
+     */
+    boolean offer(T item) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    items.set(index, item);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Adds the item, waiting for space if the buffer is full
+     *
+     * @param item item to add
+     * @throws InterruptedException if interrupted whilst waiting
+     */
+    void put(T item) throws InterruptedException {
+        int attempts = 0;
+        while (!offer(item)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            idle(attempts++);
+        }
+    }
+
+    /**
+     * @return the oldest item or null if the buffer is empty
+     */
+    T poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    T item = items.get(index);
+                    items.set(index, null);
+                    sequences.set(index, position + mask + 1);
+                    return item;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Polls up to max items into the list
+     *
+     * @param into list to add the items to
+     * @param max  maximum number of items to poll
+     * @return number of items polled
+     */
+    int drainTo(List<T> into, int max) {
+        int drained = 0;
+        while (drained < max) {
+            T item = poll();
+            if (item == null) {
+                break;
+            }
+            into.add(item);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Backs off whilst waiting, yielding at first and then parking
+     *
+     * @param attempts number of times the caller has already waited
+     */
+    static void idle(int attempts) {
+        if (attempts < SPINS) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    }
+}
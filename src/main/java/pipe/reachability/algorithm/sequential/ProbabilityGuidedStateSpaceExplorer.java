@@ -0,0 +1,233 @@
+package pipe.reachability.algorithm.sequential;
+
+import pipe.reachability.algorithm.AbstractStateSpaceExplorer;
+import pipe.reachability.algorithm.ExploredStateSet;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.HashedExploredStateSet;
+import pipe.reachability.algorithm.StateRateRecord;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sequential state space explorer that explores the most probable frontier state next rather than
+ * exploring in breadth first order.
+ * <p>
+ * Every frontier state holds an estimate of the probability mass that flows into it. The initial states
+ * start with a mass of one and when a state is explored its mass is pushed on to its unexplored successors
+ * in proportion to the rate of transitioning to each, i.e. the mass of a frontier state is the summed
+ * probability of the embedded jump chain following an explored path from an initial state to it.
+ * </p><p>
+ * Used with explorer utilities that bound the number of states, e.g.
+ * {@link pipe.reachability.algorithm.BoundedExplorerUtilities}, the budget is spent on the states the
+ * chain is most likely to visit so the truncated state space holds far more of the steady state mass than a
+ * breadth first one of the same size. Without a bound the whole state space is explored, though states
+ * are numbered in a different order to a breadth first exploration.
+ * </p>
+ */
+public final class ProbabilityGuidedStateSpaceExplorer extends AbstractStateSpaceExplorer {
+    /**
+     * Class logger
+     */
+    private static final Logger LOGGER = Logger.getLogger(ProbabilityGuidedStateSpaceExplorer.class.getName());
+
+    /**
+     * Estimated probability mass of each frontier state
+     */
+    private final Map<ClassifiedState, Double> frontierMass = new HashMap<>();
+
+    /**
+     * Frontier states ordered by mass. A state is re-added every time its mass grows so
+     * entries whose mass no longer matches {@link #frontierMass} are stale and skipped.
+     */
+    private final PriorityQueue<FrontierEntry> frontier = new PriorityQueue<>(11, new MassComparator());
+
+    /**
+     * Successors of the state being explored to the rate of transitioning to them
+     */
+    private final Map<ClassifiedState, Double> stateRates = new LinkedHashMap<>();
+
+    /**
+     * Number of entries added to the frontier, used to break ties in order of discovery
+     */
+    private long sequence = 0;
+
+    /**
+     * @param explorerUtilities utilities to use for exploration, typically bounded
+     * @param vanishingExplorer exploring algorithm for processing vanishing states
+     * @param stateProcessor    processor for actually writing out the results
+     */
+    public ProbabilityGuidedStateSpaceExplorer(ExplorerUtilities explorerUtilities,
+                                               VanishingExplorer vanishingExplorer, StateProcessor stateProcessor) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE));
+    }
+
+    /**
+     * @param explorerUtilities utilities to use for exploration, typically bounded
+     * @param vanishingExplorer exploring algorithm for processing vanishing states
+     * @param stateProcessor    processor for actually writing out the results
+     * @param explored          set to store explored states in
+     */
+    public ProbabilityGuidedStateSpaceExplorer(ExplorerUtilities explorerUtilities,
+                                               VanishingExplorer vanishingExplorer, StateProcessor stateProcessor,
+                                               ExploredStateSet explored) {
+        super(explorerUtilities, vanishingExplorer, stateProcessor, explored);
+    }
+
+    /**
+     * Repeatedly explores the frontier state with the most mass, pushing its mass on to its
+     * successors, until the frontier is empty or the explorer utilities stop exploration
+     *
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InvalidRateException  functional rate expression invalid
+     */
+    @Override
+    protected void stateSpaceExploration() throws TimelessTrapException, InvalidRateException {
+        double exploredMass = 0;
+        int iterations = 0;
+        addDiscoveredStates(1.0);
+        while (!frontierMass.isEmpty() && explorerUtilities.canExploreMore(stateCount)) {
+            FrontierEntry next = frontier.poll();
+            Double mass = frontierMass.get(next.state);
+            if (mass == null || mass != next.mass) {
+                continue;
+            }
+            ClassifiedState state = next.state;
+            frontierMass.remove(state);
+            exploredMass += next.mass;
+
+            successorRates.clear();
+            stateRates.clear();
+            double totalRate = 0;
+            for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+                double rate = explorerUtilities.rate(state, successor);
+                if (successor.isTangible()) {
+                    addRate(successor, rate);
+                } else {
+                    Collection<StateRateRecord> explorableStates = vanishingExplorer.explore(successor, rate);
+                    for (StateRateRecord record : explorableStates) {
+                        addRate(record.getState(), record.getRate());
+                    }
+                }
+            }
+            for (Map.Entry<ClassifiedState, Double> entry : stateRates.entrySet()) {
+                registerStateTransition(entry.getKey(), entry.getValue());
+                totalRate += entry.getValue();
+            }
+            writeStateTransitions(state);
+            addDiscoveredStates(0.0);
+            if (totalRate > 0) {
+                for (Map.Entry<ClassifiedState, Double> entry : stateRates.entrySet()) {
+                    pushMass(entry.getKey(), next.mass * entry.getValue() / totalRate);
+                }
+            }
+            explorerUtilities.clear();
+            iterations++;
+        }
+        LOGGER.log(Level.INFO, String.format("Explored %d states holding an estimated %f of the mass, "
+                + "%d frontier states remain", iterations, exploredMass, frontierMass.size()));
+    }
+
+    /**
+     * Frontier states are not held in the exploration queue
+     *
+     * @return the unexplored frontier of the state space
+     */
+    @Override
+    protected Collection<ClassifiedState> getUnexploredStates() {
+        return frontierMass.keySet();
+    }
+
+    /**
+     * Moves states newly added to the exploration queue on to the frontier
+     *
+     * @param mass initial mass of each state
+     */
+    private void addDiscoveredStates(double mass) {
+        while (!explorationQueue.isEmpty()) {
+            ClassifiedState state = explorationQueue.poll();
+            frontierMass.put(state, mass);
+            frontier.add(new FrontierEntry(state, mass, sequence++));
+        }
+    }
+
+    /**
+     * Adds mass to the state if it is still on the frontier
+     *
+     * @param state successor state
+     * @param mass  mass flowing into the successor
+     */
+    private void pushMass(ClassifiedState state, double mass) {
+        Double previous = frontierMass.get(state);
+        if (previous != null && mass > 0) {
+            double updated = previous + mass;
+            frontierMass.put(state, updated);
+            frontier.add(new FrontierEntry(state, updated, sequence++));
+        }
+    }
+
+    /**
+     * Sums the rate into any rate already registered for the successor
+     *
+     * @param successor successor state
+     * @param rate      rate of transitioning to the successor
+     */
+    private void addRate(ClassifiedState successor, double rate) {
+        Double previousRate = stateRates.get(successor);
+        stateRates.put(successor, previousRate == null ? rate : previousRate + rate);
+    }
+
+    /**
+     * A frontier state and the mass it had when it was added
+     */
+    private static final class FrontierEntry {
+        /**
+         * Frontier state
+         */
+        private final ClassifiedState state;
+
+        /**
+         * Mass of the state when the entry was added
+         */
+        private final double mass;
+
+        /**
+         * Order the entry was added in
+         */
+        private final long sequence;
+
+        /**
+         * @param state    frontier state
+         * @param mass     mass of the state
+         * @param sequence order the entry was added in
+         */
+        private FrontierEntry(ClassifiedState state, double mass, long sequence) {
+            this.state = state;
+            this.mass = mass;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Orders entries by most mass, breaking ties in the order they were added
+     */
+    private static final class MassComparator implements Comparator<FrontierEntry> {
+        @Override
+        public int compare(FrontierEntry entry, FrontierEntry other) {
+            int compare = Double.compare(other.mass, entry.mass);
+            return compare != 0 ? compare : Long.compare(entry.sequence, other.sequence);
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package pipe.reachability.algorithm.sequential;
 
 import pipe.reachability.algorithm.*;
+import pipe.reachability.io.RateStructureWriter;
 import uk.ac.imperial.io.StateProcessor;
 import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
 import uk.ac.imperial.state.ClassifiedState;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.*;
 import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -21,6 +23,17 @@ public final class SequentialStateSpaceExplorer extends AbstractStateSpaceExplor
 
     private static final Logger LOGGER = Logger.getLogger(SequentialStateSpaceExplorer.class.getName());
 
+    /**
+     * If not null the rate structure of every explored state is written here so that
+     * rates can later be recalculated without exploring again
+     */
+    private final RateStructureWriter rateStructureWriter;
+
+    /**
+     * Rate terms of the successors of the state currently being explored
+     */
+    private final Map<ClassifiedState, List<RateTerm>> successorTerms = new HashMap<>();
+
     /**
      * Constructor for generating a single thread state space explorer
      * @param explorerUtilities utilities to use for exploration, can be used to generate the reachability graph
@@ -31,7 +44,56 @@ public final class SequentialStateSpaceExplorer extends AbstractStateSpaceExplor
      */
     public SequentialStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
                                         StateProcessor stateProcessor) {
-        super(explorerUtilities, vanishingExplorer, stateProcessor);
+        this(explorerUtilities, vanishingExplorer, stateProcessor,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE), null);
+    }
+
+    /**
+     * Constructor for generating a single thread state space explorer that stores
+     * explored states in the given set
+     * @param explorerUtilities utilities to use for exploration, can be used to generate the reachability graph
+     *                          or the coverability graph
+     * @param vanishingExplorer exploring algorithm for processing vanishing states, can be used to include them
+     *                          in the graphs or to remove them on the fly
+     * @param stateProcessor processor for actually writing out the results
+     * @param explored set to store explored states in
+     */
+    public SequentialStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                        StateProcessor stateProcessor, ExploredStateSet explored) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor, explored, null);
+    }
+
+    /**
+     * Constructor for generating a single thread state space explorer that also records
+     * the rate structure of the state space
+     * @param explorerUtilities utilities to use for exploration, can be used to generate the reachability graph
+     *                          or the coverability graph
+     * @param vanishingExplorer exploring algorithm for processing vanishing states, can be used to include them
+     *                          in the graphs or to remove them on the fly
+     * @param stateProcessor processor for actually writing out the results
+     * @param rateStructureWriter writer for the transitions and vanishing path factors making up each rate
+     */
+    public SequentialStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                        StateProcessor stateProcessor, RateStructureWriter rateStructureWriter) {
+        this(explorerUtilities, vanishingExplorer, stateProcessor,
+                new HashedExploredStateSet(HashedExploredStateSet.DEFAULT_SIZE), rateStructureWriter);
+    }
+
+    /**
+     * @param explorerUtilities utilities to use for exploration, can be used to generate the reachability graph
+     *                          or the coverability graph
+     * @param vanishingExplorer exploring algorithm for processing vanishing states, can be used to include them
+     *                          in the graphs or to remove them on the fly
+     * @param stateProcessor processor for actually writing out the results
+     * @param explored set to store explored states in
+     * @param rateStructureWriter writer for the transitions and vanishing path factors making up each rate,
+     *                            or null if the rate structure is not needed
+     */
+    public SequentialStateSpaceExplorer(ExplorerUtilities explorerUtilities, VanishingExplorer vanishingExplorer,
+                                        StateProcessor stateProcessor, ExploredStateSet explored,
+                                        RateStructureWriter rateStructureWriter) {
+        super(explorerUtilities, vanishingExplorer, stateProcessor, explored);
+        this.rateStructureWriter = rateStructureWriter;
     }
 
     /**
@@ -50,21 +112,106 @@ public final class SequentialStateSpaceExplorer extends AbstractStateSpaceExplor
         while (!explorationQueue.isEmpty() && explorerUtilities.canExploreMore(stateCount)) {
             ClassifiedState state = explorationQueue.poll();
             successorRates.clear();
+            successorTerms.clear();
             for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
                 double rate = explorerUtilities.rate(state, successor);
                 if (successor.isTangible()) {
                     registerStateTransition(successor, rate);
+                    registerRateTerm(state, successor, successor, 1.0);
                 } else {
                     Collection<StateRateRecord> explorableStates = vanishingExplorer.explore(successor, rate);
                     for (StateRateRecord record : explorableStates) {
                         registerStateTransition(record.getState(), record.getRate());
                     }
+                    registerVanishingRateTerms(state, successor, rate, explorableStates);
                 }
             }
-            writeStateTransitions(state, successorRates);
+            writeStateTransitions(state);
+            writeRateStructure(state);
             explorerUtilities.clear();
             iterations++;
         }
         LOGGER.log(Level.INFO, String.format("Took %d iterations to explore state space", iterations));
     }
+
+    /**
+     * Finishes the rate structure once every root has been explored
+     */
+    @Override
+    protected void explorationFinished() {
+        if (rateStructureWriter != null) {
+            rateStructureWriter.finish();
+        }
+    }
+
+    /**
+     * Registers the rate terms for tangible states reached via the vanishing successor.
+     * The factor of each term is the probability of the vanishing path, which is the rate
+     * into the tangible state divided by the rate into the vanishing successor.
+     * <p>
+     * If the rate into the vanishing successor is zero the factors cannot be recovered from the rates so
+     * the vanishing state is explored again with unit rate.
+     * </p>
+     * @param state            state being explored
+     * @param successor        vanishing successor of the state
+     * @param rate             rate into the vanishing successor
+     * @param explorableStates states found when exploring the vanishing successor
+     * @throws TimelessTrapException unable to exit cyclic vanishing state
+     * @throws InvalidRateException functional rate expression invalid
+     */
+    private void registerVanishingRateTerms(ClassifiedState state, ClassifiedState successor, double rate,
+                                            Collection<StateRateRecord> explorableStates)
+            throws TimelessTrapException, InvalidRateException {
+        if (rateStructureWriter == null) {
+            return;
+        }
+        if (rate == 0) {
+            registerVanishingRateTerms(state, successor, 1.0, vanishingExplorer.explore(successor, 1.0));
+            return;
+        }
+        for (StateRateRecord record : explorableStates) {
+            registerRateTerm(state, successor, record.getState(), record.getRate() / rate);
+        }
+    }
+
+    /**
+     * Registers a rate term for the transitions that take state to its direct successor
+     *
+     * @param state          state being explored
+     * @param successor      direct successor of the state
+     * @param tangible       state whose rate the term contributes to
+     * @param factor         factor of the term
+     */
+    private void registerRateTerm(ClassifiedState state, ClassifiedState successor, ClassifiedState tangible,
+                                  double factor) {
+        if (rateStructureWriter == null) {
+            return;
+        }
+        Collection<String> transitionIds = new ArrayList<>();
+        for (Transition transition : explorerUtilities.getTransitions(state, successor)) {
+            transitionIds.add(transition.getId());
+        }
+        List<RateTerm> terms = successorTerms.get(tangible);
+        if (terms == null) {
+            terms = new ArrayList<>();
+            successorTerms.put(tangible, terms);
+        }
+        terms.add(new RateTerm(transitionIds, factor));
+    }
+
+    /**
+     * Writes the rate terms of the explored state to the rate structure writer
+     *
+     * @param state explored state
+     */
+    private void writeRateStructure(ClassifiedState state) {
+        if (rateStructureWriter == null) {
+            return;
+        }
+        Map<Integer, List<RateTerm>> edges = new HashMap<>();
+        for (Map.Entry<ClassifiedState, List<RateTerm>> entry : successorTerms.entrySet()) {
+            edges.put(explored.getId(entry.getKey()), entry.getValue());
+        }
+        rateStructureWriter.writeRow(explored.getId(state), edges);
+    }
 }
@@ -0,0 +1,329 @@
+package pipe.reachability.algorithm.symbolic;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared, reduced multi-valued decision diagrams over a fixed number of integer variables.
+ * <p>
+ * Level k of the forest decides the value of variable k - 1, so the root of a diagram over every
+ * variable is at level {@link #getLevels()} and level 0 holds the two terminal nodes. A node is
+ * identified by its level and its index within that level. Index {@link #EMPTY} is the empty set on
+ * every level and {@link #ONE} is the terminal accepting node.
+ * </p><p>
+ * A node's children are indexed by the value of its variable, values beyond the end of the
+ * children array lead to {@link #EMPTY}. This lets variable domains grow whilst the diagram
+ * is being built, which is needed when the token bounds of places are not known up front.
+ * Nodes are never modified once they have been added to the forest.
+ * </p>
+ */
+final class MddForest {
+    /**
+     * The empty set on every level
+     */
+    static final int EMPTY = 0;
+
+    /**
+     * Terminal node accepting the empty suffix
+     */
+    static final int ONE = 1;
+
+    /**
+     * Number of non terminal levels
+     */
+    private final int levels;
+
+    /**
+     * Children of each node on each level
+     */
+    private final List<List<int[]>> nodes = new ArrayList<>();
+
+    /**
+     * Unique table of each level, used to keep the diagrams reduced
+     */
+    private final List<Map<NodeKey, Integer>> unique = new ArrayList<>();
+
+    /**
+     * Cached unions of each level
+     */
+    private final List<Map<Long, Integer>> unions = new ArrayList<>();
+
+    /**
+     * Cached number of paths from each node to {@link #ONE}
+     */
+    private final List<Map<Integer, BigInteger>> counts = new ArrayList<>();
+
+    /**
+     * @param levels number of variables
+     */
+    MddForest(int levels) {
+        this.levels = levels;
+        for (int level = 0; level <= levels; level++) {
+            List<int[]> levelNodes = new ArrayList<>();
+            levelNodes.add(new int[0]);
+            nodes.add(levelNodes);
+            unique.add(new HashMap<NodeKey, Integer>());
+            unions.add(new HashMap<Long, Integer>());
+            counts.add(new HashMap<Integer, BigInteger>());
+        }
+    }
+
+    /**
+     * @return number of variables
+     */
+    int getLevels() {
+        return levels;
+    }
+
+    /**
+     * @param level level of the node
+     * @param node  node index
+     * @return children of the node, which must not be modified
+     */
+    int[] getChildren(int level, int node) {
+        return nodes.get(level).get(node);
+    }
+
+    /**
+     * @param level level of the node
+     * @param node  node index
+     * @param value value of the level's variable
+     * @return child of the node for the value
+     */
+    int getChild(int level, int node, int value) {
+        int[] children = getChildren(level, node);
+        return value < children.length ? children[value] : EMPTY;
+    }
+
+    /**
+     * Finds or creates the node with the given children
+     *
+     * @param level    level of the node
+     * @param children children of the node, this array is not retained
+     * @return reduced node index
+     */
+    int reduce(int level, int[] children) {
+        int length = children.length;
+        while (length > 0 && children[length - 1] == EMPTY) {
+            length--;
+        }
+        if (length == 0) {
+            return EMPTY;
+        }
+        int[] trimmed = Arrays.copyOf(children, length);
+        NodeKey key = new NodeKey(trimmed);
+        Integer existing = unique.get(level).get(key);
+        if (existing != null) {
+            return existing;
+        }
+        List<int[]> levelNodes = nodes.get(level);
+        int node = levelNodes.size();
+        levelNodes.add(trimmed);
+        unique.get(level).put(key, node);
+        return node;
+    }
+
+    /**
+     * @param values value of each variable
+     * @return root of the diagram containing just the values
+     */
+    int singleton(int[] values) {
+        int node = ONE;
+        for (int level = 1; level <= levels; level++) {
+            int[] children = new int[values[level - 1] + 1];
+            children[values[level - 1]] = node;
+            node = reduce(level, children);
+        }
+        return node;
+    }
+
+    /**
+     * @param level level of both nodes
+     * @param first first node
+     * @param second second node
+     * @return node representing the union of both sets
+     */
+    int union(int level, int first, int second) {
+        if (first == EMPTY || first == second) {
+            return second;
+        }
+        if (second == EMPTY) {
+            return first;
+        }
+        if (level == 0) {
+            return ONE;
+        }
+        long key = first < second ? ((long) first << 32) | second : ((long) second << 32) | first;
+        Integer cached = unions.get(level).get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int[] firstChildren = getChildren(level, first);
+        int[] secondChildren = getChildren(level, second);
+        int[] children = new int[Math.max(firstChildren.length, secondChildren.length)];
+        for (int value = 0; value < children.length; value++) {
+            children[value] = union(level - 1, getChild(level, first, value), getChild(level, second, value));
+        }
+        int result = reduce(level, children);
+        unions.get(level).put(key, result);
+        return result;
+    }
+
+    /**
+     * @param level level of the node
+     * @param node  node index
+     * @return number of value vectors in the set represented by the node
+     */
+    BigInteger count(int level, int node) {
+        if (node == EMPTY) {
+            return BigInteger.ZERO;
+        }
+        if (level == 0) {
+            return BigInteger.ONE;
+        }
+        BigInteger cached = counts.get(level).get(node);
+        if (cached != null) {
+            return cached;
+        }
+        BigInteger total = BigInteger.ZERO;
+        for (int child : getChildren(level, node)) {
+            total = total.add(count(level - 1, child));
+        }
+        counts.get(level).put(node, total);
+        return total;
+    }
+
+    /**
+     * @param level  level of the node
+     * @param node   node index
+     * @param values value of each variable
+     * @return true if the set represented by the node contains the values
+     */
+    boolean contains(int level, int node, int[] values) {
+        int current = node;
+        for (int l = level; l > 0 && current != EMPTY; l--) {
+            current = getChild(l, current, values[l - 1]);
+        }
+        return current != EMPTY;
+    }
+
+    /**
+     * The rank of a vector is its position in the set when the set is ordered
+     * lexicographically from the top level down, i.e. the order {@link #forEach} visits it.
+     *
+     * @param level  level of the node
+     * @param node   node index
+     * @param values value of each variable, must be in the set
+     * @return rank of the values in the set
+     */
+    BigInteger rank(int level, int node, int[] values) {
+        BigInteger rank = BigInteger.ZERO;
+        int current = node;
+        for (int l = level; l > 0; l--) {
+            int[] children = getChildren(l, current);
+            int value = values[l - 1];
+            for (int smaller = 0; smaller < value && smaller < children.length; smaller++) {
+                rank = rank.add(count(l - 1, children[smaller]));
+            }
+            current = getChild(l, current, value);
+        }
+        return rank;
+    }
+
+    /**
+     * Visits every vector of the set in rank order
+     *
+     * @param level   level of the node
+     * @param node    node index
+     * @param visitor visitor called with each vector, the array is reused between calls
+     * @return false if the visitor stopped the iteration
+     */
+    boolean forEach(int level, int node, Visitor visitor) {
+        return forEach(level, node, new int[levels], visitor);
+    }
+
+    /**
+     * Recursive helper for {@link #forEach(int, int, Visitor)}
+     *
+     * @param level   level of the node
+     * @param node    node index
+     * @param values  values chosen for the levels above
+     * @param visitor visitor called with each vector
+     * @return false if the visitor stopped the iteration
+     */
+    private boolean forEach(int level, int node, int[] values, Visitor visitor) {
+        if (node == EMPTY) {
+            return true;
+        }
+        if (level == 0) {
+            return visitor.visit(values);
+        }
+        int[] children = getChildren(level, node);
+        for (int value = 0; value < children.length; value++) {
+            values[level - 1] = value;
+            if (!forEach(level - 1, children[value], values, visitor)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of non terminal nodes in the forest
+     */
+    int size() {
+        int size = 0;
+        for (int level = 1; level <= levels; level++) {
+            size += nodes.get(level).size() - 1;
+        }
+        return size;
+    }
+
+    /**
+     * Visitor of the vectors of a set
+     */
+    interface Visitor {
+        /**
+         * @param values value of each variable
+         * @return true to continue visiting
+         */
+        boolean visit(int[] values);
+    }
+
+    /**
+     * Unique table key comparing children by value
+     */
+    private static final class NodeKey {
+        /**
+         * Children of the node
+         */
+        private final int[] children;
+
+        /**
+         * Cached hash code
+         */
+        private final int hash;
+
+        /**
+         * @param children children of the node
+         */
+        private NodeKey(int[] children) {
+            this.children = children;
+            hash = Arrays.hashCode(children);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || o instanceof NodeKey && Arrays.equals(children, ((NodeKey) o).children);
+        }
+    }
+}
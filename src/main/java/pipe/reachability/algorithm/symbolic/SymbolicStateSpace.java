@@ -0,0 +1,170 @@
+package pipe.reachability.algorithm.symbolic;
+
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.structural.IncidenceMatrix;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reachable state space of a Petri net encoded as a multi-valued decision diagram.
+ * <p>
+ * Size and deadlock queries are answered directly on the diagram so remain cheap for
+ * state spaces far too large to enumerate. When an explicit CTMC is needed the states
+ * can be exported to a {@link uk.ac.imperial.io.StateProcessor}, in which case each state's
+ * id is its rank in the diagram.
+ * </p>
+ */
+public final class SymbolicStateSpace {
+    /**
+     * Structure of the Petri net
+     */
+    private final IncidenceMatrix matrix;
+
+    /**
+     * Forest holding the diagrams
+     */
+    private final MddForest forest;
+
+    /**
+     * Root of the reachable states
+     */
+    private final int reachable;
+
+    /**
+     * Root of the reachable states with no enabled transitions
+     */
+    private final int deadlocks;
+
+    /**
+     * @param matrix    structure of the Petri net
+     * @param forest    forest holding the diagrams
+     * @param reachable root of the reachable states
+     * @param deadlocks root of the reachable states with no enabled transitions
+     */
+    SymbolicStateSpace(IncidenceMatrix matrix, MddForest forest, int reachable, int deadlocks) {
+        this.matrix = matrix;
+        this.forest = forest;
+        this.reachable = reachable;
+        this.deadlocks = deadlocks;
+    }
+
+    /**
+     * @return number of reachable states
+     */
+    public BigInteger size() {
+        return forest.count(forest.getLevels(), reachable);
+    }
+
+    /**
+     * @return number of reachable states in which no transition is enabled
+     */
+    public BigInteger countDeadlocks() {
+        return forest.count(forest.getLevels(), deadlocks);
+    }
+
+    /**
+     * @return true if a state in which no transition is enabled is reachable
+     */
+    public boolean hasDeadlock() {
+        return deadlocks != MddForest.EMPTY;
+    }
+
+    /**
+     * @return a reachable state in which no transition is enabled, or null if there is none
+     */
+    public ClassifiedState getDeadlock() {
+        final int[][] deadlock = new int[1][];
+        forest.forEach(forest.getLevels(), deadlocks, new MddForest.Visitor() {
+            @Override
+            public boolean visit(int[] values) {
+                deadlock[0] = values.clone();
+                return false;
+            }
+        });
+        return deadlock[0] == null ? null : matrix.toState(deadlock[0], true);
+    }
+
+    /**
+     * @param state state of the Petri net
+     * @return true if the state is reachable
+     */
+    public boolean contains(ClassifiedState state) {
+        return forest.contains(forest.getLevels(), reachable, matrix.toMarking(state));
+    }
+
+    /**
+     * Enumerates every reachable state and its timed transitions to its successors into the state processor.
+     * Self loops are omitted as they are by the explicit explorers.
+     *
+     * @param explorerUtilities utilities used to evaluate the rates of the transitions
+     * @param stateProcessor    processor to write the states and transitions to
+     * @return exploration results
+     * @throws InvalidRateException functional rate expression invalid
+     * @throws IllegalStateException if there are more states than can be given integer ids
+     */
+    public StateSpaceExplorer.StateSpaceExplorerResults export(final ExplorerUtilities explorerUtilities,
+                                                              final StateProcessor stateProcessor)
+            throws InvalidRateException {
+        if (size().compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) > 0) {
+            throw new IllegalStateException("Cannot export " + size() + " states with integer ids");
+        }
+        final int levels = forest.getLevels();
+        final int[] processedTransitions = new int[1];
+        final int[] nextId = new int[1];
+        final InvalidRateException[] rateException = new InvalidRateException[1];
+        forest.forEach(levels, reachable, new MddForest.Visitor() {
+            @Override
+            public boolean visit(int[] marking) {
+                ClassifiedState state = matrix.toState(marking, true);
+                int stateId = nextId[0]++;
+                stateProcessor.processState(state, stateId);
+
+                Map<Integer, Collection<Transition>> successorTransitions = new HashMap<>();
+                for (int column = 0; column < matrix.getNumberOfTransitions(); column++) {
+                    if (!matrix.isEnabled(column, marking)) {
+                        continue;
+                    }
+                    int[] successor = matrix.fire(column, marking);
+                    if (Arrays.equals(successor, marking)) {
+                        continue;
+                    }
+                    int successorId = forest.rank(levels, reachable, successor).intValue();
+                    Collection<Transition> transitions = successorTransitions.get(successorId);
+                    if (transitions == null) {
+                        transitions = new ArrayList<>();
+                        successorTransitions.put(successorId, transitions);
+                    }
+                    transitions.add(matrix.getTransition(column));
+                }
+
+                Map<Integer, Double> successorRates = new HashMap<>();
+                try {
+                    for (Map.Entry<Integer, Collection<Transition>> entry : successorTransitions.entrySet()) {
+                        successorRates.put(entry.getKey(),
+                                explorerUtilities.getWeightOfTransitions(state, entry.getValue()));
+                    }
+                } catch (InvalidRateException e) {
+                    rateException[0] = e;
+                    return false;
+                }
+                stateProcessor.processTransitions(stateId, successorRates);
+                processedTransitions[0] += successorRates.size();
+                return true;
+            }
+        });
+        if (rateException[0] != null) {
+            throw rateException[0];
+        }
+        return new StateSpaceExplorer.StateSpaceExplorerResults(processedTransitions[0], nextId[0]);
+    }
+}
@@ -0,0 +1,299 @@
+package pipe.reachability.algorithm.symbolic;
+
+import pipe.structural.IncidenceMatrix;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Generates the reachable state space of a Petri net symbolically, encoding it as a
+ * multi-valued decision diagram with one level per place and token pair.
+ * <p>
+ * The state space is computed by saturation: each transition's next state relation is derived
+ * from its arcs and only affects the levels between the highest and lowest rows it is connected
+ * to. Nodes are saturated bottom up by firing every transition whose highest level is the node's
+ * level until a fixed point is reached, so the intermediate diagrams stay small for highly
+ * structured nets and state spaces of billions of states can be generated.
+ * </p><p>
+ * Only nets whose next state relation can be derived structurally are supported. That is nets
+ * with constant integer arc weights, only timed transitions of the same priority and no
+ * capacity restrictions on places holding more than one type of token.
+ * The Petri net must be bounded, otherwise generation will not terminate.
+ * </p>
+ */
+public final class SymbolicStateSpaceExplorer {
+    /**
+     * Class logger
+     */
+    private static final Logger LOGGER = Logger.getLogger(SymbolicStateSpaceExplorer.class.getName());
+
+    /**
+     * Structure of the Petri net
+     */
+    private final IncidenceMatrix matrix;
+
+    /**
+     * Forest holding the diagrams
+     */
+    private final MddForest forest;
+
+    /**
+     * Highest level each transition is connected to, zero if it is connected to no places
+     */
+    private final int[] top;
+
+    /**
+     * Lowest level each transition is connected to
+     */
+    private final int[] bottom;
+
+    /**
+     * Transitions whose highest level is each level
+     */
+    private final List<List<Integer>> transitionsByTop = new ArrayList<>();
+
+    /**
+     * Cached saturated node of each node on each level
+     */
+    private final List<Map<Integer, Integer>> saturated = new ArrayList<>();
+
+    /**
+     * Cached result of firing a transition from a node on each level
+     */
+    private final List<Map<Long, Integer>> fired = new ArrayList<>();
+
+    /**
+     * Cached states of a node on each level in which a transition is disabled
+     */
+    private final List<Map<Long, Integer>> disabled = new ArrayList<>();
+
+    /**
+     * @param petriNet Petri net to generate the state space of
+     * @throws IllegalArgumentException if the Petri net's next state relation cannot be derived from its structure
+     */
+    public SymbolicStateSpaceExplorer(PetriNet petriNet) {
+        this(new IncidenceMatrix(petriNet));
+    }
+
+    /**
+     * @param matrix structure of the Petri net to generate the state space of
+     * @throws IllegalArgumentException if the Petri net's next state relation cannot be derived from its structure
+     */
+    public SymbolicStateSpaceExplorer(IncidenceMatrix matrix) {
+        this.matrix = matrix;
+        checkSupported(matrix);
+        int levels = matrix.getNumberOfRows();
+        forest = new MddForest(levels);
+        for (int level = 0; level <= levels; level++) {
+            transitionsByTop.add(new ArrayList<Integer>());
+            saturated.add(new HashMap<Integer, Integer>());
+            fired.add(new HashMap<Long, Integer>());
+            disabled.add(new HashMap<Long, Integer>());
+        }
+        top = new int[matrix.getNumberOfTransitions()];
+        bottom = new int[matrix.getNumberOfTransitions()];
+        for (int column = 0; column < top.length; column++) {
+            for (int row = 0; row < levels; row++) {
+                if (matrix.isConnected(column, row)) {
+                    top[column] = row + 1;
+                    if (bottom[column] == 0) {
+                        bottom[column] = row + 1;
+                    }
+                }
+            }
+            transitionsByTop.get(top[column]).add(column);
+        }
+    }
+
+    /**
+     * @param matrix structure of the Petri net
+     * @throws IllegalArgumentException if the Petri net's next state relation cannot be derived from its structure
+     */
+    private static void checkSupported(IncidenceMatrix matrix) {
+        if (!matrix.hasConstantWeights()) {
+            throw new IllegalArgumentException("Symbolic exploration requires constant arc weights");
+        }
+        Integer priority = null;
+        for (int column = 0; column < matrix.getNumberOfTransitions(); column++) {
+            Transition transition = matrix.getTransition(column);
+            if (!transition.isTimed()) {
+                throw new IllegalArgumentException(
+                        "Symbolic exploration does not support immediate transition " + transition.getId());
+            }
+            if (priority != null && priority != transition.getPriority()) {
+                throw new IllegalArgumentException("Symbolic exploration requires transitions of equal priority");
+            }
+            priority = transition.getPriority();
+        }
+        for (int row = 0; row < matrix.getNumberOfRows(); row++) {
+            String placeId = matrix.getPlaceId(row);
+            boolean shared = (row > 0 && matrix.getPlaceId(row - 1).equals(placeId))
+                    || (row + 1 < matrix.getNumberOfRows() && matrix.getPlaceId(row + 1).equals(placeId));
+            if (matrix.getCapacity(row) > 0 && shared) {
+                throw new IllegalArgumentException(
+                        "Symbolic exploration does not support capacities on multi token place " + placeId);
+            }
+        }
+    }
+
+    /**
+     * Generates the state space reachable from the Petri net's current marking
+     *
+     * @return reachable state space
+     */
+    public SymbolicStateSpace generate() {
+        return generate(matrix.getInitialMarking());
+    }
+
+    /**
+     * Generates the state space reachable from the given marking
+     *
+     * @param initialMarking number of tokens in each row of the incidence matrix
+     * @return reachable state space
+     */
+    public SymbolicStateSpace generate(int[] initialMarking) {
+        int levels = forest.getLevels();
+        long startTime = System.nanoTime();
+        int reachable = saturate(levels, forest.singleton(initialMarking));
+        int deadlocks = reachable;
+        for (int column = 0; column < top.length; column++) {
+            deadlocks = disabled(column, levels, deadlocks);
+        }
+        LOGGER.log(Level.INFO, String.format("Generated %s states symbolically with %d nodes in %dms",
+                forest.count(levels, reachable), forest.size(), (System.nanoTime() - startTime) / 1_000_000));
+        return new SymbolicStateSpace(matrix, forest, reachable, deadlocks);
+    }
+
+    /**
+     * Saturates a node whose children may not be saturated
+     *
+     * @param level level of the node
+     * @param node  node index
+     * @return saturated node
+     */
+    private int saturate(int level, int node) {
+        if (level == 0 || node == MddForest.EMPTY) {
+            return node;
+        }
+        Integer cached = saturated.get(level).get(node);
+        if (cached != null) {
+            return cached;
+        }
+        int[] source = forest.getChildren(level, node);
+        int[] children = new int[source.length];
+        for (int value = 0; value < source.length; value++) {
+            children[value] = saturate(level - 1, source[value]);
+        }
+        int result = forest.reduce(level, fireToFixedPoint(level, children));
+        saturated.get(level).put(node, result);
+        return result;
+    }
+
+    /**
+     * Repeatedly fires the transitions whose highest level is this level until no new
+     * states are found. The children must already be saturated.
+     *
+     * @param level    level of the node being saturated
+     * @param children children of the node being saturated
+     * @return saturated children, which may be a new larger array
+     */
+    private int[] fireToFixedPoint(int level, int[] children) {
+        int[] result = children;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int column : transitionsByTop.get(level)) {
+                for (int value = 0; value < result.length; value++) {
+                    if (result[value] == MddForest.EMPTY || !matrix.isEnabled(column, level - 1, value)) {
+                        continue;
+                    }
+                    int successorValue = value + matrix.getChange(column, level - 1);
+                    int successors = fire(column, level - 1, result[value]);
+                    if (successors == MddForest.EMPTY) {
+                        continue;
+                    }
+                    if (successorValue >= result.length) {
+                        result = Arrays.copyOf(result, successorValue + 1);
+                    }
+                    int union = forest.union(level - 1, successors, result[successorValue]);
+                    if (union != result[successorValue]) {
+                        result[successorValue] = union;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fires the transition from every state of a saturated node below the transition's highest level
+     *
+     * @param column transition column
+     * @param level  level of the node
+     * @param node   node index
+     * @return saturated node of the successors
+     */
+    private int fire(int column, int level, int node) {
+        if (level < bottom[column] || node == MddForest.EMPTY) {
+            return node;
+        }
+        long key = ((long) column << 32) | node;
+        Integer cached = fired.get(level).get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int[] source = forest.getChildren(level, node);
+        int[] children = new int[0];
+        for (int value = 0; value < source.length; value++) {
+            if (source[value] == MddForest.EMPTY || !matrix.isEnabled(column, level - 1, value)) {
+                continue;
+            }
+            int successors = fire(column, level - 1, source[value]);
+            if (successors == MddForest.EMPTY) {
+                continue;
+            }
+            int successorValue = value + matrix.getChange(column, level - 1);
+            if (successorValue >= children.length) {
+                children = Arrays.copyOf(children, successorValue + 1);
+            }
+            children[successorValue] = forest.union(level - 1, successors, children[successorValue]);
+        }
+        int result = forest.reduce(level, fireToFixedPoint(level, children));
+        fired.get(level).put(key, result);
+        return result;
+    }
+
+    /**
+     * @param column transition column
+     * @param level  level of the node
+     * @param node   node index
+     * @return node of the states of the given node in which the transition is disabled
+     */
+    private int disabled(int column, int level, int node) {
+        if (top[column] == 0 || level < bottom[column] || node == MddForest.EMPTY) {
+            return MddForest.EMPTY;
+        }
+        long key = ((long) column << 32) | node;
+        Integer cached = disabled.get(level).get(key);
+        if (cached != null) {
+            return cached;
+        }
+        int[] source = forest.getChildren(level, node);
+        int[] children = new int[source.length];
+        for (int value = 0; value < source.length; value++) {
+            children[value] = matrix.isEnabled(column, level - 1, value) ?
+                    disabled(column, level - 1, source[value]) : source[value];
+        }
+        int result = forest.reduce(level, children);
+        disabled.get(level).put(key, result);
+        return result;
+    }
+}
@@ -0,0 +1,22 @@
+package pipe.reachability.io;
+
+import uk.ac.imperial.io.StateProcessor;
+
+/**
+ * State processor that can also accept the transitions of many states at once.
+ * <p>
+ * State space explorers given one of these buffer the transitions of explored states into a
+ * {@link TransitionBatch} and hand over a whole batch at a time, e.g. at the end of each parallel round,
+ * rather than building a map for every state. Transitions of a state are always processed after the
+ * state itself, but states may be processed some time before their transitions.
+ * </p>
+ */
+public interface BatchStateProcessor extends StateProcessor {
+    /**
+     * Processes every row of the batch. The batch is cleared and reused once this returns
+     * so it must not be kept.
+     *
+     * @param batch transitions of many states
+     */
+    void processTransitions(TransitionBatch batch);
+}
@@ -0,0 +1,175 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Output;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Batch state processor that writes transitions in a compact row format.
+ * <p>
+ * Each row is written as a marker byte, the state id and number of successors as variable length ints,
+ * then the successor ids sorted and delta encoded as variable length ints, so successors with nearby ids
+ * take a byte or two each. Rates are dictionary encoded: the first time a rate is seen it is written in
+ * full and given the next dictionary code, afterwards only its code is written. Nets with a handful of
+ * distinct rates therefore take a byte per rate too. The dictionary stops growing at
+ * {@link #MAX_DICTIONARY_SIZE} rates so that nets with continuous rates do not use unbounded memory.
+ * </p><p>
+ * States are passed on to another processor. The transitions can be streamed back with a
+ * {@link CompactTransitionReader} once {@link #finish()} has been called.
+ * </p>
+ */
+public final class CompactTransitionProcessor implements BatchStateProcessor {
+    /**
+     * Marker written before each row
+     */
+    static final byte ROW = 1;
+
+    /**
+     * Marker written once all rows have been written
+     */
+    static final byte END = 0;
+
+    /**
+     * Code written before a rate that is not in the dictionary,
+     * dictionary codes start after it
+     */
+    static final int LITERAL = 0;
+
+    /**
+     * Maximum number of rates held in the dictionary
+     */
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+
+    /**
+     * Processor to pass states on to
+     */
+    private final StateProcessor stateProcessor;
+
+    /**
+     * Output to write transitions to
+     */
+    private final Output output;
+
+    /**
+     * Bits of each rate in the dictionary to its code
+     */
+    private final Map<Long, Integer> dictionary = new HashMap<>();
+
+    /**
+     * Successor id in the high bits and entry index in the low bits of each entry
+     * of the row being written, sorted to order the row by successor id
+     */
+    private long[] order = new long[16];
+
+    /**
+     * @param stateProcessor processor to pass states on to
+     * @param output         output to write transitions to, this is not closed by the processor
+     */
+    public CompactTransitionProcessor(StateProcessor stateProcessor, Output output) {
+        this.stateProcessor = stateProcessor;
+        this.output = output;
+    }
+
+    /**
+     * @param state   explored state
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        stateProcessor.processState(state, stateId);
+    }
+
+    /**
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        int size = successorRates.size();
+        int[] successors = new int[size];
+        double[] rates = new double[size];
+        int entry = 0;
+        for (Map.Entry<Integer, Double> successorRate : successorRates.entrySet()) {
+            successors[entry] = successorRate.getKey();
+            rates[entry] = successorRate.getValue();
+            entry++;
+        }
+        writeRow(state, successors, rates, 0, size);
+    }
+
+    /**
+     * @param batch transitions of many states
+     */
+    @Override
+    public void processTransitions(TransitionBatch batch) {
+        int[] offsets = batch.getRowOffsets();
+        for (int row = 0; row < batch.getRows(); row++) {
+            writeRow(batch.getStateIds()[row], batch.getSuccessors(), batch.getRates(), offsets[row],
+                    offsets[row + 1]);
+        }
+    }
+
+    /**
+     * Writes the entries from up to but not including to as a single row
+     *
+     * @param state      id of the state
+     * @param successors successor ids
+     * @param rates      rates of transitioning to each successor
+     * @param from       first entry of the row
+     * @param to         entry after the last of the row
+     */
+    private void writeRow(int state, int[] successors, double[] rates, int from, int to) {
+        int size = to - from;
+        if (order.length < size) {
+            order = new long[Math.max(size, order.length * 2)];
+        }
+        for (int entry = from; entry < to; entry++) {
+            order[entry - from] = ((long) successors[entry] << Integer.SIZE) | (entry - from);
+        }
+        Arrays.sort(order, 0, size);
+
+        output.writeByte(ROW);
+        output.writeInt(state, true);
+        output.writeInt(size, true);
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            int successor = (int) (order[i] >>> Integer.SIZE);
+            output.writeInt(successor - previous, true);
+            previous = successor;
+        }
+        for (int i = 0; i < size; i++) {
+            writeRate(rates[from + (int) order[i]]);
+        }
+    }
+
+    /**
+     * Writes the rate's dictionary code, or the rate itself if it is not in the dictionary
+     *
+     * @param rate rate to write
+     */
+    private void writeRate(double rate) {
+        long bits = Double.doubleToLongBits(rate);
+        Integer code = dictionary.get(bits);
+        if (code != null) {
+            output.writeInt(code, true);
+            return;
+        }
+        output.writeInt(LITERAL, true);
+        output.writeDouble(rate);
+        if (dictionary.size() < MAX_DICTIONARY_SIZE) {
+            dictionary.put(bits, dictionary.size() + LITERAL + 1);
+        }
+    }
+
+    /**
+     * Writes the end of the transitions and flushes the output
+     */
+    public void finish() {
+        output.writeByte(END);
+        output.flush();
+    }
+}
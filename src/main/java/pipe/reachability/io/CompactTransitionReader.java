@@ -0,0 +1,88 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import uk.ac.imperial.state.Record;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the rows written by a {@link CompactTransitionProcessor} back one at a time,
+ * rebuilding the rate dictionary as it goes
+ */
+public final class CompactTransitionReader {
+    /**
+     * Input to read rows from
+     */
+    private final Input input;
+
+    /**
+     * Rates in the order they were added to the dictionary
+     */
+    private final List<Double> dictionary = new ArrayList<>();
+
+    /**
+     * Set once the end marker has been read
+     */
+    private boolean finished = false;
+
+    /**
+     * @param input to read the rows from, this is not closed by the reader
+     */
+    public CompactTransitionReader(Input input) {
+        this.input = input;
+    }
+
+    /**
+     * @return the next row or null if every row has been read
+     */
+    public Record readRecord() {
+        if (finished || input.readByte() != CompactTransitionProcessor.ROW) {
+            finished = true;
+            return null;
+        }
+        int state = input.readInt(true);
+        int size = input.readInt(true);
+        int[] successors = new int[size];
+        int previous = 0;
+        for (int i = 0; i < size; i++) {
+            successors[i] = previous + input.readInt(true);
+            previous = successors[i];
+        }
+        Map<Integer, Double> rates = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            rates.put(successors[i], readRate());
+        }
+        return new Record(state, rates);
+    }
+
+    /**
+     * @return every remaining row
+     */
+    public List<Record> readRecords() {
+        List<Record> records = new ArrayList<>();
+        Record record = readRecord();
+        while (record != null) {
+            records.add(record);
+            record = readRecord();
+        }
+        return records;
+    }
+
+    /**
+     * @return the next rate, adding it to the dictionary if it was written in full
+     */
+    private double readRate() {
+        int code = input.readInt(true);
+        if (code != CompactTransitionProcessor.LITERAL) {
+            return dictionary.get(code - CompactTransitionProcessor.LITERAL - 1);
+        }
+        double rate = input.readDouble();
+        if (dictionary.size() < CompactTransitionProcessor.MAX_DICTIONARY_SIZE) {
+            dictionary.add(rate);
+        }
+        return rate;
+    }
+}
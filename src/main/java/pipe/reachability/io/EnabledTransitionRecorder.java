@@ -0,0 +1,73 @@
+package pipe.reachability.io;
+
+import pipe.reachability.algorithm.CachingExplorerUtilities;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State processor that records the enabled transitions of every state by its id before
+ * passing it on, so that transition metrics can be calculated without checking enabledness
+ * of every state again.
+ * <p>
+ * States are processed just after they have been classified, so their enabled transitions
+ * are taken from the explorer utilities cache. The bits index the transitions of the explored
+ * net, if it was reduced they are mapped back to the original transitions with
+ * {@link CachingExplorerUtilities#getOriginalTransitionIds(int)}.
+ * </p>
+ */
+public final class EnabledTransitionRecorder implements StateProcessor {
+    /**
+     * Processor to pass states and transitions on to
+     */
+    private final StateProcessor stateProcessor;
+
+    /**
+     * Utilities exploring the state space
+     */
+    private final CachingExplorerUtilities explorerUtilities;
+
+    /**
+     * State id to its enabled transitions
+     */
+    private final Map<Integer, BitSet> enabledTransitions = new HashMap<>();
+
+    /**
+     * @param stateProcessor    processor to pass states and transitions on to
+     * @param explorerUtilities utilities exploring the state space
+     */
+    public EnabledTransitionRecorder(StateProcessor stateProcessor, CachingExplorerUtilities explorerUtilities) {
+        this.stateProcessor = stateProcessor;
+        this.explorerUtilities = explorerUtilities;
+    }
+
+    /**
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        stateProcessor.processTransitions(state, successorRates);
+    }
+
+    /**
+     * @param state   explored state
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        enabledTransitions.put(stateId, explorerUtilities.getEnabledTransitionSet(state));
+        stateProcessor.processState(state, stateId);
+    }
+
+    /**
+     * @return state id to its enabled transitions as bits over
+     * {@link CachingExplorerUtilities#getTransitionOrder()}
+     */
+    public Map<Integer, BitSet> getEnabledTransitions() {
+        return enabledTransitions;
+    }
+}
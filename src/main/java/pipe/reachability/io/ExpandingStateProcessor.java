@@ -0,0 +1,51 @@
+package pipe.reachability.io;
+
+import pipe.structural.PInvariants;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Map;
+
+/**
+ * State processor that reconstructs the places dropped from states by
+ * {@link pipe.reachability.algorithm.CompressedExplorerUtilities} before passing them on,
+ * so that written results are the same as those of an uncompressed exploration.
+ */
+public final class ExpandingStateProcessor implements StateProcessor {
+    /**
+     * Processor to write the expanded states to
+     */
+    private final StateProcessor stateProcessor;
+
+    /**
+     * Invariants the states were compressed with
+     */
+    private final PInvariants invariants;
+
+    /**
+     * @param stateProcessor processor to write the expanded states to
+     * @param invariants     invariants the states were compressed with
+     */
+    public ExpandingStateProcessor(StateProcessor stateProcessor, PInvariants invariants) {
+        this.stateProcessor = stateProcessor;
+        this.invariants = invariants;
+    }
+
+    /**
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        stateProcessor.processTransitions(state, successorRates);
+    }
+
+    /**
+     * @param state   compressed state
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        stateProcessor.processState(invariants.expand(state), stateId);
+    }
+}
@@ -0,0 +1,83 @@
+package pipe.reachability.io;
+
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Map;
+
+/**
+ * A newly numbered state or the completed transition row of a state, as published
+ * by a {@link PublishingStateProcessor}
+ */
+public final class ExplorationEvent {
+    /**
+     * Newly numbered state, or null if this is a transition row
+     */
+    private final ClassifiedState state;
+
+    /**
+     * Id of the state
+     */
+    private final int stateId;
+
+    /**
+     * Successor ids to rates, or null if this is a new state
+     */
+    private final Map<Integer, Double> transitions;
+
+    /**
+     * @param state       newly numbered state, or null if this is a transition row
+     * @param stateId     id of the state
+     * @param transitions successor ids to rates, or null if this is a new state
+     */
+    private ExplorationEvent(ClassifiedState state, int stateId, Map<Integer, Double> transitions) {
+        this.state = state;
+        this.stateId = stateId;
+        this.transitions = transitions;
+    }
+
+    /**
+     * @param state   newly numbered state
+     * @param stateId id of the state
+     * @return event for the state
+     */
+    public static ExplorationEvent state(ClassifiedState state, int stateId) {
+        return new ExplorationEvent(state, stateId, null);
+    }
+
+    /**
+     * @param stateId     id of the state
+     * @param transitions successor ids to the rate of transitioning to them
+     * @return event for the state's transition row
+     */
+    public static ExplorationEvent transitions(int stateId, Map<Integer, Double> transitions) {
+        return new ExplorationEvent(null, stateId, transitions);
+    }
+
+    /**
+     * @return true if this is a new state, false if it is a transition row
+     */
+    public boolean isState() {
+        return state != null;
+    }
+
+    /**
+     * @return the new state, or null if this is a transition row
+     */
+    public ClassifiedState getState() {
+        return state;
+    }
+
+    /**
+     * @return id of the state
+     */
+    public int getStateId() {
+        return stateId;
+    }
+
+    /**
+     * @return successor ids to rates, or null if this is a new state
+     */
+    public Map<Integer, Double> getTransitions() {
+        return transitions;
+    }
+}
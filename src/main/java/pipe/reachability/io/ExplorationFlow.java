@@ -0,0 +1,76 @@
+package pipe.reachability.io;
+
+/**
+ * Publisher, subscriber and subscription interfaces with the same methods and rules as
+ * {@code java.util.concurrent.Flow}, which is not available on the Java version this project targets.
+ * <p>
+ * A subscriber is given a subscription in {@link Subscriber#onSubscribe(Subscription)} and receives at most
+ * as many items as it has requested through it, so a slow subscriber holds the publisher back rather than
+ * items being buffered. Calls to a subscriber are never made concurrently.
+ * </p>
+ */
+public final class ExplorationFlow {
+    /**
+     * Utility class
+     */
+    private ExplorationFlow() {
+    }
+
+    /**
+     * Produces items for its subscribers
+     *
+     * @param <T> item type
+     */
+    public interface Publisher<T> {
+        /**
+         * @param subscriber subscriber to send items to
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receives items from a publisher
+     *
+     * @param <T> item type
+     */
+    public interface Subscriber<T> {
+        /**
+         * Called before any other method
+         *
+         * @param subscription subscription used to request items
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * @param item next item, only called once the item has been requested
+         */
+        void onNext(T item);
+
+        /**
+         * Called if the publisher failed, no more methods are called afterwards
+         *
+         * @param throwable cause of the failure
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once every item has been sent, no more methods are called afterwards
+         */
+        void onComplete();
+    }
+
+    /**
+     * Link between a publisher and one of its subscribers
+     */
+    public interface Subscription {
+        /**
+         * @param n number of further items the subscriber is ready for, must be positive
+         */
+        void request(long n);
+
+        /**
+         * Stops sending items to the subscriber
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,126 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Output;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Batch state processor that encodes transitions to a Kryo output a whole batch at a time.
+ * <p>
+ * Each batch is written as a marker byte, its number of rows and entries, then the state ids,
+ * row offsets, successor ids and rates as big endian primitive arrays copied into a single
+ * reused byte array. A batch therefore costs one bulk copy per array rather than a variable
+ * length encode per transition. States are passed on to another processor, e.g. a
+ * {@link uk.ac.imperial.io.StateIOProcessor} writing them to their own output.
+ * </p><p>
+ * The transitions can be read back with a {@link KryoTransitionBatchReader} once {@link #finish()}
+ * has been called.
+ * </p>
+ */
+public final class KryoBatchStateProcessor implements BatchStateProcessor {
+    /**
+     * Marker written before each batch
+     */
+    static final byte BATCH = 1;
+
+    /**
+     * Marker written once all batches have been written
+     */
+    static final byte END = 0;
+
+    /**
+     * Processor to pass states on to
+     */
+    private final StateProcessor stateProcessor;
+
+    /**
+     * Output to write transitions to
+     */
+    private final Output transitionOutput;
+
+    /**
+     * Batch used to write transitions handed over a state at a time
+     */
+    private final TransitionBatch singleRow = new TransitionBatch();
+
+    /**
+     * Encoded batch, reused between batches
+     */
+    private byte[] buffer = new byte[0];
+
+    /**
+     * @param stateProcessor   processor to pass states on to
+     * @param transitionOutput output to write transitions to, this is not closed by the processor
+     */
+    public KryoBatchStateProcessor(StateProcessor stateProcessor, Output transitionOutput) {
+        this.stateProcessor = stateProcessor;
+        this.transitionOutput = transitionOutput;
+    }
+
+    /**
+     * Writes the transitions of a single state as a batch of one row
+     *
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        singleRow.clear();
+        singleRow.startRow(state);
+        for (Map.Entry<Integer, Double> entry : successorRates.entrySet()) {
+            singleRow.add(entry.getKey(), entry.getValue());
+        }
+        processTransitions(singleRow);
+    }
+
+    /**
+     * @param state   explored state
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        stateProcessor.processState(state, stateId);
+    }
+
+    /**
+     * Encodes every row of the batch in one go
+     *
+     * @param batch transitions of many states
+     */
+    @Override
+    public void processTransitions(TransitionBatch batch) {
+        int rows = batch.getRows();
+        int entries = batch.getEntries();
+        if (rows == 0) {
+            return;
+        }
+        int size = (rows + rows + 1 + entries) * (Integer.SIZE / Byte.SIZE) + entries * (Double.SIZE / Byte.SIZE);
+        if (buffer.length < size) {
+            buffer = new byte[size];
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        bytes.asIntBuffer().put(batch.getStateIds(), 0, rows);
+        bytes.position(bytes.position() + rows * (Integer.SIZE / Byte.SIZE));
+        bytes.asIntBuffer().put(batch.getRowOffsets(), 0, rows + 1);
+        bytes.position(bytes.position() + (rows + 1) * (Integer.SIZE / Byte.SIZE));
+        bytes.asIntBuffer().put(batch.getSuccessors(), 0, entries);
+        bytes.position(bytes.position() + entries * (Integer.SIZE / Byte.SIZE));
+        bytes.asDoubleBuffer().put(batch.getRates(), 0, entries);
+
+        transitionOutput.writeByte(BATCH);
+        transitionOutput.writeInt(rows, true);
+        transitionOutput.writeInt(entries, true);
+        transitionOutput.writeBytes(buffer, 0, size);
+    }
+
+    /**
+     * Writes the end of the transitions and flushes the output
+     */
+    public void finish() {
+        transitionOutput.writeByte(END);
+        transitionOutput.flush();
+    }
+}
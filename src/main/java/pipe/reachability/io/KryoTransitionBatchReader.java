@@ -0,0 +1,85 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import uk.ac.imperial.state.Record;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the transitions written by a {@link KryoBatchStateProcessor} back a batch at a time
+ */
+public final class KryoTransitionBatchReader {
+    /**
+     * Input to read batches from
+     */
+    private final Input input;
+
+    /**
+     * Set once the end marker has been read
+     */
+    private boolean finished = false;
+
+    /**
+     * @param input to read the batches from, this is not closed by the reader
+     */
+    public KryoTransitionBatchReader(Input input) {
+        this.input = input;
+    }
+
+    /**
+     * Reads the next batch into the given batch, replacing its rows
+     *
+     * @param batch batch to read into
+     * @return false if every batch has been read
+     */
+    public boolean readBatch(TransitionBatch batch) {
+        batch.clear();
+        if (finished || input.readByte() != KryoBatchStateProcessor.BATCH) {
+            finished = true;
+            return false;
+        }
+        int rows = input.readInt(true);
+        int entries = input.readInt(true);
+        int size = (rows + rows + 1 + entries) * (Integer.SIZE / Byte.SIZE) + entries * (Double.SIZE / Byte.SIZE);
+        ByteBuffer bytes = ByteBuffer.wrap(input.readBytes(size));
+        IntBuffer ints = bytes.asIntBuffer();
+        int[] stateIds = new int[rows];
+        int[] rowOffsets = new int[rows + 1];
+        int[] successors = new int[entries];
+        ints.get(stateIds).get(rowOffsets).get(successors);
+        bytes.position((rows + rows + 1 + entries) * (Integer.SIZE / Byte.SIZE));
+        DoubleBuffer doubles = bytes.asDoubleBuffer();
+        for (int row = 0; row < rows; row++) {
+            batch.startRow(stateIds[row]);
+            for (int entry = rowOffsets[row]; entry < rowOffsets[row + 1]; entry++) {
+                batch.add(successors[entry], doubles.get(entry));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a record for every row of every remaining batch
+     */
+    public Collection<Record> readRecords() {
+        Collection<Record> records = new ArrayList<>();
+        TransitionBatch batch = new TransitionBatch();
+        while (readBatch(batch)) {
+            int[] offsets = batch.getRowOffsets();
+            for (int row = 0; row < batch.getRows(); row++) {
+                Map<Integer, Double> successors = new HashMap<>();
+                for (int entry = offsets[row]; entry < offsets[row + 1]; entry++) {
+                    successors.put(batch.getSuccessors()[entry], batch.getRates()[entry]);
+                }
+                records.add(new Record(batch.getStateIds()[row], successors));
+            }
+        }
+        return records;
+    }
+}
@@ -0,0 +1,221 @@
+package pipe.reachability.io;
+
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * State processor that publishes every state and transition row as it is produced, so that consumers
+ * can work on the state space whilst it is still being explored rather than reading it back afterwards.
+ * <p>
+ * Everything is passed on to another processor first, e.g. one writing to file. Each event is then sent to
+ * every subscriber on the exploring thread once the subscriber has requested it. If a subscriber has not,
+ * exploration waits until it does, so a slow subscriber throttles exploration instead of events being buffered.
+ * Subscribers only receive events produced after they subscribe. Once exploration has finished
+ * {@link #complete()} must be called, or {@link #error(Throwable)} if it failed.
+ * </p>
+ */
+public final class PublishingStateProcessor implements StateProcessor, ExplorationFlow.Publisher<ExplorationEvent> {
+    /**
+     * Processor to pass states and transitions on to
+     */
+    private final StateProcessor stateProcessor;
+
+    /**
+     * Subscriptions that have not been cancelled
+     */
+    private final List<EventSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Set once exploration has finished
+     */
+    private volatile boolean completed = false;
+
+    /**
+     * Cause of the failure if exploration failed, written before {@link #completed} is set
+     */
+    private volatile Throwable failure = null;
+
+    /**
+     * @param stateProcessor processor to pass states and transitions on to
+     */
+    public PublishingStateProcessor(StateProcessor stateProcessor) {
+        this.stateProcessor = stateProcessor;
+    }
+
+    /**
+     * @param subscriber subscriber to send events to, completed straight away if exploration has finished
+     */
+    @Override
+    public void subscribe(ExplorationFlow.Subscriber<? super ExplorationEvent> subscriber) {
+        EventSubscription subscription = new EventSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscriptions.add(subscription);
+        if (subscription.isCancelled()) {
+            subscriptions.remove(subscription);
+        } else if (completed) {
+            terminate(subscription);
+        }
+    }
+
+    /**
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        stateProcessor.processTransitions(state, successorRates);
+        publish(ExplorationEvent.transitions(state, successorRates));
+    }
+
+    /**
+     * @param state   explored state
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        stateProcessor.processState(state, stateId);
+        publish(ExplorationEvent.state(state, stateId));
+    }
+
+    /**
+     * Tells every subscriber that exploration has finished
+     */
+    public void complete() {
+        completed = true;
+        for (EventSubscription subscription : subscriptions) {
+            terminate(subscription);
+        }
+    }
+
+    /**
+     * Tells every subscriber that exploration failed
+     *
+     * @param throwable cause of the failure
+     */
+    public void error(Throwable throwable) {
+        failure = throwable;
+        completed = true;
+        for (EventSubscription subscription : subscriptions) {
+            terminate(subscription);
+        }
+    }
+
+    /**
+     * Removes the subscription and tells its subscriber how exploration ended.
+     * <p>
+     * Both a subscriber that subscribes whilst exploration finishes and the finishing thread may
+     * try to terminate the same subscription, only the one that removes it signals the subscriber.
+     * </p>
+     *
+     * @param subscription subscription to terminate
+     */
+    private void terminate(EventSubscription subscription) {
+        if (!subscriptions.remove(subscription)) {
+            return;
+        }
+        if (failure == null) {
+            subscription.subscriber.onComplete();
+        } else {
+            subscription.subscriber.onError(failure);
+        }
+    }
+
+    /**
+     * Sends the event to every subscriber, waiting for each to request it
+     *
+     * @param event event to send
+     * @throws IllegalStateException if interrupted whilst waiting for a subscriber
+     */
+    private void publish(ExplorationEvent event) {
+        for (EventSubscription subscription : subscriptions) {
+            subscription.deliver(event);
+        }
+    }
+
+    /**
+     * Subscription of a single subscriber, tracking how many events it has requested
+     */
+    private final class EventSubscription implements ExplorationFlow.Subscription {
+        /**
+         * Subscriber to send events to
+         */
+        private final ExplorationFlow.Subscriber<? super ExplorationEvent> subscriber;
+
+        /**
+         * Number of events requested but not yet sent, guarded by this
+         */
+        private long demand = 0;
+
+        /**
+         * Set once the subscription is cancelled, guarded by this
+         */
+        private boolean cancelled = false;
+
+        /**
+         * @param subscriber subscriber to send events to
+         */
+        private EventSubscription(ExplorationFlow.Subscriber<? super ExplorationEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * @param n number of further events the subscriber is ready for, a non positive request
+         *          cancels the subscription and is reported to the subscriber as an error
+         */
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested " + n + " events, must be positive"));
+                return;
+            }
+            synchronized (this) {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                notifyAll();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * @return true if the subscriber cancelled the subscription
+         */
+        private synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Waits until the subscriber has requested an event and then sends it
+         *
+         * @param event event to send
+         */
+        private void deliver(ExplorationEvent event) {
+            synchronized (this) {
+                try {
+                    while (demand == 0 && !cancelled) {
+                        wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted whilst waiting for subscriber demand", e);
+                }
+                if (cancelled) {
+                    return;
+                }
+                demand--;
+            }
+            subscriber.onNext(event);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import pipe.reachability.algorithm.RateTerm;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams the rows written by a {@link pipe.reachability.io.RateStructureWriter}
+ * back one at a time so that the whole structure never has to be held in memory.
+ */
+public final class RateStructureReader {
+    /**
+     * Input to read rows from
+     */
+    private final Input input;
+
+    /**
+     * Set once the end marker has been read
+     */
+    private boolean finished = false;
+
+    /**
+     * @param input to read the rows from, this is not closed by the reader
+     */
+    public RateStructureReader(Input input) {
+        this.input = input;
+    }
+
+    /**
+     * @return the next row or null if every row has been read
+     */
+    public Row readRow() {
+        if (finished || input.readByte() != RateStructureWriter.ROW) {
+            finished = true;
+            return null;
+        }
+        int stateId = input.readInt(true);
+        int edgeCount = input.readInt(true);
+        Map<Integer, List<RateTerm>> edges = new HashMap<>();
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int successor = input.readInt(true);
+            int termCount = input.readInt(true);
+            List<RateTerm> terms = new ArrayList<>(termCount);
+            for (int term = 0; term < termCount; term++) {
+                double factor = input.readDouble();
+                int transitionCount = input.readInt(true);
+                List<String> transitionIds = new ArrayList<>(transitionCount);
+                for (int transition = 0; transition < transitionCount; transition++) {
+                    transitionIds.add(input.readString());
+                }
+                terms.add(new RateTerm(transitionIds, factor));
+            }
+            edges.put(successor, terms);
+        }
+        return new Row(stateId, edges);
+    }
+
+    /**
+     * Rate structure of a single state
+     */
+    public static final class Row {
+        /**
+         * Id of the state
+         */
+        public final int state;
+
+        /**
+         * Successor id to the terms making up the rate to the successor
+         */
+        public final Map<Integer, List<RateTerm>> edges;
+
+        public Row(int state, Map<Integer, List<RateTerm>> edges) {
+            this.state = state;
+            this.edges = edges;
+        }
+    }
+}
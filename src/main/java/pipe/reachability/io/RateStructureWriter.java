@@ -0,0 +1,72 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Output;
+import pipe.reachability.algorithm.RateTerm;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the rate structure of an explored state space to a Kryo output.
+ * <p>
+ * For every explored state a row is written containing each successor id and the
+ * {@link pipe.reachability.algorithm.RateTerm}s that make up the rate to it.
+ * Every row is preceded by a marker byte so that the {@link pipe.reachability.io.RateStructureReader}
+ * can stream the rows back without knowing how many there are.
+ * </p>
+ */
+public final class RateStructureWriter {
+    /**
+     * Marker written before each row
+     */
+    static final byte ROW = 1;
+
+    /**
+     * Marker written once all rows have been written
+     */
+    static final byte END = 0;
+
+    /**
+     * Output to write rows to
+     */
+    private final Output output;
+
+    /**
+     * @param output to write the rows to, this is not closed by the writer
+     */
+    public RateStructureWriter(Output output) {
+        this.output = output;
+    }
+
+    /**
+     * Writes a single row
+     *
+     * @param stateId id of the state
+     * @param edges   successor id to the terms making up the rate to the successor
+     */
+    public void writeRow(int stateId, Map<Integer, List<RateTerm>> edges) {
+        output.writeByte(ROW);
+        output.writeInt(stateId, true);
+        output.writeInt(edges.size(), true);
+        for (Map.Entry<Integer, List<RateTerm>> entry : edges.entrySet()) {
+            output.writeInt(entry.getKey(), true);
+            List<RateTerm> terms = entry.getValue();
+            output.writeInt(terms.size(), true);
+            for (RateTerm term : terms) {
+                output.writeDouble(term.getFactor());
+                output.writeInt(term.getTransitionIds().size(), true);
+                for (String transitionId : term.getTransitionIds()) {
+                    output.writeString(transitionId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the end of the structure and flushes the output
+     */
+    public void finish() {
+        output.writeByte(END);
+        output.flush();
+    }
+}
@@ -0,0 +1,51 @@
+package pipe.reachability.io;
+
+import pipe.structural.NetReduction;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Map;
+
+/**
+ * State processor that restores the places removed by a {@link NetReduction} before passing
+ * states on, so that written results and any metrics calculated from them refer to the original
+ * Petri net's places.
+ */
+public final class RestoringStateProcessor implements StateProcessor {
+    /**
+     * Processor to write the restored states to
+     */
+    private final StateProcessor stateProcessor;
+
+    /**
+     * Reductions applied to the explored Petri net
+     */
+    private final NetReduction netReduction;
+
+    /**
+     * @param stateProcessor processor to write the restored states to
+     * @param netReduction   reductions applied to the explored Petri net
+     */
+    public RestoringStateProcessor(StateProcessor stateProcessor, NetReduction netReduction) {
+        this.stateProcessor = stateProcessor;
+        this.netReduction = netReduction;
+    }
+
+    /**
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        stateProcessor.processTransitions(state, successorRates);
+    }
+
+    /**
+     * @param state   state of the reduced Petri net
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        stateProcessor.processState(netReduction.expand(state), stateId);
+    }
+}
@@ -0,0 +1,86 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.util.Arrays;
+
+/**
+ * Describes the shards written by a {@link ShardedStateProcessor}: how many there are
+ * and how many states and transition rows were written to each.
+ * <p>
+ * Readers use it to check they have been given every shard and that none were truncated.
+ * </p>
+ */
+public final class ShardManifest {
+    /**
+     * Number of states written to each shard
+     */
+    private final int[] states;
+
+    /**
+     * Number of transition rows written to each shard
+     */
+    private final int[] rows;
+
+    /**
+     * @param states number of states written to each shard
+     * @param rows   number of transition rows written to each shard
+     */
+    public ShardManifest(int[] states, int[] rows) {
+        this.states = Arrays.copyOf(states, states.length);
+        this.rows = Arrays.copyOf(rows, rows.length);
+    }
+
+    /**
+     * @param input to read the manifest from, this is not closed
+     * @return manifest written by {@link #write(Output)}
+     */
+    public static ShardManifest read(Input input) {
+        int shards = input.readInt(true);
+        int[] states = new int[shards];
+        int[] rows = new int[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            states[shard] = input.readInt(true);
+            rows[shard] = input.readInt(true);
+        }
+        return new ShardManifest(states, rows);
+    }
+
+    /**
+     * Writes the manifest and flushes the output
+     *
+     * @param output to write the manifest to, this is not closed
+     */
+    public void write(Output output) {
+        output.writeInt(states.length, true);
+        for (int shard = 0; shard < states.length; shard++) {
+            output.writeInt(states[shard], true);
+            output.writeInt(rows[shard], true);
+        }
+        output.flush();
+    }
+
+    /**
+     * @return number of shards
+     */
+    public int getShards() {
+        return states.length;
+    }
+
+    /**
+     * @param shard shard index
+     * @return number of states written to the shard
+     */
+    public int getStates(int shard) {
+        return states[shard];
+    }
+
+    /**
+     * @param shard shard index
+     * @return number of transition rows written to the shard
+     */
+    public int getRows(int shard) {
+        return rows[shard];
+    }
+}
@@ -0,0 +1,256 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Output;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Batch state processor that splits states and transitions between several shards,
+ * each with its own outputs, and writes the shards in parallel.
+ * <p>
+ * A state and its transitions belong to the shard {@code stateId % shards}. States and rows are
+ * buffered per shard and every time a batch is handed over each shard writes its share on its
+ * own thread, so with each shard on its own output output throughput scales with the number of
+ * shards rather than being serialised through a single Kryo output.
+ * </p><p>
+ * Once exploration has finished {@link #finish(Output)} must be called to write the remaining
+ * buffered records, the end of every shard and a {@link ShardManifest}. The shards can be read back
+ * as one with a {@link ShardedStateReader}.
+ * </p><p>
+ * The shards are written by daemon threads which {@link #finish(Output)} stops. If exploration fails
+ * before it is called, callers must call {@link #close()} so the threads do not linger until exit,
+ * e.g. by using the processor in a try-with-resources block. Closing after finishing does nothing.
+ * </p>
+ */
+public final class ShardedStateProcessor implements BatchStateProcessor, AutoCloseable {
+    /**
+     * Number of buffered transitions or states at which the shards are written
+     * even if no batch has been handed over
+     */
+    static final int MAX_BUFFERED = 1 << 16;
+
+    /**
+     * Processor writing each shard
+     */
+    private final List<KryoBatchStateProcessor> shards;
+
+    /**
+     * Transitions of each shard waiting to be written
+     */
+    private final List<TransitionBatch> batches = new ArrayList<>();
+
+    /**
+     * States of each shard waiting to be written
+     */
+    private final List<List<ClassifiedState>> pendingStates = new ArrayList<>();
+
+    /**
+     * Ids of the states of each shard waiting to be written
+     */
+    private final List<List<Integer>> pendingIds = new ArrayList<>();
+
+    /**
+     * Number of states written to each shard
+     */
+    private final int[] stateCounts;
+
+    /**
+     * Number of transition rows written to each shard
+     */
+    private final int[] rowCounts;
+
+    /**
+     * Threads writing the shards
+     */
+    private final ExecutorService executorService;
+
+    /**
+     * Number of states and transitions buffered over all shards
+     */
+    private int buffered = 0;
+
+    /**
+     * @param shards processor writing each shard, each should write to its own outputs.
+     *               They are only used by one thread at a time.
+     */
+    public ShardedStateProcessor(List<KryoBatchStateProcessor> shards) {
+        this.shards = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            batches.add(new TransitionBatch());
+            pendingStates.add(new ArrayList<ClassifiedState>());
+            pendingIds.add(new ArrayList<Integer>());
+        }
+        stateCounts = new int[shards.size()];
+        rowCounts = new int[shards.size()];
+        executorService = Executors.newFixedThreadPool(shards.size(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "shard-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Buffers the state in its shard
+     *
+     * @param state   explored state
+     * @param stateId id of the state
+     */
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        int shard = stateId % shards.size();
+        pendingStates.get(shard).add(state);
+        pendingIds.get(shard).add(stateId);
+        buffered++;
+        if (buffered >= MAX_BUFFERED) {
+            writeShards();
+        }
+    }
+
+    /**
+     * Buffers the transitions of a single state in its shard
+     *
+     * @param state          id of the state
+     * @param successorRates successor ids to the rate of transitioning to them
+     */
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        TransitionBatch batch = batches.get(state % shards.size());
+        batch.startRow(state);
+        for (Map.Entry<Integer, Double> entry : successorRates.entrySet()) {
+            batch.add(entry.getKey(), entry.getValue());
+        }
+        buffered += successorRates.size() + 1;
+        if (buffered >= MAX_BUFFERED) {
+            writeShards();
+        }
+    }
+
+    /**
+     * Splits the rows of the batch between the shards and writes every shard in parallel
+     *
+     * @param batch transitions of many states
+     */
+    @Override
+    public void processTransitions(TransitionBatch batch) {
+        int[] stateIds = batch.getStateIds();
+        int[] offsets = batch.getRowOffsets();
+        int[] successors = batch.getSuccessors();
+        double[] rates = batch.getRates();
+        for (int row = 0; row < batch.getRows(); row++) {
+            TransitionBatch shardBatch = batches.get(stateIds[row] % shards.size());
+            shardBatch.startRow(stateIds[row]);
+            for (int entry = offsets[row]; entry < offsets[row + 1]; entry++) {
+                shardBatch.add(successors[entry], rates[entry]);
+            }
+        }
+        writeShards();
+    }
+
+    /**
+     * Writes any buffered records, ends every shard and writes the manifest describing them.
+     * The shards' outputs are flushed but not closed.
+     *
+     * @param manifestOutput output to write the manifest to, this is not closed
+     */
+    public void finish(Output manifestOutput) {
+        try {
+            writeShards();
+            for (KryoBatchStateProcessor shard : shards) {
+                shard.finish();
+            }
+            new ShardManifest(stateCounts, rowCounts).write(manifestOutput);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops the threads writing the shards without writing anything buffered, for use when
+     * exploration fails before {@link #finish(Output)} is called
+     */
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Writes the buffered states and then transitions of every shard on its own thread
+     * and waits for them all to finish
+     */
+    private void writeShards() {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (!pendingIds.get(shard).isEmpty() || batches.get(shard).getRows() > 0) {
+                futures.add(executorService.submit(new ShardWriter(shard)));
+            }
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted whilst writing shards", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("Failed to write shard", e.getCause());
+        }
+        buffered = 0;
+    }
+
+    /**
+     * Writes the buffered records of a single shard
+     */
+    private final class ShardWriter implements Callable<Void> {
+        /**
+         * Index of the shard
+         */
+        private final int shard;
+
+        /**
+         * @param shard index of the shard
+         */
+        private ShardWriter(int shard) {
+            this.shard = shard;
+        }
+
+        /**
+         * States are written before transitions so that a state is always in
+         * its shard before any transitions out of it
+         *
+         * @return null
+         */
+        @Override
+        public Void call() {
+            KryoBatchStateProcessor processor = shards.get(shard);
+            List<ClassifiedState> states = pendingStates.get(shard);
+            List<Integer> ids = pendingIds.get(shard);
+            for (int i = 0; i < states.size(); i++) {
+                processor.processState(states.get(i), ids.get(i));
+            }
+            stateCounts[shard] += states.size();
+            states.clear();
+            ids.clear();
+
+            TransitionBatch batch = batches.get(shard);
+            processor.processTransitions(batch);
+            rowCounts[shard] += batch.getRows();
+            batch.clear();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import uk.ac.imperial.io.MultiStateReader;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.Record;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the shards written by a {@link ShardedStateProcessor} back as a single state space.
+ * <p>
+ * It is a {@link uk.ac.imperial.io.MultiStateReader} whose input is the shards' manifest, so it can be
+ * given to anything that reads a whole state space. Every shard is read on its own thread and the results
+ * are merged, with records ordered by state id. The manifest is checked against the shards so a missing or
+ * truncated shard is reported rather than silently giving a partial state space.
+ * </p><p>
+ * Each shard can only be read once, so records and states can each be read once.
+ * </p>
+ */
+public final class ShardedStateReader implements MultiStateReader {
+    /**
+     * Reader used to read the states of a single shard
+     */
+    private final MultiStateReader stateReader;
+
+    /**
+     * Input of each shard's states
+     */
+    private final List<Input> stateShards;
+
+    /**
+     * Input of each shard's transitions
+     */
+    private final List<Input> transitionShards;
+
+    /**
+     * @param stateReader      reader used to read the states of a single shard, e.g. an
+     *                         {@link uk.ac.imperial.io.EntireStateReader}
+     * @param stateShards      input of each shard's states in shard order
+     * @param transitionShards input of each shard's transitions in shard order
+     */
+    public ShardedStateReader(MultiStateReader stateReader, List<Input> stateShards, List<Input> transitionShards) {
+        this.stateReader = stateReader;
+        this.stateShards = new ArrayList<>(stateShards);
+        this.transitionShards = new ArrayList<>(transitionShards);
+    }
+
+    /**
+     * Reads the transitions of every shard in parallel
+     *
+     * @param input manifest of the shards
+     * @return records of every shard ordered by state id
+     * @throws IOException if the shards do not match the manifest
+     */
+    @Override
+    public Collection<Record> readRecords(Input input) throws IOException {
+        ShardManifest manifest = readManifest(input, transitionShards.size());
+        List<Callable<Collection<Record>>> readers = new ArrayList<>();
+        for (final Input shard : transitionShards) {
+            readers.add(new Callable<Collection<Record>>() {
+                @Override
+                public Collection<Record> call() {
+                    return new KryoTransitionBatchReader(shard).readRecords();
+                }
+            });
+        }
+        List<Collection<Record>> shards = readShards(readers);
+        List<Record> records = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Collection<Record> shardRecords = shards.get(shard);
+            if (shardRecords.size() != manifest.getRows(shard)) {
+                throw new IOException("Transition shard " + shard + " has " + shardRecords.size()
+                        + " rows but the manifest expects " + manifest.getRows(shard));
+            }
+            records.addAll(shardRecords);
+        }
+        Collections.sort(records, new RecordComparator());
+        return records;
+    }
+
+    /**
+     * Reads the states of every shard in parallel
+     *
+     * @param input manifest of the shards
+     * @return state id to state over every shard
+     * @throws IOException if the shards do not match the manifest or could not be read
+     */
+    @Override
+    public Map<Integer, ClassifiedState> readStates(Input input) throws IOException {
+        ShardManifest manifest = readManifest(input, stateShards.size());
+        List<Callable<Map<Integer, ClassifiedState>>> readers = new ArrayList<>();
+        for (final Input shard : stateShards) {
+            readers.add(new Callable<Map<Integer, ClassifiedState>>() {
+                @Override
+                public Map<Integer, ClassifiedState> call() throws IOException {
+                    return stateReader.readStates(shard);
+                }
+            });
+        }
+        List<Map<Integer, ClassifiedState>> shards = readShards(readers);
+        Map<Integer, ClassifiedState> states = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Map<Integer, ClassifiedState> shardStates = shards.get(shard);
+            if (shardStates.size() != manifest.getStates(shard)) {
+                throw new IOException("State shard " + shard + " has " + shardStates.size()
+                        + " states but the manifest expects " + manifest.getStates(shard));
+            }
+            states.putAll(shardStates);
+        }
+        return states;
+    }
+
+    /**
+     * @param input  manifest of the shards
+     * @param shards number of shards this reader was given
+     * @return manifest
+     * @throws IOException if the manifest describes a different number of shards
+     */
+    private static ShardManifest readManifest(Input input, int shards) throws IOException {
+        ShardManifest manifest = ShardManifest.read(input);
+        if (manifest.getShards() != shards) {
+            throw new IOException("Manifest describes " + manifest.getShards() + " shards but " + shards
+                    + " were given");
+        }
+        return manifest;
+    }
+
+    /**
+     * Runs a reader per shard on its own thread
+     *
+     * @param readers reader of each shard
+     * @param <T>     result of reading a shard
+     * @return result of each shard in shard order
+     * @throws IOException if a shard could not be read
+     */
+    private static <T> List<T> readShards(List<Callable<T>> readers) throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, readers.size()));
+        try {
+            List<T> results = new ArrayList<>(readers.size());
+            for (Future<T> future : executorService.invokeAll(readers)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst reading shards", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read shard", e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Orders records by state id
+     */
+    private static final class RecordComparator implements Comparator<Record> {
+        @Override
+        public int compare(Record record, Record other) {
+            return Integer.compare(record.state, other.state);
+        }
+    }
+}
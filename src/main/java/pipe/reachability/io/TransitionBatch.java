@@ -0,0 +1,133 @@
+package pipe.reachability.io;
+
+import java.util.Arrays;
+
+/**
+ * Transitions of many states held as parallel primitive arrays in compressed row form.
+ * <p>
+ * Row r is the state {@code getStateIds()[r]} and its successors are the entries
+ * {@code getRowOffsets()[r]} up to but not including {@code getRowOffsets()[r + 1]} of
+ * {@link #getSuccessors()} and {@link #getRates()}. The arrays grow as rows are added and
+ * are kept when the batch is cleared, so a batch reused for every round does not allocate
+ * once it has grown to the size of a round.
+ * </p>
+ */
+public final class TransitionBatch {
+    /**
+     * Initial capacity of the row and entry arrays
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Id of each row's state
+     */
+    private int[] stateIds = new int[INITIAL_CAPACITY];
+
+    /**
+     * First entry of each row, followed by the number of entries
+     */
+    private int[] rowOffsets = new int[INITIAL_CAPACITY + 1];
+
+    /**
+     * Successor id of each entry
+     */
+    private int[] successors = new int[INITIAL_CAPACITY];
+
+    /**
+     * Rate of each entry
+     */
+    private double[] rates = new double[INITIAL_CAPACITY];
+
+    /**
+     * Number of rows
+     */
+    private int rows = 0;
+
+    /**
+     * Number of entries over all rows
+     */
+    private int entries = 0;
+
+    /**
+     * Starts a new row, subsequent entries belong to it
+     *
+     * @param stateId id of the row's state
+     */
+    public void startRow(int stateId) {
+        if (rows == stateIds.length) {
+            stateIds = Arrays.copyOf(stateIds, rows * 2);
+            rowOffsets = Arrays.copyOf(rowOffsets, rows * 2 + 1);
+        }
+        stateIds[rows] = stateId;
+        rows++;
+        rowOffsets[rows] = entries;
+    }
+
+    /**
+     * Adds a successor to the last started row
+     *
+     * @param successor id of the successor
+     * @param rate      rate of transitioning to the successor
+     */
+    public void add(int successor, double rate) {
+        if (entries == successors.length) {
+            successors = Arrays.copyOf(successors, entries * 2);
+            rates = Arrays.copyOf(rates, entries * 2);
+        }
+        successors[entries] = successor;
+        rates[entries] = rate;
+        entries++;
+        rowOffsets[rows] = entries;
+    }
+
+    /**
+     * Removes every row, keeping the arrays for reuse
+     */
+    public void clear() {
+        rows = 0;
+        entries = 0;
+    }
+
+    /**
+     * @return number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return number of entries over all rows
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * @return id of each row's state, only the first {@link #getRows()} are valid
+     */
+    public int[] getStateIds() {
+        return stateIds;
+    }
+
+    /**
+     * @return first entry of each row followed by the number of entries,
+     * only the first {@link #getRows()} + 1 are valid
+     */
+    public int[] getRowOffsets() {
+        return rowOffsets;
+    }
+
+    /**
+     * @return successor id of each entry, only the first {@link #getEntries()} are valid
+     */
+    public int[] getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * @return rate of each entry, only the first {@link #getEntries()} are valid
+     */
+    public double[] getRates() {
+        return rates;
+    }
+}
@@ -0,0 +1,68 @@
+package pipe.reachability.query;
+
+import pipe.reachability.algorithm.ExplorerUtilities;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Breadth first reachability checker that records the parent of every state it sees
+ * so the path to a witness can be rebuilt once it has been found.
+ */
+public abstract class AbstractReachabilityChecker implements ReachabilityChecker {
+    /**
+     * Performs useful state calculations
+     */
+    protected final ExplorerUtilities explorerUtilities;
+
+    /**
+     * State to the state it was first reached from, the initial state maps to null
+     */
+    protected final Map<ClassifiedState, ClassifiedState> parents = new HashMap<>();
+
+    /**
+     * @param explorerUtilities utilities used to find successors, these decide how many states may be searched
+     */
+    public AbstractReachabilityChecker(ExplorerUtilities explorerUtilities) {
+        this.explorerUtilities = explorerUtilities;
+    }
+
+    /**
+     * @param witness        state that matched the predicate, must have been registered in parents
+     * @param exploredStates number of states whose successors were explored
+     * @return result with the trace and transition path from the initial state to the witness
+     */
+    protected final QueryResult found(ClassifiedState witness, int exploredStates) {
+        LinkedList<ClassifiedState> trace = new LinkedList<>();
+        for (ClassifiedState state = witness; state != null; state = parents.get(state)) {
+            trace.addFirst(state);
+        }
+        List<Transition> path = new ArrayList<>();
+        ClassifiedState previous = null;
+        for (ClassifiedState state : trace) {
+            if (previous != null) {
+                path.add(explorerUtilities.getTransitions(previous, state).iterator().next());
+            }
+            previous = state;
+        }
+        parents.clear();
+        return new QueryResult(witness, new ArrayList<>(trace), path, exploredStates, false);
+    }
+
+    /**
+     * @param exploredStates number of states whose successors were explored
+     * @param exhaustive     true if every reachable state was searched
+     * @return result without a witness
+     */
+    protected final QueryResult notFound(int exploredStates, boolean exhaustive) {
+        parents.clear();
+        return new QueryResult(null, Collections.<ClassifiedState>emptyList(), Collections.<Transition>emptyList(),
+                exploredStates, exhaustive);
+    }
+}
@@ -0,0 +1,185 @@
+package pipe.reachability.query;
+
+import pipe.reachability.algorithm.ExplorerUtilities;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Level synchronous breadth first reachability checker.
+ * <p>
+ * Each level of the search is split between the threads, which find the successors of their
+ * states and evaluate the predicate on them. As soon as any thread finds a match every thread
+ * stops. Once every thread has finished the level the results are merged in level order to register
+ * parents and pick the witness, so the parents map is never written whilst a thread reads it.
+ * A thread that stopped early may have skipped a successor that another thread matched, so the
+ * first match in level order is the witness even if that successor was already registered.
+ * </p>
+ */
+public final class ParallelReachabilityChecker extends AbstractReachabilityChecker {
+    /**
+     * Number of threads to search with
+     */
+    private final int threads;
+
+    /**
+     * @param explorerUtilities utilities used to find successors, must be safe to use from several threads
+     * @param threads           number of threads to search with
+     */
+    public ParallelReachabilityChecker(ExplorerUtilities explorerUtilities, int threads) {
+        super(explorerUtilities);
+        this.threads = threads;
+    }
+
+    /**
+     * @param initialState state to start the search from
+     * @param predicate    property to search for
+     * @return result containing the witness and path to it if one was found
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   task aborted due to exception
+     */
+    @Override
+    public QueryResult check(ClassifiedState initialState, StatePredicate predicate)
+            throws InterruptedException, ExecutionException {
+        parents.put(initialState, null);
+        if (predicate.matches(initialState)) {
+            return found(initialState, 0);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        try {
+            AtomicBoolean matched = new AtomicBoolean(false);
+            List<ClassifiedState> level = new ArrayList<>();
+            level.add(initialState);
+            int exploredStates = 0;
+            while (!level.isEmpty()) {
+                if (!explorerUtilities.canExploreMore(parents.size())) {
+                    return notFound(exploredStates, false);
+                }
+                List<Future<List<Expansion>>> futures = new ArrayList<>();
+                int chunk = (level.size() + threads - 1) / threads;
+                for (int start = 0; start < level.size(); start += chunk) {
+                    List<ClassifiedState> states = level.subList(start, Math.min(level.size(), start + chunk));
+                    futures.add(executorService.submit(new Expander(states, predicate, matched)));
+                }
+
+                List<List<Expansion>> results = new ArrayList<>();
+                for (Future<List<Expansion>> future : futures) {
+                    results.add(future.get());
+                }
+
+                List<ClassifiedState> nextLevel = new ArrayList<>();
+                for (List<Expansion> expansions : results) {
+                    for (Expansion expansion : expansions) {
+                        exploredStates++;
+                        for (int i = 0; i < expansion.successors.size(); i++) {
+                            ClassifiedState successor = expansion.successors.get(i);
+                            if (!parents.containsKey(successor)) {
+                                parents.put(successor, expansion.state);
+                                nextLevel.add(successor);
+                            }
+                            if (expansion.matches[i]) {
+                                return found(successor, exploredStates);
+                            }
+                        }
+                    }
+                }
+                if (matched.get()) {
+                    throw new IllegalStateException("A match was found but not merged");
+                }
+                explorerUtilities.clear();
+                level = nextLevel;
+            }
+            return notFound(exploredStates, true);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Successors of a state and whether each matches the predicate
+     */
+    private static final class Expansion {
+        /**
+         * Expanded state
+         */
+        private final ClassifiedState state;
+
+        /**
+         * Successors of the state
+         */
+        private final List<ClassifiedState> successors;
+
+        /**
+         * True if the successor at the same index matches the predicate
+         */
+        private final boolean[] matches;
+
+        private Expansion(ClassifiedState state, List<ClassifiedState> successors, boolean[] matches) {
+            this.state = state;
+            this.successors = successors;
+            this.matches = matches;
+        }
+    }
+
+    /**
+     * Expands a chunk of a level, stopping early once any thread has found a match
+     */
+    private final class Expander implements Callable<List<Expansion>> {
+        /**
+         * States to expand
+         */
+        private final List<ClassifiedState> states;
+
+        /**
+         * Property being searched for
+         */
+        private final StatePredicate predicate;
+
+        /**
+         * Set once any thread finds a successor matching the predicate
+         */
+        private final AtomicBoolean matched;
+
+        private Expander(List<ClassifiedState> states, StatePredicate predicate, AtomicBoolean matched) {
+            this.states = states;
+            this.predicate = predicate;
+            this.matched = matched;
+        }
+
+        /**
+         * Only reads the parents map, which is not written to until every expander of the level has finished.
+         * Stops before the next state once any expander has found a match or the pool is shut down.
+         *
+         * @return expansions of the states in order
+         */
+        @Override
+        public List<Expansion> call() {
+            List<Expansion> expansions = new ArrayList<>();
+            for (ClassifiedState state : states) {
+                if (matched.get() || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                Collection<ClassifiedState> stateSuccessors = explorerUtilities.getSuccessors(state);
+                List<ClassifiedState> successors = new ArrayList<>(stateSuccessors);
+                boolean[] matches = new boolean[successors.size()];
+                for (int i = 0; i < matches.length && !matched.get(); i++) {
+                    ClassifiedState successor = successors.get(i);
+                    if (!parents.containsKey(successor) && predicate.matches(successor)) {
+                        matches[i] = true;
+                        matched.set(true);
+                    }
+                }
+                expansions.add(new Expansion(state, successors, matches));
+            }
+            return expansions;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package pipe.reachability.query;
+
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.List;
+
+/**
+ * Result of a reachability query
+ */
+public final class QueryResult {
+    /**
+     * First state found that matches the predicate, or null if none was found
+     */
+    public final ClassifiedState witness;
+
+    /**
+     * States from the initial state to the witness inclusive, empty if there is no witness
+     */
+    public final List<ClassifiedState> trace;
+
+    /**
+     * Transition fired between each consecutive pair of states in the trace
+     */
+    public final List<Transition> path;
+
+    /**
+     * Number of states whose successors were explored
+     */
+    public final int exploredStates;
+
+    /**
+     * True if every reachable state was searched, so a null witness means no
+     * matching state is reachable. False if a witness was found or the explorer
+     * utilities stopped the search early.
+     */
+    public final boolean exhaustive;
+
+    public QueryResult(ClassifiedState witness, List<ClassifiedState> trace, List<Transition> path,
+                       int exploredStates, boolean exhaustive) {
+        this.witness = witness;
+        this.trace = trace;
+        this.path = path;
+        this.exploredStates = exploredStates;
+        this.exhaustive = exhaustive;
+    }
+
+    /**
+     * @return true if a state matching the predicate was found
+     */
+    public boolean isReachable() {
+        return witness != null;
+    }
+}
@@ -0,0 +1,26 @@
+package pipe.reachability.query;
+
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Searches the reachability graph of a Petri net for a state matching a predicate,
+ * stopping as soon as one is found.
+ * <p>
+ * Unlike a {@link pipe.reachability.algorithm.StateSpaceExplorer} nothing is written out and
+ * vanishing states are searched like any other state, since a property may only hold
+ * in a vanishing marking.
+ * </p>
+ */
+public interface ReachabilityChecker {
+    /**
+     * @param initialState state to start the search from
+     * @param predicate    property to search for
+     * @return result containing the witness and path to it if one was found
+     * @throws InterruptedException thread interrupted
+     * @throws ExecutionException   task aborted due to exception
+     */
+    QueryResult check(ClassifiedState initialState, StatePredicate predicate)
+            throws InterruptedException, ExecutionException;
+}
@@ -0,0 +1,57 @@
+package pipe.reachability.query;
+
+import pipe.reachability.algorithm.ExplorerUtilities;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Single threaded breadth first reachability checker, so the witness it finds
+ * is one of the closest matching states to the initial state.
+ */
+public final class SequentialReachabilityChecker extends AbstractReachabilityChecker {
+
+    /**
+     * @param explorerUtilities utilities used to find successors, these decide how many states may be searched
+     */
+    public SequentialReachabilityChecker(ExplorerUtilities explorerUtilities) {
+        super(explorerUtilities);
+    }
+
+    /**
+     * Searches breadth first, evaluating the predicate on each state as soon as it is first seen
+     *
+     * @param initialState state to start the search from
+     * @param predicate    property to search for
+     * @return result containing the witness and path to it if one was found
+     */
+    @Override
+    public QueryResult check(ClassifiedState initialState, StatePredicate predicate) {
+        parents.put(initialState, null);
+        if (predicate.matches(initialState)) {
+            return found(initialState, 0);
+        }
+        Deque<ClassifiedState> queue = new ArrayDeque<>();
+        queue.add(initialState);
+        int exploredStates = 0;
+        while (!queue.isEmpty()) {
+            if (!explorerUtilities.canExploreMore(parents.size())) {
+                return notFound(exploredStates, false);
+            }
+            ClassifiedState state = queue.poll();
+            exploredStates++;
+            for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+                if (!parents.containsKey(successor)) {
+                    parents.put(successor, state);
+                    if (predicate.matches(successor)) {
+                        return found(successor, exploredStates);
+                    }
+                    queue.add(successor);
+                }
+            }
+            explorerUtilities.clear();
+        }
+        return notFound(exploredStates, true);
+    }
+}
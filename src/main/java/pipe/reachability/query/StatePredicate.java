@@ -0,0 +1,14 @@
+package pipe.reachability.query;
+
+import uk.ac.imperial.state.ClassifiedState;
+
+/**
+ * Property of a single state that a reachability query searches for
+ */
+public interface StatePredicate {
+    /**
+     * @param state state to evaluate
+     * @return true if the state has the property
+     */
+    boolean matches(ClassifiedState state);
+}
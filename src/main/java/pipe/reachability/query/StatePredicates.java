@@ -0,0 +1,145 @@
+package pipe.reachability.query;
+
+import pipe.reachability.algorithm.ExplorerUtilities;
+import uk.ac.imperial.state.ClassifiedState;
+
+/**
+ * Factory methods for common state predicates over token counts
+ */
+public final class StatePredicates {
+    /**
+     * Token used by single token Petri nets
+     */
+    public static final String DEFAULT_TOKEN = "Default";
+
+    /**
+     * Private constructor for utility class
+     */
+    private StatePredicates() {
+    }
+
+    /**
+     * @param placeId place id
+     * @param tokenId token id
+     * @param count   minimum number of tokens
+     * @return predicate matching states where the place holds at least count tokens
+     */
+    public static StatePredicate atLeast(final String placeId, final String tokenId, final int count) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                return tokens(state, placeId, tokenId) >= count;
+            }
+        };
+    }
+
+    /**
+     * @param placeId place id
+     * @param tokenId token id
+     * @param count   maximum number of tokens
+     * @return predicate matching states where the place holds at most count tokens
+     */
+    public static StatePredicate atMost(final String placeId, final String tokenId, final int count) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                return tokens(state, placeId, tokenId) <= count;
+            }
+        };
+    }
+
+    /**
+     * @param placeId place id
+     * @param tokenId token id
+     * @param count   number of tokens
+     * @return predicate matching states where the place holds exactly count tokens
+     */
+    public static StatePredicate exactly(final String placeId, final String tokenId, final int count) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                return tokens(state, placeId, tokenId) == count;
+            }
+        };
+    }
+
+    /**
+     * A deadlock is a state with no successors other than itself
+     *
+     * @param explorerUtilities utilities used to find the successors of states
+     * @return predicate matching deadlocked states
+     */
+    public static StatePredicate deadlock(final ExplorerUtilities explorerUtilities) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                for (ClassifiedState successor : explorerUtilities.getSuccessors(state)) {
+                    if (!successor.equals(state)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param predicates predicates to combine
+     * @return predicate matching states matched by every predicate
+     */
+    public static StatePredicate and(final StatePredicate... predicates) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                for (StatePredicate predicate : predicates) {
+                    if (!predicate.matches(state)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @param predicates predicates to combine
+     * @return predicate matching states matched by any predicate
+     */
+    public static StatePredicate or(final StatePredicate... predicates) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                for (StatePredicate predicate : predicates) {
+                    if (predicate.matches(state)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param predicate predicate to negate
+     * @return predicate matching states not matched by the predicate
+     */
+    public static StatePredicate not(final StatePredicate predicate) {
+        return new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                return !predicate.matches(state);
+            }
+        };
+    }
+
+    /**
+     * @param state   state
+     * @param placeId place id
+     * @param tokenId token id
+     * @return number of tokens in the place, zero if the state does not contain the place or token
+     */
+    private static int tokens(ClassifiedState state, String placeId, String tokenId) {
+        Integer count = state.getTokens(placeId).get(tokenId);
+        return count == null ? 0 : count;
+    }
+}
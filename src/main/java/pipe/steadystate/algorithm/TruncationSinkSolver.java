@@ -0,0 +1,174 @@
+package pipe.steadystate.algorithm;
+
+import uk.ac.imperial.state.Record;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Solves the steady state of a truncated state space and estimates the error the truncation introduces.
+ * <p>
+ * Transitions into states whose successors were never explored, or that have no record, are redirected to a
+ * single synthetic sink state and the unexplored states are dropped, so every remaining state has all of its
+ * outgoing rate modelled. The solvers expect contiguous ids so the remaining states are renumbered whilst solving,
+ * the returned steady state uses the original ids.
+ * To keep the chain ergodic the sink returns to a restart state, usually the initial state, at a restart rate
+ * given by the caller. The restart rate is the assumed rate at which the chain comes back from the unexplored
+ * states, i.e. one over the mean time it is assumed to spend outside of the explored states on each visit.
+ * </p><p>
+ * Two values are reported. The escape rate is the long run rate at which the chain leaves the explored states,
+ * weighting each explored state by its probability given the chain is in the explored states. It does not depend
+ * on the restart rate, since the time spent in the sink does not change how the explored states are visited
+ * between leaving and restarting. The error estimate is the steady state probability of the sink, which equals
+ * escapeRate / (escapeRate + restartRate), so it scales with the assumed time outside and is an estimate rather
+ * than a bound. The probabilities of the explored states are left un-normalised so they sum to one minus the
+ * estimate, and a metric whose value per state lies in [0, max] misses about estimate * max from the unexplored
+ * states. {@link pipe.steadystate.metrics.TokenMetrics} and {@link pipe.steadystate.metrics.TransitionMetrics}
+ * report both values alongside metrics calculated from a {@link TruncatedSteadyState}.
+ * </p>
+ */
+public final class TruncationSinkSolver {
+    /**
+     * Solver used to solve the state space with the sink
+     */
+    private final SteadyStateSolver solver;
+
+    /**
+     * @param solver solver used to solve the state space with the sink
+     */
+    public TruncationSinkSolver(SteadyStateSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * @param records      records of the explored states
+     * @param unexplored   ids of the states whose successors were never explored, e.g.
+     *                     {@link pipe.reachability.algorithm.StateSpaceExplorer.StateSpaceExplorerResults#unexploredStateIds}
+     * @param restartState id of the explored state the sink returns to, must have a record
+     * @param restartRate  rate at which the sink returns to the restart state, one over the mean time the chain is
+     *                     assumed to spend outside of the explored states on each visit
+     * @return steady state of the explored states, the escape rate and the probability of the sink
+     * @throws IllegalArgumentException if the restart state has no record or was not explored, or the restart
+     *                                  rate is not positive
+     */
+    public TruncatedSteadyState solve(List<Record> records, BitSet unexplored, int restartState,
+                                      double restartRate) {
+        if (restartRate <= 0) {
+            throw new IllegalArgumentException("Restart rate " + restartRate + " must be positive");
+        }
+        Map<Integer, Integer> index = new HashMap<>();
+        List<Integer> ids = new ArrayList<>();
+        for (Record record : records) {
+            if (!unexplored.get(record.state) && !index.containsKey(record.state)) {
+                index.put(record.state, ids.size());
+                ids.add(record.state);
+            }
+        }
+        if (!index.containsKey(restartState)) {
+            throw new IllegalArgumentException("Restart state " + restartState + " has no record or was not explored");
+        }
+        int sink = ids.size();
+
+        List<Record> sinkRecords = new ArrayList<>(records.size() + 1);
+        double sinkRate = 0;
+        double[] sinkRates = new double[ids.size()];
+        for (Record record : records) {
+            if (unexplored.get(record.state)) {
+                continue;
+            }
+            Map<Integer, Double> successors = new HashMap<>();
+            double toSink = 0;
+            for (Map.Entry<Integer, Double> entry : record.successors.entrySet()) {
+                Integer successor = index.get(entry.getKey());
+                if (successor == null) {
+                    toSink += entry.getValue();
+                } else {
+                    successors.put(successor, entry.getValue());
+                }
+            }
+            if (toSink > 0) {
+                successors.put(sink, toSink);
+                sinkRate += toSink;
+                sinkRates[index.get(record.state)] += toSink;
+            }
+            sinkRecords.add(new Record(index.get(record.state), successors));
+        }
+
+        if (sinkRate == 0) {
+            return new TruncatedSteadyState(solver.solve(records), 0, 0);
+        }
+        Map<Integer, Double> restart = new HashMap<>();
+        restart.put(index.get(restartState), restartRate);
+        sinkRecords.add(new Record(sink, restart));
+        Map<Integer, Double> solved = solver.solve(sinkRecords);
+        Map<Integer, Double> steadyState = new HashMap<>();
+        double exploredProbability = 0;
+        double escapeFlow = 0;
+        for (int i = 0; i < ids.size(); i++) {
+            double probability = solved.get(i);
+            steadyState.put(ids.get(i), probability);
+            exploredProbability += probability;
+            escapeFlow += probability * sinkRates[i];
+        }
+        Double sinkProbability = solved.get(sink);
+        return new TruncatedSteadyState(steadyState, escapeFlow / exploredProbability,
+                sinkProbability == null ? 0 : sinkProbability);
+    }
+
+    /**
+     * Steady state of a truncated state space together with the escape rate and truncation error estimate
+     */
+    public static final class TruncatedSteadyState {
+        /**
+         * Explored state id to its steady state probability
+         */
+        private final Map<Integer, Double> steadyState;
+
+        /**
+         * Long run rate at which the explored states are left
+         */
+        private final double escapeRate;
+
+        /**
+         * Steady state probability of the sink
+         */
+        private final double errorEstimate;
+
+        /**
+         * @param steadyState   explored state id to its steady state probability
+         * @param escapeRate    long run rate at which the explored states are left
+         * @param errorEstimate steady state probability of the sink
+         */
+        public TruncatedSteadyState(Map<Integer, Double> steadyState, double escapeRate, double errorEstimate) {
+            this.steadyState = steadyState;
+            this.escapeRate = escapeRate;
+            this.errorEstimate = errorEstimate;
+        }
+
+        /**
+         * @return explored state id to its steady state probability, summing to one minus the error estimate
+         */
+        public Map<Integer, Double> getSteadyState() {
+            return steadyState;
+        }
+
+        /**
+         * @return rate at which the chain leaves the explored states in the long run, given it is in them,
+         * independent of the restart rate
+         */
+        public double getEscapeRate() {
+            return escapeRate;
+        }
+
+        /**
+         * @return steady state probability of the sink, an estimate rather than a bound of the mass the
+         * truncated state space does not account for that depends on the restart rate
+         */
+        public double getErrorEstimate() {
+            return errorEstimate;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package pipe.steadystate.metrics;
 
+import pipe.steadystate.algorithm.TruncationSinkSolver;
 import uk.ac.imperial.state.ClassifiedState;
 
 import java.util.HashMap;
@@ -50,6 +51,19 @@ public final class TokenMetrics {
         return averages;
     }
 
+    /**
+     * Calculates the average number of tokens on each place from the steady state of a truncated state space.
+     * States that were not explored, and so have no steady state probability, are left out.
+     *
+     * @param stateSpace  state space containing a states integer id to the classified state
+     * @param steadyState steady state of the explored states with its truncation error estimate
+     * @return the average number of tokens on each place over the explored states with the error estimate
+     */
+    public static TruncatedMetric<Map<String, Map<String, Double>>> averageTokensOnPlace(
+            Map<Integer, ClassifiedState> stateSpace, TruncationSinkSolver.TruncatedSteadyState steadyState) {
+        Map<Integer, ClassifiedState> explored = TruncatedMetric.exploredStates(stateSpace, steadyState);
+        return new TruncatedMetric<>(averageTokensOnPlace(explored, steadyState.getSteadyState()), steadyState);
+    }
 
     /**
      *
@@ -1,12 +1,16 @@
 package pipe.steadystate.metrics;
 
+import pipe.reachability.algorithm.CachingExplorerUtilities;
+import pipe.steadystate.algorithm.TruncationSinkSolver;
 import uk.ac.imperial.pipe.animation.AnimationLogic;
 import uk.ac.imperial.pipe.animation.PetriNetAnimationLogic;
 import uk.ac.imperial.pipe.models.petrinet.PetriNet;
 import uk.ac.imperial.pipe.models.petrinet.Transition;
 import uk.ac.imperial.state.ClassifiedState;
 
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -28,12 +32,92 @@ public final class TransitionMetrics {
             ClassifiedState state = entry.getValue();
 
             for (Transition transition : animationLogic.getEnabledTransitions(state)) {
-                String transitionId = transition.getId();
-                double throughput = transition.getActualRate(petriNet, state) * steadyState.get(id);
-                double previous = throughputs.containsKey(transitionId) ? throughputs.get(transitionId) : 0;
-                throughputs.put(transitionId, throughput + previous);
+                addThroughput(transition, state, steadyState.get(id), petriNet, throughputs);
             }
         }
         return throughputs;
     }
+
+    /**
+     * Calculates transition throughputs from the steady state of a truncated state space.
+     * States that were not explored, and so have no steady state probability, are left out.
+     *
+     * @param stateSpace  state id to state
+     * @param steadyState steady state of the explored states with its truncation error estimate
+     * @param petriNet    Petri net the states belong to
+     * @return transition id to its throughput over the explored states with the error estimate
+     */
+    public static TruncatedMetric<Map<String, Double>> getTransitionThroughput(
+            Map<Integer, ClassifiedState> stateSpace, TruncationSinkSolver.TruncatedSteadyState steadyState,
+            PetriNet petriNet) {
+        Map<Integer, ClassifiedState> explored = TruncatedMetric.exploredStates(stateSpace, steadyState);
+        return new TruncatedMetric<>(getTransitionThroughput(explored, steadyState.getSteadyState(), petriNet),
+                steadyState);
+    }
+
+    /**
+     * Calculates transition throughputs from enabled transitions recorded during exploration,
+     * e.g. by a {@link pipe.reachability.io.EnabledTransitionRecorder}, rather than checking
+     * the enabledness of every state again.
+     * <p>
+     * The recorded bits index the transitions of the net that was explored, which may be a reduced
+     * copy of the original, so they are looked up in the order of the utilities that explored it.
+     * Transitions fused away by a reduction are given the throughput of the transition they were
+     * fused into, so throughputs are reported for every transition of the original net.
+     * </p>
+     *
+     * @param stateSpace         state id to state
+     * @param steadyState        state id to its steady state probability
+     * @param explorerUtilities  utilities the state space was explored with
+     * @param enabledTransitions state id to its enabled transitions as bits over
+     *                           {@link CachingExplorerUtilities#getTransitionOrder()}
+     * @return transition id to its throughput
+     * @throws IllegalArgumentException if no enabled transitions were recorded for a state of the state space
+     */
+    public static Map<String, Double> getTransitionThroughput(Map<Integer, ClassifiedState> stateSpace,
+                                                              Map<Integer, Double> steadyState,
+                                                              CachingExplorerUtilities explorerUtilities,
+                                                              Map<Integer, BitSet> enabledTransitions) {
+        List<Transition> transitions = explorerUtilities.getTransitionOrder();
+        PetriNet petriNet = explorerUtilities.getExploredPetriNet();
+        Map<String, Double> throughputs = new HashMap<>();
+        for (Map.Entry<Integer, ClassifiedState> entry : stateSpace.entrySet()) {
+            int id = entry.getKey();
+            BitSet enabled = enabledTransitions.get(id);
+            if (enabled == null) {
+                throw new IllegalArgumentException("No enabled transitions were recorded for state " + id);
+            }
+            for (int i = enabled.nextSetBit(0); i >= 0; i = enabled.nextSetBit(i + 1)) {
+                double throughput = transitions.get(i).getActualRate(petriNet, entry.getValue()) * steadyState.get(id);
+                for (String transitionId : explorerUtilities.getOriginalTransitionIds(i)) {
+                    addThroughput(transitionId, throughput, throughputs);
+                }
+            }
+        }
+        return throughputs;
+    }
+
+    /**
+     * Adds the throughput of the transition in the state to its total
+     *
+     * @param transition  transition enabled in the state
+     * @param state       state
+     * @param probability steady state probability of the state
+     * @param petriNet    Petri net the state belongs to
+     * @param throughputs transition id to its throughput so far
+     */
+    private static void addThroughput(Transition transition, ClassifiedState state, double probability,
+                                      PetriNet petriNet, Map<String, Double> throughputs) {
+        addThroughput(transition.getId(), transition.getActualRate(petriNet, state) * probability, throughputs);
+    }
+
+    /**
+     * @param transitionId id of the transition
+     * @param throughput   throughput to add to its total
+     * @param throughputs  transition id to its throughput so far
+     */
+    private static void addThroughput(String transitionId, double throughput, Map<String, Double> throughputs) {
+        double previous = throughputs.containsKey(transitionId) ? throughputs.get(transitionId) : 0;
+        throughputs.put(transitionId, throughput + previous);
+    }
 }
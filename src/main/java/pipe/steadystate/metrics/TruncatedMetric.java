@@ -0,0 +1,79 @@
+package pipe.steadystate.metrics;
+
+import pipe.steadystate.algorithm.TruncationSinkSolver;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Metric calculated from the steady state of a truncated state space, reported with the escape rate
+ * and error estimate of the truncation.
+ * <p>
+ * The value only accounts for the explored states. If the metric's value per state lies in [0, max]
+ * the value misses about errorEstimate * max from the unexplored states.
+ * </p>
+ *
+ * @param <T> type of the metric's value
+ */
+public final class TruncatedMetric<T> {
+    /**
+     * Metric over the explored states
+     */
+    private final T value;
+
+    /**
+     * Long run rate at which the explored states are left
+     */
+    private final double escapeRate;
+
+    /**
+     * Estimated probability of the chain being outside of the explored states
+     */
+    private final double errorEstimate;
+
+    /**
+     * @param value       metric over the explored states
+     * @param steadyState steady state the metric was calculated from
+     */
+    public TruncatedMetric(T value, TruncationSinkSolver.TruncatedSteadyState steadyState) {
+        this.value = value;
+        this.escapeRate = steadyState.getEscapeRate();
+        this.errorEstimate = steadyState.getErrorEstimate();
+    }
+
+    /**
+     * @return metric over the explored states
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return long run rate at which the explored states are left, independent of the restart rate
+     */
+    public double getEscapeRate() {
+        return escapeRate;
+    }
+
+    /**
+     * @return estimated probability of the chain being outside of the explored states
+     */
+    public double getErrorEstimate() {
+        return errorEstimate;
+    }
+
+    /**
+     * @param stateSpace  state id to state
+     * @param steadyState steady state of the explored states
+     * @return state id to state of the states that have a steady state probability
+     */
+    static Map<Integer, ClassifiedState> exploredStates(Map<Integer, ClassifiedState> stateSpace,
+                                                       TruncationSinkSolver.TruncatedSteadyState steadyState) {
+        Map<Integer, ClassifiedState> explored = new HashMap<>();
+        for (Integer id : steadyState.getSteadyState().keySet()) {
+            explored.put(id, stateSpace.get(id));
+        }
+        return explored;
+    }
+}
@@ -0,0 +1,181 @@
+package pipe.structural;
+
+import uk.ac.imperial.state.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout for packing markings into as few 64 bit words as their place bounds allow.
+ * <p>
+ * Each packed row is given just enough bits to hold its structural bound, so a place that
+ * can only hold zero or one token takes a single bit and a place that is always empty takes none.
+ * Rows without a structural bound are given 31 bits, enough for any non negative int.
+ * Rows may span two words.
+ * </p>
+ */
+public final class BitPackedMarkingLayout {
+    /**
+     * Bits given to a row without a structural bound
+     */
+    static final int UNBOUNDED_BITS = 31;
+
+    /**
+     * Structure of the Petri net
+     */
+    private final IncidenceMatrix matrix;
+
+    /**
+     * Incidence matrix row packed in each position
+     */
+    private final int[] rows;
+
+    /**
+     * Bit offset of each packed row
+     */
+    private final int[] offsets;
+
+    /**
+     * Bit width of each packed row
+     */
+    private final int[] widths;
+
+    /**
+     * Number of words a packed marking takes
+     */
+    private final int words;
+
+    /**
+     * Packs every row of the incidence matrix
+     *
+     * @param matrix structure of the Petri net
+     * @param bounds bounds of the rows
+     */
+    public BitPackedMarkingLayout(IncidenceMatrix matrix, PlaceBounds bounds) {
+        this(matrix, bounds, allRows(matrix));
+    }
+
+    /**
+     * Packs a subset of rows, e.g. the rows stored by {@link PInvariants} compressed states
+     *
+     * @param matrix     structure of the Petri net
+     * @param bounds     bounds of the rows
+     * @param packedRows rows to pack
+     */
+    public BitPackedMarkingLayout(IncidenceMatrix matrix, PlaceBounds bounds, List<Integer> packedRows) {
+        this.matrix = matrix;
+        rows = new int[packedRows.size()];
+        offsets = new int[rows.length];
+        widths = new int[rows.length];
+        int offset = 0;
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = packedRows.get(i);
+            offsets[i] = offset;
+            widths[i] = bounds.isBounded(rows[i]) ?
+                    Integer.SIZE - Integer.numberOfLeadingZeros(bounds.getBound(rows[i])) : UNBOUNDED_BITS;
+            offset += widths[i];
+        }
+        words = Math.max(1, (offset + Long.SIZE - 1) / Long.SIZE);
+    }
+
+    /**
+     * @param matrix structure of the Petri net
+     * @return every row of the matrix
+     */
+    private static List<Integer> allRows(IncidenceMatrix matrix) {
+        List<Integer> all = new ArrayList<>();
+        for (int row = 0; row < matrix.getNumberOfRows(); row++) {
+            all.add(row);
+        }
+        return all;
+    }
+
+    /**
+     * @return number of 64 bit words each packed marking takes
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * @param position packed position
+     * @return number of bits the row at the position takes
+     */
+    public int getWidth(int position) {
+        return widths[position];
+    }
+
+    /**
+     * Packs the state into the destination words
+     *
+     * @param state       state to pack, must contain every packed row
+     * @param destination words to write to starting at offset
+     * @param offset      first word to write to
+     * @throws IllegalArgumentException if a row holds more tokens than its width allows
+     */
+    public void pack(State state, long[] destination, int offset) {
+        for (int word = 0; word < words; word++) {
+            destination[offset + word] = 0;
+        }
+        for (int i = 0; i < rows.length; i++) {
+            int tokens = state.getTokens(matrix.getPlaceId(rows[i])).get(matrix.getTokenId(rows[i]));
+            if (widths[i] < Integer.SIZE - 1 && tokens >>> widths[i] != 0) {
+                throw new IllegalArgumentException("Place " + matrix.getPlaceId(rows[i]) + " holds " + tokens
+                        + " tokens which is above its structural bound");
+            }
+            write(destination, offset, offsets[i], widths[i], tokens);
+        }
+    }
+
+    /**
+     * @param state state to pack, must contain every packed row
+     * @return packed words of the state
+     */
+    public long[] pack(State state) {
+        long[] packed = new long[words];
+        pack(state, packed, 0);
+        return packed;
+    }
+
+    /**
+     * @param packed   packed markings
+     * @param offset   first word of the marking
+     * @param position packed position
+     * @return tokens in the row at the position
+     */
+    public int get(long[] packed, int offset, int position) {
+        int width = widths[position];
+        if (width == 0) {
+            return 0;
+        }
+        int bit = offsets[position];
+        int word = offset + bit / Long.SIZE;
+        int shift = bit % Long.SIZE;
+        long value = packed[word] >>> shift;
+        if (shift + width > Long.SIZE) {
+            value |= packed[word + 1] << (Long.SIZE - shift);
+        }
+        return (int) (value & ((1L << width) - 1));
+    }
+
+    /**
+     * Writes the value into the bits starting at bit
+     *
+     * @param packed packed markings
+     * @param offset first word of the marking
+     * @param bit    first bit of the value
+     * @param width  number of bits of the value
+     * @param value  value to write
+     */
+    private static void write(long[] packed, int offset, int bit, int width, int value) {
+        if (width == 0) {
+            return;
+        }
+        int word = offset + bit / Long.SIZE;
+        int shift = bit % Long.SIZE;
+        packed[word] |= ((long) value) << shift;
+        if (shift + width > Long.SIZE) {
+            packed[word + 1] |= ((long) value) >>> (Long.SIZE - shift);
+        }
+    }
+}
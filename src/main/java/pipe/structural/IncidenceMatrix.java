@@ -0,0 +1,365 @@
+package pipe.structural;
+
+import uk.ac.imperial.pipe.models.petrinet.Arc;
+import uk.ac.imperial.pipe.models.petrinet.ArcType;
+import uk.ac.imperial.pipe.models.petrinet.InboundArc;
+import uk.ac.imperial.pipe.models.petrinet.OutboundArc;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Token;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import uk.ac.imperial.state.State;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structural view of a Petri net's arcs used by analyses that work on markings as integer vectors
+ * rather than by animating the net.
+ * <p>
+ * Every row of the matrix is a place and token pair, and every column a transition. For each
+ * transition the matrix holds the number of tokens it consumes from each row (pre), the number
+ * it produces into each row (post) and whether it is inhibited by the row's place.
+ * </p><p>
+ * Arc weights are only known structurally when they are constant integers. Functional weights
+ * are recorded as zero and {@link #hasConstantWeights()} returns false so that callers can decide
+ * whether their analysis is still valid.
+ * </p>
+ */
+public final class IncidenceMatrix {
+    /**
+     * Place id of each row
+     */
+    private final List<String> placeIds = new ArrayList<>();
+
+    /**
+     * Token id of each row
+     */
+    private final List<String> tokenIds = new ArrayList<>();
+
+    /**
+     * Place id to token id to row
+     */
+    private final Map<String, Map<String, Integer>> rows = new HashMap<>();
+
+    /**
+     * Transitions of the Petri net, the index of a transition is its column
+     */
+    private final List<Transition> transitions = new ArrayList<>();
+
+    /**
+     * Tokens consumed by each transition from each row
+     */
+    private final int[][] pre;
+
+    /**
+     * Tokens produced by each transition into each row
+     */
+    private final int[][] post;
+
+    /**
+     * True if the place of the row has an inhibitor arc to the transition
+     */
+    private final boolean[][] inhibitors;
+
+    /**
+     * Capacity of the place of each row, zero if the place is unbounded.
+     * The capacity is shared by every token of the place.
+     */
+    private final int[] capacities;
+
+    /**
+     * Number of tokens in each row in the Petri net's current marking
+     */
+    private final int[] initialMarking;
+
+    /**
+     * True if every arc weight was a constant integer
+     */
+    private boolean constantWeights = true;
+
+    /**
+     * @param petriNet Petri net whose structure to build the matrix from
+     */
+    public IncidenceMatrix(PetriNet petriNet) {
+        List<Integer> marking = new ArrayList<>();
+        List<Integer> capacity = new ArrayList<>();
+        for (Place place : petriNet.getPlaces()) {
+            Map<String, Integer> placeRows = new HashMap<>();
+            for (Token token : petriNet.getTokens()) {
+                placeRows.put(token.getId(), placeIds.size());
+                placeIds.add(place.getId());
+                tokenIds.add(token.getId());
+                marking.add(place.getTokenCount(token.getId()));
+                capacity.add(place.getCapacity());
+            }
+            rows.put(place.getId(), placeRows);
+        }
+        transitions.addAll(petriNet.getTransitions());
+
+        int numberOfRows = placeIds.size();
+        pre = new int[transitions.size()][numberOfRows];
+        post = new int[transitions.size()][numberOfRows];
+        inhibitors = new boolean[transitions.size()][numberOfRows];
+        capacities = toArray(capacity);
+        initialMarking = toArray(marking);
+
+        for (int column = 0; column < transitions.size(); column++) {
+            Transition transition = transitions.get(column);
+            for (InboundArc arc : petriNet.inboundArcs(transition)) {
+                String placeId = arc.getSource().getId();
+                if (arc.getType() == ArcType.INHIBITOR) {
+                    for (int row : rows.get(placeId).values()) {
+                        inhibitors[column][row] = true;
+                    }
+                } else {
+                    addWeights(arc, placeId, pre[column]);
+                }
+            }
+            for (OutboundArc arc : petriNet.outboundArcs(transition)) {
+                addWeights(arc, arc.getTarget().getId(), post[column]);
+            }
+        }
+    }
+
+    /**
+     * Adds the token weights of the arc to the rows of the place
+     *
+     * @param arc     arc whose weights to add
+     * @param placeId place the arc connects to
+     * @param weights row weights of the transition
+     */
+    private void addWeights(Arc<?, ?> arc, String placeId, int[] weights) {
+        Map<String, Integer> placeRows = rows.get(placeId);
+        for (Map.Entry<String, String> entry : arc.getTokenWeights().entrySet()) {
+            Integer row = placeRows.get(entry.getKey());
+            if (row != null) {
+                weights[row] += parseWeight(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @param weight arc weight expression
+     * @return the weight if it is a constant integer, otherwise zero
+     */
+    private int parseWeight(String weight) {
+        try {
+            double value = Double.parseDouble(weight.trim());
+            if (value == Math.rint(value)) {
+                return (int) value;
+            }
+        } catch (NumberFormatException ignored) {
+            // functional weight, handled below
+        }
+        constantWeights = false;
+        return 0;
+    }
+
+    /**
+     * @param values boxed values
+     * @return unboxed values
+     */
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return number of place and token pairs
+     */
+    public int getNumberOfRows() {
+        return placeIds.size();
+    }
+
+    /**
+     * @return number of transitions
+     */
+    public int getNumberOfTransitions() {
+        return transitions.size();
+    }
+
+    /**
+     * @param row row of the matrix
+     * @return id of the place of the row
+     */
+    public String getPlaceId(int row) {
+        return placeIds.get(row);
+    }
+
+    /**
+     * @param row row of the matrix
+     * @return id of the token of the row
+     */
+    public String getTokenId(int row) {
+        return tokenIds.get(row);
+    }
+
+    /**
+     * @param placeId place id
+     * @param tokenId token id
+     * @return row of the place and token pair
+     */
+    public int getRow(String placeId, String tokenId) {
+        return rows.get(placeId).get(tokenId);
+    }
+
+    /**
+     * @param column column of the matrix
+     * @return transition of the column
+     */
+    public Transition getTransition(int column) {
+        return transitions.get(column);
+    }
+
+    /**
+     * @param column transition column
+     * @param row    place and token row
+     * @return number of tokens the transition consumes from the row
+     */
+    public int getPre(int column, int row) {
+        return pre[column][row];
+    }
+
+    /**
+     * @param column transition column
+     * @param row    place and token row
+     * @return number of tokens the transition produces into the row
+     */
+    public int getPost(int column, int row) {
+        return post[column][row];
+    }
+
+    /**
+     * @param column transition column
+     * @param row    place and token row
+     * @return change in the number of tokens in the row when the transition fires
+     */
+    public int getChange(int column, int row) {
+        return post[column][row] - pre[column][row];
+    }
+
+    /**
+     * @param column transition column
+     * @param row    place and token row
+     * @return true if the transition is disabled whilst the row's place holds any tokens
+     */
+    public boolean isInhibited(int column, int row) {
+        return inhibitors[column][row];
+    }
+
+    /**
+     * @param row place and token row
+     * @return capacity of the row's place shared by all of its tokens, zero if it is unbounded
+     */
+    public int getCapacity(int row) {
+        return capacities[row];
+    }
+
+    /**
+     * @return copy of the Petri net's current marking
+     */
+    public int[] getInitialMarking() {
+        return initialMarking.clone();
+    }
+
+    /**
+     * @return true if every arc weight was a constant integer and so the matrix is exact
+     */
+    public boolean hasConstantWeights() {
+        return constantWeights;
+    }
+
+    /**
+     * @param column transition column
+     * @param row    place and token row
+     * @return true if the transition reads or writes the row
+     */
+    public boolean isConnected(int column, int row) {
+        return pre[column][row] != 0 || post[column][row] != 0 || inhibitors[column][row];
+    }
+
+    /**
+     * Checks the part of a transition's enabling condition that depends on a single row.
+     * <p>
+     * Output capacities are checked against the tokens in the row plus those produced,
+     * as the animator does, and only hold exactly when the place has a single token.
+     * </p>
+     *
+     * @param column transition column
+     * @param row    place and token row
+     * @param tokens number of tokens in the row
+     * @return true if the row does not prevent the transition from firing
+     */
+    public boolean isEnabled(int column, int row, int tokens) {
+        if (inhibitors[column][row] && tokens > 0) {
+            return false;
+        }
+        if (tokens < pre[column][row]) {
+            return false;
+        }
+        return capacities[row] == 0 || post[column][row] == 0 || tokens + post[column][row] <= capacities[row];
+    }
+
+    /**
+     * @param column  transition column
+     * @param marking number of tokens in each row
+     * @return true if the transition is enabled in the marking
+     */
+    public boolean isEnabled(int column, int[] marking) {
+        for (int row = 0; row < marking.length; row++) {
+            if (!isEnabled(column, row, marking[row])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param column  transition column
+     * @param marking marking the transition is enabled in
+     * @return marking after firing the transition
+     */
+    public int[] fire(int column, int[] marking) {
+        int[] successor = marking.clone();
+        for (int row = 0; row < successor.length; row++) {
+            successor[row] += getChange(column, row);
+        }
+        return successor;
+    }
+
+    /**
+     * @param state state of the Petri net
+     * @return number of tokens in each row of the state
+     */
+    public int[] toMarking(State state) {
+        int[] marking = new int[getNumberOfRows()];
+        for (int row = 0; row < marking.length; row++) {
+            Integer tokens = state.getTokens(placeIds.get(row)).get(tokenIds.get(row));
+            marking[row] = tokens == null ? 0 : tokens;
+        }
+        return marking;
+    }
+
+    /**
+     * @param marking  number of tokens in each row
+     * @param tangible true if the state is tangible
+     * @return classified state with the tokens of the marking
+     */
+    public ClassifiedState toState(int[] marking, boolean tangible) {
+        HashedStateBuilder builder = new HashedStateBuilder();
+        for (int row = 0; row < marking.length; row++) {
+            builder.placeWithToken(placeIds.get(row), tokenIds.get(row), marking[row]);
+        }
+        State state = builder.build();
+        return tangible ? HashedClassifiedState.tangibleState(state) : HashedClassifiedState.vanishingState(state);
+    }
+}
@@ -0,0 +1,472 @@
+package pipe.structural;
+
+import uk.ac.imperial.pipe.exceptions.PetriNetComponentException;
+import uk.ac.imperial.pipe.models.petrinet.InboundArc;
+import uk.ac.imperial.pipe.models.petrinet.OutboundArc;
+import uk.ac.imperial.pipe.models.petrinet.OutboundNormalArc;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Token;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import uk.ac.imperial.state.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rate preserving structural reductions that shrink a Petri net before it is explored.
+ * <p>
+ * Two rules are applied until neither matches:
+ * <ul>
+ *     <li>Duplicate places: a place with the same input and output arcs as another place and at least
+ *     as many initial tokens never disables a transition the other place enables. It is removed and its
+ *     marking is always the other place's marking plus the difference in their initial markings.</li>
+ *     <li>Series immediate transitions: if a place's only input is a transition t1 and its only output an
+ *     immediate transition t2 that cannot be disabled and has the highest priority in the net, t2 fires
+ *     straight after every firing of t1. The place and t2 are removed and t1 produces t2's output tokens
+ *     itself, so the vanishing state between them is never generated. The place is empty in every
+ *     tangible state.</li>
+ * </ul>
+ * For series transitions to fire in any order with the same result, every immediate transition of the
+ * highest priority must be persistent: it has no inhibitor arcs, no other transition consumes from its
+ * input places and its output places have no capacity.
+ * </p><p>
+ * The Petri net given is reduced in place, so it should be a copy such as the one made by
+ * {@link pipe.reachability.algorithm.CachingExplorerUtilities}. Tangible states of the reduced net are
+ * mapped back to states of the original net with {@link #expand(ClassifiedState)}, after which metrics
+ * can be calculated from the original net as if it had been explored. Reductions are only applied to
+ * single token nets whose arc weights are constant integers, and places referred to by a rate expression
+ * are never removed.
+ * </p>
+ */
+public final class NetReduction {
+    /**
+     * Structure of the Petri net before it was reduced, single token so each row is a place
+     */
+    private final IncidenceMatrix matrix;
+
+    /**
+     * Tokens consumed by each transition from each place of the reduced net
+     */
+    private final int[][] pre;
+
+    /**
+     * Tokens produced by each transition into each place of the reduced net
+     */
+    private final int[][] post;
+
+    /**
+     * True for transitions removed from the net
+     */
+    private final boolean[] removedTransitions;
+
+    /**
+     * True for transitions whose output arcs changed
+     */
+    private final boolean[] changedTransitions;
+
+    /**
+     * True for places removed from the net
+     */
+    private final boolean[] removedPlaces;
+
+    /**
+     * Removed place to the place its marking follows, or -1 if it is always empty
+     */
+    private final Map<Integer, Integer> restoredFrom = new LinkedHashMap<>();
+
+    /**
+     * Removed place to the number of tokens it holds in addition to the place it follows
+     */
+    private final Map<Integer, Integer> restoredOffsets = new HashMap<>();
+
+    /**
+     * Transition id to the ids of the transitions fused into it, in firing order
+     */
+    private final Map<String, List<String>> fusedTransitions = new HashMap<>();
+
+    /**
+     * Id of the single token of the net
+     */
+    private final String tokenId;
+
+    /**
+     * Finds and applies reductions to the Petri net
+     *
+     * @param petriNet Petri net to reduce in place
+     */
+    public NetReduction(PetriNet petriNet) {
+        matrix = new IncidenceMatrix(petriNet);
+        int transitions = matrix.getNumberOfTransitions();
+        int places = matrix.getNumberOfRows();
+        pre = new int[transitions][places];
+        post = new int[transitions][places];
+        for (int column = 0; column < transitions; column++) {
+            for (int row = 0; row < places; row++) {
+                pre[column][row] = matrix.getPre(column, row);
+                post[column][row] = matrix.getPost(column, row);
+            }
+        }
+        removedTransitions = new boolean[transitions];
+        changedTransitions = new boolean[transitions];
+        removedPlaces = new boolean[places];
+
+        List<Token> tokens = new ArrayList<>(petriNet.getTokens());
+        tokenId = tokens.size() == 1 ? tokens.get(0).getId() : null;
+        if (tokenId == null || !matrix.hasConstantWeights()) {
+            return;
+        }
+        boolean reduced = true;
+        while (reduced) {
+            reduced = removeDuplicatePlace() || fuseSeriesTransitions();
+        }
+        apply(petriNet);
+    }
+
+    /**
+     * Removes the first place found that duplicates another
+     *
+     * @return true if a place was removed
+     */
+    private boolean removeDuplicatePlace() {
+        int[] initialMarking = matrix.getInitialMarking();
+        for (int place = 0; place < removedPlaces.length; place++) {
+            if (!isRemovable(place)) {
+                continue;
+            }
+            for (int other = 0; other < removedPlaces.length; other++) {
+                if (other != place && !removedPlaces[other] && initialMarking[place] >= initialMarking[other]
+                        && hasSameArcs(place, other)) {
+                    removePlace(place, other, initialMarking[place] - initialMarking[other]);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param place place of the reduced net
+     * @param other another place of the reduced net
+     * @return true if every transition consumes and produces the same tokens in both places
+     */
+    private boolean hasSameArcs(int place, int other) {
+        for (int column = 0; column < pre.length; column++) {
+            if (!removedTransitions[column]
+                    && (pre[column][place] != pre[column][other] || post[column][place] != post[column][other])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fuses the first series pair of transitions found
+     *
+     * @return true if a pair was fused
+     */
+    private boolean fuseSeriesTransitions() {
+        int topPriority = Integer.MIN_VALUE;
+        for (int column = 0; column < pre.length; column++) {
+            if (!removedTransitions[column]) {
+                topPriority = Math.max(topPriority, matrix.getTransition(column).getPriority());
+            }
+        }
+        for (int column = 0; column < pre.length; column++) {
+            Transition transition = matrix.getTransition(column);
+            if (!removedTransitions[column] && !transition.isTimed()
+                    && transition.getPriority() == topPriority && !isPersistent(column)) {
+                return false;
+            }
+        }
+
+        int[] initialMarking = matrix.getInitialMarking();
+        for (int place = 0; place < removedPlaces.length; place++) {
+            if (!isRemovable(place) || initialMarking[place] != 0) {
+                continue;
+            }
+            int producer = onlyTransition(post, place);
+            int consumer = onlyTransition(pre, place);
+            if (producer >= 0 && consumer >= 0 && producer != consumer && post[producer][place] == 1
+                    && pre[consumer][place] == 1 && pre[producer][place] == 0 && post[consumer][place] == 0
+                    && !matrix.getTransition(consumer).isTimed()
+                    && matrix.getTransition(consumer).getPriority() == topPriority
+                    && consumesOnly(consumer, place)) {
+                fuse(producer, consumer, place);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param column transition of the reduced net
+     * @return true if no other transition can disable it
+     */
+    private boolean isPersistent(int column) {
+        for (int place = 0; place < removedPlaces.length; place++) {
+            if (removedPlaces[place]) {
+                continue;
+            }
+            if (matrix.isInhibited(column, place) || (post[column][place] > 0 && matrix.getCapacity(place) > 0)) {
+                return false;
+            }
+            if (pre[column][place] > 0) {
+                for (int other = 0; other < pre.length; other++) {
+                    if (other != column && !removedTransitions[other] && pre[other][place] > 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param weights pre or post weights of the reduced net
+     * @param place   place of the reduced net
+     * @return the only transition with a non zero weight for the place, or -1 if there is not exactly one
+     */
+    private int onlyTransition(int[][] weights, int place) {
+        int found = -1;
+        for (int column = 0; column < weights.length; column++) {
+            if (!removedTransitions[column] && weights[column][place] != 0) {
+                if (found >= 0) {
+                    return -1;
+                }
+                found = column;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param column transition of the reduced net
+     * @param place  place of the reduced net
+     * @return true if the place is the only one the transition consumes from
+     */
+    private boolean consumesOnly(int column, int place) {
+        for (int other = 0; other < removedPlaces.length; other++) {
+            if (other != place && !removedPlaces[other] && pre[column][other] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param place place of the reduced net
+     * @return true if the place can be removed without changing the behaviour of the rest of the net
+     */
+    private boolean isRemovable(int place) {
+        if (removedPlaces[place] || matrix.getCapacity(place) > 0) {
+            return false;
+        }
+        String placeId = matrix.getPlaceId(place);
+        for (int column = 0; column < pre.length; column++) {
+            if (removedTransitions[column]) {
+                continue;
+            }
+            String rate = matrix.getTransition(column).getRateExpr();
+            if (matrix.isInhibited(column, place) || (rate != null && rate.contains(placeId))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Makes the producer fire the consumer's outputs and removes the consumer and the place between them
+     *
+     * @param producer transition producing into the place
+     * @param consumer immediate transition consuming from the place
+     * @param place    place between the transitions
+     */
+    private void fuse(int producer, int consumer, int place) {
+        for (int other = 0; other < removedPlaces.length; other++) {
+            post[producer][other] += post[consumer][other];
+        }
+        post[producer][place] = 0;
+        pre[consumer][place] = 0;
+        removedTransitions[consumer] = true;
+        changedTransitions[producer] = true;
+        removePlace(place, -1, 0);
+
+        String producerId = matrix.getTransition(producer).getId();
+        String consumerId = matrix.getTransition(consumer).getId();
+        List<String> fused = fusedTransitions.get(producerId);
+        if (fused == null) {
+            fused = new ArrayList<>();
+            fusedTransitions.put(producerId, fused);
+        }
+        fused.add(consumerId);
+        List<String> consumerFused = fusedTransitions.remove(consumerId);
+        if (consumerFused != null) {
+            fused.addAll(consumerFused);
+        }
+    }
+
+    /**
+     * Removes the place, updating any removed places that followed it
+     *
+     * @param place  place to remove
+     * @param source place whose marking it follows, or -1 if it is always empty
+     * @param offset tokens it holds in addition to the source
+     */
+    private void removePlace(int place, int source, int offset) {
+        removedPlaces[place] = true;
+        restoredFrom.put(place, source);
+        restoredOffsets.put(place, offset);
+        for (Map.Entry<Integer, Integer> entry : restoredFrom.entrySet()) {
+            if (entry.getValue() == place) {
+                entry.setValue(source);
+                restoredOffsets.put(entry.getKey(), restoredOffsets.get(entry.getKey()) + offset);
+            }
+        }
+    }
+
+    /**
+     * Applies the reductions found to the Petri net
+     *
+     * @param petriNet Petri net to reduce
+     */
+    private void apply(PetriNet petriNet) {
+        for (int column = 0; column < pre.length; column++) {
+            Transition transition = matrix.getTransition(column);
+            if (removedTransitions[column]) {
+                removeArcs(petriNet, transition, true);
+                petriNet.removeTransition(transition);
+                continue;
+            }
+            for (InboundArc arc : new ArrayList<>(petriNet.inboundArcs(transition))) {
+                if (removedPlaces[row(arc.getSource())]) {
+                    petriNet.removeArc(arc);
+                }
+            }
+            if (changedTransitions[column]) {
+                removeArcs(petriNet, transition, false);
+                for (int place = 0; place < removedPlaces.length; place++) {
+                    if (!removedPlaces[place] && post[column][place] > 0) {
+                        Map<String, String> weights =
+                                Collections.singletonMap(tokenId, Integer.toString(post[column][place]));
+                        petriNet.addArc(new OutboundNormalArc(transition, getPlace(petriNet, place), weights));
+                    }
+                }
+            } else {
+                for (OutboundArc arc : new ArrayList<>(petriNet.outboundArcs(transition))) {
+                    if (removedPlaces[row(arc.getTarget())]) {
+                        petriNet.removeArc(arc);
+                    }
+                }
+            }
+        }
+        for (int place : restoredFrom.keySet()) {
+            try {
+                petriNet.removePlace(getPlace(petriNet, place));
+            } catch (PetriNetComponentException e) {
+                throw new IllegalStateException("Could not remove reduced place " + matrix.getPlaceId(place), e);
+            }
+        }
+    }
+
+    /**
+     * @param petriNet   Petri net being reduced
+     * @param transition transition whose arcs to remove
+     * @param inbound    true to remove its input arcs as well as its output arcs
+     */
+    private static void removeArcs(PetriNet petriNet, Transition transition, boolean inbound) {
+        if (inbound) {
+            for (InboundArc arc : new ArrayList<>(petriNet.inboundArcs(transition))) {
+                petriNet.removeArc(arc);
+            }
+        }
+        for (OutboundArc arc : new ArrayList<>(petriNet.outboundArcs(transition))) {
+            petriNet.removeArc(arc);
+        }
+    }
+
+    /**
+     * @param place place of the Petri net
+     * @return its place of the incidence matrix
+     */
+    private int row(Place place) {
+        return matrix.getRow(place.getId(), tokenId);
+    }
+
+    /**
+     * @param petriNet Petri net being reduced
+     * @param place    place of the incidence matrix
+     * @return the Petri net's place
+     */
+    private Place getPlace(PetriNet petriNet, int place) {
+        String placeId = matrix.getPlaceId(place);
+        for (Place candidate : petriNet.getPlaces()) {
+            if (candidate.getId().equals(placeId)) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Place " + placeId + " is not in the Petri net");
+    }
+
+    /**
+     * @return true if any place or transition was removed
+     */
+    public boolean isReduced() {
+        return !restoredFrom.isEmpty();
+    }
+
+    /**
+     * @return ids of the places removed from the Petri net
+     */
+    public List<String> getRemovedPlaces() {
+        List<String> placeIds = new ArrayList<>();
+        for (int place : restoredFrom.keySet()) {
+            placeIds.add(matrix.getPlaceId(place));
+        }
+        return placeIds;
+    }
+
+    /**
+     * Transitions fused into another fire exactly as often as it does, so their throughput
+     * equals its throughput.
+     *
+     * @return transition id to the ids of the transitions fused into it, in the order they fire
+     */
+    public Map<String, List<String>> getFusedTransitions() {
+        return Collections.unmodifiableMap(fusedTransitions);
+    }
+
+    /**
+     * @param state tangible state of the reduced net
+     * @return state of the original net with the removed places restored
+     */
+    public ClassifiedState expand(ClassifiedState state) {
+        if (!isReduced()) {
+            return state;
+        }
+        HashedStateBuilder builder = new HashedStateBuilder();
+        for (String placeId : state.getPlaces()) {
+            for (Map.Entry<String, Integer> entry : state.getTokens(placeId).entrySet()) {
+                builder.placeWithToken(placeId, entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<Integer, Integer> entry : restoredFrom.entrySet()) {
+            int tokens = restoredOffsets.get(entry.getKey());
+            if (entry.getValue() >= 0) {
+                Integer sourceTokens = state.getTokens(matrix.getPlaceId(entry.getValue())).get(tokenId);
+                tokens += sourceTokens == null ? 0 : sourceTokens;
+            }
+            builder.placeWithToken(matrix.getPlaceId(entry.getKey()), tokenId, tokens);
+        }
+        State expanded = builder.build();
+        return state.isTangible() ? HashedClassifiedState.tangibleState(expanded) :
+                HashedClassifiedState.vanishingState(expanded);
+    }
+}
@@ -0,0 +1,279 @@
+package pipe.structural;
+
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import uk.ac.imperial.state.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes a basis of the P-invariants of a Petri net and uses it to drop places from states.
+ * <p>
+ * A P-invariant is an integer weighting y of the places such that y . m is the same for every
+ * reachable marking m, i.e. y is in the null space of the transposed incidence matrix. Each invariant
+ * of the basis computed here has a non zero weight in exactly one place that no other invariant
+ * weights, so that place can be dropped from every state and reconstructed from the others as
+ * <pre>
+ *     m[dropped] = (y . m0 - sum of y[p] * m[p] for the stored places p) / y[dropped]
+ * </pre>
+ * This removes as many places as there are independent invariants, which is the most
+ * that can be reconstructed from linear conservation laws.
+ * </p><p>
+ * Invariant sums are taken from the Petri net's initial marking so compressed states are
+ * only valid for markings reachable from it. Arc weights must be constant integers; if any
+ * are not, and for coverability graphs whose unbounded places break the conservation laws,
+ * no places should be dropped.
+ * </p>
+ */
+public final class PInvariants {
+    /**
+     * Structure of the Petri net
+     */
+    private final IncidenceMatrix matrix;
+
+    /**
+     * Basis of the P-invariants, indexed by invariant then row
+     */
+    private final List<long[]> invariants = new ArrayList<>();
+
+    /**
+     * Row reconstructed by each invariant
+     */
+    private final List<Integer> droppedRows = new ArrayList<>();
+
+    /**
+     * Rows that are stored in compressed states
+     */
+    private final List<Integer> storedRows = new ArrayList<>();
+
+    /**
+     * Weighted token sum of each invariant in the initial marking
+     */
+    private final long[] sums;
+
+    /**
+     * Computes the invariants of the Petri net the matrix was built from. If the matrix's
+     * weights are not constant no invariants are computed and no places are dropped.
+     *
+     * @param matrix structure of the Petri net
+     */
+    public PInvariants(IncidenceMatrix matrix) {
+        this.matrix = matrix;
+        if (matrix.hasConstantWeights()) {
+            computeInvariants();
+        }
+        boolean[] dropped = new boolean[matrix.getNumberOfRows()];
+        for (int row : droppedRows) {
+            dropped[row] = true;
+        }
+        for (int row = 0; row < dropped.length; row++) {
+            if (!dropped[row]) {
+                storedRows.add(row);
+            }
+        }
+        int[] initialMarking = matrix.getInitialMarking();
+        sums = new long[invariants.size()];
+        for (int i = 0; i < sums.length; i++) {
+            long[] invariant = invariants.get(i);
+            for (int row = 0; row < initialMarking.length; row++) {
+                sums[i] += invariant[row] * initialMarking[row];
+            }
+        }
+    }
+
+    /**
+     * Reduces the transposed incidence matrix to reduced row echelon form with fraction free
+     * Gauss-Jordan elimination and reads off one invariant per non pivot column.
+     */
+    private void computeInvariants() {
+        int rows = matrix.getNumberOfRows();
+        int transitions = matrix.getNumberOfTransitions();
+        long[][] reduced = new long[transitions][rows];
+        for (int column = 0; column < transitions; column++) {
+            for (int row = 0; row < rows; row++) {
+                reduced[column][row] = matrix.getChange(column, row);
+            }
+        }
+
+        int[] pivotColumns = new int[transitions];
+        boolean[] isPivot = new boolean[rows];
+        int rank = 0;
+        for (int column = 0; column < rows && rank < transitions; column++) {
+            int pivot = rank;
+            while (pivot < transitions && reduced[pivot][column] == 0) {
+                pivot++;
+            }
+            if (pivot == transitions) {
+                continue;
+            }
+            long[] swap = reduced[pivot];
+            reduced[pivot] = reduced[rank];
+            reduced[rank] = swap;
+            for (int other = 0; other < transitions; other++) {
+                if (other != rank && reduced[other][column] != 0) {
+                    eliminate(reduced[other], reduced[rank], column);
+                }
+            }
+            pivotColumns[rank] = column;
+            isPivot[column] = true;
+            rank++;
+        }
+
+        for (int free = 0; free < rows; free++) {
+            if (isPivot[free]) {
+                continue;
+            }
+            long scale = 1;
+            for (int r = 0; r < rank; r++) {
+                if (reduced[r][free] != 0) {
+                    scale = lcm(scale, Math.abs(reduced[r][pivotColumns[r]]));
+                }
+            }
+            long[] invariant = new long[rows];
+            invariant[free] = scale;
+            for (int r = 0; r < rank; r++) {
+                invariant[pivotColumns[r]] = -reduced[r][free] * scale / reduced[r][pivotColumns[r]];
+            }
+            normalise(invariant);
+            invariants.add(invariant);
+            droppedRows.add(free);
+        }
+    }
+
+    /**
+     * Sets target[column] to zero by subtracting a multiple of the pivot row
+     *
+     * @param target row to eliminate the column from
+     * @param pivot  row whose pivot is in the column
+     * @param column pivot column
+     */
+    private static void eliminate(long[] target, long[] pivot, int column) {
+        long targetFactor = pivot[column];
+        long pivotFactor = target[column];
+        for (int i = 0; i < target.length; i++) {
+            target[i] = target[i] * targetFactor - pivot[i] * pivotFactor;
+        }
+        normalise(target);
+    }
+
+    /**
+     * Divides the vector by the greatest common divisor of its entries
+     *
+     * @param vector vector to normalise in place
+     */
+    static void normalise(long[] vector) {
+        long divisor = 0;
+        for (long value : vector) {
+            divisor = gcd(divisor, Math.abs(value));
+        }
+        if (divisor > 1) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= divisor;
+            }
+        }
+    }
+
+    /**
+     * @param a first value
+     * @param b second value
+     * @return greatest common divisor of a and b
+     */
+    static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * @param a first positive value
+     * @param b second positive value
+     * @return lowest common multiple of a and b
+     */
+    private static long lcm(long a, long b) {
+        return a / gcd(a, b) * b;
+    }
+
+    /**
+     * @return the invariant basis, each invariant is indexed by the rows of the incidence matrix
+     */
+    public List<long[]> getInvariants() {
+        return Collections.unmodifiableList(invariants);
+    }
+
+    /**
+     * @return rows of the incidence matrix that are dropped from compressed states
+     */
+    public List<Integer> getDroppedRows() {
+        return Collections.unmodifiableList(droppedRows);
+    }
+
+    /**
+     * @return rows of the incidence matrix that are kept in compressed states
+     */
+    public List<Integer> getStoredRows() {
+        return Collections.unmodifiableList(storedRows);
+    }
+
+    /**
+     * @return true if compressing states drops at least one place and token pair
+     */
+    public boolean canCompress() {
+        return !droppedRows.isEmpty();
+    }
+
+    /**
+     * @param state full state of the Petri net
+     * @return state containing only the stored rows
+     */
+    public ClassifiedState compress(ClassifiedState state) {
+        if (!canCompress()) {
+            return state;
+        }
+        HashedStateBuilder builder = new HashedStateBuilder();
+        for (int row : storedRows) {
+            String placeId = matrix.getPlaceId(row);
+            String tokenId = matrix.getTokenId(row);
+            builder.placeWithToken(placeId, tokenId, state.getTokens(placeId).get(tokenId));
+        }
+        return classify(builder.build(), state.isTangible());
+    }
+
+    /**
+     * @param state compressed state
+     * @return full state with the dropped rows reconstructed from the invariants
+     */
+    public ClassifiedState expand(ClassifiedState state) {
+        if (!canCompress()) {
+            return state;
+        }
+        int[] marking = new int[matrix.getNumberOfRows()];
+        HashedStateBuilder builder = new HashedStateBuilder();
+        for (int row : storedRows) {
+            String placeId = matrix.getPlaceId(row);
+            String tokenId = matrix.getTokenId(row);
+            marking[row] = state.getTokens(placeId).get(tokenId);
+            builder.placeWithToken(placeId, tokenId, marking[row]);
+        }
+        for (int i = 0; i < invariants.size(); i++) {
+            long[] invariant = invariants.get(i);
+            int dropped = droppedRows.get(i);
+            long remainder = sums[i];
+            for (int row : storedRows) {
+                remainder -= invariant[row] * marking[row];
+            }
+            builder.placeWithToken(matrix.getPlaceId(dropped), matrix.getTokenId(dropped),
+                    (int) (remainder / invariant[dropped]));
+        }
+        return classify(builder.build(), state.isTangible());
+    }
+
+    /**
+     * @param state    state
+     * @param tangible true if the state is tangible
+     * @return classified state
+     */
+    private static ClassifiedState classify(State state, boolean tangible) {
+        return tangible ? HashedClassifiedState.tangibleState(state) : HashedClassifiedState.vanishingState(state);
+    }
+}
@@ -0,0 +1,163 @@
+package pipe.structural;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Structural upper bounds on the number of tokens each place and token pair can hold.
+ * <p>
+ * Bounds come from the semi-positive P-invariants of the net: if y &gt;= 0 is an invariant then
+ * y[p] * m[p] &lt;= y . m0 for every reachable marking m, so m[p] &lt;= (y . m0) / y[p]. The semi-positive
+ * invariants are generated with the Farkas algorithm, which can blow up on large nets. If it grows
+ * beyond {@link #MAX_FARKAS_ROWS} rows it is abandoned and bounds fall back to place capacities,
+ * leaving every other place {@link #UNBOUNDED}.
+ * </p><p>
+ * The bounds only hold for markings reachable from the markings they were computed from, by
+ * default the Petri net's initial marking, and are only computed if all arc weights are
+ * constant integers. When exploring from several roots the bounds must be computed from all
+ * of them, each invariant is then bounded by its largest weighted sum over the roots.
+ * </p>
+ */
+public final class PlaceBounds {
+    /**
+     * Bound of a place and token pair that could not be bounded structurally
+     */
+    public static final int UNBOUNDED = -1;
+
+    /**
+     * Maximum number of intermediate rows the Farkas algorithm may generate
+     */
+    static final int MAX_FARKAS_ROWS = 10_000;
+
+    /**
+     * Bound of each row of the incidence matrix
+     */
+    private final int[] bounds;
+
+    /**
+     * @param matrix structure of the Petri net
+     */
+    public PlaceBounds(IncidenceMatrix matrix) {
+        this(matrix, Collections.singletonList(matrix.getInitialMarking()));
+    }
+
+    /**
+     * @param matrix   structure of the Petri net
+     * @param markings markings the bounded markings are reachable from, see {@link IncidenceMatrix#toMarking}
+     */
+    public PlaceBounds(IncidenceMatrix matrix, Collection<int[]> markings) {
+        int rows = matrix.getNumberOfRows();
+        bounds = new int[rows];
+        Arrays.fill(bounds, UNBOUNDED);
+        for (int row = 0; row < rows; row++) {
+            if (matrix.getCapacity(row) > 0) {
+                bounds[row] = matrix.getCapacity(row);
+            }
+        }
+        if (!matrix.hasConstantWeights()) {
+            return;
+        }
+        for (long[] invariant : semiPositiveInvariants(matrix)) {
+            long sum = 0;
+            for (int[] marking : markings) {
+                sum = Math.max(sum, weightedSum(invariant, marking));
+            }
+            for (int row = 0; row < rows; row++) {
+                if (invariant[row] > 0) {
+                    long bound = sum / invariant[row];
+                    if (bound <= Integer.MAX_VALUE && (bounds[row] == UNBOUNDED || bound < bounds[row])) {
+                        bounds[row] = (int) bound;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param invariant semi-positive P-invariant
+     * @param marking   number of tokens in each row
+     * @return invariant weighted token count of the marking
+     */
+    private static long weightedSum(long[] invariant, int[] marking) {
+        long sum = 0;
+        for (int row = 0; row < invariant.length; row++) {
+            sum += invariant[row] * marking[row];
+        }
+        return sum;
+    }
+
+    /**
+     * Runs the Farkas algorithm on the incidence matrix, eliminating one transition at a time
+     * by combining rows whose changes have opposite signs.
+     *
+     * @param matrix structure of the Petri net
+     * @return semi-positive invariants, empty if the algorithm grew too large
+     */
+    private static List<long[]> semiPositiveInvariants(IncidenceMatrix matrix) {
+        int rows = matrix.getNumberOfRows();
+        int transitions = matrix.getNumberOfTransitions();
+        List<long[]> current = new ArrayList<>();
+        for (int row = 0; row < rows; row++) {
+            long[] combined = new long[transitions + rows];
+            for (int column = 0; column < transitions; column++) {
+                combined[column] = matrix.getChange(column, row);
+            }
+            combined[transitions + row] = 1;
+            current.add(combined);
+        }
+
+        for (int column = 0; column < transitions; column++) {
+            List<long[]> next = new ArrayList<>();
+            List<long[]> positive = new ArrayList<>();
+            List<long[]> negative = new ArrayList<>();
+            for (long[] combined : current) {
+                if (combined[column] == 0) {
+                    next.add(combined);
+                } else if (combined[column] > 0) {
+                    positive.add(combined);
+                } else {
+                    negative.add(combined);
+                }
+            }
+            if (next.size() + (long) positive.size() * negative.size() > MAX_FARKAS_ROWS) {
+                return new ArrayList<>();
+            }
+            for (long[] p : positive) {
+                for (long[] n : negative) {
+                    long[] combined = new long[p.length];
+                    for (int i = 0; i < combined.length; i++) {
+                        combined[i] = -n[column] * p[i] + p[column] * n[i];
+                    }
+                    PInvariants.normalise(combined);
+                    next.add(combined);
+                }
+            }
+            current = next;
+        }
+
+        List<long[]> invariants = new ArrayList<>();
+        for (long[] combined : current) {
+            invariants.add(Arrays.copyOfRange(combined, transitions, combined.length));
+        }
+        return invariants;
+    }
+
+    /**
+     * @param row row of the incidence matrix
+     * @return maximum number of tokens the row can hold, or {@link #UNBOUNDED}
+     */
+    public int getBound(int row) {
+        return bounds[row];
+    }
+
+    /**
+     * @param row row of the incidence matrix
+     * @return true if the row has a structural bound
+     */
+    public boolean isBounded(int row) {
+        return bounds[row] != UNBOUNDED;
+    }
+}
@@ -6,6 +6,9 @@ import cucumber.api.java.en.Given;
 import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
 import pipe.reachability.algorithm.*;
+import pipe.reachability.algorithm.symbolic.SymbolicStateSpace;
+import pipe.reachability.algorithm.symbolic.SymbolicStateSpaceExplorer;
+import uk.ac.imperial.io.StateProcessor;
 import uk.ac.imperial.pipe.exceptions.InvalidRateException;
 import uk.ac.imperial.pipe.exceptions.PetriNetComponentNotFoundException;
 import uk.ac.imperial.pipe.models.petrinet.PetriNet;
@@ -18,6 +21,7 @@ import utils.Utils;
 import javax.xml.bind.JAXBException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
@@ -59,6 +63,11 @@ public class StateSpaceExplorerStepDefinitions {
 
     private int processedTransitons = 0;
 
+    /**
+     * Symbolically generated state space
+     */
+    private SymbolicStateSpace symbolicStateSpace;
+
     @Before("@tangibleOnly")
     public void beforeTangibleScenario() {
         utils = new TangibleOnlyUtils();
@@ -128,6 +137,38 @@ public class StateSpaceExplorerStepDefinitions {
         }
     }
 
+    @When("^I generate the state space symbolically$")
+    public void I_generate_the_state_space_symbolically() {
+        symbolicStateSpace = new SymbolicStateSpaceExplorer(petriNet).generate();
+    }
+
+    @When("^I export the symbolic state space$")
+    public void I_export_the_symbolic_state_space() throws InvalidRateException {
+        StateSpaceExplorer.StateSpaceExplorerResults result =
+                symbolicStateSpace.export(new UnboundedExplorerUtilities(petriNet), new StateProcessor() {
+                    @Override
+                    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+                        results.put(state, successorRates);
+                    }
+
+                    @Override
+                    public void processState(ClassifiedState state, int stateId) {
+                        stateMappings.put(state, stateId);
+                    }
+                });
+        processedTransitons = result.processedTransitions;
+    }
+
+    @Then("^the symbolic state space has (\\d+) states$")
+    public void the_symbolic_state_space_has_states(long states) {
+        assertEquals(BigInteger.valueOf(states), symbolicStateSpace.size());
+    }
+
+    @And("^the symbolic state space has (\\d+) deadlocks?$")
+    public void the_symbolic_state_space_has_deadlocks(long deadlocks) {
+        assertEquals(BigInteger.valueOf(deadlocks), symbolicStateSpace.countDeadlocks());
+    }
+
     @Then("^I expect to see (\\d+) state transitions?")
     public void I_expect_transitions(int transitionCount) {
         assertEquals(transitionCount, processedTransitons);
@@ -0,0 +1,72 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import pipe.structural.BitPackedMarkingLayout;
+import pipe.structural.IncidenceMatrix;
+import pipe.structural.PlaceBounds;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.MockPetriNet;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitPackedExploredStateSetTest {
+
+    private IncidenceMatrix matrix;
+
+    private BitPackedExploredStateSet explored;
+
+    @Before
+    public void setUp() {
+        MockPetriNet net = new MockPetriNet();
+        Transition source = net.transition("T0");
+        net.output(source, net.place("P0", 0), "1");
+        net.output(source, net.place("P1", 0), "1");
+        matrix = new IncidenceMatrix(net.getPetriNet());
+        explored = new BitPackedExploredStateSet(new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix)));
+    }
+
+    @Test
+    public void containsAddedState() {
+        explored.add(matrix.toState(new int[]{1, 2}, true), 5);
+        assertTrue(explored.contains(matrix.toState(new int[]{1, 2}, true)));
+        assertFalse(explored.contains(matrix.toState(new int[]{2, 1}, true)));
+        assertEquals(5, explored.getId(matrix.toState(new int[]{1, 2}, true)));
+    }
+
+    @Test
+    public void keepsIdsWhenResizing() {
+        int id = 0;
+        for (int i = 0; i < 400; i++) {
+            for (int j = 0; j < 400; j++) {
+                explored.add(matrix.toState(new int[]{i, j}, true), id++);
+            }
+        }
+        assertEquals(399 * 400 + 7, explored.getId(matrix.toState(new int[]{399, 7}, true)));
+        assertEquals(0, explored.getId(matrix.toState(new int[]{0, 0}, true)));
+    }
+
+    @Test
+    public void storesStatesReachableFromLargestRoot() {
+        MockPetriNet net = new MockPetriNet();
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        net.transition("T1", p1, p0);
+        IncidenceMatrix cycle = new IncidenceMatrix(net.getPetriNet());
+        ClassifiedState initial = cycle.toState(new int[]{1, 0}, true);
+        ClassifiedState larger = cycle.toState(new int[]{0, 3}, true);
+        explored = new BitPackedExploredStateSet(net.getPetriNet(), Arrays.asList(initial, larger));
+
+        explored.add(larger, 0);
+        explored.add(cycle.toState(new int[]{3, 0}, true), 1);
+        assertTrue(explored.contains(cycle.toState(new int[]{3, 0}, true)));
+        assertEquals(0, explored.getId(larger));
+    }
+}
@@ -0,0 +1,77 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class BudgetedExplorerUtilitiesTest {
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    private final int MAX_EXPLORE = 10;
+
+    @Before
+    public void setUp() {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+    }
+
+    @Test
+    public void canExploreIfWithinBudget() {
+        BudgetedExplorerUtilities utilities = unlimitedTimeAndHeap();
+        assertTrue(utilities.canExploreMore(MAX_EXPLORE - 5));
+        assertFalse(utilities.isExhausted());
+    }
+
+    @Test
+    public void cannotExploreIfAboveMaxStates() {
+        BudgetedExplorerUtilities utilities = unlimitedTimeAndHeap();
+        assertFalse(utilities.canExploreMore(MAX_EXPLORE + 10));
+        assertTrue(utilities.isExhausted());
+    }
+
+    @Test
+    public void remainsExhaustedOnceExceeded() {
+        BudgetedExplorerUtilities utilities = unlimitedTimeAndHeap();
+        utilities.canExploreMore(MAX_EXPLORE + 10);
+        assertFalse(utilities.canExploreMore(0));
+    }
+
+    @Test
+    public void cannotExploreIfWrappedUtilitiesCannot() {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(false);
+        BudgetedExplorerUtilities utilities = unlimitedTimeAndHeap();
+        assertFalse(utilities.canExploreMore(0));
+    }
+
+    @Test
+    public void cannotExploreOnceTimeLimitPassed() throws InterruptedException {
+        BudgetedExplorerUtilities utilities = new BudgetedExplorerUtilities(explorerUtilities, 1, TimeUnit.MILLISECONDS,
+                BudgetedExplorerUtilities.NO_HEAP_LIMIT, MAX_EXPLORE);
+        assertTrue(utilities.canExploreMore(0));
+        Thread.sleep(5);
+        assertFalse(utilities.canExploreMore(0));
+    }
+
+    @Test
+    public void cannotExploreAboveHeapWatermark() {
+        BudgetedExplorerUtilities utilities = new BudgetedExplorerUtilities(explorerUtilities,
+                BudgetedExplorerUtilities.NO_TIME_LIMIT, TimeUnit.SECONDS, 0.0, MAX_EXPLORE);
+        assertFalse(utilities.canExploreMore(0));
+    }
+
+    private BudgetedExplorerUtilities unlimitedTimeAndHeap() {
+        return new BudgetedExplorerUtilities(explorerUtilities, BudgetedExplorerUtilities.NO_TIME_LIMIT,
+                TimeUnit.SECONDS, BudgetedExplorerUtilities.NO_HEAP_LIMIT, MAX_EXPLORE);
+    }
+}
@@ -0,0 +1,93 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import uk.ac.imperial.pipe.animation.AnimationLogic;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import uk.ac.imperial.state.State;
+import utils.MockPetriNet;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingExplorerUtilitiesTest {
+    @Mock
+    AnimationLogic animationLogic;
+
+    private final State marked = buildState(1);
+
+    private final State empty = buildState(0);
+
+    private CachingExplorerUtilities utilities;
+
+    @Before
+    public void setUp() {
+        MockPetriNet net = new MockPetriNet();
+        final Transition transition = net.transition("T0");
+        when(animationLogic.getEnabledTransitions(any(State.class))).thenAnswer(new Answer<Set<Transition>>() {
+            @Override
+            public Set<Transition> answer(InvocationOnMock invocation) {
+                State state = (State) invocation.getArguments()[0];
+                return state.getTokens("P0").get("Default") > 0 ? Collections.singleton(transition)
+                        : Collections.<Transition>emptySet();
+            }
+        });
+        when(animationLogic.getFiredState(any(State.class), any(Transition.class))).thenReturn(empty);
+        utilities = new CachingExplorerUtilities(net.getPetriNet(), animationLogic) {
+            @Override
+            public boolean canExploreMore(int stateCount) {
+                return true;
+            }
+        };
+    }
+
+    @Test
+    public void checksEnabledTransitionsOncePerExpandedState() {
+        ClassifiedState initial = utilities.classify(marked);
+        Collection<ClassifiedState> successors = utilities.getSuccessors(initial);
+        assertEquals(1, successors.size());
+        ClassifiedState successor = successors.iterator().next();
+        assertTrue(utilities.getSuccessors(successor).isEmpty());
+
+        verify(animationLogic, times(2)).getEnabledTransitions(any(State.class));
+    }
+
+    @Test
+    public void enabledSetOfClassifiedStateIsCached() {
+        ClassifiedState initial = utilities.classify(marked);
+        BitSet enabled = utilities.getEnabledTransitionSet(initial);
+
+        assertEquals(1, enabled.cardinality());
+        assertTrue(enabled.get(0));
+        verify(animationLogic, times(1)).getEnabledTransitions(any(State.class));
+    }
+
+    /**
+     * Builds a single place state holding count tokens
+     *
+     * @param count tokens in P0
+     * @return state
+     */
+    private static State buildState(int count) {
+        HashedStateBuilder stateBuilder = new HashedStateBuilder();
+        stateBuilder.placeWithToken("P0", "Default", count);
+        return stateBuilder.build();
+    }
+}
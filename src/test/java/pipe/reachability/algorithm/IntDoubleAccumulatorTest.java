@@ -0,0 +1,54 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntDoubleAccumulatorTest {
+
+    private IntDoubleAccumulator accumulator;
+
+    @Before
+    public void setUp() {
+        accumulator = new IntDoubleAccumulator();
+    }
+
+    @Test
+    public void sumsValuesOfSameKey() {
+        accumulator.add(3, 1.5);
+        accumulator.add(7, 2.0);
+        accumulator.add(3, 0.5);
+        assertEquals(2, accumulator.size());
+        assertEquals(3, accumulator.getKey(0));
+        assertEquals(2.0, accumulator.getValue(0), 0.0);
+        assertEquals(7, accumulator.getKey(1));
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        for (int i = 0; i < 1000; i++) {
+            accumulator.add(i * 31, i);
+            accumulator.add(i * 31, 1);
+        }
+        assertEquals(1000, accumulator.size());
+        Map<Integer, Double> map = accumulator.toMap();
+        assertEquals(1000, map.size());
+        assertEquals(500.0, map.get(499 * 31), 0.0);
+    }
+
+    @Test
+    public void clearAllowsReuse() {
+        for (int i = 0; i < 100; i++) {
+            accumulator.add(i, 1.0);
+        }
+        accumulator.clear();
+        assertEquals(0, accumulator.size());
+        accumulator.add(5, 2.0);
+        accumulator.add(5, 2.0);
+        assertEquals(1, accumulator.size());
+        assertEquals(4.0, accumulator.getValue(0), 0.0);
+    }
+}
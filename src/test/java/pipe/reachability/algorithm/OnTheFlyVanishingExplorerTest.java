@@ -0,0 +1,171 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class OnTheFlyVanishingExplorerTest {
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    private final ClassifiedState vanishing = buildState(false, 1, 0, 0);
+
+    private final ClassifiedState a = buildState(true, 0, 1, 0);
+
+    private final ClassifiedState b = buildState(true, 0, 0, 1);
+
+    private OnTheFlyVanishingExplorer explorer;
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        explorer = new OnTheFlyVanishingExplorer(explorerUtilities);
+        Collection<ClassifiedState> successors = Arrays.asList(a, b);
+        when(explorerUtilities.getSuccessors(vanishing)).thenReturn(successors);
+        successor(a, 1.0);
+        successor(b, 3.0);
+    }
+
+    @Test
+    public void splitsRateByProbability() throws TimelessTrapException, InvalidRateException {
+        Map<ClassifiedState, Double> rates = rates(explorer.explore(vanishing, 2.0));
+        assertEquals(0.5, rates.get(a), 0.0001);
+        assertEquals(1.5, rates.get(b), 0.0001);
+    }
+
+    @Test
+    public void evaluatesWeightsOncePerVanishingState() throws TimelessTrapException, InvalidRateException {
+        explorer.explore(vanishing, 1.0);
+        Map<ClassifiedState, Double> rates = rates(explorer.explore(vanishing, 4.0));
+        assertEquals(3.0, rates.get(b), 0.0001);
+        verify(explorerUtilities, times(2)).getWeightOfTransitions(any(ClassifiedState.class), anyCollection());
+    }
+
+    @Test
+    public void forkedExplorationMatchesSequential() throws TimelessTrapException, InvalidRateException {
+        final List<ClassifiedState> children = new ArrayList<>();
+        for (int i = 0; i < 3 * OnTheFlyVanishingExplorer.SPLIT_THRESHOLD; i++) {
+            children.add(buildState(false, 1, 0, 0, i + 1));
+        }
+        when(explorerUtilities.getSuccessors(any(ClassifiedState.class))).thenAnswer(
+                new Answer<Collection<ClassifiedState>>() {
+                    @Override
+                    public Collection<ClassifiedState> answer(InvocationOnMock invocation) {
+                        ClassifiedState state = (ClassifiedState) invocation.getArguments()[0];
+                        if (state.equals(vanishing)) {
+                            return children;
+                        }
+                        int child = state.getTokens("P3").get("Default");
+                        return Arrays.asList(buildState(true, 0, 0, 0, child), a);
+                    }
+                });
+        Collection<Transition> transitions = Arrays.asList(mock(Transition.class));
+        when(explorerUtilities.getTransitions(any(ClassifiedState.class), any(ClassifiedState.class)))
+                .thenReturn(transitions);
+        when(explorerUtilities.getWeightOfTransitions(any(ClassifiedState.class), anyCollection())).thenReturn(1.0);
+
+        Map<ClassifiedState, Double> sequential = rates(explorer.explore(vanishing, 1.0));
+        Map<ClassifiedState, Double> forked =
+                rates(new OnTheFlyVanishingExplorer(explorerUtilities, 4).explore(vanishing, 1.0));
+
+        assertEquals(sequential.keySet(), forked.keySet());
+        for (Map.Entry<ClassifiedState, Double> entry : sequential.entrySet()) {
+            assertEquals(entry.getValue(), forked.get(entry.getKey()), 0.0001);
+        }
+    }
+
+    @Test(expected = TimelessTrapException.class)
+    public void throwsForVanishingCycleWithNoExit() throws TimelessTrapException, InvalidRateException {
+        ClassifiedState entry = buildState(false, 2, 0, 0);
+        ClassifiedState first = buildState(false, 3, 0, 0);
+        ClassifiedState second = buildState(false, 4, 0, 0);
+        successors(entry, first, a);
+        successors(first, second);
+        successors(second, first);
+
+        explorer.explore(entry, 1.0);
+    }
+
+    @Test
+    public void walksLongCycleThatCanExit() throws TimelessTrapException, InvalidRateException {
+        ClassifiedState first = buildState(false, 2, 0, 0);
+        ClassifiedState second = buildState(false, 3, 0, 0);
+        successors(first, second);
+        successors(second, first, a);
+        Collection<Transition> back = Arrays.asList(mock(Transition.class));
+        when(explorerUtilities.getTransitions(second, first)).thenReturn(back);
+        when(explorerUtilities.getWeightOfTransitions(second, back)).thenReturn(100.0);
+
+        Map<ClassifiedState, Double> rates =
+                rates(new OnTheFlyVanishingExplorer(explorerUtilities, 4).explore(first, 1.0));
+
+        assertEquals(1.0, rates.get(a), 0.0001);
+    }
+
+    private void successors(ClassifiedState state, ClassifiedState... successors) throws InvalidRateException {
+        Collection<ClassifiedState> stateSuccessors = Arrays.asList(successors);
+        when(explorerUtilities.getSuccessors(state)).thenReturn(stateSuccessors);
+        for (ClassifiedState successor : successors) {
+            Collection<Transition> transitions = Arrays.asList(mock(Transition.class));
+            when(explorerUtilities.getTransitions(state, successor)).thenReturn(transitions);
+            when(explorerUtilities.getWeightOfTransitions(state, transitions)).thenReturn(1.0);
+        }
+    }
+
+    private void successor(ClassifiedState successor, double weight) throws InvalidRateException {
+        Collection<Transition> transitions = Arrays.asList(mock(Transition.class));
+        when(explorerUtilities.getTransitions(vanishing, successor)).thenReturn(transitions);
+        when(explorerUtilities.getWeightOfTransitions(vanishing, transitions)).thenReturn(weight);
+    }
+
+    private Map<ClassifiedState, Double> rates(Collection<StateRateRecord> records) {
+        Map<ClassifiedState, Double> rates = new HashMap<>();
+        for (StateRateRecord record : records) {
+            Double previous = rates.get(record.getState());
+            rates.put(record.getState(), previous == null ? record.getRate() : previous + record.getRate());
+        }
+        return rates;
+    }
+
+    /**
+     * Builds a single token state with place counts
+     * @param tangible
+     * @param counts
+     * @return
+     */
+    private ClassifiedState buildState(boolean tangible, int... counts) {
+        HashedStateBuilder stateBuilder = new HashedStateBuilder();
+        int i = 0;
+        for (int count : counts) {
+            stateBuilder.placeWithToken("P" + i, "Default", count);
+            i++;
+        }
+        return tangible ? HashedClassifiedState.tangibleState(stateBuilder.build())
+                : HashedClassifiedState.vanishingState(stateBuilder.build());
+    }
+}
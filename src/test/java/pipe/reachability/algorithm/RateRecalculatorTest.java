@@ -0,0 +1,92 @@
+package pipe.reachability.algorithm;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import pipe.reachability.io.RateStructureReader;
+import pipe.reachability.io.RateStructureWriter;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.Record;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RateRecalculatorTest {
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    ClassifiedState state;
+
+    private RateRecalculator recalculator;
+
+    private final Map<Integer, ClassifiedState> states = new HashMap<>();
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        Transition t0 = mock(Transition.class);
+        when(t0.getId()).thenReturn("T0");
+        Transition t1 = mock(Transition.class);
+        when(t1.getId()).thenReturn("T1");
+        recalculator = new RateRecalculator(explorerUtilities, Arrays.asList(t0, t1));
+        when(explorerUtilities.getWeightOfTransitions(any(ClassifiedState.class), anyCollection())).thenReturn(4.0);
+        states.put(0, state);
+    }
+
+    @Test
+    public void readsBackWrittenRows() {
+        RateStructureReader reader = roundTrip(Collections.singletonMap(1,
+                Arrays.asList(new RateTerm(Arrays.asList("T0", "T1"), 0.5))));
+        RateStructureReader.Row row = reader.readRow();
+        assertEquals(0, row.state);
+        RateTerm term = row.edges.get(1).get(0);
+        assertEquals(0.5, term.getFactor(), 0.0);
+        assertEquals(Arrays.asList("T0", "T1"), new ArrayList<>(term.getTransitionIds()));
+        assertNull(reader.readRow());
+    }
+
+    @Test
+    public void sumsFactoredTerms() throws InvalidRateException {
+        List<RateTerm> terms = Arrays.asList(new RateTerm(Arrays.asList("T0"), 1.0),
+                new RateTerm(Arrays.asList("T1"), 0.25));
+        List<Record> records = recalculator.recalculate(roundTrip(Collections.singletonMap(1, terms)), states);
+        assertEquals(1, records.size());
+        assertEquals(5.0, records.get(0).successors.get(1), 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsForUnknownTransition() throws InvalidRateException {
+        recalculator.recalculate(roundTrip(Collections.singletonMap(1,
+                Arrays.asList(new RateTerm(Arrays.asList("T9"), 1.0)))), states);
+    }
+
+    private RateStructureReader roundTrip(Map<Integer, List<RateTerm>> edges) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Output output = new Output(stream);
+        RateStructureWriter writer = new RateStructureWriter(output);
+        writer.writeRow(0, edges);
+        writer.finish();
+        return new RateStructureReader(new Input(new ByteArrayInputStream(stream.toByteArray())));
+    }
+}
@@ -0,0 +1,67 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+public class StateRateAccumulatorTest {
+
+    private StateRateAccumulator accumulator;
+
+    @Before
+    public void setUp() {
+        accumulator = new StateRateAccumulator();
+    }
+
+    @Test
+    public void sumsRatesOfSameState() {
+        ClassifiedState first = mock(ClassifiedState.class);
+        ClassifiedState second = mock(ClassifiedState.class);
+        accumulator.add(first, 1.5);
+        accumulator.add(second, 2.0);
+        accumulator.add(first, 0.5);
+        assertEquals(2, accumulator.size());
+        assertSame(first, accumulator.getState(0));
+        assertEquals(2.0, accumulator.getRate(0), 0.0);
+        assertSame(second, accumulator.getState(1));
+    }
+
+    @Test
+    public void reusesRecords() {
+        ClassifiedState first = mock(ClassifiedState.class);
+        ClassifiedState second = mock(ClassifiedState.class);
+        accumulator.add(first, 1.0);
+        StateRateRecord record = accumulator.toRecords().get(0);
+
+        accumulator.clear();
+        accumulator.add(second, 3.0);
+        List<StateRateRecord> records = accumulator.toRecords();
+
+        assertEquals(1, records.size());
+        assertSame(record, records.get(0));
+        assertSame(second, record.getState());
+        assertEquals(3.0, record.getRate(), 0.0);
+    }
+
+    @Test
+    public void growsPastInitialCapacity() {
+        ClassifiedState[] states = new ClassifiedState[100];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = mock(ClassifiedState.class);
+            accumulator.add(states[i], i);
+        }
+        for (ClassifiedState state : states) {
+            accumulator.add(state, 1.0);
+        }
+        List<StateRateRecord> records = accumulator.toRecords();
+        assertEquals(100, records.size());
+        assertSame(states[99], records.get(99).getState());
+        assertEquals(100.0, records.get(99).getRate(), 0.0);
+    }
+}
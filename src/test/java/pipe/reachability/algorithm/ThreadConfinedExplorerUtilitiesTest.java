@@ -0,0 +1,96 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ThreadConfinedExplorerUtilitiesTest {
+
+    private final List<ExplorerUtilities> created = Collections.synchronizedList(new ArrayList<ExplorerUtilities>());
+
+    private final ClassifiedState state = mock(ClassifiedState.class);
+
+    private ThreadConfinedExplorerUtilities utilities;
+
+    @Before
+    public void setUp() {
+        utilities = new ThreadConfinedExplorerUtilities(new ExplorerUtilitiesFactory() {
+            @Override
+            public ExplorerUtilities create() {
+                ExplorerUtilities threadUtilities = mock(ExplorerUtilities.class);
+                when(threadUtilities.canExploreMore(10)).thenReturn(true);
+                created.add(threadUtilities);
+                return threadUtilities;
+            }
+        });
+    }
+
+    @Test
+    public void reusesUtilitiesOnSameThread() {
+        utilities.getSuccessors(state);
+        utilities.getSuccessors(state);
+        assertEquals(1, created.size());
+        verify(created.get(0), times(2)).getSuccessors(state);
+    }
+
+    @Test
+    public void createsUtilitiesPerThread() throws InterruptedException {
+        utilities.getSuccessors(state);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                utilities.getSuccessors(state);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals(2, created.size());
+        assertNotSame(created.get(0), created.get(1));
+    }
+
+    @Test
+    public void clearsEveryThreadsUtilities() throws InterruptedException {
+        utilities.getSuccessors(state);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                utilities.getSuccessors(state);
+            }
+        });
+        thread.start();
+        thread.join();
+        utilities.clear();
+        for (ExplorerUtilities threadUtilities : created) {
+            verify(threadUtilities).clear();
+        }
+    }
+
+    @Test
+    public void sharesOneBoundBetweenThreads() throws InterruptedException {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                utilities.getSuccessors(state);
+                utilities.canExploreMore(10);
+            }
+        });
+        thread.start();
+        thread.join();
+        utilities.canExploreMore(10);
+        assertEquals(2, created.size());
+        verify(created.get(0), times(2)).canExploreMore(10);
+        verify(created.get(1), never()).canExploreMore(10);
+    }
+}
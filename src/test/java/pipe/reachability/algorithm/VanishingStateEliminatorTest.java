@@ -0,0 +1,97 @@
+package pipe.reachability.algorithm;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import uk.ac.imperial.state.Record;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+
+public class VanishingStateEliminatorTest {
+
+    private final Map<Integer, ClassifiedState> states = new HashMap<>();
+
+    private final List<Record> records = new ArrayList<>();
+
+    private VanishingStateEliminator eliminator;
+
+    @Before
+    public void setUp() {
+        eliminator = new VanishingStateEliminator(2);
+        states.put(0, buildState(true, 0));
+        states.put(1, buildState(false, 1));
+        states.put(2, buildState(true, 2));
+        states.put(3, buildState(false, 3));
+    }
+
+    @Test
+    public void redirectsThroughVanishingCycle()
+            throws TimelessTrapException, InterruptedException, ExecutionException {
+        record(0, 1, 2.0);
+        record(1, 2, 1.0, 3, 1.0);
+        record(2, 0, 3.0);
+        record(3, 0, 1.0, 1, 1.0);
+
+        Map<Integer, Map<Integer, Double>> tangible = byState(eliminator.eliminate(records, states));
+
+        assertEquals(2, tangible.size());
+        assertEquals(4 / 3.0, tangible.get(0).get(2), 0.0001);
+        assertEquals(2 / 3.0, tangible.get(0).get(0), 0.0001);
+        assertEquals(3.0, tangible.get(2).get(0), 0.0001);
+    }
+
+    @Test
+    public void removesVanishingSelfLoops()
+            throws TimelessTrapException, InterruptedException, ExecutionException {
+        record(0, 1, 1.0);
+        record(1, 1, 2.0, 2, 1.0, 0, 1.0);
+        record(2, 0, 1.0);
+
+        Map<Integer, Map<Integer, Double>> tangible = byState(eliminator.eliminate(records, states));
+
+        assertEquals(0.5, tangible.get(0).get(2), 0.0001);
+        assertEquals(0.5, tangible.get(0).get(0), 0.0001);
+    }
+
+    @Test(expected = TimelessTrapException.class)
+    public void throwsOnTimelessTrap() throws TimelessTrapException, InterruptedException, ExecutionException {
+        record(0, 1, 1.0);
+        record(1, 3, 1.0);
+        record(3, 1, 1.0);
+        eliminator.eliminate(records, states);
+    }
+
+    /**
+     * Adds a record for the state with alternating successor ids and rates
+     */
+    private void record(int state, Object... successorRates) {
+        Map<Integer, Double> successors = new HashMap<>();
+        for (int i = 0; i < successorRates.length; i += 2) {
+            successors.put((Integer) successorRates[i], (Double) successorRates[i + 1]);
+        }
+        records.add(new Record(state, successors));
+    }
+
+    private Map<Integer, Map<Integer, Double>> byState(List<Record> records) {
+        Map<Integer, Map<Integer, Double>> byState = new HashMap<>();
+        for (Record record : records) {
+            byState.put(record.state, record.successors);
+        }
+        return byState;
+    }
+
+    private ClassifiedState buildState(boolean tangible, int count) {
+        HashedStateBuilder stateBuilder = new HashedStateBuilder();
+        stateBuilder.placeWithToken("P0", "Default", count);
+        return tangible ? HashedClassifiedState.tangibleState(stateBuilder.build())
+                : HashedClassifiedState.vanishingState(stateBuilder.build());
+    }
+}
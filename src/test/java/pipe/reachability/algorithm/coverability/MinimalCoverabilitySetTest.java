@@ -0,0 +1,85 @@
+package pipe.reachability.algorithm.coverability;
+
+import org.junit.Before;
+import org.junit.Test;
+import pipe.structural.IncidenceMatrix;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import utils.MockPetriNet;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MinimalCoverabilitySetTest {
+    private static final int OMEGA = MinimalCoverabilitySet.OMEGA;
+
+    private MockPetriNet net;
+
+    @Before
+    public void setUp() {
+        net = new MockPetriNet();
+    }
+
+    @Test
+    public void boundedNetIsEveryReachableMarking() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        net.transition("T1", p1, p0);
+
+        MinimalCoverabilitySet set = new MinimalCoverabilitySet(new IncidenceMatrix(net.getPetriNet()));
+
+        assertTrue(set.isBounded());
+        assertEquals(2, set.getMarkings().size());
+    }
+
+    @Test
+    public void acceleratesProducerToOmega() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        Transition t0 = net.transition("T0", p0, p0);
+        net.output(t0, p1, "1");
+
+        MinimalCoverabilitySet set = new MinimalCoverabilitySet(new IncidenceMatrix(net.getPetriNet()));
+
+        List<int[]> markings = set.getMarkings();
+        assertEquals(1, markings.size());
+        assertArrayEquals(new int[]{1, OMEGA}, markings.get(0));
+        assertFalse(set.isBounded());
+        assertTrue(set.getUnboundedRows().get(1));
+    }
+
+    @Test
+    public void discardsCoveredMarkings() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        Place p2 = net.place("P2", 0);
+        Place p3 = net.place("P3", 0);
+        Transition t0 = net.transition("T0", p0, p0);
+        net.output(t0, p1, "1");
+        Transition t1 = net.transition("T1", p0, p0);
+        net.output(t1, p2, "1");
+        Transition t2 = net.transition("T2", p1, p3);
+        net.input(t2, p2, "1");
+
+        MinimalCoverabilitySet set = new MinimalCoverabilitySet(new IncidenceMatrix(net.getPetriNet()));
+
+        List<int[]> markings = set.getMarkings();
+        assertEquals(1, markings.size());
+        assertArrayEquals(new int[]{1, OMEGA, OMEGA, OMEGA}, markings.get(0));
+        assertTrue(set.getNodesGenerated() < 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInhibitorArcs() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        Transition t0 = net.transition("T0", p0, p1);
+        net.inhibitor(t0, p1);
+        new MinimalCoverabilitySet(new IncidenceMatrix(net.getPetriNet()));
+    }
+}
@@ -0,0 +1,125 @@
+package pipe.reachability.algorithm.parallel;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.HashedExploredStateSet;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import pipe.reachability.algorithm.sequential.SequentialStateSpaceExplorer;
+import pipe.reachability.io.KryoBatchStateProcessor;
+import pipe.reachability.io.KryoTransitionBatchReader;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.Record;
+import utils.RecordingProcessor;
+import utils.TreeStateSpace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdaptiveStateSpaceExplorerTest {
+    /**
+     * Number of states in the binary tree state space
+     */
+    private static final int STATES = 1000;
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    VanishingExplorer vanishingExplorer;
+
+    private final ClassifiedState root = TreeStateSpace.state(0);
+
+    /**
+     * Names of the threads that found successors
+     */
+    private final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+        when(explorerUtilities.rate(any(ClassifiedState.class), any(ClassifiedState.class))).thenReturn(1.0);
+        when(explorerUtilities.getSuccessors(any(ClassifiedState.class)))
+                .thenAnswer(TreeStateSpace.binaryTreeWithReturn(STATES, threads));
+    }
+
+    @Test
+    public void givesSameIdsAsSequentialExplorer()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor sequential = new RecordingProcessor();
+        new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, sequential).generate(root);
+
+        threads.clear();
+        RecordingProcessor adaptive = new RecordingProcessor();
+        StateSpaceExplorer.StateSpaceExplorerResults results =
+                new AdaptiveStateSpaceExplorer(explorerUtilities, vanishingExplorer, adaptive, 4, 32,
+                        new HashedExploredStateSet(STATES), 0, 1).generate(root);
+
+        assertEquals(STATES, results.numberOfStates);
+        assertEquals(sequential.getIds(), adaptive.getIds());
+        assertEquals(sequential.getTransitions(), adaptive.getTransitions());
+        assertTrue("Expected a parallel round", threads.size() > 1);
+    }
+
+    @Test
+    public void staysSequentialWhenParallelDoesNotPay()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor adaptive = new RecordingProcessor();
+        new AdaptiveStateSpaceExplorer(explorerUtilities, vanishingExplorer, adaptive, 4, 32,
+                new HashedExploredStateSet(STATES), Long.MAX_VALUE, 1).generate(root);
+
+        assertEquals(STATES, adaptive.getIds().size());
+        assertEquals(1, threads.size());
+        assertFalse(threads.iterator().next().startsWith("pool"));
+    }
+
+    @Test
+    public void writesRoundsThroughBatchProcessor()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor sequential = new RecordingProcessor();
+        new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, sequential).generate(root);
+
+        RecordingProcessor adaptive = new RecordingProcessor();
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        Output output = new Output(stream);
+        KryoBatchStateProcessor processor = new KryoBatchStateProcessor(adaptive, output);
+        new AdaptiveStateSpaceExplorer(explorerUtilities, vanishingExplorer, processor, 4, 32,
+                new HashedExploredStateSet(STATES), 0, 1).generate(root);
+        processor.finish();
+
+        Map<Integer, Map<Integer, Double>> transitions = new HashMap<>();
+        Input input = new Input(new ByteArrayInputStream(stream.toByteArray()));
+        for (Record record : new KryoTransitionBatchReader(input).readRecords()) {
+            transitions.put(record.state, record.successors);
+        }
+        assertEquals(sequential.getIds(), adaptive.getIds());
+        assertTrue(adaptive.getTransitions().isEmpty());
+        assertEquals(sequential.getTransitions(), transitions);
+    }
+}
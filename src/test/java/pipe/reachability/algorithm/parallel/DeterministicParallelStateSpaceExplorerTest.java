@@ -0,0 +1,91 @@
+package pipe.reachability.algorithm.parallel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import pipe.reachability.algorithm.sequential.SequentialStateSpaceExplorer;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.RecordingProcessor;
+import utils.TreeStateSpace;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DeterministicParallelStateSpaceExplorerTest {
+    /**
+     * Number of states in the binary tree state space
+     */
+    private static final int STATES = 1000;
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    VanishingExplorer vanishingExplorer;
+
+    private final ClassifiedState root = TreeStateSpace.state(0);
+
+    /**
+     * Names of the threads that found successors
+     */
+    private final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+        when(explorerUtilities.rate(any(ClassifiedState.class), any(ClassifiedState.class))).thenReturn(1.0);
+        when(explorerUtilities.getSuccessors(any(ClassifiedState.class)))
+                .thenAnswer(TreeStateSpace.binaryTreeWithReturn(STATES, threads));
+    }
+
+    @Test
+    public void givesSameIdsAsSequentialExplorer()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor sequential = new RecordingProcessor();
+        new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, sequential).generate(root);
+
+        threads.clear();
+        RecordingProcessor deterministic = new RecordingProcessor();
+        StateSpaceExplorer.StateSpaceExplorerResults results =
+                new DeterministicParallelStateSpaceExplorer(explorerUtilities, vanishingExplorer, deterministic, 4)
+                        .generate(root);
+
+        assertEquals(STATES, results.numberOfStates);
+        assertEquals(sequential.getIds(), deterministic.getIds());
+        assertEquals(sequential.getTransitions(), deterministic.getTransitions());
+        assertTrue("Expected several threads", threads.size() > 1);
+    }
+
+    @Test
+    public void givesSameIdsWithAnyNumberOfThreads()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor two = new RecordingProcessor();
+        new DeterministicParallelStateSpaceExplorer(explorerUtilities, vanishingExplorer, two, 2)
+                .generate(root);
+        RecordingProcessor seven = new RecordingProcessor();
+        new DeterministicParallelStateSpaceExplorer(explorerUtilities, vanishingExplorer, seven, 7)
+                .generate(root);
+
+        assertEquals(two.getIds(), seven.getIds());
+        assertEquals(two.getTransitions(), seven.getTransitions());
+    }
+}
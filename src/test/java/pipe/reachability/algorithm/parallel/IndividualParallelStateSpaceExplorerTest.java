@@ -0,0 +1,106 @@
+package pipe.reachability.algorithm.parallel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import pipe.reachability.algorithm.sequential.SequentialStateSpaceExplorer;
+import pipe.reachability.io.BatchStateProcessor;
+import pipe.reachability.io.TransitionBatch;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.RecordingProcessor;
+import utils.TreeStateSpace;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IndividualParallelStateSpaceExplorerTest {
+    /**
+     * Number of states in the binary tree state space
+     */
+    private static final int STATES = 1000;
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    VanishingExplorer vanishingExplorer;
+
+    private final ClassifiedState root = TreeStateSpace.state(0);
+
+    /**
+     * Names of the threads that found successors
+     */
+    private final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+        when(explorerUtilities.rate(any(ClassifiedState.class), any(ClassifiedState.class))).thenReturn(1.0);
+        when(explorerUtilities.getSuccessors(any(ClassifiedState.class)))
+                .thenAnswer(TreeStateSpace.binaryTreeWithReturn(STATES, threads));
+    }
+
+    @Test
+    public void givesSameIdsAsSequentialExplorer()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor sequential = new RecordingProcessor();
+        new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, sequential).generate(root);
+
+        threads.clear();
+        RecordingProcessor parallel = new RecordingProcessor();
+        StateSpaceExplorer.StateSpaceExplorerResults results =
+                new IndividualParallelStateSpaceExplorer(parallel, vanishingExplorer, explorerUtilities)
+                        .generate(root);
+
+        assertEquals(STATES, results.numberOfStates);
+        assertEquals(sequential.getIds(), parallel.getIds());
+        assertEquals(sequential.getTransitions(), parallel.getTransitions());
+        assertTrue("Expected several worker threads", threads.size() > 1);
+    }
+
+    @Test
+    public void handsTransitionsToBatchProcessorInBatches()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        BatchStateProcessor processor = mock(BatchStateProcessor.class);
+        final AtomicInteger rows = new AtomicInteger();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                rows.addAndGet(((TransitionBatch) invocation.getArguments()[0]).getRows());
+                return null;
+            }
+        }).when(processor).processTransitions(any(TransitionBatch.class));
+
+        new IndividualParallelStateSpaceExplorer(processor, vanishingExplorer, explorerUtilities).generate(root);
+
+        assertEquals(STATES, rows.get());
+        verify(processor, never()).processTransitions(anyInt(), anyMap());
+    }
+}
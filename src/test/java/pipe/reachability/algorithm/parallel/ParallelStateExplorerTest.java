@@ -6,6 +6,7 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateRateAccumulator;
 import pipe.reachability.algorithm.StateRateRecord;
 import pipe.reachability.algorithm.TimelessTrapException;
 import pipe.reachability.algorithm.VanishingExplorer;
@@ -15,7 +16,6 @@ import uk.ac.imperial.state.ClassifiedState;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedList;
-import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 import static org.junit.Assert.assertEquals;
@@ -81,10 +81,11 @@ public class ParallelStateExplorerTest {
 
         when(explorerUtilities.rate(state, successor)).thenReturn(5.0);
 
-        Map<ClassifiedState, Double> results = explorer.call();
+        StateRateAccumulator results = explorer.call();
 
         assertEquals(1, results.size());
-        assertEquals(5.0, results.get(successor), 0.001);
+        assertEquals(successor, results.getState(0));
+        assertEquals(5.0, results.getRate(0), 0.001);
     }
 
 
@@ -100,10 +101,11 @@ public class ParallelStateExplorerTest {
         StateRateRecord rateRecord = new StateRateRecord(vanishingSuccessor, 2.5);
         when(vanishingExplorer.explore(successor, 5.0)).thenReturn(Arrays.asList(rateRecord));
 
-        Map<ClassifiedState, Double> results = explorer.call();
+        StateRateAccumulator results = explorer.call();
 
         assertEquals(1, results.size());
-        assertEquals(2.5, results.get(vanishingSuccessor), 0.001);
+        assertEquals(vanishingSuccessor, results.getState(0));
+        assertEquals(2.5, results.getRate(0), 0.001);
     }
 
 
@@ -121,9 +123,10 @@ public class ParallelStateExplorerTest {
         StateRateRecord duplicateRateRecord = new StateRateRecord(vanishingSuccessor, 9.5);
         when(vanishingExplorer.explore(successor, 5.0)).thenReturn(Arrays.asList(rateRecord, duplicateRateRecord));
 
-        Map<ClassifiedState, Double> results = explorer.call();
+        StateRateAccumulator results = explorer.call();
 
         assertEquals(1, results.size());
-        assertEquals(12.0, results.get(vanishingSuccessor), 0.001);
+        assertEquals(vanishingSuccessor, results.getState(0));
+        assertEquals(12.0, results.getRate(0), 0.001);
     }
 }
\ No newline at end of file
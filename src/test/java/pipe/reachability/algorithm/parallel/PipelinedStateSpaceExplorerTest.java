@@ -0,0 +1,153 @@
+package pipe.reachability.algorithm.parallel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import pipe.reachability.algorithm.sequential.SequentialStateSpaceExplorer;
+import pipe.reachability.io.BatchStateProcessor;
+import pipe.reachability.io.TransitionBatch;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.RecordingProcessor;
+import utils.TreeStateSpace;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PipelinedStateSpaceExplorerTest {
+    /**
+     * Number of states in the binary tree state space
+     */
+    private static final int STATES = 1000;
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    VanishingExplorer vanishingExplorer;
+
+    private final ClassifiedState root = TreeStateSpace.state(0);
+
+    /**
+     * Names of the threads that found successors
+     */
+    private final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+        when(explorerUtilities.rate(any(ClassifiedState.class), any(ClassifiedState.class))).thenReturn(1.0);
+        when(explorerUtilities.getSuccessors(any(ClassifiedState.class)))
+                .thenAnswer(TreeStateSpace.binaryTreeWithReturn(STATES, threads));
+    }
+
+    @Test
+    public void exploresSameGraphAsSequentialExplorer()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        RecordingProcessor sequential = new RecordingProcessor();
+        new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, sequential).generate(root);
+
+        threads.clear();
+        RecordingProcessor pipelined = new RecordingProcessor();
+        PipelinedStateSpaceExplorer explorer =
+                new PipelinedStateSpaceExplorer(explorerUtilities, vanishingExplorer, pipelined, 3, 2);
+        StateSpaceExplorer.StateSpaceExplorerResults results = explorer.generate(root);
+
+        assertEquals(STATES, results.numberOfStates);
+        assertEquals(sequential.getGraph(), pipelined.getGraph());
+        assertTrue("Expected several generation threads", threads.size() > 1);
+        for (PipelinedStateSpaceExplorer.StageStatistics stage : explorer.getStageStatistics()) {
+            assertTrue(stage.getName(), stage.getItems() >= STATES);
+        }
+    }
+
+    @Test
+    public void handsTransitionsToBatchProcessorInBatches()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        BatchStateProcessor processor = mock(BatchStateProcessor.class);
+        final AtomicInteger rows = new AtomicInteger();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                rows.addAndGet(((TransitionBatch) invocation.getArguments()[0]).getRows());
+                return null;
+            }
+        }).when(processor).processTransitions(any(TransitionBatch.class));
+
+        new PipelinedStateSpaceExplorer(explorerUtilities, vanishingExplorer, processor, 2, 1).generate(root);
+
+        assertEquals(STATES, rows.get());
+        verify(processor, never()).processTransitions(anyInt(), anyMap());
+    }
+
+    @Test
+    public void clearsUtilitiesWhilstExploring()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        int states = 3 * PipelinedStateSpaceExplorer.CLEAR_INTERVAL + 1;
+        doAnswer(TreeStateSpace.successors(states, 2, false, null))
+                .when(explorerUtilities).getSuccessors(any(ClassifiedState.class));
+
+        StateSpaceExplorer.StateSpaceExplorerResults results =
+                new PipelinedStateSpaceExplorer(explorerUtilities, vanishingExplorer, new RecordingProcessor(), 2, 1)
+                        .generate(root);
+
+        assertEquals(states, results.numberOfStates);
+        verify(explorerUtilities, atLeast(4)).clear();
+    }
+
+    @Test(timeout = 30000, expected = IllegalStateException.class)
+    public void stopsEveryStageWhenOutputFails()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        doAnswer(TreeStateSpace.successors(Integer.MAX_VALUE, 8, false, null))
+                .when(explorerUtilities).getSuccessors(any(ClassifiedState.class));
+        StateProcessor slowProcessor = new RecordingProcessor() {
+            private int written = 0;
+
+            @Override
+            public void processTransitions(int state, Map<Integer, Double> successorRates) {
+                if (++written > 2 * PipelinedStateSpaceExplorer.RING_CAPACITY) {
+                    throw new IllegalStateException("Disk full");
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+
+        new PipelinedStateSpaceExplorer(explorerUtilities, vanishingExplorer, slowProcessor, 2, 1)
+                .generate(root);
+    }
+}
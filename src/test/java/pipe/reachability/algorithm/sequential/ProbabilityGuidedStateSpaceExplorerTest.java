@@ -0,0 +1,100 @@
+package pipe.reachability.algorithm.sequential;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.TreeStateSpace;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Explores a binary tree whose left children are nine times as likely as their right children
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ProbabilityGuidedStateSpaceExplorerTest {
+    /**
+     * Number of states in the tree
+     */
+    private static final int STATES = 1 << 16;
+
+    /**
+     * Number of states the explorers may find
+     */
+    private static final int BUDGET = 30;
+
+    /**
+     * Left most state ten levels down the tree
+     */
+    private static final int DEEP_LEFT = (1 << 10) - 1;
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    VanishingExplorer vanishingExplorer;
+
+    @Mock
+    StateProcessor stateProcessor;
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        when(explorerUtilities.canExploreMore(anyInt())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) {
+                return (Integer) invocation.getArguments()[0] <= BUDGET;
+            }
+        });
+        when(explorerUtilities.getSuccessors(any(ClassifiedState.class))).thenAnswer(
+                TreeStateSpace.successors(STATES, 2, false, null));
+        when(explorerUtilities.rate(any(ClassifiedState.class), any(ClassifiedState.class))).thenAnswer(
+                new Answer<Double>() {
+                    @Override
+                    public Double answer(InvocationOnMock invocation) {
+                        int id = TreeStateSpace.id((ClassifiedState) invocation.getArguments()[1]);
+                        return id % 2 == 1 ? 9.0 : 1.0;
+                    }
+                });
+    }
+
+    @Test
+    public void spendsBudgetOnProbableStates()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        StateSpaceExplorer.StateSpaceExplorerResults results =
+                new ProbabilityGuidedStateSpaceExplorer(explorerUtilities, vanishingExplorer, stateProcessor)
+                        .generate(TreeStateSpace.state(0));
+
+        assertEquals(BUDGET + 1, results.numberOfStates);
+        verify(stateProcessor).processState(eq(TreeStateSpace.state(DEEP_LEFT)), anyInt());
+    }
+
+    @Test
+    public void breadthFirstDoesNotReachProbableDeepStates()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, stateProcessor)
+                .generate(TreeStateSpace.state(0));
+
+        verify(stateProcessor, never()).processState(eq(TreeStateSpace.state(DEEP_LEFT)), anyInt());
+    }
+}
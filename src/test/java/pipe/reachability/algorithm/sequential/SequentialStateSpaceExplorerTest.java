@@ -0,0 +1,160 @@
+package pipe.reachability.algorithm.sequential;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import pipe.reachability.algorithm.RateRecalculator;
+import pipe.reachability.algorithm.StateSpaceExplorer;
+import pipe.reachability.algorithm.TimelessTrapException;
+import pipe.reachability.algorithm.VanishingExplorer;
+import pipe.reachability.io.RateStructureReader;
+import pipe.reachability.io.RateStructureWriter;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import uk.ac.imperial.state.Record;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SequentialStateSpaceExplorerTest {
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    VanishingExplorer vanishingExplorer;
+
+    @Mock
+    StateProcessor stateProcessor;
+
+    private SequentialStateSpaceExplorer explorer;
+
+    private final ClassifiedState a = buildState(1, 0);
+
+    private final ClassifiedState b = buildState(0, 1);
+
+    private final ClassifiedState c = buildState(2, 0);
+
+    @Before
+    public void setUp() throws InvalidRateException {
+        explorer = new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, stateProcessor);
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+        successors(a, b);
+        successors(b, a);
+        successors(c, b);
+    }
+
+    @Test
+    public void exploresSharedStatesOnce()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        StateSpaceExplorer.MultiRootResults results = explorer.generate(Arrays.asList(a, c));
+        assertEquals(3, results.numberOfStates);
+        verify(stateProcessor, times(3)).processTransitions(anyInt(), anyMap());
+        verify(stateProcessor, times(3)).processState(any(ClassifiedState.class), anyInt());
+    }
+
+    @Test
+    public void reportsStatesReachableFromEachRoot()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        StateSpaceExplorer.MultiRootResults results = explorer.generate(Arrays.asList(a, c));
+        BitSet fromA = results.reachableStates.get(a);
+        BitSet fromC = results.reachableStates.get(c);
+        assertEquals(2, fromA.cardinality());
+        assertEquals(3, fromC.cardinality());
+        assertFalse(fromA.get(2));
+        assertTrue(fromC.get(0));
+    }
+
+    @Test
+    public void doesNotRequeueExploredRoot()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        StateSpaceExplorer.MultiRootResults results = explorer.generate(Arrays.asList(a, b));
+        assertEquals(2, results.numberOfStates);
+        verify(stateProcessor, times(2)).processTransitions(anyInt(), anyMap());
+        assertEquals(results.reachableStates.get(a), results.reachableStates.get(b));
+    }
+
+    @Test
+    public void recalculatesRatesOfEveryRoot()
+            throws InterruptedException, ExecutionException, InvalidRateException, TimelessTrapException,
+            IOException {
+        Transition transition = mock(Transition.class);
+        when(transition.getId()).thenReturn("T0");
+        when(explorerUtilities.getTransitions(any(ClassifiedState.class), any(ClassifiedState.class)))
+                .thenReturn(Collections.singletonList(transition));
+        when(explorerUtilities.getWeightOfTransitions(any(ClassifiedState.class), anyCollection())).thenReturn(2.0);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        RateStructureWriter writer = new RateStructureWriter(new Output(stream));
+        explorer = new SequentialStateSpaceExplorer(explorerUtilities, vanishingExplorer, stateProcessor, writer);
+
+        explorer.generate(Arrays.asList(a, c));
+
+        Map<Integer, ClassifiedState> states = new HashMap<>();
+        states.put(0, a);
+        states.put(1, b);
+        states.put(2, c);
+        RateStructureReader reader = new RateStructureReader(new Input(new ByteArrayInputStream(stream.toByteArray())));
+        List<Record> records = new RateRecalculator(explorerUtilities, Collections.singletonList(transition))
+                .recalculate(reader, states);
+        assertEquals(3, records.size());
+        assertEquals(2, records.get(2).state);
+        assertEquals(2.0, records.get(2).successors.get(1), 0.0);
+    }
+
+    private void successors(ClassifiedState state, ClassifiedState... successors) throws InvalidRateException {
+        Collection<ClassifiedState> stateSuccessors = Arrays.asList(successors);
+        when(explorerUtilities.getSuccessors(state)).thenReturn(stateSuccessors);
+        for (ClassifiedState successor : successors) {
+            when(explorerUtilities.rate(state, successor)).thenReturn(1.0);
+        }
+    }
+
+    /**
+     * Builds a single token tangible state with place counts
+     * @param counts
+     * @return
+     */
+    private ClassifiedState buildState(int... counts) {
+        HashedStateBuilder stateBuilder = new HashedStateBuilder();
+        int i = 0;
+        for (int count : counts) {
+            stateBuilder.placeWithToken("P" + i, "Default", count);
+            i++;
+        }
+        return HashedClassifiedState.tangibleState(stateBuilder.build());
+    }
+}
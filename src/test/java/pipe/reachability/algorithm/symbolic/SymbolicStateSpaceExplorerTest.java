@@ -0,0 +1,102 @@
+package pipe.reachability.algorithm.symbolic;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.pipe.exceptions.InvalidRateException;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.MockPetriNet;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyMap;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SymbolicStateSpaceExplorerTest {
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    @Mock
+    StateProcessor stateProcessor;
+
+    private MockPetriNet net;
+
+    @Before
+    public void setUp() {
+        net = new MockPetriNet();
+    }
+
+    @Test
+    public void countsCyclicStateSpace() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        net.transition("T1", p1, p0);
+        SymbolicStateSpace stateSpace = new SymbolicStateSpaceExplorer(net.getPetriNet()).generate();
+        assertEquals(BigInteger.valueOf(2), stateSpace.size());
+        assertFalse(stateSpace.hasDeadlock());
+    }
+
+    @Test
+    public void findsDeadlock() {
+        Place p0 = net.place("P0", 2);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        SymbolicStateSpace stateSpace = new SymbolicStateSpaceExplorer(net.getPetriNet()).generate();
+        assertEquals(BigInteger.valueOf(3), stateSpace.size());
+        assertEquals(BigInteger.ONE, stateSpace.countDeadlocks());
+        ClassifiedState deadlock = stateSpace.getDeadlock();
+        assertEquals(2, (int) deadlock.getTokens("P1").get("Default"));
+        assertTrue(stateSpace.contains(deadlock));
+    }
+
+    @Test
+    public void countsIndependentComponentsWithoutEnumerating() {
+        for (int i = 0; i < 40; i++) {
+            Place a = net.place("A" + i, 1);
+            Place b = net.place("B" + i, 0);
+            net.transition("T" + i, a, b);
+            net.transition("U" + i, b, a);
+        }
+        SymbolicStateSpace stateSpace = new SymbolicStateSpaceExplorer(net.getPetriNet()).generate();
+        assertEquals(BigInteger.valueOf(2).pow(40), stateSpace.size());
+    }
+
+    @Test
+    public void exportsStatesAndTransitions() throws InvalidRateException {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        net.transition("T1", p1, p0);
+        when(explorerUtilities.getWeightOfTransitions(any(ClassifiedState.class), any(Iterable.class)))
+                .thenReturn(1.0);
+        SymbolicStateSpace stateSpace = new SymbolicStateSpaceExplorer(net.getPetriNet()).generate();
+        assertEquals(2, stateSpace.export(explorerUtilities, stateProcessor).processedTransitions);
+        verify(stateProcessor, times(2)).processState(any(ClassifiedState.class), anyInt());
+        verify(stateProcessor, times(2)).processTransitions(anyInt(), anyMap());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsImmediateTransitions() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        Transition transition = net.transition("T0", p0, p1);
+        when(transition.isTimed()).thenReturn(false);
+        new SymbolicStateSpaceExplorer(net.getPetriNet());
+    }
+}
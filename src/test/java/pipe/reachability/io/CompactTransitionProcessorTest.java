@@ -0,0 +1,90 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.Record;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CompactTransitionProcessorTest {
+    @Mock
+    StateProcessor stateProcessor;
+
+    private ByteArrayOutputStream stream;
+
+    private CompactTransitionProcessor processor;
+
+    @Before
+    public void setUp() {
+        stream = new ByteArrayOutputStream();
+        processor = new CompactTransitionProcessor(stateProcessor, new Output(stream));
+    }
+
+    @Test
+    public void readsBackUnsortedRows() {
+        Map<Integer, Double> successors = new HashMap<>();
+        successors.put(1000, 0.5);
+        successors.put(3, 2.0);
+        successors.put(70000, 0.5);
+        processor.processTransitions(7, successors);
+        TransitionBatch batch = new TransitionBatch();
+        batch.startRow(8);
+        batch.add(9, 2.0);
+        batch.add(2, 3.25);
+        batch.startRow(9);
+        processor.processTransitions(batch);
+        processor.finish();
+
+        CompactTransitionReader reader = reader();
+        Record first = reader.readRecord();
+        assertEquals(7, first.state);
+        assertEquals(successors, first.successors);
+        Record second = reader.readRecord();
+        assertEquals(8, second.state);
+        assertEquals(2.0, second.successors.get(9), 0.0);
+        assertEquals(3.25, second.successors.get(2), 0.0);
+        Record third = reader.readRecord();
+        assertEquals(9, third.state);
+        assertTrue(third.successors.isEmpty());
+        assertNull(reader.readRecord());
+    }
+
+    @Test
+    public void repeatedRatesAndNearbyIdsAreCompact() {
+        TransitionBatch batch = new TransitionBatch();
+        for (int state = 0; state < 1000; state++) {
+            batch.startRow(state);
+            batch.add(state + 1, 1.5);
+            batch.add(state + 2, 2.5);
+        }
+        processor.processTransitions(batch);
+        processor.finish();
+
+        assertTrue(stream.size() < 1000 * 10);
+        List<Record> records = reader().readRecords();
+        assertEquals(1000, records.size());
+        assertEquals(2.5, records.get(999).successors.get(1001), 0.0);
+    }
+
+    /**
+     * @return reader of everything written so far
+     */
+    private CompactTransitionReader reader() {
+        return new CompactTransitionReader(new Input(new ByteArrayInputStream(stream.toByteArray())));
+    }
+}
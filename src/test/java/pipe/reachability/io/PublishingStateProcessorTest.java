@@ -0,0 +1,148 @@
+package pipe.reachability.io;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PublishingStateProcessorTest {
+    @Mock
+    StateProcessor stateProcessor;
+
+    private PublishingStateProcessor processor;
+
+    private RecordingSubscriber subscriber;
+
+    @Before
+    public void setUp() {
+        processor = new PublishingStateProcessor(stateProcessor);
+        subscriber = new RecordingSubscriber();
+        processor.subscribe(subscriber);
+    }
+
+    @Test
+    public void waitsForDemandBeforePublishing() throws InterruptedException {
+        final ClassifiedState state = mock(ClassifiedState.class);
+        final Map<Integer, Double> successors = Collections.singletonMap(1, 2.0);
+        Thread explorer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                processor.processState(state, 0);
+                processor.processTransitions(0, successors);
+                processor.complete();
+            }
+        });
+        subscriber.subscription.request(1);
+        explorer.start();
+        while (subscriber.events.isEmpty()) {
+            Thread.sleep(1);
+        }
+        explorer.join(100);
+
+        assertTrue(explorer.isAlive());
+        assertEquals(1, subscriber.events.size());
+        verify(stateProcessor).processTransitions(0, successors);
+
+        subscriber.subscription.request(1);
+        explorer.join();
+
+        assertEquals(2, subscriber.events.size());
+        ExplorationEvent stateEvent = subscriber.events.get(0);
+        assertTrue(stateEvent.isState());
+        assertSame(state, stateEvent.getState());
+        ExplorationEvent rowEvent = subscriber.events.get(1);
+        assertFalse(rowEvent.isState());
+        assertEquals(successors, rowEvent.getTransitions());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void cancelledSubscriberDoesNotHoldBackExploration() {
+        subscriber.subscription.cancel();
+        processor.processTransitions(0, Collections.singletonMap(1, 2.0));
+        processor.complete();
+
+        assertTrue(subscriber.events.isEmpty());
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void subscriberRacingCompletionIsCompleted() throws InterruptedException {
+        for (int i = 0; i < 1000; i++) {
+            final PublishingStateProcessor racing = new PublishingStateProcessor(stateProcessor);
+            Thread explorer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    racing.complete();
+                }
+            });
+            RecordingSubscriber late = new RecordingSubscriber();
+            explorer.start();
+            racing.subscribe(late);
+            explorer.join();
+
+            assertTrue(late.completed);
+        }
+    }
+
+    @Test
+    public void subscriberAfterFailureReceivesError() {
+        IllegalStateException failure = new IllegalStateException("Exploration failed");
+        processor.error(failure);
+        RecordingSubscriber late = new RecordingSubscriber();
+        processor.subscribe(late);
+
+        assertSame(failure, subscriber.error);
+        assertSame(failure, late.error);
+        assertFalse(late.completed);
+    }
+
+    /**
+     * Records events, requesting nothing itself
+     */
+    private static final class RecordingSubscriber implements ExplorationFlow.Subscriber<ExplorationEvent> {
+        private final List<ExplorationEvent> events = new CopyOnWriteArrayList<>();
+
+        private volatile ExplorationFlow.Subscription subscription;
+
+        private volatile boolean completed = false;
+
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(ExplorationFlow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(ExplorationEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package pipe.reachability.io;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import uk.ac.imperial.io.MultiStateReader;
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.Record;
+import utils.TreeStateSpace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ShardedStateProcessorTest {
+    private static final int SHARDS = 3;
+
+    @Mock
+    StateProcessor stateProcessor0;
+
+    @Mock
+    StateProcessor stateProcessor1;
+
+    @Mock
+    StateProcessor stateProcessor2;
+
+    @Mock
+    MultiStateReader stateReader;
+
+    private final List<ByteArrayOutputStream> streams = new ArrayList<>();
+
+    private ShardedStateProcessor processor;
+
+    @Before
+    public void setUp() {
+        StateProcessor[] stateProcessors = {stateProcessor0, stateProcessor1, stateProcessor2};
+        List<KryoBatchStateProcessor> shards = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            Output output = new Output(stream);
+            streams.add(stream);
+            shards.add(new KryoBatchStateProcessor(stateProcessors[shard], output));
+        }
+        processor = new ShardedStateProcessor(shards);
+    }
+
+    @After
+    public void tearDown() {
+        processor.close();
+    }
+
+    @Test
+    public void writesStatesToTheShardOfTheirId() {
+        ClassifiedState state = TreeStateSpace.state(4);
+        processor.processState(state, 4);
+        processor.finish(new Output(new ByteArrayOutputStream()));
+
+        verify(stateProcessor1).processState(state, 4);
+    }
+
+    @Test
+    public void readsShardsBackAsOneStateSpace() throws IOException {
+        TransitionBatch batch = new TransitionBatch();
+        for (int state = 0; state < 10; state++) {
+            batch.startRow(state);
+            batch.add((state + 1) % 10, state + 0.5);
+        }
+        processor.processTransitions(batch);
+        Map<Integer, Double> last = new HashMap<>();
+        last.put(0, 2.0);
+        last.put(3, 1.0);
+        processor.processTransitions(10, last);
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        processor.finish(new Output(manifest));
+
+        Collection<Record> records = new ShardedStateReader(stateReader, new ArrayList<Input>(), inputs())
+                .readRecords(new Input(new ByteArrayInputStream(manifest.toByteArray())));
+
+        assertEquals(11, records.size());
+        Iterator<Record> iterator = records.iterator();
+        for (int state = 0; state < 10; state++) {
+            Record record = iterator.next();
+            assertEquals(state, record.state);
+            assertEquals(state + 0.5, record.successors.get((state + 1) % 10), 0.0);
+        }
+        assertEquals(last, iterator.next().successors);
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void closeStopsShardWriters() {
+        processor.processState(TreeStateSpace.state(1), 1);
+        processor.close();
+
+        processor.processTransitions(new TransitionBatch());
+    }
+
+    @Test(expected = IOException.class)
+    public void throwsIfShardIsMissing() throws IOException {
+        ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        processor.finish(new Output(manifest));
+        List<Input> inputs = inputs();
+        inputs.remove(2);
+
+        new ShardedStateReader(stateReader, new ArrayList<Input>(), inputs)
+                .readRecords(new Input(new ByteArrayInputStream(manifest.toByteArray())));
+    }
+
+    /**
+     * @return input of each shard's transitions
+     */
+    private List<Input> inputs() {
+        List<Input> inputs = new ArrayList<>();
+        for (ByteArrayOutputStream stream : streams) {
+            inputs.add(new Input(new ByteArrayInputStream(stream.toByteArray())));
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,194 @@
+package pipe.reachability.query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import pipe.reachability.algorithm.ExplorerUtilities;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReachabilityCheckerTest {
+
+    @Mock
+    ExplorerUtilities explorerUtilities;
+
+    private final ClassifiedState a = buildState(2, 0, 0);
+
+    private final ClassifiedState b = buildState(1, 1, 0);
+
+    private final ClassifiedState c = buildState(0, 1, 1);
+
+    private final ClassifiedState d = buildState(1, 0, 1);
+
+    private final Transition ab = mock(Transition.class);
+
+    private final Transition bc = mock(Transition.class);
+
+    private final Transition ad = mock(Transition.class);
+
+    @Before
+    public void setUp() {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(true);
+        successor(a, b, ab);
+        successor(b, c, bc);
+        successor(a, d, ad);
+        when(explorerUtilities.getSuccessors(a)).thenReturn(Arrays.asList(b, d));
+        when(explorerUtilities.getSuccessors(b)).thenReturn(Arrays.asList(c, a));
+        when(explorerUtilities.getSuccessors(c)).thenReturn(Arrays.asList(c));
+        when(explorerUtilities.getSuccessors(d)).thenReturn(Arrays.asList(a));
+    }
+
+    @Test
+    public void findsWitnessWithPath() throws InterruptedException, ExecutionException {
+        QueryResult result = new SequentialReachabilityChecker(explorerUtilities)
+                .check(a, StatePredicates.exactly("P2", StatePredicates.DEFAULT_TOKEN, 1));
+        assertTrue(result.isReachable());
+        assertEquals(d, result.witness);
+        assertEquals(Arrays.asList(a, d), result.trace);
+        assertEquals(Arrays.asList(ad), result.path);
+        assertFalse(result.exhaustive);
+    }
+
+    @Test
+    public void findsDeadlock() throws InterruptedException, ExecutionException {
+        QueryResult result = new SequentialReachabilityChecker(explorerUtilities)
+                .check(a, StatePredicates.deadlock(explorerUtilities));
+        assertEquals(c, result.witness);
+        assertEquals(Arrays.asList(a, b, c), result.trace);
+        assertEquals(Arrays.asList(ab, bc), result.path);
+    }
+
+    @Test
+    public void initialStateIsWitness() throws InterruptedException, ExecutionException {
+        QueryResult result = new SequentialReachabilityChecker(explorerUtilities)
+                .check(a, StatePredicates.atLeast("P0", StatePredicates.DEFAULT_TOKEN, 2));
+        assertEquals(a, result.witness);
+        assertEquals(0, result.exploredStates);
+        assertTrue(result.path.isEmpty());
+    }
+
+    @Test
+    public void exhaustiveWhenUnreachable() throws InterruptedException, ExecutionException {
+        QueryResult result = new SequentialReachabilityChecker(explorerUtilities)
+                .check(a, StatePredicates.atLeast("P2", StatePredicates.DEFAULT_TOKEN, 2));
+        assertFalse(result.isReachable());
+        assertTrue(result.exhaustive);
+        assertEquals(4, result.exploredStates);
+    }
+
+    @Test
+    public void notExhaustiveWhenUtilitiesStopSearch() throws InterruptedException, ExecutionException {
+        when(explorerUtilities.canExploreMore(anyInt())).thenReturn(false);
+        QueryResult result = new SequentialReachabilityChecker(explorerUtilities)
+                .check(a, StatePredicates.atLeast("P2", StatePredicates.DEFAULT_TOKEN, 2));
+        assertFalse(result.isReachable());
+        assertFalse(result.exhaustive);
+    }
+
+    @Test
+    public void parallelFindsSameDeadlock() throws InterruptedException, ExecutionException {
+        QueryResult result = new ParallelReachabilityChecker(explorerUtilities, 2)
+                .check(a, StatePredicates.deadlock(explorerUtilities));
+        assertEquals(c, result.witness);
+        assertEquals(Arrays.asList(ab, bc), result.path);
+    }
+
+    @Test
+    public void parallelExhaustiveWhenUnreachable() throws InterruptedException, ExecutionException {
+        QueryResult result = new ParallelReachabilityChecker(explorerUtilities, 2)
+                .check(a, StatePredicates.atLeast("P2", StatePredicates.DEFAULT_TOKEN, 2));
+        assertFalse(result.isReachable());
+        assertTrue(result.exhaustive);
+        assertEquals(4, result.exploredStates);
+    }
+
+    @Test
+    public void parallelFindsMatchSkippedByEarlierChunk() throws InterruptedException, ExecutionException {
+        final ClassifiedState root = buildState(0, 0, 0);
+        final ClassifiedState left = buildState(1, 0, 0);
+        final ClassifiedState right = buildState(0, 1, 0);
+        final ClassifiedState target = buildState(0, 0, 1);
+        final AtomicReference<Thread> matcher = new AtomicReference<>();
+        final CountDownLatch leftStarted = new CountDownLatch(1);
+        final CountDownLatch matchedLatch = new CountDownLatch(1);
+        successor(root, left, ab);
+        successor(left, target, bc);
+        when(explorerUtilities.getSuccessors(root)).thenReturn(Arrays.asList(left, right));
+        when(explorerUtilities.getSuccessors(right)).thenAnswer(new Answer<Collection<ClassifiedState>>() {
+            @Override
+            public Collection<ClassifiedState> answer(InvocationOnMock invocation) throws InterruptedException {
+                leftStarted.await();
+                return Arrays.asList(target);
+            }
+        });
+        when(explorerUtilities.getSuccessors(left)).thenAnswer(new Answer<Collection<ClassifiedState>>() {
+            @Override
+            public Collection<ClassifiedState> answer(InvocationOnMock invocation) throws InterruptedException {
+                leftStarted.countDown();
+                matchedLatch.await();
+                while (matcher.get().getState() == Thread.State.RUNNABLE) {
+                    Thread.sleep(1);
+                }
+                return Arrays.asList(target);
+            }
+        });
+        StatePredicate predicate = new StatePredicate() {
+            @Override
+            public boolean matches(ClassifiedState state) {
+                if (!state.equals(target)) {
+                    return false;
+                }
+                if (matcher.compareAndSet(null, Thread.currentThread())) {
+                    matchedLatch.countDown();
+                }
+                return true;
+            }
+        };
+
+        QueryResult result = new ParallelReachabilityChecker(explorerUtilities, 2).check(root, predicate);
+
+        assertTrue(result.isReachable());
+        assertEquals(target, result.witness);
+        assertEquals(Arrays.asList(root, left, target), result.trace);
+    }
+
+    private void successor(ClassifiedState state, ClassifiedState successor, Transition transition) {
+        Collection<Transition> transitions = Arrays.asList(transition);
+        when(explorerUtilities.getTransitions(state, successor)).thenReturn(transitions);
+    }
+
+    /**
+     * Builds a single token tangible state with place counts
+     * @param counts
+     * @return
+     */
+    private ClassifiedState buildState(int... counts) {
+        HashedStateBuilder stateBuilder = new HashedStateBuilder();
+        int i = 0;
+        for (int count : counts) {
+            stateBuilder.placeWithToken("P" + i, "Default", count);
+            i++;
+        }
+        return HashedClassifiedState.tangibleState(stateBuilder.build());
+    }
+}
@@ -0,0 +1,101 @@
+package pipe.steadystate.algorithm;
+
+import org.junit.Test;
+import uk.ac.imperial.state.Record;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class TruncationSinkSolverTest {
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void reportsSinkProbabilityAsErrorEstimate() {
+        TruncationSinkSolver.TruncatedSteadyState result =
+                new TruncationSinkSolver(new GaussSeidelSolver()).solve(truncatedRecords(), unexplored(2), 0, 2.0);
+
+        assertEquals(1 / 3.0, result.getEscapeRate(), DELTA);
+        assertEquals(1 / 7.0, result.getErrorEstimate(), DELTA);
+        assertEquals(4 / 7.0, result.getSteadyState().get(0), DELTA);
+        assertEquals(2 / 7.0, result.getSteadyState().get(1), DELTA);
+        assertFalse(result.getSteadyState().containsKey(2));
+    }
+
+    @Test
+    public void escapeRateDoesNotDependOnRestartRate() {
+        TruncationSinkSolver solver = new TruncationSinkSolver(new GaussSeidelSolver());
+        TruncationSinkSolver.TruncatedSteadyState slow = solver.solve(truncatedRecords(), unexplored(2), 0, 1.0);
+        TruncationSinkSolver.TruncatedSteadyState fast = solver.solve(truncatedRecords(), unexplored(2), 0, 4.0);
+
+        assertEquals(1 / 3.0, slow.getEscapeRate(), DELTA);
+        assertEquals(1 / 3.0, fast.getEscapeRate(), DELTA);
+        assertEquals(1 / 4.0, slow.getErrorEstimate(), DELTA);
+        assertEquals(1 / 13.0, fast.getErrorEstimate(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveRestartRate() {
+        new TruncationSinkSolver(new GaussSeidelSolver()).solve(truncatedRecords(), unexplored(2), 0, 0);
+    }
+
+    @Test
+    public void noErrorWhenNothingIsUnexplored() {
+        List<Record> records = new ArrayList<>();
+        Map<Integer, Double> successors0 = new HashMap<>();
+        successors0.put(1, 1.0);
+        records.add(new Record(0, successors0));
+
+        Map<Integer, Double> successors1 = new HashMap<>();
+        successors1.put(0, 1.0);
+        records.add(new Record(1, successors1));
+
+        TruncationSinkSolver.TruncatedSteadyState result =
+                new TruncationSinkSolver(new GaussSeidelSolver()).solve(records, new BitSet(), 0, 1.0);
+
+        assertEquals(0, result.getErrorEstimate(), 0);
+        assertEquals(0, result.getEscapeRate(), 0);
+        assertEquals(0.5, result.getSteadyState().get(0), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnexploredRestartState() {
+        List<Record> records = new ArrayList<>();
+        Map<Integer, Double> successors0 = new HashMap<>();
+        successors0.put(1, 1.0);
+        records.add(new Record(0, successors0));
+
+        new TruncationSinkSolver(new GaussSeidelSolver()).solve(records, unexplored(1), 1, 1.0);
+    }
+
+    /**
+     * @return records of states 0 and 1 that move between each other, state 1 also moves to state 2
+     */
+    private static List<Record> truncatedRecords() {
+        List<Record> records = new ArrayList<>();
+        Map<Integer, Double> successors0 = new HashMap<>();
+        successors0.put(1, 1.0);
+        records.add(new Record(0, successors0));
+
+        Map<Integer, Double> successors1 = new HashMap<>();
+        successors1.put(0, 1.0);
+        successors1.put(2, 1.0);
+        records.add(new Record(1, successors1));
+        return records;
+    }
+
+    /**
+     * @param state id of the unexplored state
+     * @return set holding only the state
+     */
+    private static BitSet unexplored(int state) {
+        BitSet unexplored = new BitSet();
+        unexplored.set(state);
+        return unexplored;
+    }
+}
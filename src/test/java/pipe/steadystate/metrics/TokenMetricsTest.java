@@ -0,0 +1,33 @@
+package pipe.steadystate.metrics;
+
+import org.junit.Test;
+import pipe.steadystate.algorithm.TruncationSinkSolver;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.TreeStateSpace;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class TokenMetricsTest {
+    private static final double DELTA = 0.0001;
+
+    @Test
+    public void truncatedAverageSkipsUnexploredStatesAndReportsError() {
+        Map<Integer, ClassifiedState> stateSpace = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            stateSpace.put(i, TreeStateSpace.state(i));
+        }
+        Map<Integer, Double> steadyState = new HashMap<>();
+        steadyState.put(0, 0.5);
+        steadyState.put(1, 0.25);
+
+        TruncatedMetric<Map<String, Map<String, Double>>> averages = TokenMetrics.averageTokensOnPlace(stateSpace,
+                new TruncationSinkSolver.TruncatedSteadyState(steadyState, 1.0, 0.25));
+
+        assertEquals(0.25, averages.getValue().get("P0").get("Default"), DELTA);
+        assertEquals(1.0, averages.getEscapeRate(), 0);
+        assertEquals(0.25, averages.getErrorEstimate(), 0);
+    }
+}
@@ -0,0 +1,114 @@
+package pipe.structural;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.imperial.pipe.exceptions.PetriNetComponentException;
+import uk.ac.imperial.pipe.models.petrinet.InboundArc;
+import uk.ac.imperial.pipe.models.petrinet.OutboundArc;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+import utils.MockPetriNet;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class NetReductionTest {
+
+    private MockPetriNet net;
+
+    @Before
+    public void setUp() {
+        net = new MockPetriNet();
+    }
+
+    @Test
+    public void fusesSeriesImmediateTransition() throws PetriNetComponentException {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        Place p2 = net.place("P2", 0);
+        net.transition("T0", p0, p1);
+        Transition t1 = net.immediate("T1", 1);
+        net.input(t1, p1, "1");
+        net.output(t1, p2, "1");
+        net.transition("T2", p2, p0);
+
+        PetriNet petriNet = net.getPetriNet();
+        NetReduction reduction = new NetReduction(petriNet);
+
+        assertEquals(Collections.singletonList("P1"), reduction.getRemovedPlaces());
+        assertEquals(Collections.singletonList("T1"), reduction.getFusedTransitions().get("T0"));
+        verify(petriNet).removeTransition(t1);
+        verify(petriNet).removePlace(p1);
+        verify(petriNet).addArc(any(OutboundArc.class));
+
+        ClassifiedState reduced = tangible(new HashedStateBuilder().placeWithToken("P0", "Default", 0)
+                .placeWithToken("P2", "Default", 1));
+        ClassifiedState expected = tangible(new HashedStateBuilder().placeWithToken("P0", "Default", 0)
+                .placeWithToken("P1", "Default", 0).placeWithToken("P2", "Default", 1));
+        assertEquals(expected, reduction.expand(reduced));
+    }
+
+    @Test
+    public void removesDuplicatePlace() throws PetriNetComponentException {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 2);
+        Place p2 = net.place("P2", 0);
+        Transition t0 = net.transition("T0", p0, p2);
+        net.input(t0, p1, "1");
+        Transition t1 = net.transition("T1", p2, p0);
+        net.output(t1, p1, "1");
+
+        PetriNet petriNet = net.getPetriNet();
+        NetReduction reduction = new NetReduction(petriNet);
+
+        assertEquals(Collections.singletonList("P1"), reduction.getRemovedPlaces());
+        verify(petriNet).removePlace(p1);
+        verify(petriNet).removeArc(any(InboundArc.class));
+        verify(petriNet).removeArc(any(OutboundArc.class));
+
+        ClassifiedState reduced = tangible(new HashedStateBuilder().placeWithToken("P0", "Default", 0)
+                .placeWithToken("P2", "Default", 1));
+        ClassifiedState expected = tangible(new HashedStateBuilder().placeWithToken("P0", "Default", 0)
+                .placeWithToken("P1", "Default", 1).placeWithToken("P2", "Default", 1));
+        assertEquals(expected, reduction.expand(reduced));
+    }
+
+    @Test
+    public void doesNotFuseConflictingImmediateTransitions() throws PetriNetComponentException {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        Place p2 = net.place("P2", 0);
+        Place p3 = net.place("P3", 0);
+        net.transition("T0", p0, p1);
+        Transition t1 = net.immediate("T1", 1);
+        net.input(t1, p1, "1");
+        net.output(t1, p2, "1");
+        Transition t2 = net.immediate("T2", 1);
+        net.input(t2, p2, "1");
+        net.input(t2, p3, "1");
+        net.output(t2, p0, "1");
+        Transition t3 = net.immediate("T3", 1);
+        net.input(t3, p2, "1");
+        net.output(t3, p3, "1");
+
+        PetriNet petriNet = net.getPetriNet();
+        NetReduction reduction = new NetReduction(petriNet);
+
+        assertFalse(reduction.isReduced());
+        verify(petriNet, never()).removeTransition(any(Transition.class));
+        verify(petriNet, never()).removePlace(any(Place.class));
+    }
+
+    private static ClassifiedState tangible(HashedStateBuilder builder) {
+        return HashedClassifiedState.tangibleState(builder.build());
+    }
+}
@@ -0,0 +1,88 @@
+package pipe.structural;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.MockPetriNet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PInvariantsTest {
+
+    private MockPetriNet net;
+
+    @Before
+    public void setUp() {
+        net = new MockPetriNet();
+    }
+
+    @Test
+    public void dropsOnePlaceOfCycle() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        net.transition("T1", p1, p0);
+        PInvariants invariants = new PInvariants(new IncidenceMatrix(net.getPetriNet()));
+        assertEquals(1, invariants.getInvariants().size());
+        assertEquals(1, invariants.getStoredRows().size());
+    }
+
+    @Test
+    public void invariantIsConservedByEveryTransition() {
+        IncidenceMatrix matrix = weightedCycle();
+        PInvariants invariants = new PInvariants(matrix);
+        for (long[] invariant : invariants.getInvariants()) {
+            for (int column = 0; column < matrix.getNumberOfTransitions(); column++) {
+                long change = 0;
+                for (int row = 0; row < matrix.getNumberOfRows(); row++) {
+                    change += invariant[row] * matrix.getChange(column, row);
+                }
+                assertEquals(0, change);
+            }
+        }
+    }
+
+    @Test
+    public void expandsCompressedState() {
+        IncidenceMatrix matrix = weightedCycle();
+        PInvariants invariants = new PInvariants(matrix);
+        ClassifiedState state = matrix.toState(new int[]{0, 1, 0}, true);
+        ClassifiedState compressed = invariants.compress(state);
+        assertEquals(2, compressed.getPlaces().size());
+        assertEquals(state, invariants.expand(compressed));
+    }
+
+    @Test
+    public void doesNotCompressWithoutInvariants() {
+        Place p0 = net.place("P0", 0);
+        Transition source = net.transition("T0");
+        net.output(source, p0, "1");
+        PInvariants invariants = new PInvariants(new IncidenceMatrix(net.getPetriNet()));
+        assertFalse(invariants.canCompress());
+    }
+
+    @Test
+    public void doesNotCompressWithFunctionalWeights() {
+        Place p0 = net.place("P0", 1);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, p1);
+        net.input(net.transition("T1"), p1, "#(P1)");
+        PInvariants invariants = new PInvariants(new IncidenceMatrix(net.getPetriNet()));
+        assertFalse(invariants.canCompress());
+        assertTrue(invariants.getInvariants().isEmpty());
+    }
+
+    private IncidenceMatrix weightedCycle() {
+        Place p0 = net.place("P0", 2);
+        Place p1 = net.place("P1", 0);
+        Place p2 = net.place("P2", 0);
+        net.transition("T0", p0, 2, p1, 1);
+        net.transition("T1", p1, 1, p2, 1);
+        net.transition("T2", p2, 1, p0, 2);
+        return new IncidenceMatrix(net.getPetriNet());
+    }
+}
@@ -0,0 +1,111 @@
+package pipe.structural;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+import uk.ac.imperial.state.ClassifiedState;
+import utils.MockPetriNet;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PlaceBoundsTest {
+
+    private MockPetriNet net;
+
+    @Before
+    public void setUp() {
+        net = new MockPetriNet();
+    }
+
+    @Test
+    public void boundsPlacesCoveredByInvariant() {
+        Place p0 = net.place("P0", 3);
+        Place p1 = net.place("P1", 0);
+        net.transition("T0", p0, 1, p1, 2);
+        net.transition("T1", p1, 2, p0, 1);
+        PlaceBounds bounds = new PlaceBounds(new IncidenceMatrix(net.getPetriNet()));
+        assertEquals(3, bounds.getBound(0));
+        assertEquals(6, bounds.getBound(1));
+    }
+
+    @Test
+    public void boundsCoverLargestRoot() {
+        IncidenceMatrix matrix = safeCycle(2);
+        PlaceBounds bounds = new PlaceBounds(matrix, Arrays.asList(new int[]{1, 0}, new int[]{0, 3}));
+        assertEquals(3, bounds.getBound(0));
+        assertEquals(3, bounds.getBound(1));
+        BitPackedMarkingLayout layout = new BitPackedMarkingLayout(matrix, bounds);
+        assertEquals(3, layout.get(layout.pack(matrix.toState(new int[]{3, 0}, true)), 0, 0));
+    }
+
+    @Test
+    public void fallsBackToCapacity() {
+        Place p0 = net.place("P0", 0, 4);
+        Place p1 = net.place("P1", 0);
+        Transition source = net.transition("T0");
+        net.output(source, p0, "1");
+        net.output(source, p1, "1");
+        PlaceBounds bounds = new PlaceBounds(new IncidenceMatrix(net.getPetriNet()));
+        assertEquals(4, bounds.getBound(0));
+        assertFalse(bounds.isBounded(1));
+    }
+
+    @Test
+    public void packsSafePlacesIntoSingleBits() {
+        IncidenceMatrix matrix = safeCycle(5);
+        BitPackedMarkingLayout layout = new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix));
+        for (int position = 0; position < 5; position++) {
+            assertEquals(1, layout.getWidth(position));
+        }
+        assertEquals(1, layout.getWords());
+    }
+
+    @Test
+    public void unpacksPackedMarking() {
+        IncidenceMatrix matrix = safeCycle(3);
+        BitPackedMarkingLayout layout = new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix));
+        ClassifiedState state = matrix.toState(new int[]{0, 1, 0}, true);
+        long[] packed = layout.pack(state);
+        assertEquals(0, layout.get(packed, 0, 0));
+        assertEquals(1, layout.get(packed, 0, 1));
+        assertEquals(0, layout.get(packed, 0, 2));
+    }
+
+    @Test
+    public void unboundedPlacesSpanWords() {
+        Transition source = net.transition("T0");
+        for (int i = 0; i < 3; i++) {
+            net.output(source, net.place("P" + i, 0), "1");
+        }
+        IncidenceMatrix matrix = new IncidenceMatrix(net.getPetriNet());
+        BitPackedMarkingLayout layout = new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix));
+        long[] packed = layout.pack(matrix.toState(new int[]{7, Integer.MAX_VALUE, 12345}, true));
+        assertEquals(2, layout.getWords());
+        assertEquals(7, layout.get(packed, 0, 0));
+        assertEquals(Integer.MAX_VALUE, layout.get(packed, 0, 1));
+        assertEquals(12345, layout.get(packed, 0, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsIfMarkingAboveBound() {
+        IncidenceMatrix matrix = safeCycle(2);
+        BitPackedMarkingLayout layout = new BitPackedMarkingLayout(matrix, new PlaceBounds(matrix));
+        layout.pack(matrix.toState(new int[]{2, 0}, true));
+    }
+
+    private IncidenceMatrix safeCycle(int places) {
+        Place first = net.place("P0", 1);
+        Place previous = first;
+        for (int i = 1; i < places; i++) {
+            Place place = net.place("P" + i, 0);
+            net.transition("T" + i, previous, place);
+            previous = place;
+        }
+        net.transition("T0", previous, first);
+        return new IncidenceMatrix(net.getPetriNet());
+    }
+}
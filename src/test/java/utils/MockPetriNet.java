@@ -0,0 +1,116 @@
+package utils;
+
+import uk.ac.imperial.pipe.models.petrinet.ArcType;
+import uk.ac.imperial.pipe.models.petrinet.InboundArc;
+import uk.ac.imperial.pipe.models.petrinet.OutboundArc;
+import uk.ac.imperial.pipe.models.petrinet.PetriNet;
+import uk.ac.imperial.pipe.models.petrinet.Place;
+import uk.ac.imperial.pipe.models.petrinet.Token;
+import uk.ac.imperial.pipe.models.petrinet.Transition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Builds mocked single token Petri nets for testing structural analysis
+ */
+public class MockPetriNet {
+    private static final String TOKEN = "Default";
+
+    private final PetriNet petriNet = mock(PetriNet.class);
+
+    private final Collection<Place> places = new ArrayList<>();
+
+    private final Collection<Transition> transitions = new ArrayList<>();
+
+    private final Map<Transition, List<InboundArc>> inbound = new HashMap<>();
+
+    private final Map<Transition, List<OutboundArc>> outbound = new HashMap<>();
+
+    public MockPetriNet() {
+        Token token = mock(Token.class);
+        when(token.getId()).thenReturn(TOKEN);
+        when(petriNet.getTokens()).thenReturn(Collections.singletonList(token));
+        when(petriNet.getPlaces()).thenReturn(places);
+        when(petriNet.getTransitions()).thenReturn(transitions);
+    }
+
+    public PetriNet getPetriNet() {
+        return petriNet;
+    }
+
+    public Place place(String id, int tokens) {
+        return place(id, tokens, 0);
+    }
+
+    public Place place(String id, int tokens, int capacity) {
+        Place place = mock(Place.class);
+        when(place.getId()).thenReturn(id);
+        when(place.getTokenCount(TOKEN)).thenReturn(tokens);
+        when(place.getCapacity()).thenReturn(capacity);
+        places.add(place);
+        return place;
+    }
+
+    public Transition transition(String id) {
+        Transition transition = mock(Transition.class);
+        when(transition.getId()).thenReturn(id);
+        when(transition.isTimed()).thenReturn(true);
+        List<InboundArc> inArcs = new ArrayList<>();
+        List<OutboundArc> outArcs = new ArrayList<>();
+        inbound.put(transition, inArcs);
+        outbound.put(transition, outArcs);
+        when(petriNet.inboundArcs(transition)).thenReturn(inArcs);
+        when(petriNet.outboundArcs(transition)).thenReturn(outArcs);
+        transitions.add(transition);
+        return transition;
+    }
+
+    public Transition immediate(String id, int priority) {
+        Transition transition = transition(id);
+        when(transition.isTimed()).thenReturn(false);
+        when(transition.getPriority()).thenReturn(priority);
+        return transition;
+    }
+
+    public Transition transition(String id, Place source, Place target) {
+        return transition(id, source, 1, target, 1);
+    }
+
+    public Transition transition(String id, Place source, int in, Place target, int out) {
+        Transition transition = transition(id);
+        input(transition, source, Integer.toString(in));
+        output(transition, target, Integer.toString(out));
+        return transition;
+    }
+
+    public void input(Transition transition, Place place, String weight) {
+        arc(transition, place, weight, ArcType.NORMAL);
+    }
+
+    public void inhibitor(Transition transition, Place place) {
+        arc(transition, place, "1", ArcType.INHIBITOR);
+    }
+
+    private void arc(Transition transition, Place place, String weight, ArcType type) {
+        InboundArc arc = mock(InboundArc.class);
+        when(arc.getSource()).thenReturn(place);
+        when(arc.getType()).thenReturn(type);
+        when(arc.getTokenWeights()).thenReturn(Collections.singletonMap(TOKEN, weight));
+        inbound.get(transition).add(arc);
+    }
+
+    public void output(Transition transition, Place place, String weight) {
+        OutboundArc arc = mock(OutboundArc.class);
+        when(arc.getTarget()).thenReturn(place);
+        when(arc.getTokenWeights()).thenReturn(Collections.singletonMap(TOKEN, weight));
+        outbound.get(transition).add(arc);
+    }
+}
@@ -0,0 +1,59 @@
+package utils;
+
+import uk.ac.imperial.io.StateProcessor;
+import uk.ac.imperial.state.ClassifiedState;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the id of every state and the transitions written for each id
+ */
+public class RecordingProcessor implements StateProcessor {
+    private final Map<ClassifiedState, Integer> ids = new HashMap<>();
+
+    private final Map<Integer, Map<Integer, Double>> transitions = new HashMap<>();
+
+    @Override
+    public void processTransitions(int state, Map<Integer, Double> successorRates) {
+        transitions.put(state, successorRates);
+    }
+
+    @Override
+    public void processState(ClassifiedState state, int stateId) {
+        ids.put(state, stateId);
+    }
+
+    /**
+     * @return state to the id it was given
+     */
+    public Map<ClassifiedState, Integer> getIds() {
+        return ids;
+    }
+
+    /**
+     * @return state id to its successor ids and rates
+     */
+    public Map<Integer, Map<Integer, Double>> getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return state to successor states to rates, independent of the ids the states were given
+     */
+    public Map<ClassifiedState, Map<ClassifiedState, Double>> getGraph() {
+        Map<Integer, ClassifiedState> states = new HashMap<>();
+        for (Map.Entry<ClassifiedState, Integer> entry : ids.entrySet()) {
+            states.put(entry.getValue(), entry.getKey());
+        }
+        Map<ClassifiedState, Map<ClassifiedState, Double>> graph = new HashMap<>();
+        for (Map.Entry<Integer, Map<Integer, Double>> entry : transitions.entrySet()) {
+            Map<ClassifiedState, Double> successors = new HashMap<>();
+            for (Map.Entry<Integer, Double> successor : entry.getValue().entrySet()) {
+                successors.put(states.get(successor.getKey()), successor.getValue());
+            }
+            graph.put(states.get(entry.getKey()), successors);
+        }
+        return graph;
+    }
+}
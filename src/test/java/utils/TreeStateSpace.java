@@ -0,0 +1,81 @@
+package utils;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import uk.ac.imperial.state.ClassifiedState;
+import uk.ac.imperial.state.HashedClassifiedState;
+import uk.ac.imperial.state.HashedStateBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Tree shaped state spaces for testing explorers without a Petri net.
+ * <p>
+ * State i is the tangible state holding i tokens in place P0, its children are the states
+ * branching * i + 1 up to branching * i + branching that are below the size of the tree.
+ * </p>
+ */
+public final class TreeStateSpace {
+    private TreeStateSpace() {}
+
+    /**
+     * @param id position of the state in the tree
+     * @return single place state holding id tokens
+     */
+    public static ClassifiedState state(int id) {
+        HashedStateBuilder stateBuilder = new HashedStateBuilder();
+        stateBuilder.placeWithToken("P0", "Default", id);
+        return HashedClassifiedState.tangibleState(stateBuilder.build());
+    }
+
+    /**
+     * @param state state of the tree
+     * @return position of the state in the tree
+     */
+    public static int id(ClassifiedState state) {
+        return state.getTokens("P0").get("Default");
+    }
+
+    /**
+     * Successors of a binary tree of the given size in which every state also returns to the root,
+     * so that every state is reached more than once
+     *
+     * @param states  number of states in the tree
+     * @param threads names of the threads that asked for successors are added to this
+     * @return answer for {@code ExplorerUtilities.getSuccessors}
+     */
+    public static Answer<Collection<ClassifiedState>> binaryTreeWithReturn(int states, Set<String> threads) {
+        return successors(states, 2, true, threads);
+    }
+
+    /**
+     * @param states     number of states in the tree
+     * @param branching  number of children of each state
+     * @param backToRoot true if every state also has the root as a successor
+     * @param threads    names of the threads that asked for successors are added to this, or null
+     * @return answer for {@code ExplorerUtilities.getSuccessors}
+     */
+    public static Answer<Collection<ClassifiedState>> successors(final int states, final int branching,
+                                                                 final boolean backToRoot,
+                                                                 final Set<String> threads) {
+        return new Answer<Collection<ClassifiedState>>() {
+            @Override
+            public Collection<ClassifiedState> answer(InvocationOnMock invocation) {
+                if (threads != null) {
+                    threads.add(Thread.currentThread().getName());
+                }
+                int id = id((ClassifiedState) invocation.getArguments()[0]);
+                Collection<ClassifiedState> successors = new ArrayList<>();
+                for (int child = branching * id + 1; child <= branching * id + branching && child < states; child++) {
+                    successors.add(state(child));
+                }
+                if (backToRoot) {
+                    successors.add(state(0));
+                }
+                return successors;
+            }
+        };
+    }
+}
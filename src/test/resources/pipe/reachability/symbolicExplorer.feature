@@ -0,0 +1,41 @@
+Feature: symbolic state space generation
+
+  Scenario: Generating a simple Petri net symbolically
+    Given I use the Petri net located at /simple.xml
+    When I generate the state space symbolically
+    Then the symbolic state space has 2 states
+    And the symbolic state space has 0 deadlocks
+
+  Scenario: Generating a structured Petri net symbolically
+    Given I use the Petri net located at /medium_complex_5832.xml
+    When I generate the state space symbolically
+    Then the symbolic state space has 729 states
+    And the symbolic state space has 0 deadlocks
+
+  Scenario: Generating a large structured Petri net symbolically
+    Given I use the Petri net located at /medium_complex_2752512.xml
+    When I generate the state space symbolically
+    Then the symbolic state space has 262144 states
+
+  Scenario: Exporting a symbolic state space
+    Given I use the Petri net located at /simple.xml
+    When I generate the state space symbolically
+    And I export the symbolic state space
+    Then I expect to see 2 state transitions
+    And 2 states
+    And I expect a record with state
+    """
+       {"P0" : { "Default" : 1 }, "P1" : { "Default" : 0 } }
+    """
+    And successor
+    """
+       {"P0" : { "Default" : 0 }, "P1" : { "Default" : 1 } }
+    """
+    And rate 1.0
+
+  Scenario: Exporting a structured Petri net
+    Given I use the Petri net located at /medium_complex_5832.xml
+    When I generate the state space symbolically
+    And I export the symbolic state space
+    Then I expect to see 5832 state transitions
+    And 729 states